@@ -40,6 +40,8 @@ public class ConnectionConfigFactory {
 
     private int maxThreads = 0;
 
+    private boolean virtualThreadsEnabled = false;
+
     /**
      * Create a connection configuration instances based on the configuration on this factory
      * @return The {@link ConnectionConfig} instance
@@ -47,7 +49,7 @@ public class ConnectionConfigFactory {
     public ConnectionConfig createConnectionConfig() {
         return new DefaultConnectionConfig(anonymousLoginEnabled,
                 loginFailureDelay, maxLogins, maxAnonymousLogins,
-                maxLoginFailures, maxThreads);
+                maxLoginFailures, maxThreads, virtualThreadsEnabled);
     }
 
     /**
@@ -124,6 +126,31 @@ public class ConnectionConfigFactory {
         this.maxThreads = maxThreads;
     }
 
+    /**
+     * Tells whether client requests are processed on virtual threads, if the
+     * Java runtime supports them.
+     * 
+     * @return true if virtual threads should be used
+     */
+    public boolean isVirtualThreadsEnabled() {
+        return virtualThreadsEnabled;
+    }
+
+    /**
+     * Sets whether client requests are processed on virtual threads. Requests
+     * of the same session are still processed one at a time and in order, but
+     * the number of threads is not limited, so sessions blocked in file or
+     * socket I/O do not hold up other sessions. Requires a Java runtime with
+     * virtual threads, the server falls back to a thread pool limited by
+     * {@link #setMaxThreads(int)} otherwise.
+     * 
+     * @param virtualThreadsEnabled
+     *            true if virtual threads should be used
+     */
+    public void setVirtualThreadsEnabled(boolean virtualThreadsEnabled) {
+        this.virtualThreadsEnabled = virtualThreadsEnabled;
+    }
+
     /**
      * Set if anonymous logins are allowed at the server
      * @param anonymousLoginEnabled true if anonymous logins should be enabled
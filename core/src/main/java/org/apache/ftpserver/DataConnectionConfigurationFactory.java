@@ -55,6 +55,7 @@ public class DataConnectionConfigurationFactory {
     private PassivePorts passivePorts = new PassivePorts(Collections.<Integer>emptySet(), true);
     private boolean passiveIpCheck = false;
     private boolean implicitSsl;
+    private int passiveSocketPoolSize = 0;
 
     private SocketFactory socketFactory = null;
     private ServerSocketFactory serverSocketFactory = null;
@@ -70,7 +71,8 @@ public class DataConnectionConfigurationFactory {
                 ssl, activeEnabled, activeIpCheck,
                 activeLocalAddress, activeLocalPort,
                 passiveAddress, passivePorts,
-                passiveExternalAddress, passiveIpCheck, implicitSsl,socketFactory,serverSocketFactory);
+                passiveExternalAddress, passiveIpCheck, implicitSsl,socketFactory,serverSocketFactory,
+                passiveSocketPoolSize);
     }
     /*
      * (Non-Javadoc)
@@ -287,6 +289,33 @@ public class DataConnectionConfigurationFactory {
     }
 
 
+    /**
+     * Get the maximum number of idle passive server sockets kept bound for
+     * reuse by later PASV commands.
+     *
+     * @return The pool size, 0 if passive server sockets are not pooled
+     */
+    public int getPassiveSocketPoolSize() {
+        return passiveSocketPoolSize;
+    }
+
+    /**
+     * Set the maximum number of idle passive server sockets kept bound for
+     * reuse by later PASV commands. Pooled sockets keep their passive port
+     * reserved while idle, so the pool should be smaller than the number of
+     * passive ports. Pooling is not used together with a custom
+     * {@link ServerSocketFactory}. Defaults to 0, which disables the pool.
+     *
+     * @param passiveSocketPoolSize The pool size
+     */
+    public void setPassiveSocketPoolSize(int passiveSocketPoolSize) {
+        if (passiveSocketPoolSize < 0) {
+            throw new FtpServerConfigurationException(
+                    "Passive socket pool size must not be negative");
+        }
+        this.passiveSocketPoolSize = passiveSocketPoolSize;
+    }
+
     /**
      * Release data port
      * @param port The port to release
@@ -29,6 +29,7 @@ import org.apache.ftpserver.ftplet.UserManager;
 import org.apache.ftpserver.ftpletcontainer.impl.DefaultFtpletContainer;
 import org.apache.ftpserver.impl.DefaultFtpServer;
 import org.apache.ftpserver.impl.DefaultFtpServerContext;
+import org.apache.ftpserver.ipfilter.LoginFailureTracker;
 import org.apache.ftpserver.listener.Listener;
 import org.apache.ftpserver.message.MessageResource;
 
@@ -233,4 +234,240 @@ public class FtpServerFactory {
     public void setConnectionConfig(final ConnectionConfig connectionConfig) {
         serverContext.setConnectionConfig(connectionConfig);
     }
+
+    /**
+     * Retrieve the maximum aggregate download rate of servers created by this
+     * factory
+     *
+     * @return The maximum download rate in bytes per second, 0 if not limited
+     */
+    public int getMaxDownloadRate() {
+        return serverContext.getMaxDownloadRate();
+    }
+
+    /**
+     * Set the maximum aggregate download rate of servers created by this
+     * factory. The bandwidth is shared by all sessions on all listeners, in
+     * addition to the listener and user limits.
+     *
+     * @param maxDownloadRate
+     *            The maximum download rate in bytes per second, 0 for no limit
+     */
+    public void setMaxDownloadRate(final int maxDownloadRate) {
+        serverContext.setMaxDownloadRate(maxDownloadRate);
+    }
+
+    /**
+     * Retrieve the maximum aggregate upload rate of servers created by this
+     * factory
+     *
+     * @return The maximum upload rate in bytes per second, 0 if not limited
+     */
+    public int getMaxUploadRate() {
+        return serverContext.getMaxUploadRate();
+    }
+
+    /**
+     * Set the maximum aggregate upload rate of servers created by this
+     * factory. The bandwidth is shared by all sessions on all listeners, in
+     * addition to the listener and user limits.
+     *
+     * @param maxUploadRate
+     *            The maximum upload rate in bytes per second, 0 for no limit
+     */
+    public void setMaxUploadRate(final int maxUploadRate) {
+        serverContext.setMaxUploadRate(maxUploadRate);
+    }
+
+    /**
+     * Retrieve the maximum download rate of each user of servers created by
+     * this factory
+     *
+     * @return The maximum download rate in bytes per second, 0 if not limited
+     */
+    public int getMaxUserDownloadRate() {
+        return serverContext.getMaxUserDownloadRate();
+    }
+
+    /**
+     * Set the maximum download rate of each user of servers created by this
+     * factory. The bandwidth is shared by all sessions of the user, in
+     * addition to the server and listener budgets and the per transfer
+     * limit set by the
+     * {@link org.apache.ftpserver.usermanager.impl.TransferRatePermission}
+     * of the user.
+     *
+     * @param maxUserDownloadRate
+     *            The maximum download rate in bytes per second, 0 for no limit
+     */
+    public void setMaxUserDownloadRate(final int maxUserDownloadRate) {
+        serverContext.setMaxUserDownloadRate(maxUserDownloadRate);
+    }
+
+    /**
+     * Retrieve the maximum upload rate of each user of servers created by
+     * this factory
+     *
+     * @return The maximum upload rate in bytes per second, 0 if not limited
+     */
+    public int getMaxUserUploadRate() {
+        return serverContext.getMaxUserUploadRate();
+    }
+
+    /**
+     * Set the maximum upload rate of each user of servers created by this
+     * factory. The bandwidth is shared by all sessions of the user, in
+     * addition to the server and listener budgets and the per transfer
+     * limit set by the
+     * {@link org.apache.ftpserver.usermanager.impl.TransferRatePermission}
+     * of the user.
+     *
+     * @param maxUserUploadRate
+     *            The maximum upload rate in bytes per second, 0 for no limit
+     */
+    public void setMaxUserUploadRate(final int maxUserUploadRate) {
+        serverContext.setMaxUserUploadRate(maxUserUploadRate);
+    }
+
+    /**
+     * Retrieve the number of file checksums cached by servers created by this
+     * factory
+     *
+     * @return The number of cached checksums
+     */
+    public int getChecksumCacheSize() {
+        return serverContext.getChecksumCacheSize();
+    }
+
+    /**
+     * Set the number of file checksums cached by servers created by this
+     * factory. Checksums computed by the MD5, MMD5 and HASH commands are
+     * reused as long as the size and modification time of the file stay the
+     * same.
+     *
+     * @param checksumCacheSize
+     *            The number of cached checksums, 0 to compute every checksum
+     */
+    public void setChecksumCacheSize(final int checksumCacheSize) {
+        serverContext.setChecksumCacheSize(checksumCacheSize);
+    }
+
+    /**
+     * Retrieve the checksum algorithms computed while files are uploaded by
+     * servers created by this factory
+     *
+     * @return The algorithms, empty if no checksums are computed
+     */
+    public String[] getUploadChecksumAlgorithms() {
+        return serverContext.getUploadChecksumAlgorithms().clone();
+    }
+
+    /**
+     * Set the checksum algorithms computed while files are uploaded by
+     * servers created by this factory. The checksums are computed from the
+     * data as it is written, for uploads that write the whole file (STOR and
+     * STOU without REST, APPE to a new file), and are stored in the checksum
+     * cache. Following MD5, MMD5 and HASH commands then do not need to read
+     * the file again.
+     *
+     * @param algorithms
+     *            Any of SHA-256, SHA-1, MD5 and CRC32C, empty to not compute
+     *            checksums during uploads
+     * @throws IllegalArgumentException
+     *             If an algorithm is not supported
+     */
+    public void setUploadChecksumAlgorithms(final String[] algorithms) {
+        serverContext.setUploadChecksumAlgorithms(algorithms);
+    }
+
+    /**
+     * Retrieve the number of files hashed at the same time by all sessions of
+     * servers created by this factory
+     *
+     * @return The number of checksum threads
+     */
+    public int getChecksumThreads() {
+        return serverContext.getChecksumThreads();
+    }
+
+    /**
+     * Set the number of files hashed at the same time by all sessions of
+     * servers created by this factory. The files of an MMD5 command are
+     * hashed in parallel by a dedicated thread pool of this size.
+     *
+     * @param checksumThreads
+     *            The number of checksum threads
+     */
+    public void setChecksumThreads(final int checksumThreads) {
+        serverContext.setChecksumThreads(checksumThreads);
+    }
+
+    /**
+     * Retrieve the number of files hashed at the same time for a single
+     * session of servers created by this factory
+     *
+     * @return The number of files
+     */
+    public int getChecksumThreadsPerSession() {
+        return serverContext.getChecksumThreadsPerSession();
+    }
+
+    /**
+     * Set the number of files hashed at the same time for a single session
+     * of servers created by this factory, so that one client can not use the
+     * whole checksum thread pool.
+     *
+     * @param checksumThreadsPerSession
+     *            The number of files
+     */
+    public void setChecksumThreadsPerSession(final int checksumThreadsPerSession) {
+        serverContext.setChecksumThreadsPerSession(checksumThreadsPerSession);
+    }
+
+    /**
+     * Retrieve the tracker banning addresses after repeated login failures
+     * for servers created by this factory
+     *
+     * @return The tracker, null if addresses are not banned
+     */
+    public LoginFailureTracker getLoginFailureTracker() {
+        return serverContext.getLoginFailureTracker();
+    }
+
+    /**
+     * Set the tracker banning addresses after repeated login failures for
+     * servers created by this factory. Connections from banned addresses are
+     * closed by all listeners as soon as they are accepted. The tracker can
+     * be used to list and lift bans while the server is running.
+     *
+     * @param loginFailureTracker
+     *            The tracker, null to not ban addresses
+     */
+    public void setLoginFailureTracker(
+            final LoginFailureTracker loginFailureTracker) {
+        serverContext.setLoginFailureTracker(loginFailureTracker);
+    }
+
+    /**
+     * Retrieve the time after which an Ftplet callback is logged as slow by
+     * servers created by this factory
+     *
+     * @return The time in milliseconds, 0 if slow Ftplets are not logged
+     */
+    public int getSlowFtpletThreshold() {
+        return serverContext.getSlowFtpletThreshold();
+    }
+
+    /**
+     * Set the time after which an Ftplet callback is logged as slow by
+     * servers created by this factory, together with the session and the
+     * command. The time spent in every Ftplet is also recorded in the server
+     * statistics, whatever the threshold.
+     *
+     * @param slowFtpletThreshold
+     *            The time in milliseconds, 0 to not log slow Ftplets
+     */
+    public void setSlowFtpletThreshold(final int slowFtpletThreshold) {
+        serverContext.setSlowFtpletThreshold(slowFtpletThreshold);
+    }
 }
@@ -30,6 +30,13 @@ public abstract class AbstractCommand implements Command {
 
     public static final String COMMAND_EXCEPTION = "COMMAND_EXCEPTION";
 
+    /**
+     * Session attribute holding the checksums computed during the last
+     * upload, a map from algorithm name to lower case hex string. Available
+     * to Ftplets in onUploadEnd.
+     */
+    public static final String UPLOAD_CHECKSUMS = "UPLOAD_CHECKSUMS";
+
     protected void setSessionException(final FtpIoSession session, Exception e)
     {
         session.setAttribute(COMMAND_EXCEPTION, e);
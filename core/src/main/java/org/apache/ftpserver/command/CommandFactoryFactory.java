@@ -19,9 +19,11 @@
 
 package org.apache.ftpserver.command;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import org.apache.ftpserver.command.impl.ABOR;
 import org.apache.ftpserver.command.impl.ACCT;
@@ -35,6 +37,7 @@ import org.apache.ftpserver.command.impl.DefaultCommandFactory;
 import org.apache.ftpserver.command.impl.EPRT;
 import org.apache.ftpserver.command.impl.EPSV;
 import org.apache.ftpserver.command.impl.FEAT;
+import org.apache.ftpserver.command.impl.HASH;
 import org.apache.ftpserver.command.impl.HELP;
 import org.apache.ftpserver.command.impl.LANG;
 import org.apache.ftpserver.command.impl.LIST;
@@ -93,6 +96,7 @@ public class CommandFactoryFactory {
         DEFAULT_COMMAND_MAP.put("EPRT", new EPRT());
         DEFAULT_COMMAND_MAP.put("EPSV", new EPSV());
         DEFAULT_COMMAND_MAP.put("FEAT", new FEAT());
+        DEFAULT_COMMAND_MAP.put("HASH", new HASH());
         DEFAULT_COMMAND_MAP.put("HELP", new HELP());
         DEFAULT_COMMAND_MAP.put("LANG", new LANG());
         DEFAULT_COMMAND_MAP.put("LIST", new LIST());
@@ -135,6 +139,15 @@ public class CommandFactoryFactory {
 
     private boolean useDefaultCommands = true;
 
+    /**
+     * Get the names of the default commands
+     * 
+     * @return The upper case command names
+     */
+    public static Set<String> getDefaultCommandNames() {
+        return Collections.unmodifiableSet(DEFAULT_COMMAND_MAP.keySet());
+    }
+
     /**
      * Create an {@link CommandFactory} based on the configuration on the factory.
      * @return The {@link CommandFactory}
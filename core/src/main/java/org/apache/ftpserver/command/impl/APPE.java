@@ -164,7 +164,8 @@ public class APPE extends AbstractCommand {
                 }
 
                 // open streams
-                os = file.createOutputStream(offset);
+                os = UploadChecksums.createStream(session, context, file
+                        .createOutputStream(offset), offset);
 
                 // transfer data
                 long transSz = dataConnection.transferFromClient(session.getFtpletSession(), os);
@@ -174,6 +175,7 @@ public class APPE extends AbstractCommand {
                 if(os != null) {
                     os.close();
                 }
+                UploadChecksums.store(session, context, file, os);
 
                 LOG.info("File uploaded {}", fileName);
 
@@ -19,8 +19,10 @@
 
 package org.apache.ftpserver.command.impl;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.ftpserver.command.Command;
 import org.apache.ftpserver.command.CommandFactory;
@@ -57,4 +59,13 @@ public class DefaultCommandFactory implements CommandFactory {
         String upperCaseCmdName = cmdName.toUpperCase();
         return commandMap.get(upperCaseCmdName);
     }
+
+    /**
+     * Get the names of all installed commands
+     * 
+     * @return The upper case command names
+     */
+    public Set<String> getCommandNames() {
+        return Collections.unmodifiableSet(commandMap.keySet());
+    }
 }
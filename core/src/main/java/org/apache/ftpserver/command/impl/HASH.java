@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ftpserver.command.impl;
+
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.ftpserver.command.AbstractCommand;
+import org.apache.ftpserver.ftplet.FtpException;
+import org.apache.ftpserver.ftplet.FtpFile;
+import org.apache.ftpserver.ftplet.FtpReply;
+import org.apache.ftpserver.ftplet.FtpRequest;
+import org.apache.ftpserver.impl.ChecksumCache;
+import org.apache.ftpserver.impl.FtpIoSession;
+import org.apache.ftpserver.impl.FtpServerContext;
+import org.apache.ftpserver.impl.LocalizedFtpReply;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <strong>Internal class, do not use directly.</strong>
+ * 
+ * <code>HASH &lt;SP&gt; &lt;pathname&gt; &lt;CRLF&gt;</code><br>
+ * 
+ * Returns the hash of a file according to draft-bryan-ftpext-hash, using
+ * the algorithm selected with OPTS HASH. Supported algorithms are SHA-256,
+ * which is the default, SHA-1, MD5 and CRC32C. Hashes are computed over the
+ * whole file, byte ranges are not supported.
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a> 
+ */
+public class HASH extends AbstractCommand {
+
+    /**
+     * Session attribute holding the algorithm selected with OPTS HASH
+     */
+    static final String ATTRIBUTE_ALGORITHM = "HASH.algorithm";
+
+    private final Logger LOG = LoggerFactory.getLogger(HASH.class);
+
+    /**
+     * Execute command.
+     */
+    public void execute(final FtpIoSession session,
+            final FtpServerContext context, final FtpRequest request)
+            throws IOException, FtpException {
+
+        // reset state variables
+        session.resetState();
+
+        // argument check
+        String fileName = request.getArgument();
+        if (fileName == null || fileName.trim().length() == 0) {
+            session.write(LocalizedFtpReply.translate(session, request, context,
+                    FtpReply.REPLY_501_SYNTAX_ERROR_IN_PARAMETERS_OR_ARGUMENTS,
+                    "HASH", null));
+            return;
+        }
+
+        // get file object
+        FtpFile file = null;
+        try {
+            file = session.getFileSystemView().getFile(fileName);
+        } catch (Exception ex) {
+            LOG.debug("Exception getting file object", ex);
+        }
+        if (file == null || !file.doesExist()) {
+            session.write(LocalizedFtpReply.translate(session, request, context,
+                    FtpReply.REPLY_550_REQUESTED_ACTION_NOT_TAKEN,
+                    "HASH.missing", fileName));
+            return;
+        }
+        if (!file.isFile() || !file.isReadable()) {
+            session.write(LocalizedFtpReply.translate(session, request, context,
+                    FtpReply.REPLY_550_REQUESTED_ACTION_NOT_TAKEN,
+                    "HASH.invalid", fileName));
+            return;
+        }
+
+        String algorithm = getAlgorithm(session);
+        byte[] hash;
+        try {
+            hash = context.getChecksumCache().getChecksum(file, algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            LOG.warn(algorithm + " algorithm not available", e);
+            session.write(LocalizedFtpReply.translate(session, request, context,
+                    FtpReply.REPLY_550_REQUESTED_ACTION_NOT_TAKEN,
+                    "HASH.failed", fileName));
+            return;
+        } catch (IOException e) {
+            LOG.debug("Failed to hash file " + file.getAbsolutePath(), e);
+            session.write(LocalizedFtpReply.translate(session, request, context,
+                    FtpReply.REPLY_550_REQUESTED_ACTION_NOT_TAKEN,
+                    "HASH.failed", fileName));
+            return;
+        }
+
+        // <algorithm> <start>-<end> <hash> <pathname>
+        StringBuilder sb = new StringBuilder(128);
+        sb.append(algorithm).append(" 0-").append(file.getSize()).append(' ');
+        sb.append(new String(MD5.encodeHex(hash)).toLowerCase());
+        sb.append(' ').append(fileName);
+        session.write(LocalizedFtpReply.translate(session, request, context,
+                FtpReply.REPLY_213_FILE_STATUS, "HASH", sb.toString()));
+    }
+
+    /**
+     * Get the algorithm selected for the session
+     */
+    static String getAlgorithm(FtpIoSession session) {
+        String algorithm = (String) session.getAttribute(ATTRIBUTE_ALGORITHM);
+        return algorithm != null ? algorithm : ChecksumCache.SHA_256;
+    }
+}
@@ -134,21 +134,22 @@ public class LIST extends AbstractCommand {
             try {
                     if (isFormatTypeWUFTPD)
                     {
-                        String listResult = "";
-
                         if (file.doesExist())
                         {
-                            listResult = directoryListerWUFTPD.listFiles(parsedArg, session.getFileSystemView(),
-                                                                            DirectoryListerWUFTPD.COMMAND_LIST, file);
+                            directoryListerWUFTPD.transferFiles(parsedArg, session.getFileSystemView(),
+                                                                DirectoryListerWUFTPD.COMMAND_LIST, file,
+                                                                session.getFtpletSession(), dataConnection);
+                        }
+                        else
+                        {
+                            dataConnection.transferToClient(session.getFtpletSession(), "");
                         }
-
-                        dataConnection.transferToClient(session.getFtpletSession(), listResult);
                     }
                     else
                     {
-                        dataConnection.transferToClient(session.getFtpletSession(), directoryLister.listFiles(
-                                                                                                              parsedArg, session.getFileSystemView(),
-                                                                                                              LIST_FILE_FORMATER));
+                        directoryLister.transferFiles(parsedArg, session.getFileSystemView(),
+                                                      LIST_FILE_FORMATER, false,
+                                                      session.getFtpletSession(), dataConnection);
                     }
             } catch (SocketException ex) {
                 LOG.debug("Socket exception during list transfer", ex);
@@ -20,19 +20,23 @@
 package org.apache.ftpserver.command.impl;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.security.DigestInputStream;
-import java.security.MessageDigest;
+import java.io.InterruptedIOException;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.ftpserver.command.AbstractCommand;
 import org.apache.ftpserver.ftplet.FtpFile;
 import org.apache.ftpserver.ftplet.FtpReply;
 import org.apache.ftpserver.ftplet.FtpRequest;
+import org.apache.ftpserver.impl.ChecksumCache;
 import org.apache.ftpserver.impl.FtpIoSession;
 import org.apache.ftpserver.impl.FtpServerContext;
 import org.apache.ftpserver.impl.LocalizedFtpReply;
-import org.apache.ftpserver.util.IoUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,6 +48,9 @@ import org.slf4j.LoggerFactory;
  * 
  * Returns the MD5 value for a file or multiple files according to
  * draft-twine-ftpmd5-00.txt.
+ * 
+ * The files of an MMD5 command are hashed in parallel by the checksum thread
+ * pool of the server, the hashes are returned in the requested order.
  *
  * @author <a href="http://mina.apache.org">Apache MINA Project</a> 
  */
@@ -89,9 +96,10 @@ public class MD5 extends AbstractCommand {
             fileNames = new String[] { argument };
         }
 
-        StringBuilder sb = new StringBuilder();
+        FtpFile[] files = new FtpFile[fileNames.length];
         for (int i = 0; i < fileNames.length; i++) {
             String fileName = fileNames[i].trim();
+            fileNames[i] = fileName;
 
             // get file object
             FtpFile file = null;
@@ -127,33 +135,38 @@ public class MD5 extends AbstractCommand {
                 return;
             }
 
-            InputStream is = null;
-            try {
-                is = file.createInputStream(0);
-                String md5Hash = md5(is);
+            files[i] = file;
+        }
 
-                if (i > 0) {
-                    sb.append(", ");
-                }
-                boolean nameHasSpaces = fileName.indexOf(' ') >= 0;
-                if(nameHasSpaces) {
-                	sb.append('"');
-                }
-                sb.append(fileName);
-                if(nameHasSpaces) {
-                	sb.append('"');
-                }
-                sb.append(' ');
-                sb.append(md5Hash);
-
-            } catch (NoSuchAlgorithmException e) {
-                LOG.debug("MD5 algorithm not available", e);
-                session.write(LocalizedFtpReply.translate(session, request, context,
-                        FtpReply.REPLY_502_COMMAND_NOT_IMPLEMENTED,
-                        "MD5.notimplemened", null));
-            } finally {
-                IoUtils.close(is);
+        String[] md5Hashes;
+        try {
+            md5Hashes = md5(context, files);
+        } catch (NoSuchAlgorithmException e) {
+            LOG.debug("MD5 algorithm not available", e);
+            session.write(LocalizedFtpReply.translate(session, request, context,
+                    FtpReply.REPLY_502_COMMAND_NOT_IMPLEMENTED,
+                    "MD5.notimplemened", null));
+            return;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < fileNames.length; i++) {
+            String fileName = fileNames[i];
+            String md5Hash = md5Hashes[i];
+
+            if (i > 0) {
+                sb.append(", ");
+            }
+            boolean nameHasSpaces = fileName.indexOf(' ') >= 0;
+            if(nameHasSpaces) {
+            	sb.append('"');
             }
+            sb.append(fileName);
+            if(nameHasSpaces) {
+            	sb.append('"');
+            }
+            sb.append(' ');
+            sb.append(md5Hash);
         }
         if (isMMD5) {
             session.write(LocalizedFtpReply.translate(session, request, context,
@@ -165,25 +178,71 @@ public class MD5 extends AbstractCommand {
     }
 
     /**
-     * @param is
-     *            InputStream for which the MD5 hash is calculated
-     * @return The hash of the content in the input stream
-     * @throws IOException
-     * @throws NoSuchAlgorithmException
+     * Calculate the MD5 hashes of the files. Multiple files are hashed in
+     * parallel by the checksum thread pool, with at most the configured
+     * number of files per session in progress at any time.
+     * 
+     * @return The hashes, in the same order as the files
      */
-    private String md5(InputStream is) throws IOException,
-            NoSuchAlgorithmException {
-        MessageDigest digest = MessageDigest.getInstance("MD5");
-        DigestInputStream dis = new DigestInputStream(is, digest);
+    private String[] md5(final FtpServerContext context, final FtpFile[] files)
+            throws IOException, NoSuchAlgorithmException {
+        final ChecksumCache cache = context.getChecksumCache();
+        String[] md5Hashes = new String[files.length];
 
-        byte[] buffer = new byte[1024];
+        if (files.length == 1) {
+            md5Hashes[0] = new String(encodeHex(cache.getChecksum(files[0],
+                    ChecksumCache.MD5)));
+            return md5Hashes;
+        }
+
+        ExecutorService executor = context.getChecksumExecutor();
+        int maxPending = Math.min(context.getChecksumThreadsPerSession(),
+                files.length);
+        List<Future<byte[]>> futures = new ArrayList<Future<byte[]>>(
+                files.length);
+        try {
+            for (int i = 0; i < maxPending; i++) {
+                futures.add(executor.submit(createTask(cache, files[i])));
+            }
+            for (int i = 0; i < files.length; i++) {
+                md5Hashes[i] = new String(encodeHex(futures.get(i).get()));
 
-        int read = dis.read(buffer);
-        while (read > -1) {
-            read = dis.read(buffer);
+                // keep the number of pending files
+                int next = futures.size();
+                if (next < files.length) {
+                    futures.add(executor.submit(createTask(cache, files[next])));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while hashing files");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof NoSuchAlgorithmException) {
+                throw (NoSuchAlgorithmException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else {
+                throw new IOException("Failed to hash file: " + cause);
+            }
+        } finally {
+            // stop hashing the remaining files on failure
+            for (Future<byte[]> future : futures) {
+                future.cancel(true);
+            }
         }
+        return md5Hashes;
+    }
 
-        return new String(encodeHex(dis.getMessageDigest().digest()));
+    private Callable<byte[]> createTask(final ChecksumCache cache,
+            final FtpFile file) {
+        return new Callable<byte[]>() {
+            public byte[] call() throws Exception {
+                return cache.getChecksum(file, ChecksumCache.MD5);
+            }
+        };
     }
 
     /**
@@ -111,8 +111,9 @@ public class MLSD extends AbstractCommand {
                 FileFormater formater = new MLSTFileFormater((String[]) session
                         .getAttribute("MLST.types"));
 
-                dataConnection.transferToClient(session.getFtpletSession(), directoryLister.listFiles(
-                        parsedArg, session.getFileSystemView(), formater));
+                directoryLister.transferFiles(parsedArg, session
+                        .getFileSystemView(), formater, false, session
+                        .getFtpletSession(), dataConnection);
             } catch (SocketException ex) {
                 LOG.debug("Socket exception during data transfer", ex);
                 failure = true;
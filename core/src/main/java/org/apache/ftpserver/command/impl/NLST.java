@@ -147,13 +147,13 @@ public class NLST extends AbstractCommand {
 
                 if (isFormatTypeWUFTPD)
                 {
-                    String listResult = directoryListerWUFTPD.listFiles(parsedArg, session.getFileSystemView(), DirectoryListerWUFTPD.COMMAND_NLST, file);
-                    dataConnection.transferToClient(session.getFtpletSession(), listResult);
+                    directoryListerWUFTPD.transferFiles(parsedArg, session.getFileSystemView(), DirectoryListerWUFTPD.COMMAND_NLST, file,
+                                                        session.getFtpletSession(), dataConnection);
                 }
                 else
                 {
-                    dataConnection.transferToClient(session.getFtpletSession(),
-                                                    directoryLister.listFiles(parsedArg, session.getFileSystemView(), formater, session.getListener().isSkipNlstFolders()));
+                    directoryLister.transferFiles(parsedArg, session.getFileSystemView(), formater, session.getListener().isSkipNlstFolders(),
+                                                  session.getFtpletSession(), dataConnection);
                 }
             } catch (SocketException ex) {
                 LOG.debug("Socket exception during data transfer", ex);
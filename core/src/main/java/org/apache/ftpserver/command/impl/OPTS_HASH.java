@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ftpserver.command.impl;
+
+import java.io.IOException;
+
+import org.apache.ftpserver.command.AbstractCommand;
+import org.apache.ftpserver.ftplet.FtpException;
+import org.apache.ftpserver.ftplet.FtpReply;
+import org.apache.ftpserver.ftplet.FtpRequest;
+import org.apache.ftpserver.impl.ChecksumCache;
+import org.apache.ftpserver.impl.FtpIoSession;
+import org.apache.ftpserver.impl.FtpServerContext;
+import org.apache.ftpserver.impl.LocalizedFtpReply;
+
+/**
+ * <strong>Internal class, do not use directly.</strong>
+ * 
+ * <code>OPTS HASH [&lt;SP&gt; &lt;algorithm&gt;] &lt;CRLF&gt;</code><br>
+ * 
+ * Select the algorithm used by the HASH command, or show the current
+ * selection if no algorithm is given.
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a> 
+ */
+public class OPTS_HASH extends AbstractCommand {
+
+    /**
+     * Execute command.
+     */
+    public void execute(final FtpIoSession session,
+            final FtpServerContext context, final FtpRequest request)
+            throws IOException, FtpException {
+
+        // reset state
+        session.resetState();
+
+        String argument = request.getArgument();
+        int spIndex = argument.indexOf(' ');
+        if (spIndex != -1) {
+            String algorithm = ChecksumCache.getAlgorithm(argument.substring(
+                    spIndex + 1).trim());
+            if (algorithm == null) {
+                session.write(LocalizedFtpReply.translate(session, request,
+                        context,
+                        FtpReply.REPLY_504_COMMAND_NOT_IMPLEMENTED_FOR_THAT_PARAMETER,
+                        "OPTS.HASH", null));
+                return;
+            }
+            session.setAttribute(HASH.ATTRIBUTE_ALGORITHM, algorithm);
+        }
+
+        session.write(LocalizedFtpReply.translate(session, request, context,
+                FtpReply.REPLY_200_COMMAND_OKAY, "OPTS.HASH", HASH
+                        .getAlgorithm(session)));
+    }
+}
@@ -20,6 +20,7 @@
 package org.apache.ftpserver.command.impl;
 
 import java.io.IOException;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 
 import org.apache.ftpserver.command.AbstractCommand;
@@ -36,6 +37,7 @@ import org.apache.ftpserver.impl.FtpIoSession;
 import org.apache.ftpserver.impl.FtpServerContext;
 import org.apache.ftpserver.impl.LocalizedFtpReply;
 import org.apache.ftpserver.impl.ServerFtpStatistics;
+import org.apache.ftpserver.ipfilter.LoginFailureTracker;
 import org.apache.ftpserver.usermanager.AnonymousAuthentication;
 import org.apache.ftpserver.usermanager.UsernamePasswordAuthentication;
 import org.apache.ftpserver.usermanager.impl.UserMetadata;
@@ -143,16 +145,36 @@ public class PASS extends AbstractCommand {
                 return;
             }
 
+            // the address may have been banned while this session was open
+            LoginFailureTracker loginFailureTracker = context
+                    .getLoginFailureTracker();
+            InetAddress address = null;
+            if (session.getRemoteAddress() instanceof InetSocketAddress) {
+                address = ((InetSocketAddress) session.getRemoteAddress())
+                        .getAddress();
+            }
+            if (loginFailureTracker != null && address != null
+                    && loginFailureTracker.isBanned(address)) {
+                LOG.warn("Client address is banned, session will be closed");
+                session
+                        .write(LocalizedFtpReply
+                                .translate(
+                                        session,
+                                        request,
+                                        context,
+                                        FtpReply.REPLY_421_SERVICE_NOT_AVAILABLE_CLOSING_CONTROL_CONNECTION,
+                                        "PASS.banned", null));
+                session.close(false).awaitUninterruptibly(10000);
+                return;
+            }
+
             // authenticate user
             UserManager userManager = context.getUserManager();
             User authenticatedUser = null;
             try {
                 UserMetadata userMetadata = new UserMetadata();
 
-                if (session.getRemoteAddress() instanceof InetSocketAddress) {
-                    userMetadata.setInetAddress(((InetSocketAddress) session
-                            .getRemoteAddress()).getAddress());
-                }
+                userMetadata.setInetAddress(address);
                 userMetadata.setCertificateChain(session
                         .getClientCertificates());
 
@@ -164,7 +186,14 @@ public class PASS extends AbstractCommand {
                             password, userMetadata);
                 }
 
-                authenticatedUser = userManager.authenticate(auth);
+                long authStart = System.nanoTime();
+                try {
+                    authenticatedUser = userManager.authenticate(auth);
+                } finally {
+                    session.addCommandTime(
+                            ServerFtpStatistics.COMMAND_TIME_AUTH,
+                            System.nanoTime() - authStart);
+                }
             } catch (AuthenticationFailedException e) {
                 authenticatedUser = null;
                 LOG.warn("User failed to log in");
@@ -217,6 +246,15 @@ public class PASS extends AbstractCommand {
 
                 session.increaseFailedLogins();
 
+                // ban the address if it keeps failing, across sessions
+                if (loginFailureTracker != null
+                        && loginFailureTracker.loginFailed(address)) {
+                    LOG.warn("Client address banned, session will be closed");
+
+                    session.close(false).awaitUninterruptibly(10000);
+                    return;
+                }
+
                 // kick the user if the max number of failed logins is reached
                 int maxAllowedLoginFailues = context.getConnectionConfig()
                         .getMaxLoginFailures();
@@ -237,6 +275,12 @@ public class PASS extends AbstractCommand {
             session.setLogin(fsview);
             stat.setLogin(session);
 
+            // anonymous logins do not prove anything about the address, a
+            // password guesser could use them to reset its failure count
+            if (loginFailureTracker != null && !anonymous) {
+                loginFailureTracker.loginSucceeded(address);
+            }
+
             // everything is fine - send login ok message
             session.write(LocalizedFtpReply.translate(session, request, context,
                     FtpReply.REPLY_230_USER_LOGGED_IN, "PASS", userName));
@@ -144,7 +144,8 @@ public class STOR extends AbstractCommand {
             boolean failure = false;
             OutputStream outStream = null;
             try {
-                outStream = file.createOutputStream(skipLen);
+                outStream = UploadChecksums.createStream(session, context, file
+                        .createOutputStream(skipLen), skipLen);
                 long transSz = dataConnection.transferFromClient(session.getFtpletSession(), outStream);
 
                 // attempt to close the output stream so that errors in
@@ -152,6 +153,7 @@ public class STOR extends AbstractCommand {
                 if(outStream != null) {
                     outStream.close();
                 }
+                UploadChecksums.store(session, context, file, outStream);
 
                 LOG.info("File uploaded {}", fileName);
 
@@ -149,7 +149,8 @@ public class STOU extends AbstractCommand {
             try {
 
                 // open streams
-                os = file.createOutputStream(0L);
+                os = UploadChecksums.createStream(session, context, file
+                        .createOutputStream(0L), 0L);
 
                 // transfer data
                 long transSz = dataConnection.transferFromClient(session.getFtpletSession(), os);
@@ -159,6 +160,7 @@ public class STOU extends AbstractCommand {
                 if(os != null) {
                     os.close();
                 }
+                UploadChecksums.store(session, context, file, os);
 
                 LOG.info("File uploaded {}", fileName);
 
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ftpserver.command.impl;
+
+import java.io.OutputStream;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.ftpserver.command.AbstractCommand;
+import org.apache.ftpserver.ftplet.FtpFile;
+import org.apache.ftpserver.impl.ChecksumOutputStream;
+import org.apache.ftpserver.impl.FtpIoSession;
+import org.apache.ftpserver.impl.FtpServerContext;
+
+/**
+ * <strong>Internal class, do not use directly.</strong>
+ *
+ * Computes the configured upload checksums for <code>STOR</code>,
+ * <code>STOU</code> and <code>APPE</code>.
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+class UploadChecksums {
+
+    private UploadChecksums() {
+        // static methods only
+    }
+
+    /**
+     * Wrap the output stream of an upload so that the configured upload
+     * checksums are computed while writing. Only done for uploads writing
+     * the whole file.
+     *
+     * @param offset
+     *            The position in the file the upload starts at
+     * @return The stream to write to
+     */
+    public static OutputStream createStream(final FtpIoSession session,
+            final FtpServerContext context, OutputStream out, long offset) {
+        session.removeAttribute(AbstractCommand.UPLOAD_CHECKSUMS);
+
+        String[] algorithms = context.getUploadChecksumAlgorithms();
+        if (offset != 0 || algorithms.length == 0) {
+            return out;
+        }
+        try {
+            return new ChecksumOutputStream(out, algorithms);
+        } catch (NoSuchAlgorithmException e) {
+            // algorithms are validated when configured
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Store the checksums computed by a stream created by
+     * {@link #createStream(FtpIoSession, FtpServerContext, OutputStream, long)}
+     * in the checksum cache and the session. Must be called after the stream
+     * has been closed.
+     */
+    public static void store(final FtpIoSession session,
+            final FtpServerContext context, FtpFile file, OutputStream out) {
+        if (!(out instanceof ChecksumOutputStream)) {
+            return;
+        }
+
+        Map<String, byte[]> checksums = ((ChecksumOutputStream) out)
+                .getChecksums();
+        context.getChecksumCache().putChecksums(file, checksums);
+
+        Map<String, String> hexChecksums = new LinkedHashMap<String, String>();
+        for (Map.Entry<String, byte[]> checksum : checksums.entrySet()) {
+            hexChecksums.put(checksum.getKey(), new String(MD5
+                    .encodeHex(checksum.getValue())).toLowerCase());
+        }
+        session.setAttribute(AbstractCommand.UPLOAD_CHECKSUMS, Collections
+                .unmodifiableMap(hexChecksums));
+    }
+}
@@ -20,12 +20,16 @@
 package org.apache.ftpserver.command.impl.listing;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.file.DirectoryIteratorException;
 
+import org.apache.ftpserver.ftplet.DataConnection;
 import org.apache.ftpserver.ftplet.FileSystemView;
-import org.apache.ftpserver.ftplet.FtpException;
 import org.apache.ftpserver.ftplet.FtpFile;
+import org.apache.ftpserver.ftplet.FtpSession;
+import org.apache.ftpserver.impl.IODataConnection;
+import org.apache.ftpserver.util.IoUtils;
 
 /**
  * <strong>Internal class, do not use directly.</strong>
@@ -36,27 +40,75 @@ import org.apache.ftpserver.ftplet.FtpFile;
  */
 public class DirectoryLister {
 
-    private String traverseFiles(final List<FtpFile> files, boolean nlstSkipFolders,
-            final FileFilter filter, final FileFormater formater) {
-        StringBuilder sb = new StringBuilder();
-
-        if (!nlstSkipFolders)
-        {
-            sb.append(traverseFiles(files, filter, formater, true));
-        }
-        sb.append(traverseFiles(files, filter, formater, false));
+    public String listFiles(final ListArgument argument,
+            final FileSystemView fileSystemView, final FileFormater formater, boolean nlstSkipFolders)
+            throws IOException {
 
-        return sb.toString();
+        StringWriter writer = new StringWriter();
+        listFiles(argument, fileSystemView, formater, nlstSkipFolders, writer,
+                false);
+        return writer.toString();
     }
 
     public String listFiles(final ListArgument argument,
-            final FileSystemView fileSystemView, final FileFormater formater, boolean nlstSkipFolders)
-            throws IOException {
+                            final FileSystemView fileSystemView, final FileFormater formater)
+                            throws IOException {
+
+        return listFiles(argument, fileSystemView, formater, false);
+    }
 
-        StringBuilder sb = new StringBuilder();
+    /**
+     * Write the listing one file at a time. Directories are listed before
+     * files, both sorted by name, unless the file system streams listings,
+     * see {@link org.apache.ftpserver.ftplet.StreamingFtpFile}. A streamed
+     * directory is read once and written in directory order, so that it is
+     * never held in memory as a whole.
+     */
+    public void listFiles(final ListArgument argument,
+            final FileSystemView fileSystemView, final FileFormater formater,
+            boolean nlstSkipFolders, final Writer out) throws IOException {
+
+        listFiles(argument, fileSystemView, formater, nlstSkipFolders, out,
+                true);
+    }
 
-        // get all the file objects
-        List<FtpFile> files = listFiles(fileSystemView, argument.getFile());
+    /**
+     * Send the listing to the client. The listing is written straight to the
+     * data connection if possible, without building it in memory first.
+     */
+    public void transferFiles(final ListArgument argument,
+            final FileSystemView fileSystemView, final FileFormater formater,
+            boolean nlstSkipFolders, final FtpSession session,
+            final DataConnection dataConnection) throws IOException {
+
+        if (dataConnection instanceof IODataConnection) {
+            Writer writer = ((IODataConnection) dataConnection)
+                    .getClientWriter(session);
+            boolean success = false;
+            try {
+                listFiles(argument, fileSystemView, formater, nlstSkipFolders,
+                        writer);
+                writer.close();
+                success = true;
+            } finally {
+                if (!success) {
+                    IoUtils.close(writer);
+                }
+            }
+        } else {
+            dataConnection.transferToClient(session, listFiles(argument,
+                    fileSystemView, formater, nlstSkipFolders));
+        }
+    }
+
+    private void listFiles(final ListArgument argument,
+            final FileSystemView fileSystemView, final FileFormater formater,
+            boolean nlstSkipFolders, final Writer out, boolean stream)
+            throws IOException {
+
+        // get the file objects
+        FileListing files = FileListing.open(fileSystemView, argument
+                .getFile(), stream);
         if (files != null) {
             FileFilter filter = null;
             if (!argument.hasOption('a')) {
@@ -66,22 +118,45 @@ public class DirectoryLister {
                 filter = new RegexFileFilter(argument.getPattern(), filter);
             }
 
-            sb.append(traverseFiles(files, nlstSkipFolders, filter, formater));
+            try {
+                traverseFiles(files, nlstSkipFolders, filter, formater, out);
+            } catch (DirectoryIteratorException e) {
+                throw e.getCause();
+            } finally {
+                files.close();
+            }
         }
-
-        return sb.toString();
     }
 
-    public String listFiles(final ListArgument argument,
-                            final FileSystemView fileSystemView, final FileFormater formater)
-                            throws IOException {
+    private void traverseFiles(final FileListing files,
+            boolean nlstSkipFolders, final FileFilter filter,
+            final FileFormater formater, final Writer out) throws IOException {
 
-        return listFiles(argument, fileSystemView, formater, false);
+        if (files.isStreamed()) {
+            // a single pass in directory order
+            for (FtpFile file : files) {
+                if (file == null) {
+                    continue;
+                }
+
+                if (filter == null || filter.accept(file)) {
+                    if (!nlstSkipFolders || !file.isDirectory()) {
+                        out.write(formater.format(file));
+                    }
+                }
+            }
+            return;
+        }
+
+        if (!nlstSkipFolders) {
+            traverseFiles(files, filter, formater, true, out);
+        }
+        traverseFiles(files, filter, formater, false, out);
     }
 
-    private String traverseFiles(final List<FtpFile> files, final FileFilter filter, final FileFormater formater, boolean matchDirs)
+    private void traverseFiles(final Iterable<FtpFile> files, final FileFilter filter, final FileFormater formater, boolean matchDirs, final Writer out)
+            throws IOException
     {
-        StringBuilder sb = new StringBuilder();
         for (FtpFile file : files)
         {
             if (file == null)
@@ -93,32 +168,9 @@ public class DirectoryLister {
             {
                 if (file.isDirectory() == matchDirs)
                 {
-                    sb.append(formater.format(file));
+                    out.write(formater.format(file));
                 }
             }
         }
-
-        return sb.toString();
-    }
-
-    private List<FtpFile> listFiles(FileSystemView fileSystemView, String file)
-    {
-        List<FtpFile> files = null;
-        try
-        {
-            FtpFile virtualFile = fileSystemView.getFile(file);
-            if (virtualFile.isFile())
-            {
-                files = new ArrayList<FtpFile>();
-                files.add(virtualFile);
-            }
-            else
-            {
-                files = virtualFile.listFiles();
-            }
-        }
-        catch (FtpException ex)
-        {}
-        return files;
     }
 }
@@ -20,12 +20,19 @@
 package org.apache.ftpserver.command.impl.listing;
 
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.file.DirectoryIteratorException;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.ftpserver.ftplet.DataConnection;
 import org.apache.ftpserver.ftplet.FileSystemView;
 import org.apache.ftpserver.ftplet.FtpException;
 import org.apache.ftpserver.ftplet.FtpFile;
+import org.apache.ftpserver.ftplet.FtpSession;
+import org.apache.ftpserver.impl.IODataConnection;
+import org.apache.ftpserver.util.IoUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -156,6 +163,62 @@ public class DirectoryListerWUFTPD {
 
     public String listFiles(final ListArgument argument,
             final FileSystemView fileSystemView, final String command, final FtpFile listingFile) throws IOException
+    {
+        StringWriter writer = new StringWriter();
+        listFiles(argument, fileSystemView, command, listingFile, writer, false);
+        return writer.toString();
+    }
+
+    /***
+     * Send the listing to the client. The formatted listing is written straight
+     * to the data connection if possible instead of being copied and encoded
+     * separately.
+     */
+    public void transferFiles(final ListArgument argument,
+            final FileSystemView fileSystemView, final String command, final FtpFile listingFile,
+            final FtpSession session, final DataConnection dataConnection) throws IOException
+    {
+        if (dataConnection instanceof IODataConnection)
+        {
+            Writer writer = ((IODataConnection) dataConnection).getClientWriter(session);
+            boolean success = false;
+            try
+            {
+                listFiles(argument, fileSystemView, command, listingFile, writer);
+                writer.close();
+                success = true;
+            }
+            finally
+            {
+                if (!success)
+                {
+                    IoUtils.close(writer);
+                }
+            }
+        }
+        else
+        {
+            dataConnection.transferToClient(session, listFiles(argument, fileSystemView, command, listingFile));
+        }
+    }
+
+    /***
+     * Write the listing. Unless the files are sorted or listed in columns, a
+     * directory is streamed if the file system supports it, see
+     * {@link org.apache.ftpserver.ftplet.StreamingFtpFile}, and written in
+     * directory order. The column widths depend on all files, so the files
+     * are still collected in memory before being written one at a time.
+     */
+    public void listFiles(final ListArgument argument,
+            final FileSystemView fileSystemView, final String command, final FtpFile listingFile,
+            final Writer out) throws IOException
+    {
+        listFiles(argument, fileSystemView, command, listingFile, out, true);
+    }
+
+    private void listFiles(final ListArgument argument,
+            final FileSystemView fileSystemView, final String command, final FtpFile listingFile,
+            final Writer out, boolean stream) throws IOException
     {
         String relativePath = "";
 
@@ -173,12 +236,26 @@ public class DirectoryListerWUFTPD {
         boolean isDirectory = listingFile != null && listingFile.isDirectory();
         if (isDirectory && argument.hasOption('d') && !argument.hasOptions('C') && !argument.hasOption('f'))
         {
-            return formater.format(new FtpFileData(listingFile, ".", formater.isFlagFileNames(), relativePath));
+            out.write(formater.format(new FtpFileData(listingFile, ".", formater.isFlagFileNames(), relativePath)));
         }
         else
         {
-            List<FtpFile> files = listFiles(fileSystemView, argument.getFile());
+            Integer sortType = null;
+
+            if (argument.hasOption('t') && !argument.hasOption('f'))
+            {
+                sortType = LISTFileFormaterWUFTPD.SORT_TYPE_BY_LASTMODIFIED;
+            }
+
+            stream = stream && sortType == null && !formater.isColumnarFormat() && formater instanceof LISTFileFormaterWUFTPD;
+
+            boolean addTotalLine = formater.allowAddTotalLine() &&
+                                   isDirectory &&
+                                   isNullOrEmpty(argument.getPattern());
+
+            FileListing files = FileListing.open(fileSystemView, argument.getFile(), stream);
             String result = "";
+            boolean isEmpty = true;
 
             if (files != null)
             {
@@ -193,13 +270,6 @@ public class DirectoryListerWUFTPD {
 
                 boolean skipFolders = command.equals(COMMAND_NLST) && isNullOrEmpty(argument.getOptions());
 
-                Integer sortType = null;
-
-                if (argument.hasOption('t') && !argument.hasOption('f'))
-                {
-                    sortType = LISTFileFormaterWUFTPD.SORT_TYPE_BY_LASTMODIFIED;
-                }
-
                 boolean appendParentFoldersInfo = false;
 
                 if (isDirectory && isNullOrEmpty(argument.getPattern()))
@@ -208,9 +278,12 @@ public class DirectoryListerWUFTPD {
                     appendParentFoldersInfo = appendParentFoldersInfo || (command.equals(COMMAND_NLST) && (argument.hasOptions('a','l') || hasAnyOfOptions(argument, 'a', 'f')));
                 }
 
+                FtpFile currentFile = null;
+                FtpFile parentFile = null;
+
                 if (appendParentFoldersInfo)
                 {
-                    FtpFile parentFile = null;
+                    currentFile = listingFile;
 
                     try
                     {
@@ -219,37 +292,37 @@ public class DirectoryListerWUFTPD {
                     catch(Exception ex)
                     {
                     }
+                }
 
-                    result = traverseFiles(files, filter, formater, skipFolders, listingFile, parentFile, sortType, relativePath);
+                try
+                {
+                    if (stream)
+                    {
+                        streamFiles(files, filter, (LISTFileFormaterWUFTPD) formater, skipFolders, currentFile, parentFile, relativePath, addTotalLine, out);
+                        return;
+                    }
+
+                    isEmpty = !files.iterator().hasNext();
+                    result = traverseFiles(files, filter, formater, skipFolders, currentFile, parentFile, sortType, relativePath);
                 }
-                else
+                catch (DirectoryIteratorException e)
                 {
-                    result = traverseFiles(files, filter, formater, skipFolders, null, null, sortType, relativePath);
+                    throw e.getCause();
+                }
+                finally
+                {
+                    files.close();
                 }
             }
 
-            boolean isEmpty = result.isEmpty() && isNullOrEmpty(files);
-            String dummyLine = "";
-
-            if (formater.allowAddTotalLine() &&
-                isDirectory &&
-                (isEmpty || !result.isEmpty()) &&
-                isNullOrEmpty(argument.getPattern()))
-            {
-                dummyLine = createDummyLine(isEmpty);
-            }
-
-            StringBuffer sb = new StringBuffer();
+            isEmpty = result.isEmpty() && isEmpty;
 
-            if (dummyLine != null && !dummyLine.isEmpty())
+            if (addTotalLine && (isEmpty || !result.isEmpty()))
             {
-                sb.append(dummyLine);
-                sb.append(NEWLINE);
+                writeDummyLine(isEmpty, out);
             }
 
-            sb.append(result);
-
-            return sb.toString();
+            out.write(result);
         }
     }
 
@@ -270,7 +343,13 @@ public class DirectoryListerWUFTPD {
         }
     }
 
-    private String traverseFiles(final List<FtpFile> files, final FileFilter filter, final FileFormaterWUFTPD formater, boolean skipFolders, FtpFile current, FtpFile parent, Integer sortType, String relativePath)
+    private void writeDummyLine(boolean emptyDir, Writer out) throws IOException
+    {
+        out.write(createDummyLine(emptyDir));
+        out.write(NEWLINE);
+    }
+
+    private String traverseFiles(final Iterable<FtpFile> files, final FileFilter filter, final FileFormaterWUFTPD formater, boolean skipFolders, FtpFile current, FtpFile parent, Integer sortType, String relativePath)
     {
         List<FtpFileData> ftpFiles = new ArrayList<FtpFileData>();
 
@@ -294,15 +373,10 @@ public class DirectoryListerWUFTPD {
                 existsParent = true;
             }
 
-            boolean flagFileName = file.isDirectory() && formater.isFlagFileNames();
-
-            if (filter == null || filter.accept(file))
+            FtpFileData data = createFileData(file, filter, formater, skipFolders, relativePath);
+            if (data != null)
             {
-                boolean isDirectory = file.isDirectory();
-                if (!isDirectory  || (isDirectory && !skipFolders))
-                {
-                    ftpFiles.add(new FtpFileData(file, flagFileName, relativePath));
-                }
+                ftpFiles.add(data);
             }
         }
 
@@ -319,45 +393,103 @@ public class DirectoryListerWUFTPD {
         return formater.format(ftpFiles, sortType);
     }
 
-    private boolean hasAnyOfOptions(ListArgument argument, char... options) {
+    /***
+     * Write the files in aligned columns. The listing is read in a single
+     * pass, collecting the files and the column widths, then the files are
+     * written one at a time without building the whole listing as a string.
+     */
+    private void streamFiles(final FileListing files, final FileFilter filter, final LISTFileFormaterWUFTPD formater, boolean skipFolders, FtpFile current, FtpFile parent, String relativePath, boolean addTotalLine, Writer out) throws IOException
+    {
+        LISTFileFormaterWUFTPD.ListColumnsMaxSize columnsMaxSize = formater.createColumnsMaxSize();
+        List<FtpFileData> ftpFiles = new ArrayList<FtpFileData>();
 
-        for (char option : options)
+        boolean existsCurrent = false;
+        boolean existsParent  = false;
+        boolean isEmpty = true;
+
+        for (FtpFile file : files)
         {
-            if (argument.hasOption(option))
+            isEmpty = false;
+
+            if (file == null)
             {
-                return true;
+                continue;
             }
-        }
 
-        return false;
-     }
+            if (".".equals(file.getName()))
+            {
+                existsCurrent = true;
+            }
 
-    private List<FtpFile> listFiles(FileSystemView fileSystemView, String file)
-    {
-        List<FtpFile> files = null;
-        try
-        {
-            FtpFile virtualFile = fileSystemView.getFile(file);
-            if (virtualFile.isFile())
+            if ("..".equals(file.getName()))
             {
-                files = new ArrayList<FtpFile>();
-                files.add(virtualFile);
+                existsParent = true;
             }
-            else
+
+            FtpFileData data = createFileData(file, filter, formater, skipFolders, relativePath);
+            if (data != null)
             {
-                files = virtualFile.listFiles();
+                formater.calculateMaxColumnSize(columnsMaxSize, data);
+                ftpFiles.add(data);
             }
         }
-        catch (FtpException ex)
-        {}
-        return files;
+
+        if (!existsParent && parent != null)
+        {
+            FtpFileData parentData = new FtpFileData(parent, "..", formater.isFlagFileNames(), "");
+            formater.calculateMaxColumnSize(columnsMaxSize, parentData);
+            ftpFiles.add(0, parentData);
+        }
+
+        if (!existsCurrent && current != null)
+        {
+            FtpFileData currentData = new FtpFileData(current, ".", formater.isFlagFileNames(), "");
+            formater.calculateMaxColumnSize(columnsMaxSize, currentData);
+            ftpFiles.add(0, currentData);
+        }
+
+        isEmpty = isEmpty && ftpFiles.isEmpty();
+
+        if (addTotalLine && (isEmpty || !ftpFiles.isEmpty()))
+        {
+            writeDummyLine(isEmpty, out);
+        }
+
+        for (FtpFileData data : ftpFiles)
+        {
+            out.write(formater.format(data, columnsMaxSize));
+        }
     }
 
-    private boolean isNullOrEmpty(List data)
+    private FtpFileData createFileData(FtpFile file, final FileFilter filter, final FileFormaterWUFTPD formater, boolean skipFolders, String relativePath)
     {
-        return (data == null || data.size() == 0);
+        boolean flagFileName = file.isDirectory() && formater.isFlagFileNames();
+
+        if (filter == null || filter.accept(file))
+        {
+            boolean isDirectory = file.isDirectory();
+            if (!isDirectory  || (isDirectory && !skipFolders))
+            {
+                return new FtpFileData(file, flagFileName, relativePath);
+            }
+        }
+
+        return null;
     }
 
+    private boolean hasAnyOfOptions(ListArgument argument, char... options) {
+
+        for (char option : options)
+        {
+            if (argument.hasOption(option))
+            {
+                return true;
+            }
+        }
+
+        return false;
+     }
+
     private boolean isNullOrEmpty(char[] argument)
     {
         return (argument == null || argument.length == 0);
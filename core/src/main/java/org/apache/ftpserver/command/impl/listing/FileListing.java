@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ftpserver.command.impl.listing;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.ftpserver.ftplet.FileSystemView;
+import org.apache.ftpserver.ftplet.FtpException;
+import org.apache.ftpserver.ftplet.FtpFile;
+import org.apache.ftpserver.ftplet.StreamingFtpFile;
+
+/**
+ * <strong>Internal class, do not use directly.</strong>
+ *
+ * The files listed for a listing argument. A directory is streamed if the
+ * file system supports it, see {@link StreamingFtpFile}, and can then be
+ * iterated only once. Otherwise the files are listed in alphabetical order
+ * using {@link FtpFile#listFiles()}.
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+class FileListing implements Iterable<FtpFile> {
+
+    private final DirectoryStream<FtpFile> stream;
+
+    private final List<FtpFile> files;
+
+    private FileListing(DirectoryStream<FtpFile> stream, List<FtpFile> files) {
+        this.stream = stream;
+        this.files = files;
+    }
+
+    /**
+     * Get the files to list.
+     *
+     * @param fileSystemView
+     *            The file system view of the session
+     * @param file
+     *            The listed file or directory
+     * @param stream
+     *            Stream the directory if the file system supports it, the
+     *            files are then not sorted
+     * @return The listing, null if the file does not exist
+     */
+    public static FileListing open(FileSystemView fileSystemView,
+            String file, boolean stream) {
+        try {
+            FtpFile virtualFile = fileSystemView.getFile(file);
+            if (virtualFile.isFile()) {
+                List<FtpFile> files = new ArrayList<FtpFile>();
+                files.add(virtualFile);
+                return new FileListing(null, files);
+            }
+
+            if (stream && virtualFile instanceof StreamingFtpFile) {
+                DirectoryStream<FtpFile> files = ((StreamingFtpFile) virtualFile)
+                        .openFileStream();
+                if (files != null) {
+                    return new FileListing(files, null);
+                }
+            }
+
+            List<FtpFile> files = virtualFile.listFiles();
+            if (files != null) {
+                return new FileListing(null, files);
+            }
+        } catch (FtpException ex) {
+            // not listed
+        }
+        return null;
+    }
+
+    /**
+     * Is the directory streamed?
+     *
+     * @return true if the files are streamed, and can only be iterated once
+     */
+    public boolean isStreamed() {
+        return stream != null;
+    }
+
+    /**
+     * Iterate over the files. A streamed directory can only be iterated once,
+     * its iterator throws a {@link DirectoryIteratorException} if reading the
+     * directory fails.
+     */
+    public Iterator<FtpFile> iterator() {
+        if (stream != null) {
+            return stream.iterator();
+        }
+        return files.iterator();
+    }
+
+    /**
+     * Close the stream, if any.
+     */
+    public void close() {
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+}
@@ -197,22 +197,53 @@ public class LISTFileFormaterWUFTPD implements FileFormaterWUFTPD
        {
             fillDataArray.add(file);
 
-            if (columnSize != null)
-            {
-                //file name is the last column, left aligned, max size not calculated
-                //columns owner, group, file size and link count are with fixed max size
+            calculateMaxColumnSize(columnSize, file);
+       }
+    }
 
-                if (compare(file.getPermissions(), columnSize.permissionsMaxSize))
-                {
-                    columnSize.permissionsMaxSize = file.getPermissions().length();
-                }
+    /***
+     * Create the column sizes for {@link #calculateMaxColumnSize(ListColumnsMaxSize, FtpFileData)}
+     * @return
+     */
+    ListColumnsMaxSize createColumnsMaxSize()
+    {
+        return new ListColumnsMaxSize();
+    }
 
-                if (compare(file.getLastModified(), columnSize.lastModifiledMaxSize))
-                {
-                    columnSize.lastModifiledMaxSize = file.getLastModified().length();
-                }
+    /***
+     * Widen the columns to fit the file, used with {@link #format(FtpFileData, ListColumnsMaxSize)}
+     * to write aligned columns without keeping all files in memory
+     * @param columnSize
+     * @param file
+     */
+    void calculateMaxColumnSize(ListColumnsMaxSize columnSize, FtpFileData file)
+    {
+        if (columnSize != null)
+        {
+            //file name is the last column, left aligned, max size not calculated
+            //columns owner, group, file size and link count are with fixed max size
+
+            if (compare(file.getPermissions(), columnSize.permissionsMaxSize))
+            {
+                columnSize.permissionsMaxSize = file.getPermissions().length();
             }
-       }
+
+            if (compare(file.getLastModified(), columnSize.lastModifiledMaxSize))
+            {
+                columnSize.lastModifiledMaxSize = file.getLastModified().length();
+            }
+        }
+    }
+
+    /***
+     * Format one file with the given column sizes
+     * @param data
+     * @param columnsMaxSize
+     * @return
+     */
+    String format(FtpFileData data, ListColumnsMaxSize columnsMaxSize)
+    {
+        return formatByColumnSize(showOwnerColumn, data, columnsMaxSize);
     }
 
     /***
@@ -59,5 +59,28 @@ public class FileSystemBeanDefinitionParser extends
             builder.addPropertyValue("createHome", Boolean
                     .parseBoolean(element.getAttribute("create-home")));
         }
+        if (StringUtils.hasText(element
+                .getAttribute("case-insensitive-cache-size"))) {
+            builder.addPropertyValue("caseInsensitiveCacheSize", Integer
+                    .parseInt(element
+                            .getAttribute("case-insensitive-cache-size")));
+        }
+        if (StringUtils.hasText(element.getAttribute("cache-attributes"))) {
+            builder.addPropertyValue("cacheAttributes", Boolean
+                    .parseBoolean(element.getAttribute("cache-attributes")));
+        }
+        if (StringUtils.hasText(element.getAttribute("listing-cache-size"))) {
+            builder.addPropertyValue("listingCacheSize", Integer
+                    .parseInt(element.getAttribute("listing-cache-size")));
+        }
+        if (StringUtils.hasText(element
+                .getAttribute("listing-cache-max-files"))) {
+            builder.addPropertyValue("listingCacheMaxFiles", Integer
+                    .parseInt(element.getAttribute("listing-cache-max-files")));
+        }
+        if (StringUtils.hasText(element.getAttribute("stream-listings"))) {
+            builder.addPropertyValue("streamListings", Boolean
+                    .parseBoolean(element.getAttribute("stream-listings")));
+        }
     }
 }
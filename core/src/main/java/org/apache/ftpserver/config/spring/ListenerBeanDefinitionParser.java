@@ -19,6 +19,8 @@
 
 package org.apache.ftpserver.config.spring;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 
@@ -27,6 +29,7 @@ import org.apache.ftpserver.DataConnectionConfigurationFactory;
 import org.apache.ftpserver.FtpServerConfigurationException;
 import org.apache.ftpserver.ipfilter.DefaultIpFilter;
 import org.apache.ftpserver.ipfilter.IpFilterType;
+import org.apache.ftpserver.ipfilter.RadixTreeIpFilter;
 import org.apache.ftpserver.listener.ListenerFactory;
 import org.apache.ftpserver.ssl.SslConfiguration;
 import org.apache.ftpserver.ssl.SslConfigurationFactory;
@@ -117,13 +120,25 @@ public class ListenerBeanDefinitionParser extends
         		throw new FtpServerConfigurationException("Element 'ipFilter' may not be used when 'blacklist' element is specified. ");
         	}
         	String filterType = ipFilterElement.getAttribute("type");
+        	String file = ipFilterElement.getAttribute("file");
         	try {
-				DefaultIpFilter ipFilter = new DefaultIpFilter(IpFilterType.parse(filterType), ipFilterElement.getTextContent());
-	            factoryBuilder.addPropertyValue("ipFilter", ipFilter);
+        		if (StringUtils.hasText(file)) {
+        			// large lists are kept in a file, use the radix tree
+        			RadixTreeIpFilter ipFilter = new RadixTreeIpFilter(IpFilterType.parse(filterType), ipFilterElement.getTextContent());
+        			ipFilter.load(new File(file));
+        			factoryBuilder.addPropertyValue("ipFilter", ipFilter);
+        		}
+        		else {
+        			DefaultIpFilter ipFilter = new DefaultIpFilter(IpFilterType.parse(filterType), ipFilterElement.getTextContent());
+        			factoryBuilder.addPropertyValue("ipFilter", ipFilter);
+        		}
 			}
 			catch (UnknownHostException e) {
 				throw new IllegalArgumentException("Invalid IP address or subnet in the 'ip-filter' element");
 			}
+			catch (IOException e) {
+				throw new FtpServerConfigurationException("Failed to load the IP filter file: " + file, e);
+			}
         }
         
         BeanDefinition factoryDefinition = factoryBuilder.getBeanDefinition();
@@ -28,6 +28,7 @@ import org.apache.ftpserver.ConnectionConfigFactory;
 import org.apache.ftpserver.FtpServer;
 import org.apache.ftpserver.FtpServerConfigurationException;
 import org.apache.ftpserver.FtpServerFactory;
+import org.apache.ftpserver.ipfilter.LoginFailureTracker;
 import org.apache.ftpserver.message.MessageResource;
 import org.apache.ftpserver.message.MessageResourceFactory;
 import org.springframework.beans.factory.config.BeanDefinition;
@@ -122,6 +123,10 @@ public class ServerBeanDefinitionParser extends
             connectionConfig.setMaxThreads(SpringUtil.parseInt(element,
                     "max-threads"));
         }
+        if (StringUtils.hasText(element.getAttribute("virtual-threads"))) {
+            connectionConfig.setVirtualThreadsEnabled(SpringUtil.parseBoolean(
+                    element, "virtual-threads", false));
+        }
         if (StringUtils.hasText(element.getAttribute("max-anon-logins"))) {
             connectionConfig.setMaxAnonymousLogins(SpringUtil.parseInt(element,
                     "max-anon-logins"));
@@ -141,6 +146,27 @@ public class ServerBeanDefinitionParser extends
 
         factoryBuilder.addPropertyValue("connectionConfig", connectionConfig.createConnectionConfig());
 
+        // Configure banning of addresses with repeated login failures
+        if (StringUtils.hasText(element.getAttribute("ban-login-failures"))) {
+            int failureWindow = LoginFailureTracker.DEFAULT_FAILURE_WINDOW;
+            if (StringUtils.hasText(element.getAttribute("ban-failure-window"))) {
+                failureWindow = SpringUtil.parseInt(element,
+                        "ban-failure-window");
+            }
+            int banTime = LoginFailureTracker.DEFAULT_BAN_TIME;
+            if (StringUtils.hasText(element.getAttribute("ban-time"))) {
+                banTime = SpringUtil.parseInt(element, "ban-time");
+            }
+            factoryBuilder.addPropertyValue("loginFailureTracker",
+                    new LoginFailureTracker(SpringUtil.parseInt(element,
+                            "ban-login-failures"), failureWindow, banTime));
+        }
+
+        if (StringUtils.hasText(element.getAttribute("slow-ftplet-threshold"))) {
+            factoryBuilder.addPropertyValue("slowFtpletThreshold", SpringUtil
+                    .parseInt(element, "slow-ftplet-threshold"));
+        }
+
        
         BeanDefinition factoryDefinition = factoryBuilder.getBeanDefinition();
 
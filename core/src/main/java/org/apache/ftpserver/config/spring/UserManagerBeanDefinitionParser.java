@@ -81,6 +81,10 @@ public class UserManagerBeanDefinitionParser extends
             if (StringUtils.hasText(element.getAttribute("url"))) {
                 factoryBuilder.addPropertyValue("url", element.getAttribute("url"));
             }
+            if (StringUtils.hasText(element.getAttribute("save-delay"))) {
+                factoryBuilder.addPropertyValue("saveDelay", Integer
+                        .parseInt(element.getAttribute("save-delay")));
+            }
         } else {
             Element dsElm = SpringUtil.getChildElement(element,
                     FtpServerNamespaceHandler.FTPSERVER_NS, "data-source");
@@ -113,6 +117,19 @@ public class UserManagerBeanDefinitionParser extends
                     getSql(element, "is-admin"));
             factoryBuilder.addPropertyValue("sqlUserAuthenticate", getSql(element,
                     "authenticate"));
+
+            if (StringUtils.hasText(element.getAttribute("prepared-statements"))) {
+                factoryBuilder.addPropertyValue("usePreparedStatements", Boolean
+                        .parseBoolean(element.getAttribute("prepared-statements")));
+            }
+            if (StringUtils.hasText(element.getAttribute("cache-size"))) {
+                factoryBuilder.addPropertyValue("cacheSize", Integer
+                        .parseInt(element.getAttribute("cache-size")));
+            }
+            if (StringUtils.hasText(element.getAttribute("cache-ttl"))) {
+                factoryBuilder.addPropertyValue("cacheTtl", Integer
+                        .parseInt(element.getAttribute("cache-ttl")));
+            }
         }
 
         BeanDefinition factoryDefinition = factoryBuilder.getBeanDefinition();
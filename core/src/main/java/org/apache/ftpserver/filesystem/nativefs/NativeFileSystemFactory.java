@@ -20,7 +20,10 @@
 package org.apache.ftpserver.filesystem.nativefs;
 
 import java.io.File;
+import java.io.IOException;
 
+import org.apache.ftpserver.filesystem.nativefs.impl.CaseInsensitiveNameCache;
+import org.apache.ftpserver.filesystem.nativefs.impl.DirectoryListingCache;
 import org.apache.ftpserver.filesystem.nativefs.impl.NativeFileSystemView;
 import org.apache.ftpserver.ftplet.FileSystemFactory;
 import org.apache.ftpserver.ftplet.FileSystemView;
@@ -43,6 +46,33 @@ public class NativeFileSystemFactory implements FileSystemFactory {
 
     private boolean caseInsensitive;
 
+    private boolean cacheAttributes;
+
+    private boolean streamListings;
+
+    private int caseInsensitiveCacheSize = DEFAULT_CASE_INSENSITIVE_CACHE_SIZE;
+
+    private CaseInsensitiveNameCache nameCache;
+
+    private int listingCacheSize;
+
+    private int listingCacheMaxFiles = DEFAULT_LISTING_CACHE_MAX_FILES;
+
+    private DirectoryListingCache listingCache;
+
+    private boolean listingCacheFailed;
+
+    /**
+     * The default number of directories for which case insensitive lookups
+     * are cached, lookups are not cached unless configured
+     */
+    public static final int DEFAULT_CASE_INSENSITIVE_CACHE_SIZE = 0;
+
+    /**
+     * The default maximum number of files in all cached directory listings
+     */
+    public static final int DEFAULT_LISTING_CACHE_MAX_FILES = 100000;
+
     /**
      * Should the home directories be created automatically
      * @return true if the file system will create the home directory if not available
@@ -78,6 +108,173 @@ public class NativeFileSystemFactory implements FileSystemFactory {
         this.caseInsensitive = caseInsensitive;
     }
 
+    /**
+     * Get the number of directories for which case insensitive name lookups
+     * are cached
+     * @return The number of directories, 0 if not cached
+     */
+    public int getCaseInsensitiveCacheSize() {
+        return caseInsensitiveCacheSize;
+    }
+
+    /**
+     * Set the number of directories for which case insensitive name lookups
+     * are cached. Only used if the file system is case insensitive. Instead
+     * of scanning the directory for every path component, each directory is
+     * indexed once and indexed again when its modification time changes.
+     * Changes made within the timestamp resolution of the file system may go
+     * unnoticed until the directory is modified again, so the cache is
+     * disabled by default.
+     * @param caseInsensitiveCacheSize The number of directories, 0 to scan
+     *            the directories for every lookup
+     */
+    public synchronized void setCaseInsensitiveCacheSize(
+            int caseInsensitiveCacheSize) {
+        if (caseInsensitiveCacheSize < 0) {
+            throw new IllegalArgumentException(
+                    "caseInsensitiveCacheSize can not be negative");
+        }
+        this.caseInsensitiveCacheSize = caseInsensitiveCacheSize;
+        nameCache = null;
+    }
+
+    private synchronized CaseInsensitiveNameCache getNameCache() {
+        if (!caseInsensitive || caseInsensitiveCacheSize == 0) {
+            return null;
+        }
+        if (nameCache == null) {
+            nameCache = new CaseInsensitiveNameCache(caseInsensitiveCacheSize);
+        }
+        return nameCache;
+    }
+
+    /**
+     * Get the number of directories for which listings are cached
+     * @return The number of directories, 0 if listings are not cached
+     */
+    public int getListingCacheSize() {
+        return listingCacheSize;
+    }
+
+    /**
+     * Set the number of directories for which listings, including the file
+     * attributes, are cached. The cached directories are watched for changes
+     * made by other processes, changes made by the server itself invalidate
+     * the listings right away. The least recently used listings are evicted
+     * when the cache is full.
+     * @param listingCacheSize The number of directories, 0 to read every
+     *            listing from disk
+     */
+    public synchronized void setListingCacheSize(int listingCacheSize) {
+        if (listingCacheSize < 0) {
+            throw new IllegalArgumentException(
+                    "listingCacheSize can not be negative");
+        }
+        this.listingCacheSize = listingCacheSize;
+        closeListingCache();
+    }
+
+    /**
+     * Get the maximum number of files in all cached directory listings
+     * @return The maximum number of files
+     */
+    public int getListingCacheMaxFiles() {
+        return listingCacheMaxFiles;
+    }
+
+    /**
+     * Set the maximum number of files in all cached directory listings, this
+     * bounds the memory used by the cache. Directories with more files are
+     * never cached.
+     * @param listingCacheMaxFiles The maximum number of files
+     */
+    public synchronized void setListingCacheMaxFiles(int listingCacheMaxFiles) {
+        if (listingCacheMaxFiles <= 0) {
+            throw new IllegalArgumentException(
+                    "listingCacheMaxFiles must be positive");
+        }
+        this.listingCacheMaxFiles = listingCacheMaxFiles;
+        closeListingCache();
+    }
+
+    /**
+     * Get the directory listing cache, for example to read its hit and miss
+     * counts
+     * @return The cache, null if listings are not cached
+     */
+    public synchronized DirectoryListingCache getListingCache() {
+        if (listingCacheSize == 0 || listingCacheFailed) {
+            return null;
+        }
+        if (listingCache == null) {
+            try {
+                listingCache = new DirectoryListingCache(listingCacheSize,
+                        listingCacheMaxFiles);
+            } catch (IOException e) {
+                LOG.warn("Can not watch the file system, listings will not be cached", e);
+                listingCacheFailed = true;
+            }
+        }
+        return listingCache;
+    }
+
+    private void closeListingCache() {
+        if (listingCache != null) {
+            listingCache.close();
+            listingCache = null;
+        }
+        listingCacheFailed = false;
+    }
+
+    /**
+     * Release the resources of the factory, this stops watching the
+     * directories of the listing cache. Called when the server is stopped.
+     */
+    public synchronized void dispose() {
+        closeListingCache();
+    }
+
+    /**
+     * Are file attributes read in a single call and kept by the file objects?
+     * @return true if file attributes are cached
+     */
+    public boolean isCacheAttributes() {
+        return cacheAttributes;
+    }
+
+    /**
+     * Should file attributes be read in a single call and kept by the file
+     * objects. Saves a lot of system calls for directory listings, but
+     * changes made to a file by other processes will not be seen by a file
+     * object once its attributes have been read. Also uses the real owner and
+     * group names where the file system supports POSIX attributes.
+     * @param cacheAttributes true if file attributes should be cached
+     */
+    public void setCacheAttributes(boolean cacheAttributes) {
+        this.cacheAttributes = cacheAttributes;
+    }
+
+    /**
+     * Are directory listings streamed in directory order?
+     * @return true if directory listings are streamed
+     */
+    public boolean isStreamListings() {
+        return streamListings;
+    }
+
+    /**
+     * Should directory listings be streamed to the client while reading the
+     * directory, instead of reading and sorting the whole directory first.
+     * Keeps the memory used by listings of huge directories low, but the
+     * files are listed in the order of the file system, not sorted by name,
+     * and directories are not listed before files. Listings that must be
+     * sorted, for example by modification time, are never streamed.
+     * @param streamListings true if directory listings should be streamed
+     */
+    public void setStreamListings(boolean streamListings) {
+        this.streamListings = streamListings;
+    }
+
     /**
      * Create the appropriate user file system view.
      */
@@ -99,7 +296,8 @@ public class NativeFileSystemFactory implements FileSystemFactory {
             }
 
             FileSystemView fsView = new NativeFileSystemView(user,
-                    caseInsensitive);
+                    caseInsensitive, cacheAttributes, getNameCache(),
+                    getListingCache(), streamListings);
             return fsView;
         }
     }
@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ftpserver.filesystem.nativefs.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <strong>Internal class, do not use directly.</strong>
+ * 
+ * Bounded cache of case folded directory indexes, used to resolve file names
+ * case insensitively without scanning the directory each time. An index is
+ * built the first time a directory is looked up and built again when the
+ * modification time of the directory has changed, which happens whenever a
+ * file is added, removed or renamed in it.
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class CaseInsensitiveNameCache {
+
+    private final int maxDirectories;
+
+    // indexes by physical directory path, least recently used first
+    private final LinkedHashMap<String, DirectoryIndex> indexes;
+
+    /**
+     * Create a cache
+     * 
+     * @param maxDirectories
+     *            The maximum number of directory indexes kept
+     */
+    public CaseInsensitiveNameCache(final int maxDirectories) {
+        if (maxDirectories <= 0) {
+            throw new IllegalArgumentException(
+                    "maxDirectories must be positive");
+        }
+        this.maxDirectories = maxDirectories;
+        indexes = new LinkedHashMap<String, DirectoryIndex>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<String, DirectoryIndex> eldest) {
+                return size() > CaseInsensitiveNameCache.this.maxDirectories;
+            }
+        };
+    }
+
+    /**
+     * Get the maximum number of directory indexes kept
+     * 
+     * @return The maximum number of directories
+     */
+    public int getMaxDirectories() {
+        return maxDirectories;
+    }
+
+    /**
+     * Find a file in a directory, ignoring case.
+     * 
+     * @param dir
+     *            The physical directory path
+     * @param name
+     *            The file name
+     * @return The name of the file as found in the directory, null if there
+     *         is no such file
+     */
+    public String getName(final String dir, final String name) {
+        FileTime lastModified = getLastModified(dir);
+        if (lastModified == null) {
+            // not a readable directory
+            remove(dir);
+            return null;
+        }
+
+        DirectoryIndex index;
+        synchronized (indexes) {
+            index = indexes.get(dir);
+        }
+
+        if (index == null || !index.lastModified.equals(lastModified)) {
+            index = DirectoryIndex.build(dir, lastModified);
+            if (index == null) {
+                remove(dir);
+                return null;
+            }
+            synchronized (indexes) {
+                indexes.put(dir, index);
+            }
+        }
+
+        return index.names.get(fold(name));
+    }
+
+    /**
+     * Drop all indexes
+     */
+    public void clear() {
+        synchronized (indexes) {
+            indexes.clear();
+        }
+    }
+
+    private void remove(String dir) {
+        synchronized (indexes) {
+            indexes.remove(dir);
+        }
+    }
+
+    private static FileTime getLastModified(String dir) {
+        try {
+            return Files.getLastModifiedTime(new File(dir).toPath());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Fold the case of a name, names folding to the same string are equal
+     * according to {@link String#equalsIgnoreCase(String)}.
+     */
+    static String fold(String name) {
+        char[] chars = null;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            char folded = Character.toLowerCase(Character.toUpperCase(c));
+            if (folded != c) {
+                if (chars == null) {
+                    chars = name.toCharArray();
+                }
+                chars[i] = folded;
+            }
+        }
+        return chars == null ? name : new String(chars);
+    }
+
+    private static class DirectoryIndex {
+
+        private final FileTime lastModified;
+
+        // actual file names by folded name
+        private final Map<String, String> names;
+
+        private DirectoryIndex(FileTime lastModified, Map<String, String> names) {
+            this.lastModified = lastModified;
+            this.names = names;
+        }
+
+        public static DirectoryIndex build(String dir, FileTime lastModified) {
+            String[] list = new File(dir).list();
+            if (list == null) {
+                return null;
+            }
+
+            Map<String, String> names = new HashMap<String, String>(
+                    list.length * 4 / 3 + 1);
+            for (int i = 0; i < list.length; i++) {
+                String folded = fold(list[i]);
+                // same as a directory scan, the first match wins
+                if (!names.containsKey(folded)) {
+                    names.put(folded, list[i]);
+                }
+            }
+            return new DirectoryIndex(lastModified, names);
+        }
+    }
+}
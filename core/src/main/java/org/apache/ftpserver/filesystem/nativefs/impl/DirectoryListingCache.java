@@ -0,0 +1,402 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ftpserver.filesystem.nativefs.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <strong>Internal class, do not use directly.</strong>
+ * 
+ * Cache of directory listings, including the attributes of every file, by
+ * physical directory path. Cached directories are watched by a
+ * {@link WatchService} and dropped from the cache as soon as anything in them
+ * changes. Changes made through {@link NativeFtpFile} invalidate the cache
+ * right away.
+ * 
+ * The cache is bounded both by the number of directories and by the total
+ * number of files, the least recently used directories are evicted first.
+ * Note that changes inside a sub directory do not invalidate the listing of
+ * its parent, so the modification time shown for a sub directory might be
+ * out of date.
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class DirectoryListingCache {
+
+    private final Logger LOG = LoggerFactory
+            .getLogger(DirectoryListingCache.class);
+
+    private final int maxDirectories;
+
+    private final int maxFiles;
+
+    // listings by physical directory path, least recently used first
+    private final LinkedHashMap<String, Listing> listings = new LinkedHashMap<String, Listing>(
+            16, 0.75f, true);
+
+    // total number of files in all listings
+    private int fileCount;
+
+    // increased on every invalidation, a listing read while this changed
+    // might be outdated and is not cached
+    private long invalidations;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final WatchService watchService;
+
+    private final Thread watchThread;
+
+    /**
+     * Create a cache
+     * 
+     * @param maxDirectories
+     *            The maximum number of cached directories
+     * @param maxFiles
+     *            The maximum number of files in all cached directories
+     * @throws IOException
+     *             If the file system can not be watched
+     */
+    public DirectoryListingCache(final int maxDirectories, final int maxFiles)
+            throws IOException {
+        if (maxDirectories <= 0) {
+            throw new IllegalArgumentException(
+                    "maxDirectories must be positive");
+        }
+        if (maxFiles <= 0) {
+            throw new IllegalArgumentException("maxFiles must be positive");
+        }
+        this.maxDirectories = maxDirectories;
+        this.maxFiles = maxFiles;
+
+        watchService = FileSystems.getDefault().newWatchService();
+        watchThread = new Thread("DirectoryListingCache") {
+            @Override
+            public void run() {
+                processEvents();
+            }
+        };
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    /**
+     * Get the listing of a directory, from the cache if available.
+     * 
+     * @param dir
+     *            The directory
+     * @return The files in the directory in the order they were read, null
+     *         if the file is not a directory or could not be listed
+     */
+    public List<Entry> getListing(final File dir) {
+        String key = dir.getAbsolutePath();
+
+        long invalidationsBefore;
+        synchronized (this) {
+            Listing listing = listings.get(key);
+            if (listing != null) {
+                hits.incrementAndGet();
+                return listing.entries;
+            }
+            invalidationsBefore = invalidations;
+        }
+        misses.incrementAndGet();
+
+        // watch before reading, so that no change is missed
+        Path path = dir.toPath();
+        WatchKey watchKey;
+        try {
+            watchKey = path.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (Exception e) {
+            // not a directory, or can not be watched
+            LOG.debug("Can not watch directory " + key, e);
+            return read(path);
+        }
+
+        List<Entry> entries = read(path);
+        if (entries == null) {
+            watchKey.cancel();
+            return null;
+        }
+
+        synchronized (this) {
+            if (invalidations != invalidationsBefore
+                    || entries.size() > maxFiles) {
+                // WatchKeys are shared by all registrations of a
+                // directory, keep it if the directory is in use
+                if (!listings.containsKey(key)) {
+                    watchKey.cancel();
+                }
+                return entries;
+            }
+            if (!watchKey.isValid()) {
+                // cancelled by a concurrent invalidation or eviction, the
+                // directory would not be invalidated again
+                return entries;
+            }
+
+            Listing old = listings.put(key, new Listing(watchKey, entries));
+            if (old != null) {
+                fileCount -= old.entries.size();
+            }
+            fileCount += entries.size();
+            evict();
+        }
+        return entries;
+    }
+
+    /**
+     * Drop the listing of a directory from the cache.
+     * 
+     * @param dir
+     *            The directory
+     */
+    public void invalidate(final File dir) {
+        if (dir != null) {
+            invalidate(dir.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Drop the listing of the directory containing the file from the cache.
+     * 
+     * @param file
+     *            The file
+     */
+    public void invalidateParent(final File file) {
+        invalidate(file.getAbsoluteFile().getParentFile());
+    }
+
+    /**
+     * Drop all listings and stop watching for changes. The cache can not be
+     * used afterwards.
+     */
+    public void close() {
+        synchronized (this) {
+            for (Listing listing : listings.values()) {
+                listing.watchKey.cancel();
+            }
+            listings.clear();
+            fileCount = 0;
+            invalidations++;
+        }
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close watch service", e);
+        }
+    }
+
+    /**
+     * Get the number of listings served from the cache
+     * 
+     * @return The number of hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of listings read from disk
+     * 
+     * @return The number of misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Get the number of listings evicted to stay within the bounds
+     * 
+     * @return The number of evictions
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Get the number of cached directories
+     * 
+     * @return The number of directories
+     */
+    public synchronized int getSize() {
+        return listings.size();
+    }
+
+    /**
+     * Get the total number of files in the cached directories
+     * 
+     * @return The number of files
+     */
+    public synchronized int getFileCount() {
+        return fileCount;
+    }
+
+    private synchronized void invalidate(String key) {
+        invalidations++;
+        Listing listing = listings.remove(key);
+        if (listing != null) {
+            fileCount -= listing.entries.size();
+            listing.watchKey.cancel();
+        }
+    }
+
+    private void evict() {
+        Iterator<Listing> iter = listings.values().iterator();
+        while ((listings.size() > maxDirectories || fileCount > maxFiles)
+                && iter.hasNext()) {
+            Listing listing = iter.next();
+            iter.remove();
+            fileCount -= listing.entries.size();
+            listing.watchKey.cancel();
+            // a concurrent miss might hold the same key
+            invalidations++;
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void processEvents() {
+        while (true) {
+            WatchKey watchKey;
+            try {
+                watchKey = watchService.take();
+            } catch (InterruptedException e) {
+                return;
+            } catch (ClosedWatchServiceException e) {
+                return;
+            }
+
+            // any event, including an overflow, makes the listing outdated.
+            // The directory is watched again once it is listed again.
+            watchKey.pollEvents();
+            Path dir = (Path) watchKey.watchable();
+            synchronized (this) {
+                // cancel while holding the lock, so that no miss caches its
+                // listing with the key once it is invalidated
+                invalidate(dir.toFile().getAbsolutePath());
+                watchKey.cancel();
+            }
+        }
+    }
+
+    private List<Entry> read(Path dir) {
+        List<Entry> entries = new ArrayList<Entry>();
+        DirectoryStream<Path> stream = null;
+        try {
+            stream = Files.newDirectoryStream(dir);
+            for (Path path : stream) {
+                entries.add(new Entry(path.toFile(), NativeFtpFile
+                        .readAttributes(path)));
+            }
+        } catch (IOException e) {
+            return null;
+        } finally {
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * A file in a cached listing
+     */
+    public static class Entry {
+
+        private final String name;
+
+        private final File file;
+
+        private final BasicFileAttributes attributes;
+
+        public Entry(File file, BasicFileAttributes attributes) {
+            this.name = file.getName();
+            this.file = file;
+            this.attributes = attributes;
+        }
+
+        /**
+         * @return The file name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return The physical file
+         */
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * @return The file attributes, null if the file disappeared while
+         *         listing
+         */
+        public BasicFileAttributes getAttributes() {
+            return attributes;
+        }
+    }
+
+    private static class Listing {
+
+        private final WatchKey watchKey;
+
+        private final List<Entry> entries;
+
+        public Listing(WatchKey watchKey, List<Entry> entries) {
+            this.watchKey = watchKey;
+            this.entries = entries;
+        }
+    }
+}
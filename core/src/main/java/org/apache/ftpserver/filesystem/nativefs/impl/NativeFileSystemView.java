@@ -56,6 +56,14 @@ public class NativeFileSystemView implements FileSystemView {
 
     private boolean caseInsensitive = false;
 
+    private boolean cacheAttributes = false;
+
+    private CaseInsensitiveNameCache nameCache;
+
+    private DirectoryListingCache listingCache;
+
+    private boolean streamListings = false;
+
     /**
      * Constructor - internal do not use directly, use {@link NativeFileSystemFactory} instead
      */
@@ -68,6 +76,62 @@ public class NativeFileSystemView implements FileSystemView {
      */
     public NativeFileSystemView(User user, boolean caseInsensitive)
             throws FtpException {
+        this(user, caseInsensitive, false);
+    }
+
+    /**
+     * Constructor - internal do not use directly, use {@link NativeFileSystemFactory} instead
+     */
+    public NativeFileSystemView(User user, boolean caseInsensitive,
+            boolean cacheAttributes) throws FtpException {
+        this(user, caseInsensitive, cacheAttributes, null);
+    }
+
+    /**
+     * Constructor - internal do not use directly, use {@link NativeFileSystemFactory} instead
+     * 
+     * @param nameCache
+     *            The cache used for resolving names if case insensitive,
+     *            might be null
+     */
+    public NativeFileSystemView(User user, boolean caseInsensitive,
+            boolean cacheAttributes, CaseInsensitiveNameCache nameCache)
+            throws FtpException {
+        this(user, caseInsensitive, cacheAttributes, nameCache, null);
+    }
+
+    /**
+     * Constructor - internal do not use directly, use {@link NativeFileSystemFactory} instead
+     * 
+     * @param nameCache
+     *            The cache used for resolving names if case insensitive,
+     *            might be null
+     * @param listingCache
+     *            The cache used for directory listings, might be null
+     */
+    public NativeFileSystemView(User user, boolean caseInsensitive,
+            boolean cacheAttributes, CaseInsensitiveNameCache nameCache,
+            DirectoryListingCache listingCache) throws FtpException {
+        this(user, caseInsensitive, cacheAttributes, nameCache, listingCache,
+                false);
+    }
+
+    /**
+     * Constructor - internal do not use directly, use {@link NativeFileSystemFactory} instead
+     * 
+     * @param nameCache
+     *            The cache used for resolving names if case insensitive,
+     *            might be null
+     * @param listingCache
+     *            The cache used for directory listings, might be null
+     * @param streamListings
+     *            true if directory listings should be streamed in directory
+     *            order
+     */
+    public NativeFileSystemView(User user, boolean caseInsensitive,
+            boolean cacheAttributes, CaseInsensitiveNameCache nameCache,
+            DirectoryListingCache listingCache, boolean streamListings)
+            throws FtpException {
         if (user == null) {
             throw new IllegalArgumentException("user can not be null");
         }
@@ -77,6 +141,10 @@ public class NativeFileSystemView implements FileSystemView {
         }
 
         this.caseInsensitive = caseInsensitive;
+        this.cacheAttributes = cacheAttributes;
+        this.nameCache = nameCache;
+        this.listingCache = listingCache;
+        this.streamListings = streamListings;
 
         // add last '/' if necessary
         String rootDir = user.getHomeDirectory();
@@ -99,7 +167,8 @@ public class NativeFileSystemView implements FileSystemView {
      * user.
      */
     public FtpFile getHomeDirectory() {
-        return new NativeFtpFile("/", new File(rootDir), user);
+        return new NativeFtpFile("/", new File(rootDir), user,
+                cacheAttributes, listingCache, streamListings);
     }
 
     /**
@@ -108,10 +177,12 @@ public class NativeFileSystemView implements FileSystemView {
     public FtpFile getWorkingDirectory() {
         FtpFile fileObj = null;
         if (currDir.equals("/")) {
-            fileObj = new NativeFtpFile("/", new File(rootDir), user);
+            fileObj = new NativeFtpFile("/", new File(rootDir), user,
+                    cacheAttributes, listingCache, streamListings);
         } else {
             File file = new File(rootDir, currDir.substring(1));
-            fileObj = new NativeFtpFile(currDir, file, user);
+            fileObj = new NativeFtpFile(currDir, file, user, cacheAttributes,
+                    listingCache, streamListings);
 
         }
         return fileObj;
@@ -123,13 +194,23 @@ public class NativeFileSystemView implements FileSystemView {
     public FtpFile getFile(String file) {
 
         // get actual file object
-        String physicalName = NativeFtpFile.getPhysicalName(rootDir,
-                currDir, file, caseInsensitive);
+        String physicalName = getPhysicalName(file);
         File fileObj = new File(physicalName);
 
         // strip the root directory and return
         String userFileName = physicalName.substring(rootDir.length() - 1);
-        return new NativeFtpFile(userFileName, fileObj, user);
+        return new NativeFtpFile(userFileName, fileObj, user, cacheAttributes,
+                listingCache, streamListings);
+    }
+
+    private String getPhysicalName(String file) {
+        if (caseInsensitive && nameCache != null) {
+            return NativeFtpFile.getPhysicalName(rootDir, currDir, file,
+                    nameCache);
+        } else {
+            return NativeFtpFile.getPhysicalName(rootDir, currDir, file,
+                    caseInsensitive);
+        }
     }
 
     /**
@@ -138,8 +219,7 @@ public class NativeFileSystemView implements FileSystemView {
     public boolean changeWorkingDirectory(String dir) {
 
         // not a directory - return false
-        dir = NativeFtpFile.getPhysicalName(rootDir, currDir, dir,
-                caseInsensitive);
+        dir = getPhysicalName(dir);
         File dirObj = new File(dir);
         if (!dirObj.isDirectory()) {
             return false;
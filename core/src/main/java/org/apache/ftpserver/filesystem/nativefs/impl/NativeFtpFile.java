@@ -26,13 +26,21 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.StringTokenizer;
 
 import org.apache.ftpserver.ftplet.FtpFile;
+import org.apache.ftpserver.ftplet.StreamingFtpFile;
 import org.apache.ftpserver.ftplet.User;
 import org.apache.ftpserver.usermanager.impl.WriteRequest;
 import org.slf4j.Logger;
@@ -46,7 +54,7 @@ import org.slf4j.LoggerFactory;
  *
  * @author <a href="http://mina.apache.org">Apache MINA Project</a>
  */
-public class NativeFtpFile implements FtpFile {
+public class NativeFtpFile implements StreamingFtpFile {
 
     private final Logger LOG = LoggerFactory.getLogger(NativeFtpFile.class);
 
@@ -61,11 +69,77 @@ public class NativeFtpFile implements FtpFile {
 
     private User user;
 
+    private final boolean cacheAttributes;
+
+    // attributes read when first needed if cacheAttributes is set, null if
+    // the file does not exist
+    private BasicFileAttributes attributes;
+
+    private boolean attributesLoaded;
+
+    // shared listing cache, null if listings are not cached
+    private final DirectoryListingCache listingCache;
+
+    // true if openFileStream() streams the directory
+    private final boolean streamListings;
+
+    // cleared when the file system does not support POSIX attributes
+    private static volatile boolean posixSupported = true;
+
     /**
      * Constructor, internal do not use directly.
      */
     protected NativeFtpFile(final String fileName, final File file,
             final User user) {
+        this(fileName, file, user, false);
+    }
+
+    /**
+     * Constructor, internal do not use directly.
+     * 
+     * @param cacheAttributes
+     *            true if the file attributes should be read once, in a
+     *            single call, and then be kept by this object
+     */
+    protected NativeFtpFile(final String fileName, final File file,
+            final User user, final boolean cacheAttributes) {
+        this(fileName, file, user, cacheAttributes, null);
+    }
+
+    /**
+     * Constructor, internal do not use directly.
+     * 
+     * @param cacheAttributes
+     *            true if the file attributes should be read once, in a
+     *            single call, and then be kept by this object
+     * @param listingCache
+     *            The cache used for directory listings, null to always read
+     *            listings from disk
+     */
+    protected NativeFtpFile(final String fileName, final File file,
+            final User user, final boolean cacheAttributes,
+            final DirectoryListingCache listingCache) {
+        this(fileName, file, user, cacheAttributes, listingCache, false);
+    }
+
+    /**
+     * Constructor, internal do not use directly.
+     * 
+     * @param cacheAttributes
+     *            true if the file attributes should be read once, in a
+     *            single call, and then be kept by this object
+     * @param listingCache
+     *            The cache used for directory listings, null to always read
+     *            listings from disk
+     * @param streamListings
+     *            true if {@link #openFileStream()} should stream the
+     *            directory, otherwise it returns null and the directory is
+     *            listed using {@link #listFiles()}
+     */
+    protected NativeFtpFile(final String fileName, final File file,
+            final User user, final boolean cacheAttributes,
+            final DirectoryListingCache listingCache,
+            final boolean streamListings) {
         if (fileName == null) {
             throw new IllegalArgumentException("fileName can not be null");
         }
@@ -83,6 +157,70 @@ public class NativeFtpFile implements FtpFile {
         this.fileName = fileName;
         this.file = file;
         this.user = user;
+        this.cacheAttributes = cacheAttributes;
+        this.listingCache = listingCache;
+        this.streamListings = streamListings;
+    }
+
+    /**
+     * Constructor for files with already known attributes.
+     */
+    private NativeFtpFile(final String fileName, final File file,
+            final User user, final BasicFileAttributes attributes,
+            final DirectoryListingCache listingCache,
+            final boolean streamListings) {
+        this(fileName, file, user, true, listingCache, streamListings);
+        this.attributes = attributes;
+        this.attributesLoaded = true;
+    }
+
+    /**
+     * Get the cached attributes, reading them if not done yet.
+     * 
+     * @return The attributes, null if the file does not exist
+     */
+    private BasicFileAttributes getAttributes() {
+        if (!attributesLoaded) {
+            attributes = readAttributes(file.toPath());
+            attributesLoaded = true;
+        }
+        return attributes;
+    }
+
+    /**
+     * Forget the cached attributes after the file has been changed.
+     */
+    private void resetAttributes() {
+        attributes = null;
+        attributesLoaded = false;
+    }
+
+    /**
+     * Forget the cached listing of the directory containing this file, and of
+     * this file itself if it is a directory, after the file has been changed.
+     */
+    private void invalidateListing() {
+        if (listingCache != null) {
+            listingCache.invalidate(file);
+            listingCache.invalidateParent(file);
+        }
+    }
+
+    static BasicFileAttributes readAttributes(Path path) {
+        try {
+            if (posixSupported) {
+                try {
+                    return Files.readAttributes(path,
+                            PosixFileAttributes.class);
+                } catch (UnsupportedOperationException e) {
+                    posixSupported = false;
+                }
+            }
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            // same as java.io.File, which treats all errors as a missing file
+            return null;
+        }
     }
 
     /**
@@ -136,6 +274,10 @@ public class NativeFtpFile implements FtpFile {
      * Is it a directory?
      */
     public boolean isDirectory() {
+        if (cacheAttributes) {
+            BasicFileAttributes attrs = getAttributes();
+            return attrs != null && attrs.isDirectory();
+        }
         return file.isDirectory();
     }
 
@@ -143,6 +285,10 @@ public class NativeFtpFile implements FtpFile {
      * Is it a file?
      */
     public boolean isFile() {
+        if (cacheAttributes) {
+            BasicFileAttributes attrs = getAttributes();
+            return attrs != null && attrs.isRegularFile();
+        }
         return file.isFile();
     }
 
@@ -150,6 +296,9 @@ public class NativeFtpFile implements FtpFile {
      * Does this file exists?
      */
     public boolean doesExist() {
+        if (cacheAttributes) {
+            return getAttributes() != null;
+        }
         return file.exists();
     }
 
@@ -157,6 +306,10 @@ public class NativeFtpFile implements FtpFile {
      * Get file size.
      */
     public long getSize() {
+        if (cacheAttributes) {
+            BasicFileAttributes attrs = getAttributes();
+            return attrs != null ? attrs.size() : 0L;
+        }
         return file.length();
     }
 
@@ -164,6 +317,12 @@ public class NativeFtpFile implements FtpFile {
      * Get file owner.
      */
     public String getOwnerName() {
+        if (cacheAttributes) {
+            BasicFileAttributes attrs = getAttributes();
+            if (attrs instanceof PosixFileAttributes) {
+                return ((PosixFileAttributes) attrs).owner().getName();
+            }
+        }
         return "user";
     }
 
@@ -171,6 +330,12 @@ public class NativeFtpFile implements FtpFile {
      * Get group name
      */
     public String getGroupName() {
+        if (cacheAttributes) {
+            BasicFileAttributes attrs = getAttributes();
+            if (attrs instanceof PosixFileAttributes) {
+                return ((PosixFileAttributes) attrs).group().getName();
+            }
+        }
         return "group";
     }
 
@@ -178,13 +343,17 @@ public class NativeFtpFile implements FtpFile {
      * Get link count
      */
     public int getLinkCount() {
-        return file.isDirectory() ? 3 : 1;
+        return isDirectory() ? 3 : 1;
     }
 
     /**
      * Get last modified time.
      */
     public long getLastModified() {
+        if (cacheAttributes) {
+            BasicFileAttributes attrs = getAttributes();
+            return attrs != null ? attrs.lastModifiedTime().toMillis() : 0L;
+        }
         return file.lastModified();
     }
 
@@ -192,6 +361,7 @@ public class NativeFtpFile implements FtpFile {
      * {@inheritDoc}
      */
     public boolean setLastModified(long time) {
+        resetAttributes();
         return file.setLastModified(time);
     }
 
@@ -213,7 +383,7 @@ public class NativeFtpFile implements FtpFile {
         }
 
         LOG.debug("Checking if file exists");
-        if (file.exists()) {
+        if (doesExist()) {
             LOG.debug("Checking can write: " + file.canWrite());
             return file.canWrite();
         }
@@ -253,7 +423,8 @@ public class NativeFtpFile implements FtpFile {
 
         // we check if the parent FileObject is writable.
         NativeFtpFile parentObject = new NativeFtpFile(parentFullName, file
-                .getAbsoluteFile().getParentFile(), user);
+                .getAbsoluteFile().getParentFile(), user, cacheAttributes,
+                listingCache, streamListings);
         return parentObject.isWritable();
     }
 
@@ -264,6 +435,8 @@ public class NativeFtpFile implements FtpFile {
         boolean retVal = false;
         if (isRemovable()) {
             retVal = file.delete();
+            resetAttributes();
+            invalidateListing();
         }
         return retVal;
     }
@@ -283,6 +456,10 @@ public class NativeFtpFile implements FtpFile {
                 retVal = false;
             } else {
                 retVal = file.renameTo(destFile);
+                resetAttributes();
+                ((NativeFtpFile) dest).resetAttributes();
+                invalidateListing();
+                ((NativeFtpFile) dest).invalidateListing();
             }
         }
         return retVal;
@@ -295,6 +472,8 @@ public class NativeFtpFile implements FtpFile {
         boolean retVal = false;
         if (isWritable()) {
             retVal = file.mkdir();
+            resetAttributes();
+            invalidateListing();
         }
         return retVal;
     }
@@ -312,10 +491,18 @@ public class NativeFtpFile implements FtpFile {
     public List<FtpFile> listFiles() {
 
         // is a directory
-        if (!file.isDirectory()) {
+        if (!isDirectory()) {
             return null;
         }
 
+        if (listingCache != null) {
+            return listFilesFromCache();
+        }
+
+        if (cacheAttributes) {
+            return listFilesWithAttributes();
+        }
+
         // directory - return all the files
         File[] files = file.listFiles();
         if (files == null) {
@@ -330,22 +517,206 @@ public class NativeFtpFile implements FtpFile {
         });
 
         // get the virtual name of the base directory
-        String virtualFileStr = getAbsolutePath();
-        if (virtualFileStr.charAt(virtualFileStr.length() - 1) != '/') {
-            virtualFileStr += '/';
-        }
+        String virtualFileStr = getVirtualDirectoryName();
 
         // now return all the files under the directory
         FtpFile[] virtualFiles = new FtpFile[files.length];
         for (int i = 0; i < files.length; ++i) {
             File fileObj = files[i];
             String fileName = virtualFileStr + fileObj.getName();
-            virtualFiles[i] = new NativeFtpFile(fileName, fileObj, user);
+            virtualFiles[i] = new NativeFtpFile(fileName, fileObj, user,
+                    false, null, streamListings);
         }
 
         return Collections.unmodifiableList(Arrays.asList(virtualFiles));
     }
 
+    /**
+     * List the files using a directory stream, the attributes of every file
+     * are read once while listing.
+     */
+    private List<FtpFile> listFilesWithAttributes() {
+        String virtualFileStr = getVirtualDirectoryName();
+
+        List<FtpFile> virtualFiles = new ArrayList<FtpFile>();
+        DirectoryStream<Path> stream = null;
+        try {
+            stream = Files.newDirectoryStream(file.toPath());
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                virtualFiles.add(new NativeFtpFile(virtualFileStr + name, path
+                        .toFile(), user, readAttributes(path), null,
+                        streamListings));
+            }
+        } catch (IOException e) {
+            LOG.debug("Failed to list directory " + file, e);
+            return null;
+        } finally {
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+
+        // make sure the files are returned in order
+        Collections.sort(virtualFiles, new Comparator<FtpFile>() {
+            public int compare(FtpFile f1, FtpFile f2) {
+                return ((NativeFtpFile) f1).file.getName().compareTo(
+                        ((NativeFtpFile) f2).file.getName());
+            }
+        });
+
+        return Collections.unmodifiableList(virtualFiles);
+    }
+
+    /**
+     * List the files using the shared listing cache.
+     */
+    private List<FtpFile> listFilesFromCache() {
+        List<DirectoryListingCache.Entry> entries = listingCache
+                .getListing(file);
+        if (entries == null) {
+            return null;
+        }
+
+        String virtualFileStr = getVirtualDirectoryName();
+
+        // the cache keeps the files in directory order, as they are streamed
+        DirectoryListingCache.Entry[] sortedEntries = entries
+                .toArray(new DirectoryListingCache.Entry[entries.size()]);
+        Arrays.sort(sortedEntries, new Comparator<DirectoryListingCache.Entry>() {
+            public int compare(DirectoryListingCache.Entry e1,
+                    DirectoryListingCache.Entry e2) {
+                return e1.getName().compareTo(e2.getName());
+            }
+        });
+
+        FtpFile[] virtualFiles = new FtpFile[sortedEntries.length];
+        for (int i = 0; i < virtualFiles.length; ++i) {
+            DirectoryListingCache.Entry entry = sortedEntries[i];
+            virtualFiles[i] = new NativeFtpFile(virtualFileStr
+                    + entry.getName(), entry.getFile(), user, entry
+                    .getAttributes(), listingCache, streamListings);
+        }
+
+        return Collections.unmodifiableList(Arrays.asList(virtualFiles));
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * Only streams the directory if enabled by
+     * {@link org.apache.ftpserver.filesystem.nativefs.NativeFileSystemFactory#setStreamListings(boolean)}.
+     * The files come in the order they were read from disk, also if the
+     * listing is cached.
+     */
+    public DirectoryStream<FtpFile> openFileStream() {
+        if (!streamListings || !isDirectory()) {
+            return null;
+        }
+
+        final String virtualFileStr = getVirtualDirectoryName();
+
+        if (listingCache != null) {
+            List<DirectoryListingCache.Entry> entries = listingCache
+                    .getListing(file);
+            if (entries == null) {
+                return null;
+            }
+
+            return new FileStream<DirectoryListingCache.Entry>(entries
+                    .iterator(), null) {
+                protected FtpFile createFile(DirectoryListingCache.Entry entry) {
+                    return new NativeFtpFile(virtualFileStr + entry.getName(),
+                            entry.getFile(), user, entry.getAttributes(),
+                            listingCache, streamListings);
+                }
+            };
+        }
+
+        DirectoryStream<Path> paths;
+        try {
+            paths = Files.newDirectoryStream(file.toPath());
+        } catch (IOException e) {
+            LOG.debug("Failed to list directory " + file, e);
+            return null;
+        }
+
+        return new FileStream<Path>(paths.iterator(), paths) {
+            protected FtpFile createFile(Path path) {
+                String fileName = virtualFileStr + path.getFileName();
+                if (cacheAttributes) {
+                    return new NativeFtpFile(fileName, path.toFile(), user,
+                            readAttributes(path), null, streamListings);
+                }
+                return new NativeFtpFile(fileName, path.toFile(), user, false,
+                        null, streamListings);
+            }
+        };
+    }
+
+    /**
+     * Directory stream creating the files from the entries of a directory
+     * while iterating.
+     */
+    private static abstract class FileStream<T> implements
+            DirectoryStream<FtpFile> {
+
+        private final Iterator<T> entries;
+
+        private final DirectoryStream<?> source;
+
+        private boolean iterated;
+
+        public FileStream(Iterator<T> entries, DirectoryStream<?> source) {
+            this.entries = entries;
+            this.source = source;
+        }
+
+        protected abstract FtpFile createFile(T entry);
+
+        public Iterator<FtpFile> iterator() {
+            if (iterated) {
+                throw new IllegalStateException("Iterator already obtained");
+            }
+            iterated = true;
+
+            return new Iterator<FtpFile>() {
+                public boolean hasNext() {
+                    return entries.hasNext();
+                }
+
+                public FtpFile next() {
+                    return createFile(entries.next());
+                }
+
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        public void close() throws IOException {
+            if (source != null) {
+                source.close();
+            }
+        }
+    }
+
+    /**
+     * Get the virtual name of this directory, ending with '/'.
+     */
+    private String getVirtualDirectoryName() {
+        String virtualFileStr = getAbsolutePath();
+        if (virtualFileStr.charAt(virtualFileStr.length() - 1) != '/') {
+            virtualFileStr += '/';
+        }
+        return virtualFileStr;
+    }
+
     /**
      * Create output stream for writing.
      */
@@ -358,6 +729,8 @@ public class NativeFtpFile implements FtpFile {
         }
 
         // create output stream
+        resetAttributes();
+        invalidateListing();
         final RandomAccessFile raf = new RandomAccessFile(file, "rw");
         raf.setLength(offset);
         raf.seek(offset);
@@ -369,6 +742,8 @@ public class NativeFtpFile implements FtpFile {
             public void close() throws IOException {
                 super.close();
                 raf.close();
+                resetAttributes();
+                invalidateListing();
             }
         };
     }
@@ -429,6 +804,26 @@ public class NativeFtpFile implements FtpFile {
     public final static String getPhysicalName(final String rootDir,
             final String currDir, final String fileName,
             final boolean caseInsensitive) {
+        return getPhysicalName(rootDir, currDir, fileName, caseInsensitive,
+                null);
+    }
+
+    /**
+     * Get the physical canonical file name, resolving names case
+     * insensitively with the help of the given cache.
+     * 
+     * @see #getPhysicalName(String, String, String)
+     */
+    public final static String getPhysicalName(final String rootDir,
+            final String currDir, final String fileName,
+            final CaseInsensitiveNameCache nameCache) {
+        return getPhysicalName(rootDir, currDir, fileName, true, nameCache);
+    }
+
+    private static String getPhysicalName(final String rootDir,
+            final String currDir, final String fileName,
+            final boolean caseInsensitive,
+            final CaseInsensitiveNameCache nameCache) {
 
         // get the starting directory
         String normalizedRootDir = normalizeSeparateChar(rootDir);
@@ -495,7 +890,12 @@ public class NativeFtpFile implements FtpFile {
                 continue;
             }
 
-            if (caseInsensitive) {
+            if (caseInsensitive && nameCache != null) {
+                String match = nameCache.getName(resArg, tok);
+                if (match != null) {
+                    tok = match;
+                }
+            } else if (caseInsensitive) {
                 File[] matches = new File(resArg)
                         .listFiles(new NameEqualsFileFilter(tok, true));
 
@@ -20,10 +20,18 @@
 package org.apache.ftpserver.ftpletcontainer.impl;
 
 import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
 
+import org.apache.ftpserver.ftplet.DefaultFtplet;
 import org.apache.ftpserver.ftplet.FtpException;
 import org.apache.ftpserver.ftplet.FtpReply;
 import org.apache.ftpserver.ftplet.FtpRequest;
@@ -32,6 +40,8 @@ import org.apache.ftpserver.ftplet.Ftplet;
 import org.apache.ftpserver.ftplet.FtpletContext;
 import org.apache.ftpserver.ftplet.FtpletResult;
 import org.apache.ftpserver.ftpletcontainer.FtpletContainer;
+import org.apache.ftpserver.impl.FtpServerContext;
+import org.apache.ftpserver.impl.ServerFtpStatistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,6 +49,18 @@ import org.slf4j.LoggerFactory;
  * <strong>Internal class, do not use directly.</strong>
  * 
  * This ftplet calls other ftplet methods and returns appropriate return value.
+ * 
+ * Ftplets are called in the iteration order of the ftplet map. For every
+ * callback the container keeps the list of ftplets that handle it, so that
+ * ftplets extending {@link DefaultFtplet} are only called for the commands
+ * their overridden methods are interested in. The lists are built again
+ * whenever the ftplet map changes, so ftplets added to {@link #getFtplets()}
+ * while the server is running are called as well. The map is copied on every
+ * change and can safely be changed while callbacks are running.
+ * 
+ * The time spent in every callback is recorded in the server statistics, by
+ * ftplet name and callback, and callbacks taking longer than the slow ftplet
+ * threshold of the server are logged.
  *
  * <strong><strong>Internal class, do not use directly.</strong></strong>
  *
@@ -49,13 +71,68 @@ public class DefaultFtpletContainer implements FtpletContainer {
     private final Logger LOG = LoggerFactory
             .getLogger(DefaultFtpletContainer.class);
 
-    private Map<String, Ftplet> ftplets = new ConcurrentHashMap<String, Ftplet>();
+    private static final String ON_CONNECT = "onConnect";
+
+    private static final String ON_DISCONNECT = "onDisconnect";
+
+    private static final String BEFORE_COMMAND = "beforeCommand";
+
+    private static final String AFTER_COMMAND = "afterCommand";
+
+    private static final Class<?>[] SESSION_PARAMS = new Class<?>[] { FtpSession.class };
+
+    private static final Class<?>[] REQUEST_PARAMS = new Class<?>[] {
+            FtpSession.class, FtpRequest.class };
+
+    private static final Class<?>[] REPLY_PARAMS = new Class<?>[] {
+            FtpSession.class, FtpRequest.class, FtpReply.class };
+
+    // the DefaultFtplet methods called from beforeCommand, by command
+    private static final Map<String, String> BEFORE_COMMAND_METHODS = new HashMap<String, String>();
+
+    // the DefaultFtplet methods called from afterCommand, by command
+    private static final Map<String, String> AFTER_COMMAND_METHODS = new HashMap<String, String>();
+
+    static {
+        BEFORE_COMMAND_METHODS.put("DELE", "onDeleteStart");
+        BEFORE_COMMAND_METHODS.put("STOR", "onUploadStart");
+        BEFORE_COMMAND_METHODS.put("RETR", "onDownloadStart");
+        BEFORE_COMMAND_METHODS.put("RMD", "onRmdirStart");
+        BEFORE_COMMAND_METHODS.put("MKD", "onMkdirStart");
+        BEFORE_COMMAND_METHODS.put("APPE", "onAppendStart");
+        BEFORE_COMMAND_METHODS.put("STOU", "onUploadUniqueStart");
+        BEFORE_COMMAND_METHODS.put("RNTO", "onRenameStart");
+        BEFORE_COMMAND_METHODS.put("SITE", "onSite");
+
+        AFTER_COMMAND_METHODS.put("PASS", "onLogin");
+        AFTER_COMMAND_METHODS.put("DELE", "onDeleteEnd");
+        AFTER_COMMAND_METHODS.put("STOR", "onUploadEnd");
+        AFTER_COMMAND_METHODS.put("RETR", "onDownloadEnd");
+        AFTER_COMMAND_METHODS.put("RMD", "onRmdirEnd");
+        AFTER_COMMAND_METHODS.put("MKD", "onMkdirEnd");
+        AFTER_COMMAND_METHODS.put("APPE", "onAppendEnd");
+        AFTER_COMMAND_METHODS.put("STOU", "onUploadUniqueEnd");
+        AFTER_COMMAND_METHODS.put("RNTO", "onRenameEnd");
+    }
+
+    private final FtpletMap ftplets;
+
+    private volatile Dispatch dispatch;
+
+    private volatile ServerFtpStatistics statistics;
+
+    private volatile long slowFtpletThreshold;
 
     public DefaultFtpletContainer() {
+        this(null);
     }
     
+    /**
+     * Create a container for the given ftplets. The ftplets are copied, later
+     * changes must be made through {@link #getFtplets()}.
+     */
     public DefaultFtpletContainer(Map<String, Ftplet> ftplets) {
-        this.ftplets = ftplets;
+        this.ftplets = new FtpletMap(ftplets);
     }
 
     /**
@@ -70,6 +147,15 @@ public class DefaultFtpletContainer implements FtpletContainer {
     }
 
     public synchronized void init(FtpletContext ftpletContext) throws FtpException {
+        if (ftpletContext != null
+                && ftpletContext.getFtpStatistics() instanceof ServerFtpStatistics) {
+            statistics = (ServerFtpStatistics) ftpletContext.getFtpStatistics();
+        }
+        if (ftpletContext instanceof FtpServerContext) {
+            slowFtpletThreshold = ((FtpServerContext) ftpletContext)
+                    .getSlowFtpletThreshold() * 1000000L;
+        }
+
         for (Entry<String, Ftplet> entry : ftplets.entrySet()) {
             entry.getValue().init(ftpletContext);
         }
@@ -101,8 +187,13 @@ public class DefaultFtpletContainer implements FtpletContainer {
     public FtpletResult onConnect(FtpSession session) throws FtpException,
             IOException {
         FtpletResult retVal = FtpletResult.DEFAULT;
-        for (Entry<String, Ftplet> entry : ftplets.entrySet()) {
-            retVal = entry.getValue().onConnect(session);
+        for (NamedFtplet ftplet : dispatch.onConnect) {
+            long start = System.nanoTime();
+            try {
+                retVal = ftplet.ftplet.onConnect(session);
+            } finally {
+                recordTime(ftplet, ON_CONNECT, session, null, start);
+            }
             if (retVal == null) {
                 retVal = FtpletResult.DEFAULT;
             }
@@ -121,9 +212,14 @@ public class DefaultFtpletContainer implements FtpletContainer {
     public FtpletResult onDisconnect(FtpSession session) throws FtpException,
             IOException {
         FtpletResult retVal = FtpletResult.DEFAULT;
-        for (Entry<String, Ftplet> entry : ftplets.entrySet()) {
+        for (NamedFtplet ftplet : dispatch.onDisconnect) {
 
-            retVal = entry.getValue().onDisconnect(session);
+            long start = System.nanoTime();
+            try {
+                retVal = ftplet.ftplet.onDisconnect(session);
+            } finally {
+                recordTime(ftplet, ON_DISCONNECT, session, null, start);
+            }
             if (retVal == null) {
                 retVal = FtpletResult.DEFAULT;
             }
@@ -139,9 +235,14 @@ public class DefaultFtpletContainer implements FtpletContainer {
     public FtpletResult afterCommand(FtpSession session, FtpRequest request, FtpReply reply)
             throws FtpException, IOException {
         FtpletResult retVal = FtpletResult.DEFAULT;
-        for (Entry<String, Ftplet> entry : ftplets.entrySet()) {
+        for (NamedFtplet ftplet : dispatch.afterCommand(request)) {
 
-            retVal = entry.getValue().afterCommand(session, request, reply);
+            long start = System.nanoTime();
+            try {
+                retVal = ftplet.ftplet.afterCommand(session, request, reply);
+            } finally {
+                recordTime(ftplet, AFTER_COMMAND, session, request, start);
+            }
             if (retVal == null) {
                 retVal = FtpletResult.DEFAULT;
             }
@@ -157,9 +258,14 @@ public class DefaultFtpletContainer implements FtpletContainer {
     public FtpletResult beforeCommand(FtpSession session, FtpRequest request)
             throws FtpException, IOException {
         FtpletResult retVal = FtpletResult.DEFAULT;
-        for (Entry<String, Ftplet> entry : ftplets.entrySet()) {
+        for (NamedFtplet ftplet : dispatch.beforeCommand(request)) {
 
-            retVal = entry.getValue().beforeCommand(session, request);
+            long start = System.nanoTime();
+            try {
+                retVal = ftplet.ftplet.beforeCommand(session, request);
+            } finally {
+                recordTime(ftplet, BEFORE_COMMAND, session, request, start);
+            }
             if (retVal == null) {
                 retVal = FtpletResult.DEFAULT;
             }
@@ -172,4 +278,260 @@ public class DefaultFtpletContainer implements FtpletContainer {
         return retVal;
     }
 
+    /**
+     * Record the time spent in an ftplet callback and log it if slow.
+     */
+    private void recordTime(NamedFtplet ftplet, String callback,
+            FtpSession session, FtpRequest request, long start) {
+        long time = System.nanoTime() - start;
+
+        ServerFtpStatistics statistics = this.statistics;
+        if (statistics != null) {
+            statistics.setFtpletTime(ftplet.name, callback, time);
+        }
+
+        long threshold = slowFtpletThreshold;
+        if (threshold > 0 && time >= threshold) {
+            Object sessionId = null;
+            String userName = null;
+            Object clientAddress = null;
+            if (session != null) {
+                sessionId = session.getSessionId();
+                clientAddress = session.getClientAddress();
+                if (session.getUser() != null) {
+                    userName = session.getUser().getName();
+                }
+            }
+            LOG.warn(
+                    "Slow ftplet {} took {} ms in {} of command {} for session {} (user {}, {})",
+                    new Object[] { ftplet.name, time / 1000000L, callback,
+                            request != null ? request.getCommand() : null,
+                            sessionId, userName, clientAddress });
+        }
+    }
+
+    /**
+     * Is the given method of the ftplet anything but the empty
+     * {@link DefaultFtplet} implementation.
+     */
+    private static boolean handles(Ftplet ftplet, String methodName,
+            Class<?>[] params) {
+        if (!(ftplet instanceof DefaultFtplet)) {
+            return true;
+        }
+
+        try {
+            Method method = ftplet.getClass().getMethod(methodName, params);
+            return method.getDeclaringClass() != DefaultFtplet.class;
+        } catch (NoSuchMethodException e) {
+            // can not tell, always call it
+            return true;
+        }
+    }
+
+    /**
+     * Copy-on-write ftplet map, keeping the iteration order in which the
+     * ftplets were added. Every change builds a new {@link Dispatch}. Views
+     * and iterators show the ftplets at the time they were created and can
+     * not be used for changes.
+     */
+    private class FtpletMap extends AbstractMap<String, Ftplet> {
+
+        private volatile Map<String, Ftplet> snapshot;
+
+        public FtpletMap(Map<String, Ftplet> ftplets) {
+            Map<String, Ftplet> copy = new LinkedHashMap<String, Ftplet>();
+            if (ftplets != null) {
+                copy.putAll(ftplets);
+            }
+            update(copy);
+        }
+
+        @Override
+        public Set<Entry<String, Ftplet>> entrySet() {
+            return snapshot.entrySet();
+        }
+
+        @Override
+        public Ftplet get(Object key) {
+            return snapshot.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return snapshot.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return snapshot.size();
+        }
+
+        @Override
+        public synchronized Ftplet put(String key, Ftplet value) {
+            Map<String, Ftplet> copy = new LinkedHashMap<String, Ftplet>(
+                    snapshot);
+            Ftplet old = copy.put(key, value);
+            update(copy);
+            return old;
+        }
+
+        @Override
+        public synchronized void putAll(Map<? extends String, ? extends Ftplet> m) {
+            Map<String, Ftplet> copy = new LinkedHashMap<String, Ftplet>(
+                    snapshot);
+            copy.putAll(m);
+            update(copy);
+        }
+
+        @Override
+        public synchronized Ftplet remove(Object key) {
+            if (!snapshot.containsKey(key)) {
+                return null;
+            }
+            Map<String, Ftplet> copy = new LinkedHashMap<String, Ftplet>(
+                    snapshot);
+            Ftplet old = copy.remove(key);
+            update(copy);
+            return old;
+        }
+
+        @Override
+        public synchronized void clear() {
+            update(new LinkedHashMap<String, Ftplet>());
+        }
+
+        private void update(Map<String, Ftplet> copy) {
+            snapshot = Collections.unmodifiableMap(copy);
+            dispatch = new Dispatch(snapshot);
+        }
+    }
+
+    /**
+     * Immutable lists of the ftplets to call for each callback, in the order
+     * of the ftplet map.
+     */
+    private static class Dispatch {
+
+        private final NamedFtplet[] onConnect;
+
+        private final NamedFtplet[] onDisconnect;
+
+        // for commands not in the map
+        private final NamedFtplet[] beforeCommand;
+
+        private final Map<String, NamedFtplet[]> beforeCommandByCommand;
+
+        // for commands not in the map
+        private final NamedFtplet[] afterCommand;
+
+        private final Map<String, NamedFtplet[]> afterCommandByCommand;
+
+        public Dispatch(Map<String, Ftplet> ftplets) {
+            List<NamedFtplet> connect = new ArrayList<NamedFtplet>();
+            List<NamedFtplet> disconnect = new ArrayList<NamedFtplet>();
+            List<NamedFtplet> before = new ArrayList<NamedFtplet>();
+            List<NamedFtplet> after = new ArrayList<NamedFtplet>();
+            Map<String, List<NamedFtplet>> beforeByCommand = new HashMap<String, List<NamedFtplet>>();
+            Map<String, List<NamedFtplet>> afterByCommand = new HashMap<String, List<NamedFtplet>>();
+            for (String command : BEFORE_COMMAND_METHODS.keySet()) {
+                beforeByCommand.put(command, new ArrayList<NamedFtplet>());
+            }
+            for (String command : AFTER_COMMAND_METHODS.keySet()) {
+                afterByCommand.put(command, new ArrayList<NamedFtplet>());
+            }
+
+            for (Entry<String, Ftplet> ftpletEntry : ftplets.entrySet()) {
+                Ftplet ftplet = ftpletEntry.getValue();
+                NamedFtplet named = new NamedFtplet(ftpletEntry.getKey(),
+                        ftplet);
+
+                if (handles(ftplet, ON_CONNECT, SESSION_PARAMS)) {
+                    connect.add(named);
+                }
+                if (handles(ftplet, ON_DISCONNECT, SESSION_PARAMS)) {
+                    disconnect.add(named);
+                }
+
+                if (handles(ftplet, BEFORE_COMMAND, REQUEST_PARAMS)) {
+                    before.add(named);
+                    for (List<NamedFtplet> list : beforeByCommand.values()) {
+                        list.add(named);
+                    }
+                } else {
+                    for (Entry<String, String> entry : BEFORE_COMMAND_METHODS
+                            .entrySet()) {
+                        if (handles(ftplet, entry.getValue(), REQUEST_PARAMS)) {
+                            beforeByCommand.get(entry.getKey()).add(named);
+                        }
+                    }
+                }
+
+                if (handles(ftplet, AFTER_COMMAND, REPLY_PARAMS)) {
+                    after.add(named);
+                    for (List<NamedFtplet> list : afterByCommand.values()) {
+                        list.add(named);
+                    }
+                } else {
+                    for (Entry<String, String> entry : AFTER_COMMAND_METHODS
+                            .entrySet()) {
+                        if (handles(ftplet, entry.getValue(), REQUEST_PARAMS)) {
+                            afterByCommand.get(entry.getKey()).add(named);
+                        }
+                    }
+                }
+            }
+
+            onConnect = toArray(connect);
+            onDisconnect = toArray(disconnect);
+            beforeCommand = toArray(before);
+            afterCommand = toArray(after);
+            beforeCommandByCommand = toArrays(beforeByCommand);
+            afterCommandByCommand = toArrays(afterByCommand);
+        }
+
+        public NamedFtplet[] beforeCommand(FtpRequest request) {
+            return lookup(beforeCommandByCommand, beforeCommand, request);
+        }
+
+        public NamedFtplet[] afterCommand(FtpRequest request) {
+            return lookup(afterCommandByCommand, afterCommand, request);
+        }
+
+        private static NamedFtplet[] lookup(
+                Map<String, NamedFtplet[]> byCommand, NamedFtplet[] other,
+                FtpRequest request) {
+            String command = request.getCommand();
+            if (command == null) {
+                return other;
+            }
+            NamedFtplet[] ftplets = byCommand.get(command.toUpperCase());
+            return ftplets == null ? other : ftplets;
+        }
+
+        private static NamedFtplet[] toArray(List<NamedFtplet> list) {
+            return list.toArray(new NamedFtplet[list.size()]);
+        }
+
+        private static Map<String, NamedFtplet[]> toArrays(
+                Map<String, List<NamedFtplet>> lists) {
+            Map<String, NamedFtplet[]> arrays = new HashMap<String, NamedFtplet[]>();
+            for (Entry<String, List<NamedFtplet>> entry : lists.entrySet()) {
+                arrays.put(entry.getKey(), toArray(entry.getValue()));
+            }
+            return Collections.unmodifiableMap(arrays);
+        }
+    }
+
+    private static class NamedFtplet {
+
+        private final String name;
+
+        private final Ftplet ftplet;
+
+        public NamedFtplet(String name, Ftplet ftplet) {
+            this.name = name;
+            this.ftplet = ftplet;
+        }
+    }
 }
@@ -0,0 +1,297 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ftpserver.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ftpserver.filesystem.nativefs.impl.NativeFtpFile;
+import org.apache.ftpserver.ftplet.FtpFile;
+import org.apache.ftpserver.util.IoUtils;
+
+/**
+ * <strong>Internal class, do not use directly.</strong>
+ * 
+ * Computes file checksums and caches them by physical path and algorithm. A
+ * cached checksum is only used while the size and the last modification time
+ * of the file are the same as when it was computed. These are always read
+ * from disk, not from the file object, which might have cached them. Files
+ * not backed by the native file system are hashed on every request.
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class ChecksumCache {
+
+    public static final String SHA_256 = "SHA-256";
+
+    public static final String SHA_1 = "SHA-1";
+
+    public static final String MD5 = "MD5";
+
+    public static final String CRC32C = "CRC32C";
+
+    private static final String[] ALGORITHMS = { SHA_256, SHA_1, MD5, CRC32C };
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final int maxEntries;
+
+    // checksums by physical path and algorithm, least recently used first
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(
+            16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Create a cache
+     * 
+     * @param maxEntries
+     *            The maximum number of cached checksums, 0 to not cache
+     *            checksums
+     */
+    public ChecksumCache(int maxEntries) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException(
+                    "maxEntries can not be negative");
+        }
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Get the supported algorithms, the first one is the default
+     * 
+     * @return The algorithm names
+     */
+    public static String[] getAlgorithms() {
+        return ALGORITHMS.clone();
+    }
+
+    /**
+     * Get the name of a supported algorithm, ignoring case
+     * 
+     * @param name
+     *            The algorithm name
+     * @return The algorithm name as returned by {@link #getAlgorithms()}, or
+     *         null if not supported
+     */
+    public static String getAlgorithm(String name) {
+        for (int i = 0; i < ALGORITHMS.length; i++) {
+            if (ALGORITHMS[i].equalsIgnoreCase(name)) {
+                return ALGORITHMS[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the maximum number of cached checksums
+     * 
+     * @return The maximum number of entries
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Get the checksum of a file, from the cache if it is still valid.
+     * 
+     * @param file
+     *            The file
+     * @param algorithm
+     *            One of the algorithms returned by {@link #getAlgorithms()}
+     * @return The checksum
+     * @throws IOException
+     *             If the file can not be read
+     * @throws NoSuchAlgorithmException
+     *             If the algorithm is not supported
+     */
+    public byte[] getChecksum(FtpFile file, String algorithm)
+            throws IOException, NoSuchAlgorithmException {
+        String key = getKey(file, algorithm);
+        BasicFileAttributes before = key != null ? readAttributes(file) : null;
+
+        if (before != null) {
+            synchronized (this) {
+                Entry entry = entries.get(key);
+                if (entry != null && entry.matches(before)) {
+                    hits.incrementAndGet();
+                    return entry.checksum.clone();
+                }
+            }
+        }
+        misses.incrementAndGet();
+
+        byte[] checksum = compute(file, algorithm);
+
+        // only cache if the file did not change while reading it
+        if (before != null) {
+            BasicFileAttributes after = readAttributes(file);
+            if (after != null && new Entry(before, null).matches(after)) {
+                put(key, new Entry(before, checksum.clone()));
+            }
+        }
+        return checksum;
+    }
+
+    /**
+     * Add checksums computed elsewhere, for example while the file was
+     * uploaded. The checksums must be of the current content of the file.
+     * 
+     * @param file
+     *            The file
+     * @param checksums
+     *            The checksums by algorithm
+     */
+    public void putChecksums(FtpFile file, Map<String, byte[]> checksums) {
+        BasicFileAttributes attributes = null;
+        for (Map.Entry<String, byte[]> checksum : checksums.entrySet()) {
+            String key = getKey(file, checksum.getKey());
+            if (key == null) {
+                continue;
+            }
+            if (attributes == null) {
+                attributes = readAttributes(file);
+                if (attributes == null) {
+                    return;
+                }
+            }
+            put(key, new Entry(attributes, checksum.getValue().clone()));
+        }
+    }
+
+    /**
+     * Get the number of checksums served from the cache
+     * 
+     * @return The number of hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of checksums computed by reading the file
+     * 
+     * @return The number of misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Get the number of cached checksums
+     * 
+     * @return The number of entries
+     */
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * Remove all cached checksums
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    private synchronized void put(String key, Entry entry) {
+        if (maxEntries == 0) {
+            return;
+        }
+        entries.put(key, entry);
+
+        Iterator<Entry> iter = entries.values().iterator();
+        while (entries.size() > maxEntries && iter.hasNext()) {
+            iter.next();
+            iter.remove();
+        }
+    }
+
+    private String getKey(FtpFile file, String algorithm) {
+        if (maxEntries == 0 || !(file instanceof NativeFtpFile)) {
+            return null;
+        }
+        return algorithm + ':'
+                + ((NativeFtpFile) file).getPhysicalFile().getAbsolutePath();
+    }
+
+    /**
+     * Read the attributes of a native file from disk
+     * 
+     * @return The attributes, null if they can not be read
+     */
+    private BasicFileAttributes readAttributes(FtpFile file) {
+        try {
+            return Files.readAttributes(((NativeFtpFile) file)
+                    .getPhysicalFile().toPath(), BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private byte[] compute(FtpFile file, String algorithm) throws IOException,
+            NoSuchAlgorithmException {
+        ChecksumOutputStream checksum = new ChecksumOutputStream(null,
+                algorithm);
+
+        InputStream is = null;
+        try {
+            is = file.createInputStream(0);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                checksum.update(buffer, 0, read);
+            }
+        } finally {
+            IoUtils.close(is);
+        }
+
+        return checksum.getChecksums().get(algorithm);
+    }
+
+    private static class Entry {
+
+        private final long size;
+
+        private final long lastModified;
+
+        private final byte[] checksum;
+
+        public Entry(BasicFileAttributes attributes, byte[] checksum) {
+            this.size = attributes.size();
+            this.lastModified = attributes.lastModifiedTime().toMillis();
+            this.checksum = checksum;
+        }
+
+        public boolean matches(BasicFileAttributes attributes) {
+            return size == attributes.size()
+                    && lastModified == attributes.lastModifiedTime().toMillis();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ftpserver.impl;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.ftpserver.util.CRC32C;
+
+/**
+ * <strong>Internal class, do not use directly.</strong>
+ * 
+ * Output stream computing checksums of all data written through it, using
+ * any of the algorithms supported by {@link ChecksumCache}.
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class ChecksumOutputStream extends FilterOutputStream {
+
+    private final String[] algorithms;
+
+    private final MessageDigest[] digests;
+
+    private final CRC32C[] crcs;
+
+    private Map<String, byte[]> checksums;
+
+    /**
+     * Create a stream
+     * 
+     * @param out
+     *            The stream to write to, null to only compute the checksums
+     * @param algorithms
+     *            The algorithms, as returned by
+     *            {@link ChecksumCache#getAlgorithms()}
+     * @throws NoSuchAlgorithmException
+     *             If an algorithm is not supported
+     */
+    public ChecksumOutputStream(OutputStream out, String... algorithms)
+            throws NoSuchAlgorithmException {
+        super(out);
+        this.algorithms = algorithms.clone();
+        digests = new MessageDigest[algorithms.length];
+        crcs = new CRC32C[algorithms.length];
+        for (int i = 0; i < algorithms.length; i++) {
+            if (ChecksumCache.CRC32C.equals(algorithms[i])) {
+                crcs[i] = new CRC32C();
+            } else if (ChecksumCache.getAlgorithm(algorithms[i]) != null) {
+                digests[i] = MessageDigest.getInstance(algorithms[i]);
+            } else {
+                throw new NoSuchAlgorithmException(algorithms[i]);
+            }
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (out != null) {
+            out.write(b);
+        }
+        update(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (out != null) {
+            out.write(b, off, len);
+        }
+        update(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (out != null) {
+            out.close();
+        }
+    }
+
+    /**
+     * Add data to the checksums without writing it
+     */
+    public void update(byte[] b, int off, int len) {
+        if (checksums != null) {
+            throw new IllegalStateException("Checksums already computed");
+        }
+        for (int i = 0; i < algorithms.length; i++) {
+            if (crcs[i] != null) {
+                crcs[i].update(b, off, len);
+            } else {
+                digests[i].update(b, off, len);
+            }
+        }
+    }
+
+    /**
+     * Get the checksums of the data written so far. No more data can be
+     * written once the checksums have been computed.
+     * 
+     * @return The checksums by algorithm
+     */
+    public Map<String, byte[]> getChecksums() {
+        if (checksums == null) {
+            Map<String, byte[]> result = new LinkedHashMap<String, byte[]>();
+            for (int i = 0; i < algorithms.length; i++) {
+                if (crcs[i] != null) {
+                    long value = crcs[i].getValue();
+                    result.put(algorithms[i], new byte[] {
+                            (byte) (value >>> 24), (byte) (value >>> 16),
+                            (byte) (value >>> 8), (byte) value });
+                } else {
+                    result.put(algorithms[i], digests[i].digest());
+                }
+            }
+            checksums = Collections.unmodifiableMap(result);
+        }
+        return checksums;
+    }
+}
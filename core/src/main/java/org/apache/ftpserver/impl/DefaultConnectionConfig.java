@@ -41,18 +41,31 @@ public class DefaultConnectionConfig implements ConnectionConfig {
     
     private int maxThreads = 0;
 
+    private boolean virtualThreadsEnabled = false;
+
     /**
      * Internal constructor, do not use directly. Use {@link ConnectionConfigFactory} instead
      */
     public DefaultConnectionConfig(boolean anonymousLoginEnabled,
             int loginFailureDelay, int maxLogins, int maxAnonymousLogins,
             int maxLoginFailures, int maxThreads) {
+        this(anonymousLoginEnabled, loginFailureDelay, maxLogins,
+                maxAnonymousLogins, maxLoginFailures, maxThreads, false);
+    }
+
+    /**
+     * Internal constructor, do not use directly. Use {@link ConnectionConfigFactory} instead
+     */
+    public DefaultConnectionConfig(boolean anonymousLoginEnabled,
+            int loginFailureDelay, int maxLogins, int maxAnonymousLogins,
+            int maxLoginFailures, int maxThreads, boolean virtualThreadsEnabled) {
         this.anonymousLoginEnabled = anonymousLoginEnabled;
         this.loginFailureDelay = loginFailureDelay;
         this.maxLogins = maxLogins;
         this.maxAnonymousLogins = maxAnonymousLogins;
         this.maxLoginFailures = maxLoginFailures;
         this.maxThreads = maxThreads;
+        this.virtualThreadsEnabled = virtualThreadsEnabled;
     }
 
     public int getLoginFailureDelay() {
@@ -78,5 +91,16 @@ public class DefaultConnectionConfig implements ConnectionConfig {
     public int getMaxThreads() {
         return maxThreads;
     }
+
+    /**
+     * Tells whether client requests are processed on virtual threads, if the
+     * Java runtime supports them. The maximum number of threads does not apply
+     * in this case.
+     * 
+     * @return true if virtual threads should be used
+     */
+    public boolean isVirtualThreadsEnabled() {
+        return virtualThreadsEnabled;
+    }
     
 }
@@ -19,6 +19,10 @@
 
 package org.apache.ftpserver.impl;
 
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+
 import javax.net.ServerSocketFactory;
 import javax.net.SocketFactory;
 
@@ -49,6 +53,7 @@ public class DefaultDataConnectionConfiguration implements
     private String passiveExternalAddress;
     private PassivePorts passivePorts;
     private boolean passiveIpCheck;
+    private PassiveServerSocketPool passiveSocketPool;
 
     private final boolean implicitSsl;
 
@@ -64,6 +69,22 @@ public class DefaultDataConnectionConfiguration implements
             String passiveAddress, PassivePorts passivePorts,
             String passiveExternalAddress, boolean passiveIpCheck, boolean implicitSsl,
             SocketFactory socketFactory, ServerSocketFactory serverSocketFactory) {
+        this(idleTime, ssl, activeEnabled, activeIpCheck, activeLocalAddress,
+                activeLocalPort, passiveAddress, passivePorts,
+                passiveExternalAddress, passiveIpCheck, implicitSsl,
+                socketFactory, serverSocketFactory, 0);
+    }
+
+    /**
+     * Internal constructor, do not use directly. Use {@link DataConnectionConfigurationFactory} instead.
+     */
+    public DefaultDataConnectionConfiguration(int idleTime,
+            SslConfiguration ssl, boolean activeEnabled, boolean activeIpCheck,
+            String activeLocalAddress, int activeLocalPort,
+            String passiveAddress, PassivePorts passivePorts,
+            String passiveExternalAddress, boolean passiveIpCheck, boolean implicitSsl,
+            SocketFactory socketFactory, ServerSocketFactory serverSocketFactory,
+            int passiveSocketPoolSize) {
         this.idleTime = idleTime;
         this.ssl = ssl;
         this.activeEnabled = activeEnabled;
@@ -77,6 +98,10 @@ public class DefaultDataConnectionConfiguration implements
         this.implicitSsl = implicitSsl;
         this.socketFactory = socketFactory;
         this.serverSocketFactory = serverSocketFactory;
+        if (passiveSocketPoolSize > 0) {
+            this.passiveSocketPool = new PassiveServerSocketPool(passivePorts,
+                    passiveSocketPoolSize);
+        }
     }
 
     /**
@@ -136,7 +161,7 @@ public class DefaultDataConnectionConfiguration implements
      * Get passive data port. Data port number zero (0) means that any available
      * port will be used.
      */
-    public synchronized int requestPassivePort() {
+    public int requestPassivePort() {
     	return passivePorts.reserveNextPort();
     }
 
@@ -152,10 +177,55 @@ public class DefaultDataConnectionConfiguration implements
     /**
      * Release data port
      */
-    public synchronized void releasePassivePort(final int port) {
+    public void releasePassivePort(final int port) {
         passivePorts.releasePort(port);
     }
 
+    /**
+     * Get the maximum number of idle passive server sockets kept bound for
+     * reuse by later PASV commands.
+     * @return The pool size, 0 if passive server sockets are not pooled
+     */
+    public int getPassiveSocketPoolSize() {
+        return passiveSocketPool == null ? 0 : passiveSocketPool.getMaxIdle();
+    }
+
+    /**
+     * Request a bound and listening passive server socket from the pool. Only
+     * used if {@link #getPassiveSocketPoolSize()} is larger than 0.
+     * @param address The address to bind to, null for all addresses
+     * @return The server socket, null if no passive port is available
+     * @throws IOException If the server socket could not be bound
+     */
+    public ServerSocket requestPassiveServerSocket(InetAddress address)
+            throws IOException {
+        if (passiveSocketPool == null) {
+            throw new IllegalStateException("Passive socket pool not enabled");
+        }
+        return passiveSocketPool.acquire(address);
+    }
+
+    /**
+     * Return a server socket requested by
+     * {@link #requestPassiveServerSocket(InetAddress)} to the pool.
+     * @param serverSocket The server socket to be released
+     */
+    public void releasePassiveServerSocket(ServerSocket serverSocket) {
+        if (passiveSocketPool == null) {
+            throw new IllegalStateException("Passive socket pool not enabled");
+        }
+        passiveSocketPool.release(serverSocket);
+    }
+
+    /**
+     * Close the idle passive server sockets kept in the pool, if any.
+     */
+    public void closeIdlePassiveServerSockets() {
+        if (passiveSocketPool != null) {
+            passiveSocketPool.closeIdle();
+        }
+    }
+
     /**
      * Get SSL component.
      */
@@ -21,6 +21,7 @@ package org.apache.ftpserver.impl;
 
 import java.io.IOException;
 import java.nio.charset.MalformedInputException;
+import java.util.Map;
 
 import org.apache.ftpserver.command.Command;
 import org.apache.ftpserver.command.CommandFactory;
@@ -173,6 +174,48 @@ public class DefaultFtpHandler implements FtpHandler {
 
     public void messageReceived(final FtpIoSession session,
             final FtpRequest request) throws Exception {
+        long start = System.nanoTime();
+        Long queueTime = session.removeQueueTime();
+        try {
+            handleRequest(session, request);
+        } finally {
+            recordCommandTimes(session, request, start, queueTime);
+        }
+    }
+
+    /**
+     * Record the time spent in the phases of a command in the statistics.
+     * Unknown commands are not recorded, so that clients can not fill the
+     * statistics with made up commands.
+     */
+    private void recordCommandTimes(final FtpIoSession session,
+            final FtpRequest request, final long start, final Long queueTime) {
+        long total = System.nanoTime() - start;
+        Map<String, Long> times = session.removeCommandTimes();
+
+        ServerFtpStatistics stats = (ServerFtpStatistics) context
+                .getFtpStatistics();
+        String commandName = request.getCommand();
+        if (stats == null || commandName == null
+                || context.getCommandFactory().getCommand(commandName) == null) {
+            return;
+        }
+
+        stats.setCommandTime(commandName, ServerFtpStatistics.COMMAND_TIME_TOTAL,
+                total);
+        if (queueTime != null) {
+            stats.setCommandTime(commandName,
+                    ServerFtpStatistics.COMMAND_TIME_QUEUE, queueTime
+                            .longValue());
+        }
+        for (Map.Entry<String, Long> time : times.entrySet()) {
+            stats.setCommandTime(commandName, time.getKey(), time.getValue()
+                    .longValue());
+        }
+    }
+
+    private void handleRequest(final FtpIoSession session,
+            final FtpRequest request) throws Exception {
 
         boolean isExceptionHandled = false;
 
@@ -195,6 +238,7 @@ public class DefaultFtpHandler implements FtpHandler {
             FtpletContainer ftplets = context.getFtpletContainer();
 
             FtpletResult ftpletRet;
+            long ftpletStart = System.nanoTime();
             try {
                 ftpletRet = ftplets.beforeCommand(session.getFtpletSession(),
                         request);
@@ -202,6 +246,8 @@ public class DefaultFtpHandler implements FtpHandler {
                 LOG.debug("Ftplet container threw exception", e);
                 ftpletRet = FtpletResult.DISCONNECT;
             }
+            session.addCommandTime(ServerFtpStatistics.COMMAND_TIME_FTPLET,
+                    System.nanoTime() - ftpletStart);
             if (ftpletRet == FtpletResult.DISCONNECT) {
                 LOG.debug("Ftplet returned DISCONNECT, session will be closed");
                 session.close(false).awaitUninterruptibly(10000);
@@ -216,7 +262,10 @@ public class DefaultFtpHandler implements FtpHandler {
                             // SEEBURGER: Bug#72615 We need to call afterCommand even if an unexpected exception occurred during execute
                             try {
                                 session.write(LocalizedFtpReply.translate(session, request, context, FtpReply.REPLY_550_REQUESTED_ACTION_NOT_TAKEN, null, null));
+                                ftpletStart = System.nanoTime();
                                 ftplets.afterCommand(session.getFtpletSession(), request, session.getLastReply());
+                                session.addCommandTime(ServerFtpStatistics.COMMAND_TIME_FTPLET,
+                                        System.nanoTime() - ftpletStart);
                             } catch (Exception ex) {
                                 LOG.debug("Ftplet container threw exception", e);
                             }
@@ -245,6 +294,7 @@ public class DefaultFtpHandler implements FtpHandler {
                     }
                 }
 
+                ftpletStart = System.nanoTime();
                 try {
                     ftpletRet = ftplets.afterCommand(
                             session.getFtpletSession(), request, session
@@ -253,6 +303,8 @@ public class DefaultFtpHandler implements FtpHandler {
                     LOG.debug("Ftplet container threw exception", e);
                     ftpletRet = FtpletResult.DISCONNECT;
                 }
+                session.addCommandTime(ServerFtpStatistics.COMMAND_TIME_FTPLET,
+                        System.nanoTime() - ftpletStart);
                 if (ftpletRet == FtpletResult.DISCONNECT) {
                     LOG.debug("Ftplet returned DISCONNECT, session will be closed");
 
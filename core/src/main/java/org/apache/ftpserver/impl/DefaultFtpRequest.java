@@ -32,6 +32,8 @@ public class DefaultFtpRequest implements FtpRequest {
 
     private String line;
 
+    private String verb;
+
     private String command;
 
     private String argument;
@@ -43,6 +45,24 @@ public class DefaultFtpRequest implements FtpRequest {
         parse(requestLine);
     }
 
+    /**
+     * Create a request from an already parsed request line. The request line
+     * is only built when asked for.
+     * 
+     * @param verb
+     *            The command as sent by the client
+     * @param command
+     *            The upper case command, without any leading X
+     * @param argument
+     *            The argument, null if none
+     */
+    public DefaultFtpRequest(final String verb, final String command,
+            final String argument) {
+        this.verb = verb;
+        this.command = command;
+        this.argument = argument;
+    }
+
     /**
      * Parse the ftp command line.
      */
@@ -86,6 +106,9 @@ public class DefaultFtpRequest implements FtpRequest {
      * Get the ftp request line.
      */
     public String getRequestLine() {
+        if (line == null) {
+            line = argument == null ? verb : verb + ' ' + argument;
+        }
         return line;
     }
 
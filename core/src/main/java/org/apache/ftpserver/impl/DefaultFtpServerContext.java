@@ -23,8 +23,12 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.ftpserver.ConnectionConfig;
 import org.apache.ftpserver.ConnectionConfigFactory;
@@ -33,11 +37,13 @@ import org.apache.ftpserver.command.CommandFactoryFactory;
 import org.apache.ftpserver.filesystem.nativefs.NativeFileSystemFactory;
 import org.apache.ftpserver.ftplet.Authority;
 import org.apache.ftpserver.ftplet.FileSystemFactory;
+import org.apache.ftpserver.ftplet.FtpException;
 import org.apache.ftpserver.ftplet.FtpStatistics;
 import org.apache.ftpserver.ftplet.Ftplet;
 import org.apache.ftpserver.ftplet.UserManager;
 import org.apache.ftpserver.ftpletcontainer.FtpletContainer;
 import org.apache.ftpserver.ftpletcontainer.impl.DefaultFtpletContainer;
+import org.apache.ftpserver.ipfilter.LoginFailureTracker;
 import org.apache.ftpserver.listener.Listener;
 import org.apache.ftpserver.listener.ListenerFactory;
 import org.apache.ftpserver.message.MessageResource;
@@ -45,8 +51,13 @@ import org.apache.ftpserver.message.MessageResourceFactory;
 import org.apache.ftpserver.usermanager.PropertiesUserManagerFactory;
 import org.apache.ftpserver.usermanager.impl.BaseUser;
 import org.apache.ftpserver.usermanager.impl.ConcurrentLoginPermission;
+import org.apache.ftpserver.usermanager.impl.PropertiesUserManager;
 import org.apache.ftpserver.usermanager.impl.TransferRatePermission;
 import org.apache.ftpserver.usermanager.impl.WritePermission;
+import org.apache.ftpserver.util.BandwidthShaper;
+import org.apache.ftpserver.util.ThreadUtils;
+import org.apache.ftpserver.util.TokenBucketShaper;
+import org.apache.ftpserver.util.UserBandwidthBudgets;
 import org.apache.mina.filter.executor.OrderedThreadPoolExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -65,6 +76,8 @@ public class DefaultFtpServerContext implements FtpServerContext {
 
     private MessageResource messageResource = new MessageResourceFactory().createMessageResource();
 
+    private volatile MessageTemplateCache messageTemplateCache;
+
     private UserManager userManager = new PropertiesUserManagerFactory().createUserManager();
 
     private FileSystemFactory fileSystemManager = new NativeFileSystemFactory();
@@ -86,6 +99,48 @@ public class DefaultFtpServerContext implements FtpServerContext {
      * The thread pool executor to be used by the server using this context
      */
     private ThreadPoolExecutor threadPoolExecutor = null;
+
+    private int maxDownloadRate = 0;
+
+    private int maxUploadRate = 0;
+
+    private BandwidthShaper downloadShaper;
+
+    private BandwidthShaper uploadShaper;
+
+    private UserBandwidthBudgets userDownloadBudgets;
+
+    private UserBandwidthBudgets userUploadBudgets;
+
+    /**
+     * The default number of cached file checksums
+     */
+    public static final int DEFAULT_CHECKSUM_CACHE_SIZE = 1000;
+
+    private ChecksumCache checksumCache = new ChecksumCache(
+            DEFAULT_CHECKSUM_CACHE_SIZE);
+
+    private String[] uploadChecksumAlgorithms = new String[0];
+
+    /**
+     * The default number of files hashed at the same time by all sessions
+     */
+    public static final int DEFAULT_CHECKSUM_THREADS = 4;
+
+    /**
+     * The default number of files hashed at the same time for a session
+     */
+    public static final int DEFAULT_CHECKSUM_THREADS_PER_SESSION = 2;
+
+    private int checksumThreads = DEFAULT_CHECKSUM_THREADS;
+
+    private int checksumThreadsPerSession = DEFAULT_CHECKSUM_THREADS_PER_SESSION;
+
+    private ThreadPoolExecutor checksumExecutor = null;
+
+    private LoginFailureTracker loginFailureTracker = null;
+
+    private int slowFtpletThreshold = 0;
     
     static {
         ADMIN_AUTHORITIES.add(new WritePermission());
@@ -160,6 +215,19 @@ public class DefaultFtpServerContext implements FtpServerContext {
         return messageResource;
     }
 
+    /**
+     * Get the compiled message templates, these are compiled again if the
+     * message resource has been changed.
+     */
+    public MessageTemplateCache getMessageTemplateCache() {
+        MessageTemplateCache cache = messageTemplateCache;
+        if (cache == null || cache.getMessageResource() != messageResource) {
+            cache = new MessageTemplateCache(messageResource);
+            messageTemplateCache = cache;
+        }
+        return cache;
+    }
+
     /**
      * Get ftp statistics.
      */
@@ -197,6 +265,23 @@ public class DefaultFtpServerContext implements FtpServerContext {
      */
     public void dispose() {
         listeners.clear();
+        synchronized (this) {
+            if (checksumExecutor != null) {
+                LOG.debug("Shutting down the checksum thread pool");
+                checksumExecutor.shutdownNow();
+                checksumExecutor = null;
+            }
+        }
+        if (userManager instanceof PropertiesUserManager) {
+            try {
+                ((PropertiesUserManager) userManager).flush();
+            } catch (FtpException e) {
+                LOG.warn("Failed writing pending user data", e);
+            }
+        }
+        if (fileSystemManager instanceof NativeFileSystemFactory) {
+            ((NativeFileSystemFactory) fileSystemManager).dispose();
+        }
         ftpletContainer.getFtplets().clear();
         if (threadPoolExecutor != null) {
             LOG.debug("Shutting down the thread pool executor");
@@ -264,6 +349,24 @@ public class DefaultFtpServerContext implements FtpServerContext {
     
     public synchronized ThreadPoolExecutor getThreadPoolExecutor() {
         if(threadPoolExecutor == null) {
+            if (connectionConfig instanceof DefaultConnectionConfig
+                    && ((DefaultConnectionConfig) connectionConfig)
+                            .isVirtualThreadsEnabled()) {
+                ThreadFactory threadFactory = ThreadUtils
+                        .createVirtualThreadFactory("ftpserver-worker-");
+                if (threadFactory != null) {
+                    // a worker is only added when all others are busy, so
+                    // the number of threads follows the number of sessions
+                    // with pending requests
+                    LOG.debug("Intializing shared virtual thread executor");
+                    threadPoolExecutor = new OrderedThreadPoolExecutor(0,
+                            Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+                            threadFactory);
+                    return threadPoolExecutor;
+                }
+                LOG.warn("Virtual threads are not supported by this Java runtime, using a thread pool");
+            }
+
             int maxThreads = connectionConfig.getMaxThreads();
             if(maxThreads < 1) {
                 int maxLogins = connectionConfig.getMaxLogins();
@@ -279,4 +382,195 @@ public class DefaultFtpServerContext implements FtpServerContext {
         }
         return threadPoolExecutor;
     }
+
+    public int getMaxDownloadRate() {
+        return maxDownloadRate;
+    }
+
+    /**
+     * Set the server wide download rate in bytes per second, 0 for no limit.
+     */
+    public void setMaxDownloadRate(int maxDownloadRate) {
+        this.maxDownloadRate = maxDownloadRate;
+        downloadShaper = maxDownloadRate > 0 ? new TokenBucketShaper(
+                maxDownloadRate) : null;
+    }
+
+    public int getMaxUploadRate() {
+        return maxUploadRate;
+    }
+
+    /**
+     * Set the server wide upload rate in bytes per second, 0 for no limit.
+     */
+    public void setMaxUploadRate(int maxUploadRate) {
+        this.maxUploadRate = maxUploadRate;
+        uploadShaper = maxUploadRate > 0 ? new TokenBucketShaper(maxUploadRate)
+                : null;
+    }
+
+    public BandwidthShaper getDownloadShaper() {
+        return downloadShaper;
+    }
+
+    public BandwidthShaper getUploadShaper() {
+        return uploadShaper;
+    }
+
+    public int getMaxUserDownloadRate() {
+        return userDownloadBudgets != null ? userDownloadBudgets.getRate() : 0;
+    }
+
+    /**
+     * Set the download rate of each user over all its sessions in bytes per
+     * second, 0 for no limit.
+     */
+    public void setMaxUserDownloadRate(int maxUserDownloadRate) {
+        userDownloadBudgets = maxUserDownloadRate > 0 ? new UserBandwidthBudgets(
+                maxUserDownloadRate) : null;
+    }
+
+    public int getMaxUserUploadRate() {
+        return userUploadBudgets != null ? userUploadBudgets.getRate() : 0;
+    }
+
+    /**
+     * Set the upload rate of each user over all its sessions in bytes per
+     * second, 0 for no limit.
+     */
+    public void setMaxUserUploadRate(int maxUserUploadRate) {
+        userUploadBudgets = maxUserUploadRate > 0 ? new UserBandwidthBudgets(
+                maxUserUploadRate) : null;
+    }
+
+    public UserBandwidthBudgets getUserDownloadBudgets() {
+        return userDownloadBudgets;
+    }
+
+    public UserBandwidthBudgets getUserUploadBudgets() {
+        return userUploadBudgets;
+    }
+
+    public int getChecksumCacheSize() {
+        return checksumCache.getMaxEntries();
+    }
+
+    /**
+     * Set the number of cached file checksums, 0 to compute every checksum.
+     */
+    public void setChecksumCacheSize(int checksumCacheSize) {
+        checksumCache = new ChecksumCache(checksumCacheSize);
+    }
+
+    public ChecksumCache getChecksumCache() {
+        return checksumCache;
+    }
+
+    public String[] getUploadChecksumAlgorithms() {
+        return uploadChecksumAlgorithms;
+    }
+
+    /**
+     * Set the checksum algorithms computed while files are uploaded, empty
+     * to not compute checksums during uploads.
+     */
+    public void setUploadChecksumAlgorithms(String[] algorithms) {
+        String[] validated = new String[algorithms.length];
+        for (int i = 0; i < algorithms.length; i++) {
+            validated[i] = ChecksumCache.getAlgorithm(algorithms[i]);
+            if (validated[i] == null) {
+                throw new IllegalArgumentException(
+                        "Unsupported checksum algorithm: " + algorithms[i]);
+            }
+        }
+        uploadChecksumAlgorithms = validated;
+    }
+
+    public int getChecksumThreads() {
+        return checksumThreads;
+    }
+
+    /**
+     * Set the number of files hashed at the same time by all sessions.
+     */
+    public synchronized void setChecksumThreads(int checksumThreads) {
+        if (checksumThreads < 1) {
+            throw new IllegalArgumentException(
+                    "checksumThreads must be positive");
+        }
+        this.checksumThreads = checksumThreads;
+        if (checksumExecutor != null) {
+            if (checksumThreads > checksumExecutor.getMaximumPoolSize()) {
+                checksumExecutor.setMaximumPoolSize(checksumThreads);
+                checksumExecutor.setCorePoolSize(checksumThreads);
+            } else {
+                checksumExecutor.setCorePoolSize(checksumThreads);
+                checksumExecutor.setMaximumPoolSize(checksumThreads);
+            }
+        }
+    }
+
+    public int getChecksumThreadsPerSession() {
+        return checksumThreadsPerSession;
+    }
+
+    /**
+     * Set the number of files hashed at the same time for a session.
+     */
+    public void setChecksumThreadsPerSession(int checksumThreadsPerSession) {
+        if (checksumThreadsPerSession < 1) {
+            throw new IllegalArgumentException(
+                    "checksumThreadsPerSession must be positive");
+        }
+        this.checksumThreadsPerSession = checksumThreadsPerSession;
+    }
+
+    public synchronized ExecutorService getChecksumExecutor() {
+        if (checksumExecutor == null) {
+            LOG.debug("Intializing checksum thread pool with {} threads",
+                    checksumThreads);
+            checksumExecutor = new ThreadPoolExecutor(checksumThreads,
+                    checksumThreads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        private final AtomicInteger count = new AtomicInteger();
+
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "ftpserver-checksum-"
+                                    + count.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            checksumExecutor.allowCoreThreadTimeOut(true);
+        }
+        return checksumExecutor;
+    }
+
+    public LoginFailureTracker getLoginFailureTracker() {
+        return loginFailureTracker;
+    }
+
+    /**
+     * Set the tracker banning addresses after repeated login failures, null
+     * to not ban addresses.
+     */
+    public void setLoginFailureTracker(LoginFailureTracker loginFailureTracker) {
+        this.loginFailureTracker = loginFailureTracker;
+    }
+
+    public int getSlowFtpletThreshold() {
+        return slowFtpletThreshold;
+    }
+
+    /**
+     * Set the time in milliseconds after which an Ftplet callback is logged
+     * as slow, 0 to not log slow Ftplets.
+     */
+    public void setSlowFtpletThreshold(int slowFtpletThreshold) {
+        if (slowFtpletThreshold < 0) {
+            throw new IllegalArgumentException(
+                    "slowFtpletThreshold can not be negative");
+        }
+        this.slowFtpletThreshold = slowFtpletThreshold;
+    }
 }
@@ -21,89 +21,109 @@ package org.apache.ftpserver.impl;
 
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.ftpserver.ftplet.FtpFile;
 import org.apache.ftpserver.ftplet.User;
+import org.apache.ftpserver.util.LatencyHistogram;
 
 /**
  * <strong>Internal class, do not use directly.</strong>
  * 
  * This is FTP statistics implementation.
  * 
- * TODO revisit concurrency, right now we're a bit over zealous with both Atomic*
- * counters and synchronization
+ * The cumulative counters are striped, so that sessions updating them on
+ * different cores do not contend. The current counters are used to enforce
+ * login limits and are kept exact.
  *
  * @author <a href="http://mina.apache.org">Apache MINA Project</a>
  */
 public class DefaultFtpStatistics implements ServerFtpStatistics {
 
-    private StatisticsObserver observer = null;
+    private volatile StatisticsObserver observer = null;
 
-    private FileObserver fileObserver = null;
+    private volatile FileObserver fileObserver = null;
 
-    private Date startTime = new Date();
+    // notifies the observers one at a time
+    private final Object observerLock = new Object();
 
-    private AtomicInteger uploadCount = new AtomicInteger(0);
+    private volatile Date startTime = new Date();
 
-    private AtomicInteger downloadCount = new AtomicInteger(0);
+    private final LongAdder uploadCount = new LongAdder();
 
-    private AtomicInteger deleteCount = new AtomicInteger(0);
+    private final LongAdder downloadCount = new LongAdder();
 
-    private AtomicInteger mkdirCount = new AtomicInteger(0);
+    private final LongAdder deleteCount = new LongAdder();
 
-    private AtomicInteger rmdirCount = new AtomicInteger(0);
+    private final LongAdder mkdirCount = new LongAdder();
 
-    private AtomicInteger currLogins = new AtomicInteger(0);
+    private final LongAdder rmdirCount = new LongAdder();
 
-    private AtomicInteger totalLogins = new AtomicInteger(0);
+    private final AtomicInteger currLogins = new AtomicInteger(0);
 
-    private AtomicInteger totalFailedLogins = new AtomicInteger(0);
+    private final LongAdder totalLogins = new LongAdder();
 
-    private AtomicInteger currAnonLogins = new AtomicInteger(0);
+    private final LongAdder totalFailedLogins = new LongAdder();
 
-    private AtomicInteger totalAnonLogins = new AtomicInteger(0);
+    private final AtomicInteger currAnonLogins = new AtomicInteger(0);
 
-    private AtomicInteger currConnections = new AtomicInteger(0);
+    private final LongAdder totalAnonLogins = new LongAdder();
 
-    private AtomicInteger totalConnections = new AtomicInteger(0);
+    private final AtomicInteger currConnections = new AtomicInteger(0);
 
-    private AtomicLong bytesUpload = new AtomicLong(0L);
+    private final LongAdder totalConnections = new LongAdder();
 
-    private AtomicLong bytesDownload = new AtomicLong(0L);
+    private final LongAdder bytesUpload = new LongAdder();
+
+    private final LongAdder bytesDownload = new LongAdder();
 
     private static class UserLogins {
-        private Map<InetAddress, AtomicInteger> perAddress = new ConcurrentHashMap<InetAddress, AtomicInteger>();
+        private final ConcurrentMap<InetAddress, AtomicInteger> perAddress = new ConcurrentHashMap<InetAddress, AtomicInteger>();
 
-        public UserLogins(InetAddress address) {
-            // init with the first connection
-            totalLogins = new AtomicInteger(1);
-            perAddress.put(address, new AtomicInteger(1));
-        }
+        private final AtomicInteger totalLogins = new AtomicInteger(0);
 
         public AtomicInteger loginsFromInetAddress(InetAddress address) {
             AtomicInteger logins = perAddress.get(address);
             if (logins == null) {
-                logins = new AtomicInteger(0);
-                perAddress.put(address, logins);
+                AtomicInteger newLogins = new AtomicInteger(0);
+                logins = perAddress.putIfAbsent(address, newLogins);
+                if (logins == null) {
+                    logins = newLogins;
+                }
             }
             return logins;
         }
 
-        public AtomicInteger totalLogins;
+        public int getLoginsFromInetAddress(InetAddress address) {
+            AtomicInteger logins = perAddress.get(address);
+            return logins != null ? logins.get() : 0;
+        }
     }
 
     /**
      *The user login information.
      */
-    private Map<String, UserLogins> userLoginTable = new ConcurrentHashMap<String, UserLogins>();
+    private final ConcurrentMap<String, UserLogins> userLoginTable = new ConcurrentHashMap<String, UserLogins>();
 
     public static final String LOGIN_NUMBER = "login_number";
 
+    /**
+     * Ftplet latencies by Ftplet name and callback.
+     */
+    private final ConcurrentMap<String, ConcurrentMap<String, LatencyHistogram>> ftpletLatencies = new ConcurrentHashMap<String, ConcurrentMap<String, LatencyHistogram>>();
+
+    /**
+     * Command latencies by command and phase.
+     */
+    private final ConcurrentMap<String, ConcurrentMap<String, LatencyHistogram>> commandLatencies = new ConcurrentHashMap<String, ConcurrentMap<String, LatencyHistogram>>();
+
     /**
      * Set the observer.
      */
@@ -135,56 +155,56 @@ public class DefaultFtpStatistics implements ServerFtpStatistics {
      * Get number of files uploaded.
      */
     public int getTotalUploadNumber() {
-        return uploadCount.get();
+        return (int) uploadCount.sum();
     }
 
     /**
      * Get number of files downloaded.
      */
     public int getTotalDownloadNumber() {
-        return downloadCount.get();
+        return (int) downloadCount.sum();
     }
 
     /**
      * Get number of files deleted.
      */
     public int getTotalDeleteNumber() {
-        return deleteCount.get();
+        return (int) deleteCount.sum();
     }
 
     /**
      * Get total number of bytes uploaded.
      */
     public long getTotalUploadSize() {
-        return bytesUpload.get();
+        return bytesUpload.sum();
     }
 
     /**
      * Get total number of bytes downloaded.
      */
     public long getTotalDownloadSize() {
-        return bytesDownload.get();
+        return bytesDownload.sum();
     }
 
     /**
      * Get total directory created.
      */
     public int getTotalDirectoryCreated() {
-        return mkdirCount.get();
+        return (int) mkdirCount.sum();
     }
 
     /**
      * Get total directory removed.
      */
     public int getTotalDirectoryRemoved() {
-        return rmdirCount.get();
+        return (int) rmdirCount.sum();
     }
 
     /**
      * Get total number of connections.
      */
     public int getTotalConnectionNumber() {
-        return totalConnections.get();
+        return (int) totalConnections.sum();
     }
 
     /**
@@ -198,14 +218,14 @@ public class DefaultFtpStatistics implements ServerFtpStatistics {
      * Get total number of logins.
      */
     public int getTotalLoginNumber() {
-        return totalLogins.get();
+        return (int) totalLogins.sum();
     }
 
     /**
      * Get total failed login number.
      */
     public int getTotalFailedLoginNumber() {
-        return totalFailedLogins.get();
+        return (int) totalFailedLogins.sum();
     }
 
     /**
@@ -219,7 +239,7 @@ public class DefaultFtpStatistics implements ServerFtpStatistics {
      * Get total number of anonymous logins.
      */
     public int getTotalAnonymousLoginNumber() {
-        return totalAnonLogins.get();
+        return (int) totalAnonLogins.sum();
     }
 
     /**
@@ -232,7 +252,7 @@ public class DefaultFtpStatistics implements ServerFtpStatistics {
     /**
      * Get the login number for the specific user
      */
-    public synchronized int getCurrentUserLoginNumber(final User user) {
+    public int getCurrentUserLoginNumber(final User user) {
         UserLogins userLogins = userLoginTable.get(user.getName());
         if (userLogins == null) {// not found the login user's statistics info
             return 0;
@@ -249,13 +269,38 @@ public class DefaultFtpStatistics implements ServerFtpStatistics {
      * @param ipAddress
      *            the ip address of the remote user
      */
-    public synchronized int getCurrentUserLoginNumber(final User user,
+    public int getCurrentUserLoginNumber(final User user,
             final InetAddress ipAddress) {
         UserLogins userLogins = userLoginTable.get(user.getName());
-        if (userLogins == null) {// not found the login user's statistics info
+        if (userLogins == null || ipAddress == null) {
+            // not found the login user's statistics info
             return 0;
         } else {
-            return userLogins.loginsFromInetAddress(ipAddress).get();
+            return userLogins.getLoginsFromInetAddress(ipAddress);
+        }
+    }
+
+    /**
+     * Get the login information of a user, created if not yet present
+     */
+    private UserLogins getUserLogins(String userName) {
+        UserLogins userLogins = userLoginTable.get(userName);
+        if (userLogins == null) {
+            UserLogins newUserLogins = new UserLogins();
+            userLogins = userLoginTable.putIfAbsent(userName, newUserLogins);
+            if (userLogins == null) {
+                userLogins = newUserLogins;
+            }
+        }
+        return userLogins;
+    }
+
+    private InetAddress getRemoteAddress(final FtpIoSession session) {
+        if (session.getRemoteAddress() instanceof InetSocketAddress) {
+            return ((InetSocketAddress) session.getRemoteAddress())
+                    .getAddress();
+        } else {
+            return null;
         }
     }
 
@@ -264,106 +309,90 @@ public class DefaultFtpStatistics implements ServerFtpStatistics {
     /**
      * Increment upload count.
      */
-    public synchronized void setUpload(final FtpIoSession session,
+    public void setUpload(final FtpIoSession session,
             final FtpFile file, final long size) {
-        uploadCount.incrementAndGet();
-        bytesUpload.addAndGet(size);
+        uploadCount.increment();
+        bytesUpload.add(size);
         notifyUpload(session, file, size);
     }
 
     /**
      * Increment download count.
      */
-    public synchronized void setDownload(final FtpIoSession session,
+    public void setDownload(final FtpIoSession session,
             final FtpFile file, final long size) {
-        downloadCount.incrementAndGet();
-        bytesDownload.addAndGet(size);
+        downloadCount.increment();
+        bytesDownload.add(size);
         notifyDownload(session, file, size);
     }
 
     /**
      * Increment delete count.
      */
-    public synchronized void setDelete(final FtpIoSession session,
+    public void setDelete(final FtpIoSession session,
             final FtpFile file) {
-        deleteCount.incrementAndGet();
+        deleteCount.increment();
         notifyDelete(session, file);
     }
 
     /**
      * Increment make directory count.
      */
-    public synchronized void setMkdir(final FtpIoSession session,
+    public void setMkdir(final FtpIoSession session,
             final FtpFile file) {
-        mkdirCount.incrementAndGet();
+        mkdirCount.increment();
         notifyMkdir(session, file);
     }
 
     /**
      * Increment remove directory count.
      */
-    public synchronized void setRmdir(final FtpIoSession session,
+    public void setRmdir(final FtpIoSession session,
             final FtpFile file) {
-        rmdirCount.incrementAndGet();
+        rmdirCount.increment();
         notifyRmdir(session, file);
     }
 
     /**
      * Increment open connection count.
      */
-    public synchronized void setOpenConnection(final FtpIoSession session) {
+    public void setOpenConnection(final FtpIoSession session) {
         currConnections.incrementAndGet();
-        totalConnections.incrementAndGet();
+        totalConnections.increment();
         notifyOpenConnection(session);
     }
 
     /**
      * Decrement open connection count.
      */
-    public synchronized void setCloseConnection(final FtpIoSession session) {
-        if (currConnections.get() > 0) {
-            currConnections.decrementAndGet();
-        }
+    public void setCloseConnection(final FtpIoSession session) {
+        // never below zero, even if closed more often than opened
+        int current;
+        do {
+            current = currConnections.get();
+        } while (current > 0
+                && !currConnections.compareAndSet(current, current - 1));
         notifyCloseConnection(session);
     }
 
     /**
      * New login.
      */
-    public synchronized void setLogin(final FtpIoSession session) {
+    public void setLogin(final FtpIoSession session) {
         currLogins.incrementAndGet();
-        totalLogins.incrementAndGet();
+        totalLogins.increment();
         User user = session.getUser();
         if ("anonymous".equals(user.getName())) {
             currAnonLogins.incrementAndGet();
-            totalAnonLogins.incrementAndGet();
+            totalAnonLogins.increment();
         }
 
-        synchronized (user) {// thread safety is needed. Since the login occurrs
-            // at low frequency, this overhead is endurable
-            UserLogins statisticsTable = userLoginTable.get(user.getName());
-            if (statisticsTable == null) {
-                // the hash table that records the login information of the user
-                // and its ip address.
+        UserLogins userLogins = getUserLogins(user.getName());
+        userLogins.totalLogins.incrementAndGet();
 
-                InetAddress address = null;
-                if (session.getRemoteAddress() instanceof InetSocketAddress) {
-                    address = ((InetSocketAddress) session.getRemoteAddress())
-                            .getAddress();
-                }
-                statisticsTable = new UserLogins(address);
-                userLoginTable.put(user.getName(), statisticsTable);
-            } else {
-                statisticsTable.totalLogins.incrementAndGet();
-
-                if (session.getRemoteAddress() instanceof InetSocketAddress) {
-                    InetAddress address = ((InetSocketAddress) session
-                            .getRemoteAddress()).getAddress();
-                    statisticsTable.loginsFromInetAddress(address)
-                            .incrementAndGet();
-                }
-
-            }
+        InetAddress address = getRemoteAddress(session);
+        if (address != null) {
+            userLogins.loginsFromInetAddress(address).incrementAndGet();
         }
 
         notifyLogin(session);
@@ -372,15 +401,15 @@ public class DefaultFtpStatistics implements ServerFtpStatistics {
     /**
      * Increment failed login count.
      */
-    public synchronized void setLoginFail(final FtpIoSession session) {
-        totalFailedLogins.incrementAndGet();
+    public void setLoginFail(final FtpIoSession session) {
+        totalFailedLogins.increment();
         notifyLoginFail(session);
     }
 
     /**
      * User logout
      */
-    public synchronized void setLogout(final FtpIoSession session) {
+    public void setLogout(final FtpIoSession session) {
         User user = session.getUser();
         if (user == null) {
             return;
@@ -392,18 +421,14 @@ public class DefaultFtpStatistics implements ServerFtpStatistics {
             currAnonLogins.decrementAndGet();
         }
 
-        synchronized (user) {
-            UserLogins userLogins = userLoginTable.get(user.getName());
+        UserLogins userLogins = userLoginTable.get(user.getName());
+        if (userLogins != null) {
+            userLogins.totalLogins.decrementAndGet();
 
-            if (userLogins != null) {
-                userLogins.totalLogins.decrementAndGet();
-                if (session.getRemoteAddress() instanceof InetSocketAddress) {
-                    InetAddress address = ((InetSocketAddress) session
-                            .getRemoteAddress()).getAddress();
-                    userLogins.loginsFromInetAddress(address).decrementAndGet();
-                }
+            InetAddress address = getRemoteAddress(session);
+            if (address != null) {
+                userLogins.loginsFromInetAddress(address).decrementAndGet();
             }
-
         }
 
         notifyLogout(session);
@@ -411,19 +436,27 @@ public class DefaultFtpStatistics implements ServerFtpStatistics {
 
     // //////////////////////////////////////////////////////////
     // /////////////// all observer methods ////////////////////
+    // The counters are updated without a lock. The observers are still
+    // notified one at a time, as they were when every statistics method was
+    // synchronized, but the lock is only taken if there is an observer.
     /**
      * Observer upload notification.
      */
     private void notifyUpload(final FtpIoSession session,
             final FtpFile file, long size) {
         StatisticsObserver observer = this.observer;
-        if (observer != null) {
-            observer.notifyUpload();
+        FileObserver fileObserver = this.fileObserver;
+        if (observer == null && fileObserver == null) {
+            return;
         }
 
-        FileObserver fileObserver = this.fileObserver;
-        if (fileObserver != null) {
-            fileObserver.notifyUpload(session, file, size);
+        synchronized (observerLock) {
+            if (observer != null) {
+                observer.notifyUpload();
+            }
+            if (fileObserver != null) {
+                fileObserver.notifyUpload(session, file, size);
+            }
         }
     }
 
@@ -433,13 +466,18 @@ public class DefaultFtpStatistics implements ServerFtpStatistics {
     private void notifyDownload(final FtpIoSession session,
             final FtpFile file, final long size) {
         StatisticsObserver observer = this.observer;
-        if (observer != null) {
-            observer.notifyDownload();
+        FileObserver fileObserver = this.fileObserver;
+        if (observer == null && fileObserver == null) {
+            return;
         }
 
-        FileObserver fileObserver = this.fileObserver;
-        if (fileObserver != null) {
-            fileObserver.notifyDownload(session, file, size);
+        synchronized (observerLock) {
+            if (observer != null) {
+                observer.notifyDownload();
+            }
+            if (fileObserver != null) {
+                fileObserver.notifyDownload(session, file, size);
+            }
         }
     }
 
@@ -448,13 +486,18 @@ public class DefaultFtpStatistics implements ServerFtpStatistics {
      */
     private void notifyDelete(final FtpIoSession session, final FtpFile file) {
         StatisticsObserver observer = this.observer;
-        if (observer != null) {
-            observer.notifyDelete();
+        FileObserver fileObserver = this.fileObserver;
+        if (observer == null && fileObserver == null) {
+            return;
         }
 
-        FileObserver fileObserver = this.fileObserver;
-        if (fileObserver != null) {
-            fileObserver.notifyDelete(session, file);
+        synchronized (observerLock) {
+            if (observer != null) {
+                observer.notifyDelete();
+            }
+            if (fileObserver != null) {
+                fileObserver.notifyDelete(session, file);
+            }
         }
     }
 
@@ -463,13 +506,18 @@ public class DefaultFtpStatistics implements ServerFtpStatistics {
      */
     private void notifyMkdir(final FtpIoSession session, final FtpFile file) {
         StatisticsObserver observer = this.observer;
-        if (observer != null) {
-            observer.notifyMkdir();
+        FileObserver fileObserver = this.fileObserver;
+        if (observer == null && fileObserver == null) {
+            return;
         }
 
-        FileObserver fileObserver = this.fileObserver;
-        if (fileObserver != null) {
-            fileObserver.notifyMkdir(session, file);
+        synchronized (observerLock) {
+            if (observer != null) {
+                observer.notifyMkdir();
+            }
+            if (fileObserver != null) {
+                fileObserver.notifyMkdir(session, file);
+            }
         }
     }
 
@@ -478,13 +526,18 @@ public class DefaultFtpStatistics implements ServerFtpStatistics {
      */
     private void notifyRmdir(final FtpIoSession session, final FtpFile file) {
         StatisticsObserver observer = this.observer;
-        if (observer != null) {
-            observer.notifyRmdir();
+        FileObserver fileObserver = this.fileObserver;
+        if (observer == null && fileObserver == null) {
+            return;
         }
 
-        FileObserver fileObserver = this.fileObserver;
-        if (fileObserver != null) {
-            fileObserver.notifyRmdir(session, file);
+        synchronized (observerLock) {
+            if (observer != null) {
+                observer.notifyRmdir();
+            }
+            if (fileObserver != null) {
+                fileObserver.notifyRmdir(session, file);
+            }
         }
     }
 
@@ -493,7 +546,11 @@ public class DefaultFtpStatistics implements ServerFtpStatistics {
      */
     private void notifyOpenConnection(final FtpIoSession session) {
         StatisticsObserver observer = this.observer;
-        if (observer != null) {
+        if (observer == null) {
+            return;
+        }
+
+        synchronized (observerLock) {
             observer.notifyOpenConnection();
         }
     }
@@ -503,7 +560,11 @@ public class DefaultFtpStatistics implements ServerFtpStatistics {
      */
     private void notifyCloseConnection(final FtpIoSession session) {
         StatisticsObserver observer = this.observer;
-        if (observer != null) {
+        if (observer == null) {
+            return;
+        }
+
+        synchronized (observerLock) {
             observer.notifyCloseConnection();
         }
     }
@@ -513,15 +574,19 @@ public class DefaultFtpStatistics implements ServerFtpStatistics {
      */
     private void notifyLogin(final FtpIoSession session) {
         StatisticsObserver observer = this.observer;
-        if (observer != null) {
-
-            // is anonymous login
-            User user = session.getUser();
-            boolean anonymous = false;
-            if (user != null) {
-                String login = user.getName();
-                anonymous = (login != null) && login.equals("anonymous");
-            }
+        if (observer == null) {
+            return;
+        }
+
+        // is anonymous login
+        User user = session.getUser();
+        boolean anonymous = false;
+        if (user != null) {
+            String login = user.getName();
+            anonymous = (login != null) && login.equals("anonymous");
+        }
+
+        synchronized (observerLock) {
             observer.notifyLogin(anonymous);
         }
     }
@@ -531,11 +596,14 @@ public class DefaultFtpStatistics implements ServerFtpStatistics {
      */
     private void notifyLoginFail(final FtpIoSession session) {
         StatisticsObserver observer = this.observer;
-        if (observer != null) {
-            if (session.getRemoteAddress() instanceof InetSocketAddress) {
+        if (observer == null) {
+            return;
+        }
+
+        if (session.getRemoteAddress() instanceof InetSocketAddress) {
+            synchronized (observerLock) {
                 observer.notifyLoginFail(((InetSocketAddress) session
                         .getRemoteAddress()).getAddress());
-
             }
         }
     }
@@ -545,37 +613,120 @@ public class DefaultFtpStatistics implements ServerFtpStatistics {
      */
     private void notifyLogout(final FtpIoSession session) {
         StatisticsObserver observer = this.observer;
-        if (observer != null) {
-            // is anonymous login
-            User user = session.getUser();
-            boolean anonymous = false;
-            if (user != null) {
-                String login = user.getName();
-                anonymous = (login != null) && login.equals("anonymous");
-            }
+        if (observer == null) {
+            return;
+        }
+
+        // is anonymous login
+        User user = session.getUser();
+        boolean anonymous = false;
+        if (user != null) {
+            String login = user.getName();
+            anonymous = (login != null) && login.equals("anonymous");
+        }
+
+        synchronized (observerLock) {
             observer.notifyLogout(anonymous);
         }
     }
 
+    /**
+     * Record the time an Ftplet spent in a callback.
+     */
+    public void setFtpletTime(final String ftplet, final String callback,
+            final long nanos) {
+        getHistogram(ftpletLatencies, ftplet, callback).record(nanos);
+    }
+
+    /**
+     * Get the latency histograms of the Ftplets, by Ftplet name and callback.
+     */
+    public Map<String, Map<String, LatencyHistogram>> getFtpletLatencies() {
+        return snapshot(ftpletLatencies);
+    }
+
+    /**
+     * Record the time a command spent in a phase.
+     */
+    public void setCommandTime(final String command, final String phase,
+            final long nanos) {
+        getHistogram(commandLatencies, command, phase).record(nanos);
+    }
+
+    /**
+     * Get the latency histograms of the commands, by command and phase.
+     */
+    public Map<String, Map<String, LatencyHistogram>> getCommandLatencies() {
+        return snapshot(commandLatencies);
+    }
+
+    private static LatencyHistogram getHistogram(
+            ConcurrentMap<String, ConcurrentMap<String, LatencyHistogram>> histograms,
+            String name, String type) {
+        ConcurrentMap<String, LatencyHistogram> byType = histograms.get(name);
+        if (byType == null) {
+            ConcurrentMap<String, LatencyHistogram> newByType = new ConcurrentHashMap<String, LatencyHistogram>();
+            byType = histograms.putIfAbsent(name, newByType);
+            if (byType == null) {
+                byType = newByType;
+            }
+        }
+
+        LatencyHistogram histogram = byType.get(type);
+        if (histogram == null) {
+            LatencyHistogram newHistogram = new LatencyHistogram();
+            histogram = byType.putIfAbsent(type, newHistogram);
+            if (histogram == null) {
+                histogram = newHistogram;
+            }
+        }
+        return histogram;
+    }
+
+    private static Map<String, Map<String, LatencyHistogram>> snapshot(
+            ConcurrentMap<String, ConcurrentMap<String, LatencyHistogram>> histograms) {
+        Map<String, Map<String, LatencyHistogram>> copy = new HashMap<String, Map<String, LatencyHistogram>>();
+        for (Map.Entry<String, ConcurrentMap<String, LatencyHistogram>> entry : histograms
+                .entrySet()) {
+            copy.put(entry.getKey(), Collections
+                    .unmodifiableMap(new HashMap<String, LatencyHistogram>(
+                            entry.getValue())));
+        }
+        return Collections.unmodifiableMap(copy);
+    }
+
+    private static void reset(
+            ConcurrentMap<String, ConcurrentMap<String, LatencyHistogram>> histograms) {
+        for (ConcurrentMap<String, LatencyHistogram> byType : histograms
+                .values()) {
+            for (LatencyHistogram histogram : byType.values()) {
+                histogram.reset();
+            }
+        }
+    }
+
     /**
      * Reset the cumulative counters.
      */
-    public synchronized void resetStatisticsCounters() {
+    public void resetStatisticsCounters() {
         startTime = new Date();
 
-        uploadCount.set(0);
-        downloadCount.set(0);
-        deleteCount.set(0);
+        uploadCount.reset();
+        downloadCount.reset();
+        deleteCount.reset();
+
+        mkdirCount.reset();
+        rmdirCount.reset();
 
-        mkdirCount.set(0);
-        rmdirCount.set(0);
+        totalLogins.reset();
+        totalFailedLogins.reset();
+        totalAnonLogins.reset();
+        totalConnections.reset();
 
-        totalLogins.set(0);
-        totalFailedLogins.set(0);
-        totalAnonLogins.set(0);
-        totalConnections.set(0);
+        bytesUpload.reset();
+        bytesDownload.reset();
 
-        bytesUpload.set(0);
-        bytesDownload.set(0);
+        reset(ftpletLatencies);
+        reset(commandLatencies);
     }
 }
@@ -24,7 +24,8 @@ import org.apache.ftpserver.ftplet.FtpFile;
 /**
  * <strong>Internal class, do not use directly.</strong>
  * 
- * This is the file related activity observer.
+ * This is the file related activity observer. The notifications of
+ * {@link DefaultFtpStatistics} are not concurrent.
  *
  * @author <a href="http://mina.apache.org">Apache MINA Project</a>
  */
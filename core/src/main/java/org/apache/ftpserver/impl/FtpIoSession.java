@@ -22,7 +22,10 @@ package org.apache.ftpserver.impl;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.security.cert.Certificate;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
@@ -112,6 +115,22 @@ public class FtpIoSession implements IoSession {
 	private static final String ATTRIBUTE_CACHED_REMOTE_ADDRESS = ATTRIBUTE_PREFIX
 			+ "cached-remote-address";
 
+	/**
+	 * Contains the {@link System#nanoTime()} when the oldest data not yet
+	 * picked up by a thread was received
+	 */
+	public static final String ATTRIBUTE_RECEIVED_TIME = ATTRIBUTE_PREFIX
+			+ "received-time";
+
+	/**
+	 * Contains the nanoseconds the last received data waited for a thread
+	 */
+	public static final String ATTRIBUTE_QUEUE_TIME = ATTRIBUTE_PREFIX
+			+ "queue-time";
+
+	private static final String ATTRIBUTE_COMMAND_TIMES = ATTRIBUTE_PREFIX
+			+ "command-times";
+
 	private IoSession wrappedSession;
 
 	private FtpServerContext context;
@@ -672,6 +691,49 @@ public class FtpIoSession implements IoSession {
 		}
 	}
 
+	/**
+	 * Get and clear the time the request being handled waited for a thread.
+	 * 
+	 * @return The time in nanoseconds, null if not known
+	 */
+	public Long removeQueueTime() {
+		return (Long) removeAttribute(ATTRIBUTE_QUEUE_TIME);
+	}
+
+	/**
+	 * Add time spent by the current command in a phase like authentication
+	 * or data transfer.
+	 * 
+	 * @param phase
+	 *            The phase, see {@link ServerFtpStatistics}
+	 * @param nanos
+	 *            The time in nanoseconds
+	 */
+	@SuppressWarnings("unchecked")
+	public void addCommandTime(String phase, long nanos) {
+		Map<String, Long> times = (Map<String, Long>) getAttribute(ATTRIBUTE_COMMAND_TIMES);
+		if (times == null) {
+			times = new HashMap<String, Long>();
+			setAttribute(ATTRIBUTE_COMMAND_TIMES, times);
+		}
+		Long time = times.get(phase);
+		times.put(phase, time == null ? nanos : time.longValue() + nanos);
+	}
+
+	/**
+	 * Get and clear the times added for the current command.
+	 * 
+	 * @return The times in nanoseconds by phase
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<String, Long> removeCommandTimes() {
+		Map<String, Long> times = (Map<String, Long>) removeAttribute(ATTRIBUTE_COMMAND_TIMES);
+		if (times == null) {
+			return Collections.emptyMap();
+		}
+		return times;
+	}
+
 	public void setFileOffset(long fileOffset) {
 		setAttribute(ATTRIBUTE_FILE_OFFSET, fileOffset);
 
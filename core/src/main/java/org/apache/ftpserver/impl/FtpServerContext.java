@@ -20,14 +20,18 @@
 package org.apache.ftpserver.impl;
 
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 
 import org.apache.ftpserver.ConnectionConfig;
 import org.apache.ftpserver.command.CommandFactory;
 import org.apache.ftpserver.ftplet.FtpletContext;
 import org.apache.ftpserver.ftpletcontainer.FtpletContainer;
+import org.apache.ftpserver.ipfilter.LoginFailureTracker;
 import org.apache.ftpserver.listener.Listener;
 import org.apache.ftpserver.message.MessageResource;
+import org.apache.ftpserver.util.BandwidthShaper;
+import org.apache.ftpserver.util.UserBandwidthBudgets;
 
 /**
  * <strong>Internal class, do not use directly.</strong>
@@ -46,6 +50,11 @@ public interface FtpServerContext extends FtpletContext {
      */
     MessageResource getMessageResource();
 
+    /**
+     * Get the compiled templates for the messages of the message resource.
+     */
+    MessageTemplateCache getMessageTemplateCache();
+
     /**
      * Get ftplet container.
      */
@@ -70,4 +79,66 @@ public interface FtpServerContext extends FtpletContext {
      * @return the thread pool executor for this context.
      */
     ThreadPoolExecutor getThreadPoolExecutor();
+
+    /**
+     * Get the shaper enforcing the server wide download rate.
+     * @return the shaper, or null if the download rate is not limited
+     */
+    BandwidthShaper getDownloadShaper();
+
+    /**
+     * Get the shaper enforcing the server wide upload rate.
+     * @return the shaper, or null if the upload rate is not limited
+     */
+    BandwidthShaper getUploadShaper();
+
+    /**
+     * Get the download budgets shared by all sessions of each user.
+     * @return the budgets, or null if the download rate of users is not limited
+     */
+    UserBandwidthBudgets getUserDownloadBudgets();
+
+    /**
+     * Get the upload budgets shared by all sessions of each user.
+     * @return the budgets, or null if the upload rate of users is not limited
+     */
+    UserBandwidthBudgets getUserUploadBudgets();
+
+    /**
+     * Get the cache for file checksums.
+     * @return the checksum cache
+     */
+    ChecksumCache getChecksumCache();
+
+    /**
+     * Get the checksum algorithms computed while files are uploaded.
+     * @return the algorithms, empty if no checksums are computed
+     */
+    String[] getUploadChecksumAlgorithms();
+
+    /**
+     * Get the thread pool computing checksums of multiple files, created on
+     * first use. The pool size limits the number of files hashed at the same
+     * time by all sessions.
+     * @return the checksum thread pool
+     */
+    ExecutorService getChecksumExecutor();
+
+    /**
+     * Get the maximum number of files hashed at the same time for a session.
+     * @return the number of files
+     */
+    int getChecksumThreadsPerSession();
+
+    /**
+     * Get the tracker banning addresses after repeated login failures.
+     * @return the tracker, null if addresses are not banned
+     */
+    LoginFailureTracker getLoginFailureTracker();
+
+    /**
+     * Get the time after which an Ftplet callback is logged as slow.
+     * @return the time in milliseconds, 0 if slow Ftplets are not logged
+     */
+    int getSlowFtpletThreshold();
 }
@@ -21,20 +21,31 @@ package org.apache.ftpserver.impl;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.net.Socket;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
 import java.util.zip.DeflaterOutputStream;
 import java.util.zip.InflaterInputStream;
 
+import javax.net.ssl.SSLSocket;
+
 import org.apache.ftpserver.ftplet.DataConnection;
 import org.apache.ftpserver.ftplet.DataType;
 import org.apache.ftpserver.ftplet.FtpSession;
+import org.apache.ftpserver.listener.Listener;
+import org.apache.ftpserver.listener.nio.AbstractListener;
 import org.apache.ftpserver.usermanager.impl.TransferRateRequest;
+import org.apache.ftpserver.util.BandwidthShaper;
+import org.apache.ftpserver.util.BandwidthShaperChain;
 import org.apache.ftpserver.util.IoUtils;
+import org.apache.ftpserver.util.UserBandwidthBudgets;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -54,17 +65,71 @@ public class IODataConnection implements DataConnection {
 
     private static final byte[] EOL = System.getProperty("line.separator").getBytes();
 
+    private static final int BUFFER_SIZE = 4096;
+
+    // maximum number of bytes handed to a single FileChannel.transferTo() call
+    private static final int ZERO_COPY_CHUNK_SIZE = 1024 * 1024;
+
     private FtpIoSession session;
 
     private Socket socket;
 
     private ServerDataConnectionFactory factory;
 
+    private FtpServerContext serverContext;
+
     public IODataConnection(final Socket socket, final FtpIoSession session,
             final ServerDataConnectionFactory factory) {
+        this(socket, session, factory, null);
+    }
+
+    public IODataConnection(final Socket socket, final FtpIoSession session,
+            final ServerDataConnectionFactory factory,
+            final FtpServerContext serverContext) {
         this.session = session;
         this.socket = socket;
         this.factory = factory;
+        this.serverContext = serverContext;
+    }
+
+    /**
+     * Get the shaper for a transfer, combining the limit of the transfer with
+     * the budgets shared by all sessions of the user, the listener and the
+     * server.
+     *
+     * @return The shaper, or null if the transfer is not limited
+     */
+    private BandwidthShaper getShaper(final BandwidthShaper transferShaper,
+            final BandwidthShaper userShaper, final boolean upload) {
+        BandwidthShaper listenerShaper = null;
+        Listener listener = session.getListener();
+        if (listener instanceof AbstractListener) {
+            AbstractListener abstractListener = (AbstractListener) listener;
+            listenerShaper = upload ? abstractListener.getUploadShaper()
+                    : abstractListener.getDownloadShaper();
+        }
+
+        BandwidthShaper serverShaper = null;
+        if (serverContext != null) {
+            serverShaper = upload ? serverContext.getUploadShaper()
+                    : serverContext.getDownloadShaper();
+        }
+
+        return BandwidthShaperChain.chain(transferShaper, userShaper,
+                listenerShaper, serverShaper);
+    }
+
+    /**
+     * Get the budgets shared by all sessions of each user.
+     *
+     * @return The budgets, or null if users are not limited
+     */
+    private UserBandwidthBudgets getUserBudgets(final boolean upload) {
+        if (serverContext == null) {
+            return null;
+        }
+        return upload ? serverContext.getUserUploadBudgets() : serverContext
+                .getUserDownloadBudgets();
     }
 
     /**
@@ -126,16 +191,31 @@ public class IODataConnection implements DataConnection {
         TransferRateRequest transferRateRequest = new TransferRateRequest();
         transferRateRequest = (TransferRateRequest) session.getUser()
                 .authorize(transferRateRequest);
-        int maxRate = 0;
+        BandwidthShaper shaper = null;
         if (transferRateRequest != null) {
-            maxRate = transferRateRequest.getMaxUploadRate();
+            shaper = transferRateRequest.createUploadShaper();
+        }
+        String userName = session.getUser().getName();
+        UserBandwidthBudgets userBudgets = getUserBudgets(true);
+        BandwidthShaper userShaper = null;
+        if (userBudgets != null) {
+            userShaper = userBudgets.acquire(userName);
         }
+        shaper = getShaper(shaper, userShaper, true);
 
-        InputStream is = getDataInputStream();
+        long start = System.nanoTime();
         try {
-            return transfer(session, false, is, out, maxRate);
+            InputStream is = getDataInputStream();
+            try {
+                return transfer(session, false, is, out, shaper);
+            } finally {
+                IoUtils.close(is);
+            }
         } finally {
-            IoUtils.close(is);
+            addIoTime(start);
+            if (userBudgets != null) {
+                userBudgets.release(userName);
+            }
         }
     }
 
@@ -151,17 +231,122 @@ public class IODataConnection implements DataConnection {
         TransferRateRequest transferRateRequest = new TransferRateRequest();
         transferRateRequest = (TransferRateRequest) session.getUser()
                 .authorize(transferRateRequest);
-        int maxRate = 0;
+        BandwidthShaper shaper = null;
         if (transferRateRequest != null) {
-            maxRate = transferRateRequest.getMaxDownloadRate();
+            shaper = transferRateRequest.createDownloadShaper();
+        }
+        String userName = session.getUser().getName();
+        UserBandwidthBudgets userBudgets = getUserBudgets(false);
+        BandwidthShaper userShaper = null;
+        if (userBudgets != null) {
+            userShaper = userBudgets.acquire(userName);
         }
+        shaper = getShaper(shaper, userShaper, false);
 
-        OutputStream out = getDataOutputStream();
+        long start = System.nanoTime();
         try {
-            return transfer(session, true, in, out, maxRate);
+            OutputStream out = getDataOutputStream();
+            try {
+                FileChannel fileChannel = getZeroCopyChannel(session, in);
+                if (fileChannel != null) {
+                    return transferFile(session, fileChannel,
+                            socket.getChannel(), shaper);
+                }
+                return transfer(session, true, in, out, shaper);
+            } finally {
+                IoUtils.close(out);
+            }
         } finally {
-            IoUtils.close(out);
+            addIoTime(start);
+            if (userBudgets != null) {
+                userBudgets.release(userName);
+            }
+        }
+    }
+
+    /**
+     * Get the file channel to use for a zero-copy transfer to the client. This
+     * is only possible for plain binary transfers where the data is read
+     * directly from a file (e.g. created by
+     * {@link org.apache.ftpserver.filesystem.nativefs.impl.NativeFtpFile}) and
+     * the data socket is backed by a {@link SocketChannel}.
+     *
+     * @return The file channel, or null if the data must be copied
+     */
+    private FileChannel getZeroCopyChannel(FtpSession session,
+            final InputStream in) {
+        if (session.getDataType() == DataType.ASCII || factory.isZipMode()) {
+            return null;
+        }
+        if (!(in instanceof FileInputStream) || socket instanceof SSLSocket
+                || socket.getChannel() == null) {
+            return null;
+        }
+        return ((FileInputStream) in).getChannel();
+    }
+
+    /**
+     * Send a file to the client using {@link FileChannel#transferTo}, which
+     * lets the operating system move the data to the socket without copying
+     * it through the Java heap.
+     */
+    private final long transferFile(FtpSession session,
+            final FileChannel in, final SocketChannel out,
+            final BandwidthShaper shaper) throws IOException {
+        long transferredSize = 0L;
+
+        try {
+            DefaultFtpSession defaultFtpSession = null;
+            if (session instanceof DefaultFtpSession) {
+                defaultFtpSession = (DefaultFtpSession) session;
+            }
+
+            long position = in.position();
+            while (true) {
+
+                // wait until the shaper allows us to send the next chunk, using
+                // the same chunk size as copying transfers so that transfers
+                // sharing a budget get the same share
+                int chunkSize = ZERO_COPY_CHUNK_SIZE;
+                if (shaper != null) {
+                    try {
+                        chunkSize = shaper.acquire(BUFFER_SIZE);
+                    } catch (InterruptedException ex) {
+                        break;
+                    }
+                }
+
+                // the target is a blocking channel, so nothing being
+                // transferred means we have reached the end of the file
+                long count = in.transferTo(position, chunkSize, out);
+                if (shaper != null && count < chunkSize) {
+                    shaper.release((int) (chunkSize - Math.max(count, 0)));
+                }
+                if (count <= 0) {
+                    break;
+                }
+                position += count;
+
+                // update MINA session
+                if (defaultFtpSession != null) {
+                    defaultFtpSession.increaseWrittenDataBytes((int) count);
+                }
+
+                transferredSize += count;
+
+                notifyObserver();
+            }
+        } catch(IOException e) {
+            LOG.warn("Exception during data transfer, closing data connection socket", e);
+            factory.closeDataConnection();
+            throw e;
+        } catch(RuntimeException e) {
+            LOG.warn("Exception during data transfer, closing data connection socket", e);
+            factory.closeDataConnection();
+            throw e;
         }
+
+        return transferredSize;
     }
 
     /*
@@ -173,34 +358,98 @@ public class IODataConnection implements DataConnection {
      */
     public final void transferToClient(FtpSession session, final String str)
             throws IOException {
-        OutputStream out = getDataOutputStream();
-        Writer writer = null;
+        long start = System.nanoTime();
         try {
-            writer = new OutputStreamWriter(out, "UTF-8");
-            writer.write(str);
-
-            // update session
-            if (session instanceof DefaultFtpSession) {
-                ((DefaultFtpSession) session).increaseWrittenDataBytes(str
-                        .getBytes("UTF-8").length);
+            OutputStream out = getDataOutputStream();
+            try {
+                byte[] bytes = str.getBytes("UTF-8");
+                out.write(bytes);
+
+                // update session
+                if (session instanceof DefaultFtpSession) {
+                    ((DefaultFtpSession) session)
+                            .increaseWrittenDataBytes(bytes.length);
+                }
+            } finally {
+                out.flush();
+                IoUtils.close(out);
             }
         } finally {
-            if (writer != null) {
-                writer.flush();
-            }
-            IoUtils.close(writer);
+            addIoTime(start);
         }
+    }
+
+    /**
+     * Add the time of a transfer to the I/O time of the current command.
+     */
+    private void addIoTime(long start) {
+        if (session != null) {
+            session.addCommandTime(ServerFtpStatistics.COMMAND_TIME_IO,
+                    System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Get a writer sending UTF-8 encoded text to the client while it is being
+     * written, e.g. a directory listing. Closing the writer ends the transfer
+     * and adds the time since the writer was opened to the I/O time of the
+     * current command.
+     * 
+     * @param session
+     *            The current session, the written bytes are added to it
+     * @return The writer
+     * @throws IOException
+     */
+    public final Writer getClientWriter(FtpSession session) throws IOException {
+        final DefaultFtpSession defaultFtpSession = session instanceof DefaultFtpSession ? (DefaultFtpSession) session
+                : null;
+        final long start = System.nanoTime();
+
+        // OutputStreamWriter encodes into a buffer of its own, the stream
+        // only sees larger chunks
+        OutputStream out = new FilterOutputStream(getDataOutputStream()) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                count(1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                count(len);
+            }
+
+            private boolean closed;
 
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    if (!closed) {
+                        closed = true;
+                        addIoTime(start);
+                    }
+                }
+            }
+
+            private void count(int len) {
+                if (defaultFtpSession != null) {
+                    defaultFtpSession.increaseWrittenDataBytes(len);
+                }
+            }
+        };
+        return new OutputStreamWriter(out, "UTF-8");
     }
 
     private final long transfer(FtpSession session, boolean isWrite,
-            final InputStream in, final OutputStream out, final int maxRate)
-            throws IOException {
+            final InputStream in, final OutputStream out,
+            final BandwidthShaper shaper) throws IOException {
         long transferredSize = 0L;
 
         boolean isAscii = session.getDataType() == DataType.ASCII;
-        long startTime = System.currentTimeMillis();
-        byte[] buff = new byte[4096];
+        byte[] buff = new byte[BUFFER_SIZE];
 
         BufferedInputStream bis = null;
         BufferedOutputStream bos = null;
@@ -217,30 +466,21 @@ public class IODataConnection implements DataConnection {
             byte lastByte = 0;
             while (true) {
 
-                // if current rate exceeds the max rate, sleep for 50ms
-                // and again check the current transfer rate
-                if (maxRate > 0) {
-
-                    // prevent "divide by zero" exception
-                    long interval = System.currentTimeMillis() - startTime;
-                    if (interval == 0) {
-                        interval = 1;
-                    }
-
-                    // check current rate
-                    long currRate = (transferredSize * 1000L) / interval;
-                    if (currRate > maxRate) {
-                        try {
-                            Thread.sleep(50);
-                        } catch (InterruptedException ex) {
-                            break;
-                        }
-                        continue;
+                // wait until the shaper allows us to read the next chunk
+                int readSize = buff.length;
+                if (shaper != null) {
+                    try {
+                        readSize = shaper.acquire(readSize);
+                    } catch (InterruptedException ex) {
+                        break;
                     }
                 }
 
                 // read data
-                int count = bis.read(buff);
+                int count = bis.read(buff, 0, readSize);
+                if (shaper != null && count < readSize) {
+                    shaper.release(readSize - Math.max(count, 0));
+                }
 
                 if (count == -1) {
                     break;
@@ -19,12 +19,15 @@
 
 package org.apache.ftpserver.impl;
 
+import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketAddress;
 import java.net.UnknownHostException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSocket;
@@ -72,6 +75,8 @@ public class IODataConnectionFactory implements ServerDataConnectionFactory {
 
     private boolean isZip = false;
 
+    private boolean pooledServSoc = false;
+
     InetAddress serverControlAddress;
 
     FtpIoSession session;
@@ -103,7 +108,14 @@ public class IODataConnectionFactory implements ServerDataConnectionFactory {
         }
 
         // close server socket if any
-        if (servSoc != null) {
+        if (servSoc != null && pooledServSoc) {
+            // keep it listening for the next PASV command
+            ((DefaultDataConnectionConfiguration) session.getListener()
+                    .getDataConnectionConfiguration())
+                    .releasePassiveServerSocket(servSoc);
+            pooledServSoc = false;
+            servSoc = null;
+        } else if (servSoc != null) {
             try {
                 servSoc.close();
             } catch (Exception ex) {
@@ -171,7 +183,12 @@ public class IODataConnectionFactory implements ServerDataConnectionFactory {
             DataConnectionConfiguration dataCfg = session.getListener().getDataConnectionConfiguration();
 
             passivePort = 0;
-            if (dataCfg.getServerSocketFactory() == null) {
+            // the pool is not part of the public configuration interface
+            boolean usePool = dataCfg instanceof DefaultDataConnectionConfiguration
+                    && dataCfg.getServerSocketFactory() == null
+                    && ((DefaultDataConnectionConfiguration) dataCfg)
+                            .getPassiveSocketPoolSize() > 0;
+            if (dataCfg.getServerSocketFactory() == null && !usePool) {
                 // get the passive port
                 passivePort = session.getListener().getDataConnectionConfiguration().requestPassivePort();
                 if (passivePort == -1) {
@@ -188,7 +205,20 @@ public class IODataConnectionFactory implements ServerDataConnectionFactory {
                 address = resolveAddress(dataCfg.getPassiveAddress());
             }
 
-            if (secure) {
+            if (usePool) {
+                // a pooled socket is a plain socket, SSL data connections are
+                // wrapped in createDataSocket() just like below
+                servSoc = ((DefaultDataConnectionConfiguration) dataCfg)
+                        .requestPassiveServerSocket(address);
+                if (servSoc == null) {
+                    throw new DataConnectionException("Cannot find an available passive port.");
+                }
+                pooledServSoc = true;
+                LOG
+                        .debug(
+                                "Pooled passive data connection on address \"{}\" and port {}",
+                                address, servSoc.getLocalPort());
+            } else if (secure) {
                 LOG
                         .debug(
                                 "Opening SSL passive data connection on address \"{}\" and port {}",
@@ -219,7 +249,7 @@ public class IODataConnectionFactory implements ServerDataConnectionFactory {
                 if(dataCfg.getServerSocketFactory()!=null)
                     servSoc = dataCfg.getServerSocketFactory().createServerSocket(passivePort, 0, address);
                 else
-                servSoc = new ServerSocket(passivePort, 0, address);
+                servSoc = createChannelServerSocket(passivePort, address);
                 LOG
                         .debug(
                                 "Passive data connection created on address \"{}\" and port {}",
@@ -234,7 +264,9 @@ public class IODataConnectionFactory implements ServerDataConnectionFactory {
 
             return new InetSocketAddress(address, port);
         } catch (Exception ex) {
-            servSoc = null;
+            if (!pooledServSoc) {
+                servSoc = null;
+            }
             closeDataConnection();
             throw new DataConnectionException(
                     "Failed to initate passive data connection: "
@@ -266,7 +298,8 @@ public class IODataConnectionFactory implements ServerDataConnectionFactory {
      * @see org.apache.ftpserver.FtpDataConnectionFactory2#openConnection()
      */
     public DataConnection openConnection() throws Exception {
-        return new IODataConnection(createDataSocket(), session, this);
+        return new IODataConnection(createDataSocket(), session, this,
+                serverContext);
     }
 
     /**
@@ -376,7 +409,8 @@ public class IODataConnectionFactory implements ServerDataConnectionFactory {
                         }
 
                     } else {
-                        dataSoc = new Socket();
+                        // backed by a channel so that binary downloads can use zero-copy transfers
+                        dataSoc = SocketChannel.open().socket();
                         dataSoc.setReuseAddress(true);
 
                         dataSoc.bind(localSocketAddress);
@@ -469,6 +503,25 @@ public class IODataConnectionFactory implements ServerDataConnectionFactory {
         return dataSoc;
     }
 
+    /**
+     * Create a plain passive server socket backed by a {@link ServerSocketChannel}.
+     * Sockets accepted from it expose a {@link SocketChannel} which allows
+     * {@link IODataConnection} to send files using zero-copy transfers.
+     */
+    private ServerSocket createChannelServerSocket(int port, InetAddress bindAddress)
+            throws IOException {
+        ServerSocket serverSocket = ServerSocketChannel.open().socket();
+        try {
+            // java.net.ServerSocket enables this by default on most platforms
+            serverSocket.setReuseAddress(true);
+            serverSocket.bind(new InetSocketAddress(bindAddress, port), 0);
+        } catch (IOException ex) {
+            serverSocket.close();
+            throw ex;
+        }
+        return serverSocket;
+    }
+
     /*
      *  (non-Javadoc)
      *   Returns an InetAddress object from a hostname or IP address.
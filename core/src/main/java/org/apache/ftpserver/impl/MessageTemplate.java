@@ -0,0 +1,434 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ftpserver.impl;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ftpserver.ftplet.FileSystemView;
+import org.apache.ftpserver.ftplet.FtpRequest;
+import org.apache.ftpserver.ftplet.FtpStatistics;
+import org.apache.ftpserver.util.DateUtils;
+
+/**
+ * <strong>Internal class, do not use directly.</strong>
+ * 
+ * A reply message compiled into literal text and variables. Variables are
+ * written as <code>{name}</code>, see {@link LocalizedFtpReply} for the
+ * supported names. Unknown variables are replaced by an empty string.
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class MessageTemplate {
+
+    private static final Map<String, Variable> VARIABLES = new HashMap<String, Variable>();
+
+    private static final ThreadLocal<StringBuilder> BUILDER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(128);
+        }
+    };
+
+    // do not keep huge builders around
+    private static final int MAX_BUILDER_CAPACITY = 8192;
+
+    private final String message;
+
+    // literals.length == variables.length + 1
+    private final String[] literals;
+
+    private final Variable[] variables;
+
+    private MessageTemplate(String message, String[] literals,
+            Variable[] variables) {
+        this.message = message;
+        this.literals = literals;
+        this.variables = variables;
+    }
+
+    /**
+     * Compile a message
+     * 
+     * @param message
+     *            The message, null is treated as an empty message
+     * @return The compiled template
+     */
+    public static MessageTemplate compile(String message) {
+        if (message == null) {
+            message = "";
+        }
+
+        List<String> literals = new ArrayList<String>();
+        List<Variable> variables = new ArrayList<Variable>();
+
+        // unknown variables are folded into the literal text
+        StringBuilder literal = new StringBuilder();
+
+        // same rules as always: stop at the first '}' that comes before
+        // the next '{'
+        int startIndex = 0;
+        while (true) {
+            int openIndex = message.indexOf('{', startIndex);
+            if (openIndex == -1) {
+                break;
+            }
+            int closeIndex = message.indexOf('}', startIndex);
+            if ((closeIndex == -1) || (openIndex > closeIndex)) {
+                break;
+            }
+
+            literal.append(message, startIndex, openIndex);
+            Variable variable = VARIABLES.get(message.substring(
+                    openIndex + 1, closeIndex));
+            if (variable != null) {
+                literals.add(literal.toString());
+                literal.setLength(0);
+                variables.add(variable);
+            }
+
+            startIndex = closeIndex + 1;
+        }
+
+        if (variables.isEmpty() && startIndex == 0) {
+            return new MessageTemplate(message, null, null);
+        }
+
+        literal.append(message, startIndex, message.length());
+        literals.add(literal.toString());
+
+        if (variables.isEmpty()) {
+            return new MessageTemplate(literal.toString(), null, null);
+        } else {
+            return new MessageTemplate(null, literals
+                    .toArray(new String[literals.size()]), variables
+                    .toArray(new Variable[variables.size()]));
+        }
+    }
+
+    /**
+     * Does the message contain any variables?
+     * 
+     * @return true if the message is the same every time it is rendered
+     */
+    public boolean isConstant() {
+        return message != null;
+    }
+
+    /**
+     * Render the message
+     * 
+     * @param session
+     *            The current session
+     * @param request
+     *            The current request, might be null
+     * @param context
+     *            The server context
+     * @param code
+     *            The reply code
+     * @param basicMsg
+     *            The message used for the output.msg variable
+     * @return The message with all variables replaced
+     */
+    public String render(FtpIoSession session, FtpRequest request,
+            FtpServerContext context, int code, String basicMsg) {
+        if (message != null) {
+            return message;
+        }
+
+        StringBuilder sb = BUILDER.get();
+        if (sb.capacity() > MAX_BUILDER_CAPACITY) {
+            sb = new StringBuilder(128);
+            BUILDER.set(sb);
+        }
+        sb.setLength(0);
+
+        sb.append(literals[0]);
+        for (int i = 0; i < variables.length; i++) {
+            String value = variables[i].getValue(session, request, context,
+                    code, basicMsg);
+            if (value != null) {
+                sb.append(value);
+            }
+            sb.append(literals[i + 1]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Resolves the value of a single variable, null values are rendered as an
+     * empty string
+     */
+    private static abstract class Variable {
+        public abstract String getValue(FtpIoSession session,
+                FtpRequest request, FtpServerContext context, int code,
+                String basicMsg);
+    }
+
+    /**
+     * A variable depending on the request only
+     */
+    private static abstract class RequestVariable extends Variable {
+        public String getValue(FtpIoSession session, FtpRequest request,
+                FtpServerContext context, int code, String basicMsg) {
+            if (request == null) {
+                return null;
+            }
+            return getValue(request);
+        }
+
+        protected abstract String getValue(FtpRequest request);
+    }
+
+    /**
+     * A variable depending on the local address of the session only
+     */
+    private static abstract class ServerVariable extends Variable {
+        public String getValue(FtpIoSession session, FtpRequest request,
+                FtpServerContext context, int code, String basicMsg) {
+            SocketAddress localSocketAddress = session.getLocalAddress();
+            if (localSocketAddress instanceof InetSocketAddress) {
+                return getValue((InetSocketAddress) localSocketAddress);
+            }
+            return null;
+        }
+
+        protected abstract String getValue(InetSocketAddress address);
+    }
+
+    /**
+     * A variable depending on the server statistics only
+     */
+    private static abstract class StatisticalVariable extends Variable {
+        public String getValue(FtpIoSession session, FtpRequest request,
+                FtpServerContext context, int code, String basicMsg) {
+            return getValue(context.getFtpStatistics());
+        }
+
+        protected abstract String getValue(FtpStatistics stat);
+    }
+
+    static {
+        // client variables
+        VARIABLES.put(LocalizedFtpReply.CLIENT_IP, new Variable() {
+            public String getValue(FtpIoSession session, FtpRequest request,
+                    FtpServerContext context, int code, String basicMsg) {
+                if (session.getRemoteAddress() instanceof InetSocketAddress) {
+                    InetSocketAddress remoteSocketAddress = (InetSocketAddress) session
+                            .getRemoteAddress();
+                    return remoteSocketAddress.getAddress().getHostAddress();
+                }
+                return null;
+            }
+        });
+        VARIABLES.put(LocalizedFtpReply.CLIENT_CON_TIME, new Variable() {
+            public String getValue(FtpIoSession session, FtpRequest request,
+                    FtpServerContext context, int code, String basicMsg) {
+                return DateUtils.getISO8601Date(session.getCreationTime());
+            }
+        });
+        VARIABLES.put(LocalizedFtpReply.CLIENT_LOGIN_NAME, new Variable() {
+            public String getValue(FtpIoSession session, FtpRequest request,
+                    FtpServerContext context, int code, String basicMsg) {
+                if (session.getUser() != null) {
+                    return session.getUser().getName();
+                }
+                return null;
+            }
+        });
+        VARIABLES.put(LocalizedFtpReply.CLIENT_LOGIN_TIME, new Variable() {
+            public String getValue(FtpIoSession session, FtpRequest request,
+                    FtpServerContext context, int code, String basicMsg) {
+                return DateUtils.getISO8601Date(session.getLoginTime()
+                        .getTime());
+            }
+        });
+        VARIABLES.put(LocalizedFtpReply.CLIENT_ACCESS_TIME, new Variable() {
+            public String getValue(FtpIoSession session, FtpRequest request,
+                    FtpServerContext context, int code, String basicMsg) {
+                return DateUtils.getISO8601Date(session.getLastAccessTime()
+                        .getTime());
+            }
+        });
+        VARIABLES.put(LocalizedFtpReply.CLIENT_HOME, new Variable() {
+            public String getValue(FtpIoSession session, FtpRequest request,
+                    FtpServerContext context, int code, String basicMsg) {
+                return session.getUser().getHomeDirectory();
+            }
+        });
+        VARIABLES.put(LocalizedFtpReply.CLIENT_DIR, new Variable() {
+            public String getValue(FtpIoSession session, FtpRequest request,
+                    FtpServerContext context, int code, String basicMsg) {
+                FileSystemView fsView = session.getFileSystemView();
+                if (fsView != null) {
+                    try {
+                        return fsView.getWorkingDirectory().getAbsolutePath();
+                    } catch (Exception ex) {
+                        return "";
+                    }
+                }
+                return null;
+            }
+        });
+
+        // output variables
+        VARIABLES.put(LocalizedFtpReply.OUTPUT_CODE, new Variable() {
+            public String getValue(FtpIoSession session, FtpRequest request,
+                    FtpServerContext context, int code, String basicMsg) {
+                return String.valueOf(code);
+            }
+        });
+        VARIABLES.put(LocalizedFtpReply.OUTPUT_MSG, new Variable() {
+            public String getValue(FtpIoSession session, FtpRequest request,
+                    FtpServerContext context, int code, String basicMsg) {
+                return basicMsg;
+            }
+        });
+
+        // request variables
+        VARIABLES.put(LocalizedFtpReply.REQUEST_LINE, new RequestVariable() {
+            protected String getValue(FtpRequest request) {
+                return request.getRequestLine();
+            }
+        });
+        VARIABLES.put(LocalizedFtpReply.REQUEST_CMD, new RequestVariable() {
+            protected String getValue(FtpRequest request) {
+                return request.getCommand();
+            }
+        });
+        VARIABLES.put(LocalizedFtpReply.REQUEST_ARG, new RequestVariable() {
+            protected String getValue(FtpRequest request) {
+                return request.getArgument();
+            }
+        });
+
+        // server variables
+        VARIABLES.put(LocalizedFtpReply.SERVER_IP, new ServerVariable() {
+            protected String getValue(InetSocketAddress address) {
+                InetAddress addr = address.getAddress();
+                if (addr != null) {
+                    return addr.getHostAddress();
+                }
+                return null;
+            }
+        });
+        VARIABLES.put(LocalizedFtpReply.SERVER_PORT, new ServerVariable() {
+            protected String getValue(InetSocketAddress address) {
+                return String.valueOf(address.getPort());
+            }
+        });
+
+        // statistical variables
+        VARIABLES.put(LocalizedFtpReply.STAT_START_TIME,
+                new StatisticalVariable() {
+                    protected String getValue(FtpStatistics stat) {
+                        return DateUtils.getISO8601Date(stat.getStartTime()
+                                .getTime());
+                    }
+                });
+        VARIABLES.put(LocalizedFtpReply.STAT_CON_TOTAL,
+                new StatisticalVariable() {
+                    protected String getValue(FtpStatistics stat) {
+                        return String.valueOf(stat.getTotalConnectionNumber());
+                    }
+                });
+        VARIABLES.put(LocalizedFtpReply.STAT_CON_CURR,
+                new StatisticalVariable() {
+                    protected String getValue(FtpStatistics stat) {
+                        return String
+                                .valueOf(stat.getCurrentConnectionNumber());
+                    }
+                });
+        VARIABLES.put(LocalizedFtpReply.STAT_LOGIN_TOTAL,
+                new StatisticalVariable() {
+                    protected String getValue(FtpStatistics stat) {
+                        return String.valueOf(stat.getTotalLoginNumber());
+                    }
+                });
+        VARIABLES.put(LocalizedFtpReply.STAT_LOGIN_CURR,
+                new StatisticalVariable() {
+                    protected String getValue(FtpStatistics stat) {
+                        return String.valueOf(stat.getCurrentLoginNumber());
+                    }
+                });
+        VARIABLES.put(LocalizedFtpReply.STAT_LOGIN_ANON_TOTAL,
+                new StatisticalVariable() {
+                    protected String getValue(FtpStatistics stat) {
+                        return String.valueOf(stat
+                                .getTotalAnonymousLoginNumber());
+                    }
+                });
+        VARIABLES.put(LocalizedFtpReply.STAT_LOGIN_ANON_CURR,
+                new StatisticalVariable() {
+                    protected String getValue(FtpStatistics stat) {
+                        return String.valueOf(stat
+                                .getCurrentAnonymousLoginNumber());
+                    }
+                });
+        VARIABLES.put(LocalizedFtpReply.STAT_FILE_UPLOAD_COUNT,
+                new StatisticalVariable() {
+                    protected String getValue(FtpStatistics stat) {
+                        return String.valueOf(stat.getTotalUploadNumber());
+                    }
+                });
+        VARIABLES.put(LocalizedFtpReply.STAT_FILE_UPLOAD_BYTES,
+                new StatisticalVariable() {
+                    protected String getValue(FtpStatistics stat) {
+                        return String.valueOf(stat.getTotalUploadSize());
+                    }
+                });
+        VARIABLES.put(LocalizedFtpReply.STAT_FILE_DOWNLOAD_COUNT,
+                new StatisticalVariable() {
+                    protected String getValue(FtpStatistics stat) {
+                        return String.valueOf(stat.getTotalDownloadNumber());
+                    }
+                });
+        VARIABLES.put(LocalizedFtpReply.STAT_FILE_DOWNLOAD_BYTES,
+                new StatisticalVariable() {
+                    protected String getValue(FtpStatistics stat) {
+                        return String.valueOf(stat.getTotalDownloadSize());
+                    }
+                });
+        VARIABLES.put(LocalizedFtpReply.STAT_FILE_DELETE_COUNT,
+                new StatisticalVariable() {
+                    protected String getValue(FtpStatistics stat) {
+                        return String.valueOf(stat.getTotalDeleteNumber());
+                    }
+                });
+        VARIABLES.put(LocalizedFtpReply.STAT_DIR_CREATE_COUNT,
+                new StatisticalVariable() {
+                    protected String getValue(FtpStatistics stat) {
+                        return String.valueOf(stat.getTotalDirectoryCreated());
+                    }
+                });
+        VARIABLES.put(LocalizedFtpReply.STAT_DIR_DELETE_COUNT,
+                new StatisticalVariable() {
+                    protected String getValue(FtpStatistics stat) {
+                        return String.valueOf(stat.getTotalDirectoryRemoved());
+                    }
+                });
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ftpserver.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.ftpserver.message.MessageResource;
+
+/**
+ * <strong>Internal class, do not use directly.</strong>
+ * 
+ * Compiled {@link MessageTemplate}s for the messages of a
+ * {@link MessageResource}, by code, sub id and language. Messages are looked
+ * up and compiled the first time they are used.
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class MessageTemplateCache {
+
+    private static final String NO_SUB_ID = "\u0000";
+
+    private final MessageResource messageResource;
+
+    // templates by sub id, different codes and languages are chained
+    private final ConcurrentMap<String, Entry> templates = new ConcurrentHashMap<String, Entry>();
+
+    /**
+     * Create a cache
+     * 
+     * @param messageResource
+     *            The message resource, might be null
+     */
+    public MessageTemplateCache(MessageResource messageResource) {
+        this.messageResource = messageResource;
+    }
+
+    /**
+     * Get the message resource the templates are compiled from
+     * 
+     * @return The message resource
+     */
+    public MessageResource getMessageResource() {
+        return messageResource;
+    }
+
+    /**
+     * Get the compiled template for a message
+     * 
+     * @param code
+     *            The reply code
+     * @param subId
+     *            The sub id, might be null
+     * @param language
+     *            The language, might be null
+     * @return The template, an empty template if there is no such message
+     */
+    public MessageTemplate getTemplate(int code, String subId, String language) {
+        String key = subId == null ? NO_SUB_ID : subId;
+
+        while (true) {
+            Entry head = templates.get(key);
+            for (Entry entry = head; entry != null; entry = entry.next) {
+                if (entry.code == code && equals(entry.language, language)) {
+                    return entry.template;
+                }
+            }
+
+            String message = null;
+            if (messageResource != null) {
+                message = messageResource.getMessage(code, subId, language);
+            }
+            Entry entry = new Entry(code, language, MessageTemplate
+                    .compile(message), head);
+
+            boolean added;
+            if (head == null) {
+                added = templates.putIfAbsent(key, entry) == null;
+            } else {
+                added = templates.replace(key, head, entry);
+            }
+            if (added) {
+                return entry.template;
+            }
+            // another template was added at the same time, try again
+        }
+    }
+
+    private static boolean equals(String s1, String s2) {
+        return s1 == null ? s2 == null : s1.equals(s2);
+    }
+
+    private static class Entry {
+
+        private final int code;
+
+        private final String language;
+
+        private final MessageTemplate template;
+
+        private final Entry next;
+
+        public Entry(int code, String language, MessageTemplate template,
+                Entry next) {
+            this.code = code;
+            this.language = language;
+            this.template = template;
+            this.next = next;
+        }
+    }
+}
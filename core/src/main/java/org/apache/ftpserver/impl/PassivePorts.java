@@ -21,12 +21,12 @@ package org.apache.ftpserver.impl;
 
 import java.io.IOException;
 import java.net.ServerSocket;
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Random;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,6 +37,11 @@ import org.slf4j.LoggerFactory;
  * Provides support for parsing a passive ports string as well as keeping track
  * of reserved passive ports.
  *
+ * The configured ports are kept in a sorted array, with a bitmap marking the
+ * reserved ones. Ports are reserved and released by atomically flipping their
+ * bit, so no lock is needed and a reservation only looks at the bitmap words
+ * following a random starting point.
+ *
  * @author <a href="http://mina.apache.org">Apache MINA Project</a>
  */
 public class PassivePorts {
@@ -45,17 +50,17 @@ public class PassivePorts {
 
     private static final int MAX_PORT = 65535;
 
-    private static final Integer MAX_PORT_INTEGER = Integer.valueOf(MAX_PORT);
-
-    private Set<Integer> freeList;
+    // all configured ports, sorted
+    private final int[] ports;
 
-    private Set<Integer> usedList;
+    // one bit per entry in ports, set if the port is reserved
+    private final AtomicLongArray reserved;
 
-    private Random r = new Random();
+    private final Random r = new Random();
 
     private String passivePortsString;
 
-    private boolean checkIfBound;
+    private final boolean checkIfBound;
 
     /**
      * Parse a string containing passive ports
@@ -66,34 +71,34 @@ public class PassivePorts {
      *            123,124,125) or ranges of ports, including open ended ranges
      *            (e.g. 123-125, 30000-, -1023). Combinations for single ports
      *            and ranges is also supported.
-     * @return A list of Integer objects, based on the parsed string
+     * @return The set of parsed ports
      * @throws IllegalArgumentException
      *             If any of of the ports in the string is invalid (e.g. not an
      *             integer or too large for a port number)
      */
-    private static Set<Integer> parse(final String portsString) {
-        Set<Integer> passivePortsList = new HashSet<Integer>();
+    private static BitSet parse(final String portsString) {
+        BitSet passivePortsList = new BitSet(MAX_PORT + 1);
 
         boolean inRange = false;
-        Integer lastPort = Integer.valueOf(1);
+        int lastPort = 1;
         StringTokenizer st = new StringTokenizer(portsString, ",;-", true);
         while (st.hasMoreTokens()) {
             String token = st.nextToken().trim();
 
             if (",".equals(token) || ";".equals(token)) {
                 if (inRange) {
-                    fillRange(passivePortsList, lastPort, MAX_PORT_INTEGER);
+                    fillRange(passivePortsList, lastPort, MAX_PORT);
                 }
 
                 // reset state
-                lastPort = Integer.valueOf(1);
+                lastPort = 1;
                 inRange = false;
             } else if ("-".equals(token)) {
                 inRange = true;
             } else if (token.length() == 0) {
                 // ignore whitespace
             } else {
-                Integer port = Integer.valueOf(token);
+                int port = Integer.parseInt(token);
 
                 verifyPort(port);
 
@@ -104,14 +109,14 @@ public class PassivePorts {
                     inRange = false;
                 }
 
-                addPort(passivePortsList, port);
+                passivePortsList.set(port);
 
                 lastPort = port;
             }
         }
 
         if (inRange) {
-            fillRange(passivePortsList, lastPort, MAX_PORT_INTEGER);
+            fillRange(passivePortsList, lastPort, MAX_PORT);
         }
 
         return passivePortsList;
@@ -120,19 +125,12 @@ public class PassivePorts {
     /**
      * Fill a range of ports
      */
-    private static void fillRange(final Set<Integer> passivePortsList, final Integer beginPort, final Integer endPort) {
-        for (int i = beginPort; i <= endPort; i++) {
-            addPort(passivePortsList, Integer.valueOf(i));
+    private static void fillRange(final BitSet passivePortsList, final int beginPort, final int endPort) {
+        if (beginPort <= endPort) {
+            passivePortsList.set(beginPort, endPort + 1);
         }
     }
 
-    /**
-     * Add a single port if not already in list
-     */
-    private static void addPort(final Set<Integer> passivePortsList, final Integer port) {
-        passivePortsList.add(port);
-    }
-
     /**
      * Verify that the port is within the range of allowed ports
      */
@@ -144,22 +142,52 @@ public class PassivePorts {
         }
     }
 
+    /**
+     * Get the ports as a sorted array
+     */
+    private static int[] toArray(final BitSet passivePorts) {
+        int[] array = new int[passivePorts.cardinality()];
+        int i = 0;
+        for (int port = passivePorts.nextSetBit(0); port >= 0; port = passivePorts
+                .nextSetBit(port + 1)) {
+            array[i++] = port;
+        }
+        return array;
+    }
+
+    /**
+     * Get the ports as a sorted array
+     */
+    private static int[] toArray(final Set<Integer> passivePorts) {
+        if (passivePorts == null) {
+            throw new NullPointerException("passivePorts can not be null");
+        }
+
+        BitSet ports = new BitSet(MAX_PORT + 1);
+        for (Integer port : passivePorts) {
+            verifyPort(port);
+            ports.set(port);
+        }
+        return toArray(ports);
+    }
+
     public PassivePorts(final String passivePorts, boolean checkIfBound) {
-        this(parse(passivePorts), checkIfBound);
+        this(toArray(parse(passivePorts)), checkIfBound);
 
         this.passivePortsString = passivePorts;
     }
 
     public PassivePorts(Set<Integer> passivePorts, boolean checkIfBound) {
-        if (passivePorts == null) {
-            throw new NullPointerException("passivePorts can not be null");
-        } else if(passivePorts.isEmpty()) {
-        	passivePorts = new HashSet<Integer>();
-        	passivePorts.add(0);
+        this(toArray(passivePorts), checkIfBound);
+    }
+
+    private PassivePorts(int[] passivePorts, boolean checkIfBound) {
+        if (passivePorts.length == 0) {
+            passivePorts = new int[] { 0 };
         }
 
-        this.freeList = new HashSet<Integer>(passivePorts);
-        this.usedList = new HashSet<Integer>(passivePorts.size());
+        this.ports = passivePorts;
+        this.reserved = new AtomicLongArray((passivePorts.length + 63) >>> 6);
 
         this.checkIfBound = checkIfBound;
     }
@@ -167,7 +195,7 @@ public class PassivePorts {
     /**
      * Checks that the port of not bound by another application
      */
-    private boolean checkPortUnbound(int port) {
+    private boolean checkPortUnbound(int port, boolean checkIfBound) {
         // is this check disabled?
         if (!checkIfBound) {
             return true;
@@ -198,44 +226,75 @@ public class PassivePorts {
         }
     }
 
-    public synchronized int reserveNextPort() {
-    	// create a copy of the free ports, so that we can keep track of the tested ports
-    	List<Integer> freeCopy = new ArrayList<Integer>(freeList);
-    	
-        // Loop until we have found a port, or exhausted all available ports
-        while (freeCopy.size() > 0) {
-            // Otherwise, pick one at random
-            int i = r.nextInt(freeCopy.size());
-            Integer ret = freeCopy.get(i);
-
-            if (ret == 0) {
-                // "Any" port should not be removed from our free list,
-                // nor added to the used list
-                return 0;
-
-            } else if (checkPortUnbound(ret)) {
-                // Not used by someone else, so lets reserve it and return it
-                freeList.remove(ret);
-                usedList.add(ret);
-                return ret;
+    public int reserveNextPort() {
+        return reserveNextPort(checkIfBound);
+    }
 
-            } else {
-            	freeCopy.remove(ret);
-                // log port unavailable, but left in pool
-                log.warn("Passive port in use by another process: " + ret);
+    /**
+     * Reserve the next free port. Callers that bind the returned port
+     * themselves right away can pass <code>false</code> to skip the extra
+     * test bind, a failed bind then tells them the port is in use.
+     *
+     * @param checkIfBound
+     *            true if the port should be checked for other listeners
+     * @return The reserved port, 0 for any port or -1 if no port is free
+     */
+    public int reserveNextPort(boolean checkIfBound) {
+        int words = reserved.length();
+
+        // start at a random port and walk through the bitmap once, wrapping
+        // around to the bits before the start position at the end
+        int startIndex = r.nextInt(ports.length);
+        int startWord = startIndex >>> 6;
+        long startMask = -1L << (startIndex & 63);
+
+        for (int w = 0; w <= words; w++) {
+            int wordIndex = (startWord + w) % words;
+
+            long candidates = ~reserved.get(wordIndex) & getValidMask(wordIndex);
+            if (w == 0) {
+                candidates &= startMask;
+            } else if (w == words) {
+                candidates &= ~startMask;
+            }
+
+            while (candidates != 0) {
+                long bit = Long.lowestOneBit(candidates);
+                candidates &= ~bit;
+
+                int port = ports[(wordIndex << 6) + Long.numberOfTrailingZeros(bit)];
+                if (port == 0) {
+                    // "Any" port should never be reserved
+                    return 0;
+
+                } else if (!setBit(wordIndex, bit)) {
+                    // reserved by another thread in the meantime
+
+                } else if (checkPortUnbound(port, checkIfBound)) {
+                    // Not used by someone else, so lets reserve it and return it
+                    return port;
+
+                } else {
+                    clearBit(wordIndex, bit);
+                    // log port unavailable, but left in pool
+                    log.warn("Passive port in use by another process: " + port);
+                }
             }
         }
 
         return -1;
     }
 
-    public synchronized void releasePort(final int port) {
+    public void releasePort(final int port) {
+        int index = Arrays.binarySearch(ports, port);
+
         if (port == 0) {
             // Ignore port 0 being released,
-            // since its not put on the used list
+            // since its never reserved
 
-        } else if (usedList.remove(port)) {
-            freeList.add(port);
+        } else if (index >= 0
+                && clearBit(index >>> 6, 1L << (index & 63))) {
+            // released
 
         } else {
             // log attempt to release unused port
@@ -243,6 +302,46 @@ public class PassivePorts {
         }
     }
 
+    /**
+     * Get the bits of the word that map to configured ports
+     */
+    private long getValidMask(int wordIndex) {
+        int remaining = ports.length - (wordIndex << 6);
+        return remaining >= 64 ? -1L : (1L << remaining) - 1;
+    }
+
+    /**
+     * Atomically set a bit
+     * @return false if the bit was already set
+     */
+    private boolean setBit(int wordIndex, long bit) {
+        while (true) {
+            long word = reserved.get(wordIndex);
+            if ((word & bit) != 0) {
+                return false;
+            }
+            if (reserved.compareAndSet(wordIndex, word, word | bit)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Atomically clear a bit
+     * @return false if the bit was not set
+     */
+    private boolean clearBit(int wordIndex, long bit) {
+        while (true) {
+            long word = reserved.get(wordIndex);
+            if ((word & bit) == 0) {
+                return false;
+            }
+            if (reserved.compareAndSet(wordIndex, word, word & ~bit)) {
+                return true;
+            }
+        }
+    }
+
     @Override
     public String toString() {
         if (passivePortsString != null) {
@@ -251,7 +350,7 @@ public class PassivePorts {
 
         StringBuilder sb = new StringBuilder();
 
-        for (Integer port : freeList) {
+        for (int port : ports) {
             sb.append(port);
             sb.append(",");
         }
@@ -260,4 +359,4 @@ public class PassivePorts {
         return sb.toString();
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,290 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ftpserver.impl;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <strong>Internal class, do not use directly.</strong>
+ *
+ * Pool of bound and listening passive server sockets. Sockets are taken from
+ * the configured passive ports and handed back to the pool when the data
+ * connection is closed, so that a PASV command usually does not need to bind
+ * a new socket. Idle sockets keep their passive port reserved.
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class PassiveServerSocketPool {
+
+    private final Logger LOG = LoggerFactory
+            .getLogger(PassiveServerSocketPool.class);
+
+    private final PassivePorts passivePorts;
+
+    private final int maxIdle;
+
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    // idle sockets by bind address, a null address is stored under ANY
+    private final ConcurrentMap<InetAddress, Queue<ServerSocket>> idleSockets = new ConcurrentHashMap<InetAddress, Queue<ServerSocket>>();
+
+    // bind address and reserved passive port of every socket owned by the pool
+    private final ConcurrentMap<ServerSocket, Reservation> reservations = new ConcurrentHashMap<ServerSocket, Reservation>();
+
+    private static final InetAddress ANY;
+
+    static {
+        try {
+            ANY = InetAddress.getByAddress(new byte[4]);
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Create a pool
+     *
+     * @param passivePorts
+     *            The passive ports the sockets are bound to
+     * @param maxIdle
+     *            The maximum number of idle sockets kept in the pool
+     */
+    public PassiveServerSocketPool(PassivePorts passivePorts, int maxIdle) {
+        if (maxIdle <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive");
+        }
+        this.passivePorts = passivePorts;
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Get the maximum number of idle sockets kept in the pool
+     * @return The pool size
+     */
+    public int getMaxIdle() {
+        return maxIdle;
+    }
+
+    /**
+     * Get the number of idle sockets currently kept in the pool
+     * @return The number of idle sockets
+     */
+    public int getIdleCount() {
+        return idleCount.get();
+    }
+
+    /**
+     * Get a listening server socket bound to the given address. An idle
+     * socket from the pool is used if available, otherwise a new socket is
+     * bound to the next free passive port.
+     *
+     * @param address
+     *            The address to bind to, null for all addresses
+     * @return The server socket, or null if no passive port is available
+     * @throws IOException
+     */
+    public ServerSocket acquire(InetAddress address) throws IOException {
+        Queue<ServerSocket> queue = idleSockets.get(key(address));
+        if (queue != null) {
+            ServerSocket serverSocket;
+            while ((serverSocket = queue.poll()) != null) {
+                idleCount.decrementAndGet();
+
+                try {
+                    // connections made while the socket was idle were
+                    // meant for an earlier data connection
+                    discardPendingConnections(serverSocket);
+                    return serverSocket;
+                } catch (IOException e) {
+                    LOG.debug("Discarding broken pooled passive socket", e);
+                    close(serverSocket);
+                }
+            }
+        }
+
+        return bind(address);
+    }
+
+    /**
+     * Return a socket acquired from this pool. The socket is closed instead
+     * if the pool is full.
+     *
+     * @param serverSocket
+     *            The server socket
+     */
+    public void release(ServerSocket serverSocket) {
+        Reservation reservation = reservations.get(serverSocket);
+        if (reservation == null) {
+            LOG.warn("Releasing passive socket not owned by the pool: {}",
+                    serverSocket);
+            return;
+        }
+
+        if (serverSocket.isClosed()) {
+            close(serverSocket);
+            return;
+        }
+
+        if (idleCount.incrementAndGet() > maxIdle) {
+            idleCount.decrementAndGet();
+            close(serverSocket);
+            return;
+        }
+
+        InetAddress address = reservation.address;
+        Queue<ServerSocket> queue = idleSockets.get(address);
+        if (queue == null) {
+            Queue<ServerSocket> newQueue = new ConcurrentLinkedQueue<ServerSocket>();
+            queue = idleSockets.putIfAbsent(address, newQueue);
+            if (queue == null) {
+                queue = newQueue;
+            }
+        }
+        queue.offer(serverSocket);
+    }
+
+    /**
+     * Close all idle sockets and release their passive ports. The pool can
+     * still be used afterwards.
+     */
+    public void closeIdle() {
+        List<ServerSocket> sockets = new ArrayList<ServerSocket>();
+        for (Queue<ServerSocket> queue : idleSockets.values()) {
+            ServerSocket serverSocket;
+            while ((serverSocket = queue.poll()) != null) {
+                idleCount.decrementAndGet();
+                sockets.add(serverSocket);
+            }
+        }
+
+        for (Iterator<ServerSocket> iter = sockets.iterator(); iter.hasNext();) {
+            close(iter.next());
+        }
+    }
+
+    /**
+     * Bind a new socket to the next free passive port. Ports that turn out
+     * to be in use are kept reserved until a port has been found, so that
+     * they are not picked again.
+     */
+    private ServerSocket bind(InetAddress address) throws IOException {
+        List<Integer> busyPorts = new ArrayList<Integer>();
+        try {
+            while (true) {
+                // the bind below tells us whether the port is in use, no
+                // need for an extra test bind
+                int port = passivePorts.reserveNextPort(false);
+                if (port == -1) {
+                    return null;
+                }
+
+                ServerSocket serverSocket = ServerSocketChannel.open().socket();
+                try {
+                    serverSocket.setReuseAddress(true);
+                    serverSocket.bind(new InetSocketAddress(address, port), 0);
+                } catch (IOException e) {
+                    try {
+                        serverSocket.close();
+                    } catch (IOException e2) {
+                        // ignore
+                    }
+
+                    if (port == 0) {
+                        throw e;
+                    }
+                    LOG.warn("Passive port in use by another process: " + port);
+                    busyPorts.add(port);
+                    continue;
+                }
+
+                reservations.put(serverSocket, new Reservation(key(address), port));
+                return serverSocket;
+            }
+        } finally {
+            for (Iterator<Integer> iter = busyPorts.iterator(); iter.hasNext();) {
+                passivePorts.releasePort(iter.next());
+            }
+        }
+    }
+
+    /**
+     * Accept and close connections queued on an idle socket.
+     */
+    private void discardPendingConnections(ServerSocket serverSocket)
+            throws IOException {
+        ServerSocketChannel channel = serverSocket.getChannel();
+        channel.configureBlocking(false);
+        try {
+            SocketChannel pending;
+            while ((pending = channel.accept()) != null) {
+                LOG.debug("Closing stale passive data connection from {}",
+                        pending.socket().getRemoteSocketAddress());
+                pending.close();
+            }
+        } finally {
+            channel.configureBlocking(true);
+        }
+    }
+
+    private void close(ServerSocket serverSocket) {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close passive socket", e);
+        }
+
+        Reservation reservation = reservations.remove(serverSocket);
+        if (reservation != null) {
+            passivePorts.releasePort(reservation.port);
+        }
+    }
+
+    private InetAddress key(InetAddress address) {
+        return address == null ? ANY : address;
+    }
+
+    private static class Reservation {
+
+        private final InetAddress address;
+
+        private final int port;
+
+        public Reservation(InetAddress address, int port) {
+            this.address = address;
+            this.port = port;
+        }
+    }
+}
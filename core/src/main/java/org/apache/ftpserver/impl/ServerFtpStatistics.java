@@ -19,8 +19,11 @@
 
 package org.apache.ftpserver.impl;
 
+import java.util.Map;
+
 import org.apache.ftpserver.ftplet.FtpFile;
 import org.apache.ftpserver.ftplet.FtpStatistics;
+import org.apache.ftpserver.util.LatencyHistogram;
 
 /**
  * <strong>Internal class, do not use directly.</strong>
@@ -32,6 +35,32 @@ import org.apache.ftpserver.ftplet.FtpStatistics;
  */
 public interface ServerFtpStatistics extends FtpStatistics {
 
+    /**
+     * Time a command waited for a thread
+     */
+    String COMMAND_TIME_QUEUE = "queue";
+
+    /**
+     * Time spent in Ftplets for a command
+     */
+    String COMMAND_TIME_FTPLET = "ftplet";
+
+    /**
+     * Time spent authenticating the user
+     */
+    String COMMAND_TIME_AUTH = "auth";
+
+    /**
+     * Time spent transferring data over the data connection
+     */
+    String COMMAND_TIME_IO = "io";
+
+    /**
+     * Time from the start to the end of handling a command, without the time
+     * waiting for a thread
+     */
+    String COMMAND_TIME_TOTAL = "total";
+
     /**
      * Set statistics observer.
      */
@@ -92,6 +121,26 @@ public interface ServerFtpStatistics extends FtpStatistics {
      */
     void setLogout(FtpIoSession session);
 
+    /**
+     * Record the time an Ftplet spent in a callback.
+     */
+    void setFtpletTime(String ftplet, String callback, long nanos);
+
+    /**
+     * Get the latency histograms of the Ftplets, by Ftplet name and callback.
+     */
+    Map<String, Map<String, LatencyHistogram>> getFtpletLatencies();
+
+    /**
+     * Record the time a command spent in a phase.
+     */
+    void setCommandTime(String command, String phase, long nanos);
+
+    /**
+     * Get the latency histograms of the commands, by command and phase.
+     */
+    Map<String, Map<String, LatencyHistogram>> getCommandLatencies();
+
     /**
      * Reset all cumulative total counters. Do not reset current counters, like
      * current logins, otherwise these will become negative when someone
@@ -24,7 +24,8 @@ import java.net.InetAddress;
 /**
  * <strong>Internal class, do not use directly.</strong>
  * 
- * FTP statistics observer interface.
+ * FTP statistics observer interface. {@link DefaultFtpStatistics} calls
+ * the observer from one thread at a time.
  *
  * @author <a href="http://mina.apache.org">Apache MINA Project</a>
  */
@@ -0,0 +1,372 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ftpserver.ipfilter;
+
+import java.net.InetAddress;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks failed logins per IP address and temporarily bans addresses with
+ * too many failures. Used as an <code>IpFilter</code>, connections from
+ * banned addresses are closed before they reach the FTP handler.
+ * 
+ * Every failed login adds one to the failure count of the address, and the
+ * count continuously decays at a rate of the maximum number of failures per
+ * failure window. An address is banned when its count reaches the maximum:
+ * right away for a burst of that many failures, or eventually when it keeps
+ * failing faster than the decay rate. This is not a sliding window, an
+ * address failing evenly at or below the decay rate is never banned, for
+ * example 10 failures spread over 60 seconds with a maximum of 10 failures
+ * per 60 seconds. Bans expire after the ban time. Successful logins reset the
+ * count.
+ * 
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ * 
+ */
+public class LoginFailureTracker implements IpFilter {
+
+	/**
+	 * The default failure window in seconds
+	 */
+	public static final int DEFAULT_FAILURE_WINDOW = 60;
+
+	/**
+	 * The default ban time in seconds
+	 */
+	public static final int DEFAULT_BAN_TIME = 600;
+
+	/**
+	 * Number of failed logins between checks for stale entries
+	 */
+	private static final int PURGE_INTERVAL = 256;
+
+	/**
+	 * Logger
+	 */
+	private final Logger LOGGER = LoggerFactory.getLogger(LoginFailureTracker.class);
+
+	private final int maxFailures;
+
+	private final int failureWindow;
+
+	private final int banTime;
+
+	private final ConcurrentMap<InetAddress, Failures> failures = new ConcurrentHashMap<InetAddress, Failures>();
+
+	/**
+	 * expiry time of the bans, in milliseconds
+	 */
+	private final ConcurrentMap<InetAddress, Long> bans = new ConcurrentHashMap<InetAddress, Long>();
+
+	private final AtomicInteger failuresSincePurge = new AtomicInteger();
+
+	/**
+	 * Creates a new instance of <code>LoginFailureTracker</code> with the
+	 * default failure window and ban time.
+	 * 
+	 * @param maxFailures
+	 *            the failure count at which an address is banned, also the
+	 *            number of failures that decay per failure window
+	 */
+	public LoginFailureTracker(int maxFailures) {
+		this(maxFailures, DEFAULT_FAILURE_WINDOW, DEFAULT_BAN_TIME);
+	}
+
+	/**
+	 * Creates a new instance of <code>LoginFailureTracker</code>.
+	 * 
+	 * @param maxFailures
+	 *            the failure count at which an address is banned, also the
+	 *            number of failures that decay per failure window
+	 * @param failureWindow
+	 *            the time in seconds in which <code>maxFailures</code>
+	 *            failures decay
+	 * @param banTime
+	 *            the time in seconds an address stays banned
+	 */
+	public LoginFailureTracker(int maxFailures, int failureWindow, int banTime) {
+		if (maxFailures <= 0) {
+			throw new IllegalArgumentException(
+				"Maximum number of login failures must be positive");
+		}
+		if (failureWindow <= 0) {
+			throw new IllegalArgumentException(
+				"Failure window must be positive");
+		}
+		if (banTime <= 0) {
+			throw new IllegalArgumentException("Ban time must be positive");
+		}
+		this.maxFailures = maxFailures;
+		this.failureWindow = failureWindow;
+		this.banTime = banTime;
+	}
+
+	/**
+	 * Returns the failure count at which an address is banned. This is also
+	 * the number of failures that decay per failure window.
+	 * 
+	 * @return the maximum failure count
+	 */
+	public int getMaxFailures() {
+		return maxFailures;
+	}
+
+	/**
+	 * Returns the failure window, the time in which the maximum number of
+	 * failures decay.
+	 * 
+	 * @return the failure window in seconds
+	 */
+	public int getFailureWindow() {
+		return failureWindow;
+	}
+
+	/**
+	 * Returns the time an address stays banned.
+	 * 
+	 * @return the ban time in seconds
+	 */
+	public int getBanTime() {
+		return banTime;
+	}
+
+	/**
+	 * Records a failed login from the given address, and bans the address if
+	 * it has failed too often.
+	 * 
+	 * @param address
+	 *            the address of the client
+	 * @return <code>true</code> if the address has been banned by this
+	 *         failure
+	 */
+	public boolean loginFailed(InetAddress address) {
+		if (address == null) {
+			return false;
+		}
+		long now = currentTimeMillis();
+		if (failuresSincePurge.incrementAndGet() >= PURGE_INTERVAL) {
+			failuresSincePurge.set(0);
+			purge(now);
+		}
+
+		Failures addressFailures = failures.get(address);
+		if (addressFailures == null) {
+			Failures newFailures = new Failures(now);
+			addressFailures = failures.putIfAbsent(address, newFailures);
+			if (addressFailures == null) {
+				addressFailures = newFailures;
+			}
+		}
+
+		boolean exceeded;
+		synchronized (addressFailures) {
+			// rounded up, failures in quick succession have already decayed
+			// by a fraction
+			exceeded = Math.ceil(addressFailures.add(now)) >= maxFailures;
+		}
+		if (!exceeded) {
+			return false;
+		}
+
+		failures.remove(address, addressFailures);
+		bans.put(address, now + banTime * 1000L);
+		LOGGER.warn("Banning {} for {} seconds after repeated login failures",
+			address, banTime);
+		return true;
+	}
+
+	/**
+	 * Records a successful login from the given address, which resets its
+	 * failure count. Anonymous logins are not recorded, otherwise a client
+	 * could reset its failure count without knowing any password.
+	 * 
+	 * @param address
+	 *            the address of the client
+	 */
+	public void loginSucceeded(InetAddress address) {
+		if (address != null) {
+			failures.remove(address);
+		}
+	}
+
+	/**
+	 * Returns the current, decayed, number of failed logins of the given
+	 * address.
+	 * 
+	 * @param address
+	 *            the address of the client
+	 * @return the number of failed logins
+	 */
+	public int getFailureCount(InetAddress address) {
+		Failures addressFailures = failures.get(address);
+		if (addressFailures == null) {
+			return 0;
+		}
+		synchronized (addressFailures) {
+			return (int) Math.ceil(addressFailures.get(currentTimeMillis()));
+		}
+	}
+
+	/**
+	 * Tells whether the given address is currently banned.
+	 * 
+	 * @param address
+	 *            the address to check
+	 * @return <code>true</code> if the address is banned
+	 */
+	public boolean isBanned(InetAddress address) {
+		Long expires = bans.get(address);
+		if (expires == null) {
+			return false;
+		}
+		if (expires.longValue() <= currentTimeMillis()) {
+			bans.remove(address, expires);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Bans the given address for the given time, replacing any current ban.
+	 * 
+	 * @param address
+	 *            the address to ban
+	 * @param seconds
+	 *            the ban time in seconds
+	 */
+	public void ban(InetAddress address, int seconds) {
+		bans.put(address, currentTimeMillis() + seconds * 1000L);
+	}
+
+	/**
+	 * Lifts the ban of the given address, and resets its failure count.
+	 * 
+	 * @param address
+	 *            the address
+	 * @return <code>true</code> if the address was banned
+	 */
+	public boolean unban(InetAddress address) {
+		failures.remove(address);
+		return bans.remove(address) != null;
+	}
+
+	/**
+	 * Lifts all bans and resets all failure counts.
+	 */
+	public void clear() {
+		bans.clear();
+		failures.clear();
+	}
+
+	/**
+	 * Returns the currently banned addresses.
+	 * 
+	 * @return the banned addresses, with the time their ban expires
+	 */
+	public Map<InetAddress, Date> getBans() {
+		long now = currentTimeMillis();
+		Map<InetAddress, Date> current = new HashMap<InetAddress, Date>();
+		for (Map.Entry<InetAddress, Long> ban : bans.entrySet()) {
+			if (ban.getValue().longValue() > now) {
+				current.put(ban.getKey(), new Date(ban.getValue().longValue()));
+			}
+		}
+		return current;
+	}
+
+	public boolean accept(InetAddress address) {
+		if (isBanned(address)) {
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug(
+					"Denying connection from {} because it is banned after repeated login failures",
+					new Object[] { address });
+			}
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * The current time, may be overridden for tests.
+	 * 
+	 * @return the current time in milliseconds
+	 */
+	protected long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+	/**
+	 * Remove expired bans and failure counts decayed to zero, so that
+	 * addresses seen once are not kept forever.
+	 */
+	private void purge(long now) {
+		for (Iterator<Map.Entry<InetAddress, Long>> iter = bans.entrySet()
+			.iterator(); iter.hasNext();) {
+			if (iter.next().getValue().longValue() <= now) {
+				iter.remove();
+			}
+		}
+		for (Iterator<Failures> iter = failures.values().iterator(); iter
+			.hasNext();) {
+			Failures addressFailures = iter.next();
+			synchronized (addressFailures) {
+				if (addressFailures.get(now) <= 0) {
+					iter.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Decaying failure count of an address.
+	 */
+	private class Failures {
+
+		private double count;
+
+		private long lastUpdate;
+
+		public Failures(long now) {
+			lastUpdate = now;
+		}
+
+		public double get(long now) {
+			double decay = (now - lastUpdate) * (double) maxFailures
+				/ (failureWindow * 1000L);
+			return Math.max(0, count - decay);
+		}
+
+		public double add(long now) {
+			count = get(now) + 1;
+			lastUpdate = now;
+			return count;
+		}
+	}
+}
@@ -0,0 +1,594 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ftpserver.ipfilter;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ftpserver.util.IoUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Implementation of the <code>IpFilter</code> interface for large numbers of
+ * IP addresses and CIDR subnets. The subnets are kept in a path compressed
+ * binary radix tree per address family, so that checking an address takes
+ * time proportional to the address length, independent of the number of
+ * subnets. Adding and removing subnets only changes the path to the subnet,
+ * and checks run concurrently with changes without locking.
+ * 
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ * 
+ */
+public class RadixTreeIpFilter implements IpFilter {
+
+	/**
+	 * Logger
+	 */
+	private final Logger LOGGER = LoggerFactory.getLogger(RadixTreeIpFilter.class);
+
+	/**
+	 * filter type
+	 */
+	private volatile IpFilterType type;
+
+	/**
+	 * root of the IPv4 subnets, a zero length prefix
+	 */
+	private final Node ipv4Root = new Node(new byte[4], 0, false);
+
+	/**
+	 * root of the IPv6 subnets, a zero length prefix
+	 */
+	private final Node ipv6Root = new Node(new byte[16], 0, false);
+
+	/**
+	 * number of subnets, guarded by this
+	 */
+	private volatile int size;
+
+	/**
+	 * Creates a new instance of <code>RadixTreeIpFilter</code>.
+	 * 
+	 * @param type
+	 *            the filter type
+	 */
+	public RadixTreeIpFilter(IpFilterType type) {
+		this.type = type;
+	}
+
+	/**
+	 * Creates a new instance of <code>RadixTreeIpFilter</code>.
+	 * 
+	 * @param type
+	 *            the filter type
+	 * @param addresses
+	 *            a comma, space, tab, LF separated list of IP addresses/CIDRs.
+	 * @throws UnknownHostException
+	 *             propagated
+	 * @throws NumberFormatException
+	 *             propagated
+	 */
+	public RadixTreeIpFilter(IpFilterType type, String addresses)
+		throws NumberFormatException, UnknownHostException {
+		this(type);
+		if (addresses != null) {
+			addAll(addresses);
+		}
+	}
+
+	/**
+	 * Returns the type of this filter.
+	 * 
+	 * @return the type of this filter.
+	 */
+	public IpFilterType getType() {
+		return type;
+	}
+
+	/**
+	 * Sets the type of this filter.
+	 * 
+	 * @param type
+	 *            the type of this filter.
+	 */
+	public void setType(IpFilterType type) {
+		this.type = type;
+	}
+
+	/**
+	 * Returns the number of subnets in this filter.
+	 * 
+	 * @return the number of subnets
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Tells whether this filter contains no subnets.
+	 * 
+	 * @return <code>true</code> if the filter is empty
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Removes all subnets from this filter.
+	 */
+	public synchronized void clear() {
+		ipv4Root.terminal = false;
+		ipv4Root.zero = null;
+		ipv4Root.one = null;
+		ipv6Root.terminal = false;
+		ipv6Root.zero = null;
+		ipv6Root.one = null;
+		size = 0;
+	}
+
+	/**
+	 * Adds the given string representation of InetAddress or CIDR notation to
+	 * this filter. An address without prefix length is added as a single
+	 * host.
+	 * 
+	 * @param str
+	 *            the string representation of InetAddress or CIDR notation
+	 * @return <code>true</code>, if the given element was added to the
+	 *         filter; <code>false</code>, if the element already exists in
+	 *         the filter.
+	 * @throws NumberFormatException
+	 *             propagated
+	 * @throws UnknownHostException
+	 *             propagated
+	 */
+	public boolean add(String str) throws NumberFormatException,
+		UnknownHostException {
+		// a blank string would be resolved to the loopback address
+		if (str.trim().length() < 1) {
+			throw new IllegalArgumentException("Invalid IP Address or Subnet: "
+				+ str);
+		}
+		String[] tokens = str.trim().split("/");
+		InetAddress address = InetAddress.getByName(tokens[0]);
+		if (tokens.length == 2) {
+			return add(address, Integer.parseInt(tokens[1]));
+		}
+		else {
+			return add(address, address.getAddress().length * 8);
+		}
+	}
+
+	/**
+	 * Adds the given subnet to this filter. Bits of the address beyond the
+	 * prefix length are ignored.
+	 * 
+	 * @param address
+	 *            the subnet address
+	 * @param prefixLength
+	 *            the number of leading bits of the address that must match
+	 * @return <code>true</code>, if the given subnet was added to the
+	 *         filter; <code>false</code>, if the subnet already exists in
+	 *         the filter.
+	 */
+	public synchronized boolean add(InetAddress address, int prefixLength) {
+		byte[] key = mask(address.getAddress(), prefixLength);
+		Node node = root(key);
+
+		while (true) {
+			// the prefix of node is a prefix of the key, and not longer
+			if (node.prefixLength == prefixLength) {
+				if (node.terminal) {
+					return false;
+				}
+				node.terminal = true;
+				size++;
+				return true;
+			}
+
+			int bit = bitAt(key, node.prefixLength);
+			Node child = node.getChild(bit);
+			if (child == null) {
+				node.setChild(bit, new Node(key, prefixLength, true));
+				size++;
+				return true;
+			}
+
+			int common = commonPrefixLength(child.key, key, Math.min(
+				child.prefixLength, prefixLength));
+			if (common == child.prefixLength) {
+				node = child;
+				continue;
+			}
+
+			// the new nodes are completed before being linked into the tree,
+			// so that lookups never see a half built path
+			Node inserted;
+			if (common == prefixLength) {
+				// the new subnet contains the child
+				inserted = new Node(key, prefixLength, true);
+				inserted.setChild(bitAt(child.key, prefixLength), child);
+			}
+			else {
+				inserted = new Node(mask(key, common), common, false);
+				inserted.setChild(bitAt(key, common), new Node(key,
+					prefixLength, true));
+				inserted.setChild(bitAt(child.key, common), child);
+			}
+			node.setChild(bit, inserted);
+			size++;
+			return true;
+		}
+	}
+
+	/**
+	 * Adds all IP addresses and CIDRs in the given string.
+	 * 
+	 * @param addresses
+	 *            a comma, space, tab, LF separated list of IP addresses/CIDRs.
+	 * @return the number of subnets added
+	 * @throws UnknownHostException
+	 *             propagated
+	 * @throws NumberFormatException
+	 *             propagated
+	 */
+	public int addAll(String addresses) throws NumberFormatException,
+		UnknownHostException {
+		int added = 0;
+		String[] tokens = addresses.split("[\\s,]+");
+		for (String token : tokens) {
+			if (token.trim().length() > 0 && add(token)) {
+				added++;
+			}
+		}
+		return added;
+	}
+
+	/**
+	 * Adds all IP addresses and CIDRs read from the given reader. The
+	 * addresses are separated by commas or white space, everything from a
+	 * <code>#</code> to the end of the line is ignored.
+	 * 
+	 * @param reader
+	 *            the reader
+	 * @return the number of subnets added
+	 * @throws IOException
+	 *             if the reader fails, or on an invalid address
+	 */
+	public int load(Reader reader) throws IOException {
+		BufferedReader in = new BufferedReader(reader);
+		int added = 0;
+		int lineNumber = 0;
+		String line;
+		while ((line = in.readLine()) != null) {
+			lineNumber++;
+			int comment = line.indexOf('#');
+			if (comment != -1) {
+				line = line.substring(0, comment);
+			}
+			try {
+				added += addAll(line);
+			}
+			catch (NumberFormatException e) {
+				throw new IOException("Invalid IP address or subnet on line "
+					+ lineNumber + ": " + line.trim(), e);
+			}
+			catch (IllegalArgumentException e) {
+				throw new IOException("Invalid IP address or subnet on line "
+					+ lineNumber + ": " + line.trim(), e);
+			}
+		}
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Loaded {} subnets, filter now contains {}", added,
+				size);
+		}
+		return added;
+	}
+
+	/**
+	 * Adds all IP addresses and CIDRs read from the given file, see
+	 * {@link #load(Reader)}.
+	 * 
+	 * @param file
+	 *            the file
+	 * @return the number of subnets added
+	 * @throws IOException
+	 *             if the file can not be read, or on an invalid address
+	 */
+	public int load(File file) throws IOException {
+		Reader reader = null;
+		try {
+			reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+			return load(reader);
+		}
+		finally {
+			IoUtils.close(reader);
+		}
+	}
+
+	/**
+	 * Removes the given subnet from this filter.
+	 * 
+	 * @param address
+	 *            the subnet address
+	 * @param prefixLength
+	 *            the number of leading bits of the address that must match
+	 * @return <code>true</code>, if the subnet was removed;
+	 *         <code>false</code>, if it was not in the filter.
+	 */
+	public synchronized boolean remove(InetAddress address, int prefixLength) {
+		byte[] key = mask(address.getAddress(), prefixLength);
+		Node parent = null;
+		Node node = root(key);
+
+		while (node.prefixLength < prefixLength) {
+			Node child = node.getChild(bitAt(key, node.prefixLength));
+			if (child == null
+				|| child.prefixLength > prefixLength
+				|| commonPrefixLength(child.key, key, child.prefixLength) != child.prefixLength) {
+				return false;
+			}
+			parent = node;
+			node = child;
+		}
+
+		if (node.prefixLength != prefixLength || !node.terminal) {
+			return false;
+		}
+		node.terminal = false;
+		size--;
+
+		// drop the node if it no longer separates two subtrees
+		if (parent != null) {
+			Node zero = node.zero;
+			Node one = node.one;
+			int bit = bitAt(key, parent.prefixLength);
+			if (zero == null || one == null) {
+				parent.setChild(bit, zero != null ? zero : one);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Removes the given string representation of InetAddress or CIDR
+	 * notation from this filter.
+	 * 
+	 * @param str
+	 *            the string representation of InetAddress or CIDR notation
+	 * @return <code>true</code>, if the subnet was removed;
+	 *         <code>false</code>, if it was not in the filter.
+	 * @throws NumberFormatException
+	 *             propagated
+	 * @throws UnknownHostException
+	 *             propagated
+	 */
+	public boolean remove(String str) throws NumberFormatException,
+		UnknownHostException {
+		if (str.trim().length() < 1) {
+			throw new IllegalArgumentException("Invalid IP Address or Subnet: "
+				+ str);
+		}
+		String[] tokens = str.trim().split("/");
+		InetAddress address = InetAddress.getByName(tokens[0]);
+		if (tokens.length == 2) {
+			return remove(address, Integer.parseInt(tokens[1]));
+		}
+		else {
+			return remove(address, address.getAddress().length * 8);
+		}
+	}
+
+	/**
+	 * Returns all subnets in this filter in CIDR notation.
+	 * 
+	 * @return the subnets
+	 */
+	public synchronized List<String> getSubnets() {
+		List<String> subnets = new ArrayList<String>();
+		collect(ipv4Root, subnets);
+		collect(ipv6Root, subnets);
+		return subnets;
+	}
+
+	public boolean accept(InetAddress address) {
+		switch (type) {
+			case ALLOW: {
+				Node match = findMatch(address);
+				if (match != null) {
+					if (LOGGER.isDebugEnabled()) {
+						LOGGER.debug(
+							"Allowing connection from {} because it matches with the whitelist subnet {}",
+							new Object[] { address, match });
+					}
+					return true;
+				}
+				if (LOGGER.isDebugEnabled()) {
+					LOGGER.debug(
+						"Denying connection from {} because it does not match any of the whitelist subnets",
+						new Object[] { address });
+				}
+				return false;
+			}
+			case DENY: {
+				Node match = findMatch(address);
+				if (match != null) {
+					if (LOGGER.isDebugEnabled()) {
+						LOGGER.debug(
+							"Denying connection from {} because it matches with the blacklist subnet {}",
+							new Object[] { address, match });
+					}
+					return false;
+				}
+				if (LOGGER.isDebugEnabled()) {
+					LOGGER.debug(
+						"Allowing connection from {} because it does not match any of the blacklist subnets",
+						new Object[] { address });
+				}
+				return true;
+			}
+			default:
+				throw new RuntimeException(
+					"Unknown or unimplemented filter type: " + type);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getSubnets().toString();
+	}
+
+	/**
+	 * Find a subnet containing the address, without locking.
+	 * 
+	 * @return the node of the subnet, <code>null</code> if none matches
+	 */
+	private Node findMatch(InetAddress address) {
+		byte[] key = address.getAddress();
+		Node node = root(key);
+		int bits = key.length * 8;
+
+		while (true) {
+			if (node.terminal) {
+				return node;
+			}
+			if (node.prefixLength == bits) {
+				return null;
+			}
+			Node child = node.getChild(bitAt(key, node.prefixLength));
+			if (child == null
+				|| commonPrefixLength(child.key, key, child.prefixLength) != child.prefixLength) {
+				return null;
+			}
+			node = child;
+		}
+	}
+
+	private Node root(byte[] key) {
+		return key.length == 4 ? ipv4Root : ipv6Root;
+	}
+
+	private void collect(Node node, List<String> subnets) {
+		if (node == null) {
+			return;
+		}
+		if (node.terminal) {
+			subnets.add(node.toString());
+		}
+		collect(node.zero, subnets);
+		collect(node.one, subnets);
+	}
+
+	/**
+	 * Copy of the address with all bits beyond the prefix length cleared.
+	 */
+	private static byte[] mask(byte[] address, int prefixLength) {
+		if (prefixLength < 0 || prefixLength > address.length * 8) {
+			throw new IllegalArgumentException("Invalid prefix length: "
+				+ prefixLength);
+		}
+		byte[] masked = new byte[address.length];
+		int fullBytes = prefixLength / 8;
+		System.arraycopy(address, 0, masked, 0, fullBytes);
+		int remainingBits = prefixLength % 8;
+		if (remainingBits > 0) {
+			masked[fullBytes] = (byte) (address[fullBytes] & (0xff00 >> remainingBits));
+		}
+		return masked;
+	}
+
+	private static int bitAt(byte[] key, int index) {
+		return (key[index >> 3] >> (7 - (index & 7))) & 1;
+	}
+
+	/**
+	 * Number of equal leading bits of both keys, at most max.
+	 */
+	private static int commonPrefixLength(byte[] a, byte[] b, int max) {
+		int i = 0;
+		while (i < max) {
+			int diff = (a[i >> 3] ^ b[i >> 3]) & 0xff;
+			if (diff == 0) {
+				i += 8;
+				continue;
+			}
+			// position of the first differing bit in this byte
+			i += Integer.numberOfLeadingZeros(diff) - 24;
+			break;
+		}
+		return Math.min(i, max);
+	}
+
+	/**
+	 * A subnet, or a branch point between subnets.
+	 */
+	private static class Node {
+
+		private final byte[] key;
+
+		private final int prefixLength;
+
+		private volatile boolean terminal;
+
+		private volatile Node zero;
+
+		private volatile Node one;
+
+		public Node(byte[] key, int prefixLength, boolean terminal) {
+			this.key = key;
+			this.prefixLength = prefixLength;
+			this.terminal = terminal;
+		}
+
+		public Node getChild(int bit) {
+			return bit == 0 ? zero : one;
+		}
+
+		public void setChild(int bit, Node child) {
+			if (bit == 0) {
+				zero = child;
+			}
+			else {
+				one = child;
+			}
+		}
+
+		@Override
+		public String toString() {
+			try {
+				return InetAddress.getByAddress(key).getHostAddress() + "/"
+					+ prefixLength;
+			}
+			catch (UnknownHostException e) {
+				// can not happen, the key has a valid length
+				return String.valueOf(prefixLength);
+			}
+		}
+	}
+}
@@ -28,6 +28,7 @@ import org.apache.ftpserver.DataConnectionConfiguration;
 import org.apache.ftpserver.DataConnectionConfigurationFactory;
 import org.apache.ftpserver.FtpServerConfigurationException;
 import org.apache.ftpserver.ipfilter.IpFilter;
+import org.apache.ftpserver.listener.nio.AbstractListener;
 import org.apache.ftpserver.listener.nio.NioListener;
 import org.apache.ftpserver.ssl.SslConfiguration;
 import org.apache.mina.filter.firewall.Subnet;
@@ -69,6 +70,10 @@ public class ListenerFactory {
 
     private String listFormatType = Listener.LIST_FORMAT_TYPE_STANDARD;
 
+    private int maxDownloadRate = 0;
+
+    private int maxUploadRate = 0;
+
     /**
      * Default constructor
      */
@@ -95,6 +100,10 @@ public class ListenerFactory {
         selectorProvider = listener.getSelectorProvider();
         backlog = listener.getBacklog();
         listFormatType = listener.getListFormatType();
+        if (listener instanceof AbstractListener) {
+            maxDownloadRate = ((AbstractListener) listener).getMaxDownloadRate();
+            maxUploadRate = ((AbstractListener) listener).getMaxUploadRate();
+        }
     }
 
     /**
@@ -119,7 +128,8 @@ public class ListenerFactory {
     	}
     	else {
 	        return new NioListener(serverAddress, port, implicitSsl, ssl,
-	        	dataConnectionConfig, idleTimeout, ipFilter, selectorProvider, backlog, skipNlstFolders, listFormatType);
+	        	dataConnectionConfig, idleTimeout, ipFilter, selectorProvider, backlog, skipNlstFolders, listFormatType,
+	        	maxDownloadRate, maxUploadRate);
     	}
     }
 
@@ -367,4 +377,48 @@ public class ListenerFactory {
     {
         this.listFormatType = listFormatType;
     }
+
+    /**
+     * Get the maximum aggregate download rate of listeners created by this
+     * factory.
+     *
+     * @return The maximum download rate in bytes per second, 0 if not limited
+     */
+    public int getMaxDownloadRate() {
+        return maxDownloadRate;
+    }
+
+    /**
+     * Set the maximum aggregate download rate of listeners created by this
+     * factory. The bandwidth is shared by all sessions of the listener, in
+     * addition to the limits configured for each user.
+     *
+     * @param maxDownloadRate
+     *            The maximum download rate in bytes per second, 0 for no limit
+     */
+    public void setMaxDownloadRate(int maxDownloadRate) {
+        this.maxDownloadRate = maxDownloadRate;
+    }
+
+    /**
+     * Get the maximum aggregate upload rate of listeners created by this
+     * factory.
+     *
+     * @return The maximum upload rate in bytes per second, 0 if not limited
+     */
+    public int getMaxUploadRate() {
+        return maxUploadRate;
+    }
+
+    /**
+     * Set the maximum aggregate upload rate of listeners created by this
+     * factory. The bandwidth is shared by all sessions of the listener, in
+     * addition to the limits configured for each user.
+     *
+     * @param maxUploadRate
+     *            The maximum upload rate in bytes per second, 0 for no limit
+     */
+    public void setMaxUploadRate(int maxUploadRate) {
+        this.maxUploadRate = maxUploadRate;
+    }
 }
@@ -30,6 +30,8 @@ import org.apache.ftpserver.ipfilter.IpFilterType;
 import org.apache.ftpserver.listener.Listener;
 import org.apache.ftpserver.listener.ListenerFactory;
 import org.apache.ftpserver.ssl.SslConfiguration;
+import org.apache.ftpserver.util.BandwidthShaper;
+import org.apache.ftpserver.util.TokenBucketShaper;
 import org.apache.mina.filter.firewall.Subnet;
 
 /**
@@ -66,6 +68,14 @@ public abstract class AbstractListener implements Listener {
     private boolean skipNlstFolders = false;
 
     private String listFormatType = Listener.LIST_FORMAT_TYPE_STANDARD;
+
+    private int maxDownloadRate = 0;
+
+    private int maxUploadRate = 0;
+
+    private BandwidthShaper downloadShaper;
+
+    private BandwidthShaper uploadShaper;
 
     /**
      * @deprecated Use the constructor with IpFilter instead.
@@ -159,6 +169,24 @@ public abstract class AbstractListener implements Listener {
        this.listFormatType = listFormatType;
     }
 
+    /**
+     * Constructor for internal use, do not use directly. Instead use {@link ListenerFactory}
+     */
+    public AbstractListener(String serverAddress, int port, boolean implicitSsl,
+            SslConfiguration sslConfiguration, DataConnectionConfiguration dataConnectionConfig,
+            int idleTimeout, IpFilter ipFilter, SelectorProvider selectorProvider, int backlog,
+            boolean skipNlstFolders, String listFormatType, int maxDownloadRate, int maxUploadRate) {
+       this(serverAddress, port, implicitSsl, sslConfiguration, dataConnectionConfig, idleTimeout, ipFilter, selectorProvider, backlog, skipNlstFolders, listFormatType);
+       this.maxDownloadRate = maxDownloadRate;
+       this.maxUploadRate = maxUploadRate;
+       if (maxDownloadRate > 0) {
+           downloadShaper = new TokenBucketShaper(maxDownloadRate);
+       }
+       if (maxUploadRate > 0) {
+           uploadShaper = new TokenBucketShaper(maxUploadRate);
+       }
+    }
+
     /**
      * Creates an IpFilter that blacklists the given IP addresses and/or Subnets.
      * @param blockedAddresses the addresses to block
@@ -280,4 +308,42 @@ public abstract class AbstractListener implements Listener {
     {
         return listFormatType;
     }
+
+    /**
+     * Get the maximum aggregate download rate, in bytes per second, shared by
+     * all sessions of this listener.
+     *
+     * @return The maximum download rate, 0 if not limited
+     */
+    public int getMaxDownloadRate() {
+        return maxDownloadRate;
+    }
+
+    /**
+     * Get the maximum aggregate upload rate, in bytes per second, shared by
+     * all sessions of this listener.
+     *
+     * @return The maximum upload rate, 0 if not limited
+     */
+    public int getMaxUploadRate() {
+        return maxUploadRate;
+    }
+
+    /**
+     * Get the shaper enforcing the aggregate download rate of this listener.
+     *
+     * @return The shaper, or null if the download rate is not limited
+     */
+    public BandwidthShaper getDownloadShaper() {
+        return downloadShaper;
+    }
+
+    /**
+     * Get the shaper enforcing the aggregate upload rate of this listener.
+     *
+     * @return The shaper, or null if the upload rate is not limited
+     */
+    public BandwidthShaper getUploadShaper() {
+        return uploadShaper;
+    }
 }
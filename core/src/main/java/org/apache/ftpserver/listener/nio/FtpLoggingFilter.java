@@ -19,6 +19,7 @@
 
 package org.apache.ftpserver.listener.nio;
 
+import org.apache.ftpserver.ftplet.FtpRequest;
 import org.apache.mina.core.session.IoSession;
 import org.apache.mina.filter.logging.LogLevel;
 import org.apache.mina.filter.logging.LoggingFilter;
@@ -77,24 +78,28 @@ public class FtpLoggingFilter extends LoggingFilter {
     @Override
     public void messageReceived(NextFilter nextFilter, IoSession session,
             Object message) throws Exception {
-        String request = (String) message;
-
-        String logMessage;
-        if (maskPassword) {
-
-            if (request.trim().toUpperCase().startsWith("PASS ")) {
+        if (logger.isDebugEnabled()) {
+            String logMessage;
+            if (maskPassword && isPassword(message)) {
                 logMessage = "PASS *****";
             } else {
-                logMessage = request;
+                logMessage = message.toString();
             }
-        } else {
-            logMessage = request;
-        }
 
-        logger.debug("RECEIVED: {}", logMessage);
+            logger.debug("RECEIVED: {}", logMessage);
+        }
         nextFilter.messageReceived(session, message);
     }
 
+    private boolean isPassword(Object message) {
+        if (message instanceof FtpRequest) {
+            FtpRequest request = (FtpRequest) message;
+            return "PASS".equals(request.getCommand()) && request.hasArgument();
+        } else {
+            return message.toString().trim().toUpperCase().startsWith("PASS ");
+        }
+    }
+
     /**
      * Are password masked?
      * 
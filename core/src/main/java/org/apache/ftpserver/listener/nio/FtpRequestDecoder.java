@@ -0,0 +1,365 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ftpserver.listener.nio;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Iterator;
+
+import org.apache.ftpserver.impl.DefaultFtpRequest;
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.session.AttributeKey;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.filter.codec.ProtocolDecoder;
+import org.apache.mina.filter.codec.ProtocolDecoderAdapter;
+import org.apache.mina.filter.codec.ProtocolDecoderOutput;
+import org.apache.mina.filter.codec.RecoverableProtocolDecoderException;
+
+/**
+ * <strong>Internal class, do not use directly.</strong>
+ * 
+ * Decoder for FTP command lines. Lines are terminated by LF (a preceding CR is
+ * stripped like any other surrounding whitespace) and are decoded straight
+ * into {@link DefaultFtpRequest} objects. Known verbs are matched against a
+ * table of command names without creating any intermediate strings, only the
+ * argument is decoded as UTF-8.
+ * 
+ * Bytes are only copied when a line is split over several reads. Lines longer
+ * than the maximum line length are discarded and reported as a
+ * {@link RecoverableProtocolDecoderException}.
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class FtpRequestDecoder extends ProtocolDecoderAdapter {
+
+    /**
+     * The default maximum line length, same as for MINA's TextLineDecoder
+     */
+    public static final int DEFAULT_MAX_LINE_LENGTH = 1024;
+
+    private static final AttributeKey PARTIAL_LINE = new AttributeKey(
+            FtpRequestDecoder.class, "partialLine");
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    // verbs longer than this can not be packed into a long
+    private static final int MAX_PACKED_LENGTH = 8;
+
+    private final int maxLineLength;
+
+    // open addressing table from packed verb to command name
+    private final long[] keys;
+
+    private final String[] names;
+
+    /**
+     * Create a decoder for the given command names
+     * 
+     * @param commandNames
+     *            The known command names, other commands are still decoded
+     *            but need a few more allocations
+     */
+    public FtpRequestDecoder(Collection<String> commandNames) {
+        this(commandNames, DEFAULT_MAX_LINE_LENGTH);
+    }
+
+    /**
+     * Create a decoder for the given command names
+     * 
+     * @param commandNames
+     *            The known command names, other commands are still decoded
+     *            but need a few more allocations
+     * @param maxLineLength
+     *            The maximum length of a command line in bytes
+     */
+    public FtpRequestDecoder(Collection<String> commandNames,
+            int maxLineLength) {
+        if (maxLineLength <= 0) {
+            throw new IllegalArgumentException(
+                    "maxLineLength must be positive");
+        }
+        this.maxLineLength = maxLineLength;
+
+        int size = Integer.highestOneBit(Math.max(commandNames.size(), 1) * 4);
+        keys = new long[size];
+        names = new String[size];
+
+        for (Iterator<String> iter = commandNames.iterator(); iter.hasNext();) {
+            String name = iter.next().toUpperCase();
+            long key = pack(name);
+            if (key != 0) {
+                int slot = slot(key);
+                while (keys[slot] != 0 && keys[slot] != key) {
+                    slot = (slot + 1) & (keys.length - 1);
+                }
+                keys[slot] = key;
+                names[slot] = name;
+            }
+        }
+    }
+
+    /**
+     * Get the maximum length of a command line
+     * 
+     * @return The maximum line length in bytes
+     */
+    public int getMaxLineLength() {
+        return maxLineLength;
+    }
+
+    /**
+     * @see ProtocolDecoder#decode(IoSession, IoBuffer, ProtocolDecoderOutput)
+     */
+    public void decode(IoSession session, IoBuffer in,
+            ProtocolDecoderOutput out) throws Exception {
+        PartialLine partial = (PartialLine) session.getAttribute(PARTIAL_LINE);
+
+        int start = in.position();
+        int limit = in.limit();
+        for (int pos = start; pos < limit; pos++) {
+            if (in.get(pos) != '\n') {
+                continue;
+            }
+
+            // consume the line before decoding, so that decoding can go on
+            // with the next line if this one fails
+            in.position(pos + 1);
+
+            if (partial == null || partial.isEmpty()) {
+                if (pos - start > maxLineLength) {
+                    throw new RecoverableProtocolDecoderException(
+                            "Line is too long: " + (pos - start));
+                }
+                out.write(parse(in, start, pos));
+            } else {
+                partial.append(in, start, pos);
+                if (partial.overflow) {
+                    int length = partial.length;
+                    partial.clear();
+                    throw new RecoverableProtocolDecoderException(
+                            "Line is too long: " + length);
+                }
+                IoBuffer buf = partial.buf;
+                try {
+                    out.write(parse(buf, 0, buf.position()));
+                } finally {
+                    // a malformed line must not stick to the next one
+                    partial.clear();
+                }
+            }
+            start = pos + 1;
+        }
+
+        if (start < limit) {
+            if (partial == null) {
+                partial = new PartialLine(maxLineLength);
+                session.setAttribute(PARTIAL_LINE, partial);
+            }
+            partial.append(in, start, limit);
+        }
+        in.position(limit);
+    }
+
+    /**
+     * @see ProtocolDecoder#dispose(IoSession)
+     */
+    @Override
+    public void dispose(IoSession session) throws Exception {
+        PartialLine partial = (PartialLine) session
+                .removeAttribute(PARTIAL_LINE);
+        if (partial != null) {
+            partial.buf.free();
+        }
+    }
+
+    /**
+     * Parse the line between start (inclusive) and end (exclusive)
+     */
+    private DefaultFtpRequest parse(IoBuffer buf, int start, int end)
+            throws CharacterCodingException {
+        // trim like String.trim()
+        while (start < end && (buf.get(start) & 0xff) <= ' ') {
+            start++;
+        }
+        while (end > start && (buf.get(end - 1) & 0xff) <= ' ') {
+            end--;
+        }
+
+        int verbEnd = start;
+        boolean canonical = true;
+        long key = 0;
+        int packed = 0;
+        while (verbEnd < end && buf.get(verbEnd) != ' ') {
+            int b = buf.get(verbEnd) & 0xff;
+            if (b >= 'a' && b <= 'z') {
+                b -= 'a' - 'A';
+                canonical = false;
+            } else if (b >= 0x80) {
+                key = -1;
+            }
+
+            if (key != -1) {
+                if (verbEnd == start && b == 'X') {
+                    // commands like XMKD are the same as MKD
+                    canonical = false;
+                } else if (packed < MAX_PACKED_LENGTH) {
+                    key = (key << 8) | b;
+                    packed++;
+                } else {
+                    key = -1;
+                }
+            }
+            verbEnd++;
+        }
+
+        String command = null;
+        if (key > 0) {
+            int slot = slot(key);
+            while (keys[slot] != 0) {
+                if (keys[slot] == key) {
+                    command = names[slot];
+                    break;
+                }
+                slot = (slot + 1) & (keys.length - 1);
+            }
+        }
+
+        String verb;
+        if (command != null && canonical) {
+            verb = command;
+        } else {
+            verb = decode(buf, start, verbEnd);
+            if (command == null) {
+                command = verb.toUpperCase();
+                if ((command.length() > 0) && (command.charAt(0) == 'X')) {
+                    command = command.substring(1);
+                }
+            }
+        }
+
+        String argument = null;
+        if (verbEnd + 1 < end) {
+            argument = decode(buf, verbEnd + 1, end);
+        }
+
+        return new DefaultFtpRequest(verb, command, argument);
+    }
+
+    /**
+     * Decode the bytes between start (inclusive) and end (exclusive) as UTF-8
+     */
+    private String decode(IoBuffer buf, int start, int end)
+            throws CharacterCodingException {
+        boolean ascii = true;
+        for (int i = start; i < end; i++) {
+            if (buf.get(i) < 0) {
+                ascii = false;
+                break;
+            }
+        }
+
+        if (ascii && buf.hasArray()) {
+            return new String(buf.array(), buf.arrayOffset() + start, end
+                    - start, ASCII);
+        }
+
+        ByteBuffer bytes = buf.buf().duplicate();
+        bytes.limit(end);
+        bytes.position(start);
+        if (ascii) {
+            return ASCII.decode(bytes).toString();
+        } else {
+            // report malformed input like the charset decoder used before
+            return UTF8.newDecoder().decode(bytes).toString();
+        }
+    }
+
+    /**
+     * Pack an upper case verb into a long, returns 0 if it does not fit
+     */
+    private static long pack(String name) {
+        if (name.length() == 0 || name.length() > MAX_PACKED_LENGTH) {
+            return 0;
+        }
+        long key = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c >= 0x80 || c == ' ') {
+                return 0;
+            }
+            key = (key << 8) | c;
+        }
+        return key;
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & (keys.length - 1);
+    }
+
+    /**
+     * The start of a line that was split over several reads
+     */
+    private static class PartialLine {
+
+        private final int maxLength;
+
+        private final IoBuffer buf;
+
+        private int length;
+
+        private boolean overflow;
+
+        public PartialLine(int maxLength) {
+            this.maxLength = maxLength;
+            this.buf = IoBuffer.allocate(Math.min(maxLength, 128))
+                    .setAutoExpand(true);
+        }
+
+        public boolean isEmpty() {
+            return length == 0;
+        }
+
+        public void append(IoBuffer in, int start, int end) {
+            length += end - start;
+            if (length > maxLength) {
+                // discard the rest of the line
+                overflow = true;
+                buf.clear();
+                return;
+            }
+
+            for (int i = start; i < end; i++) {
+                buf.put(in.get(i));
+            }
+        }
+
+        public void clear() {
+            buf.clear();
+            length = 0;
+            overflow = false;
+        }
+    }
+}
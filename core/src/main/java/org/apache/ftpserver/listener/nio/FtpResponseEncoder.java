@@ -19,10 +19,18 @@
  */
 package org.apache.ftpserver.listener.nio;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.ftpserver.ftplet.FtpReply;
+import org.apache.ftpserver.impl.LocalizedFtpReply;
 import org.apache.mina.core.buffer.IoBuffer;
 import org.apache.mina.core.session.IoSession;
 import org.apache.mina.filter.codec.ProtocolEncoderAdapter;
@@ -33,22 +41,165 @@ import org.apache.mina.filter.codec.demux.MessageEncoder;
  * <strong>Internal class, do not use directly.</strong>
  * 
  * A {@link MessageEncoder} that encodes {@link FtpReply}.
+ * 
+ * Constant replies, that is {@link LocalizedFtpReply} texts without any
+ * variables, are only encoded once and then written from a cache. Other replies
+ * are encoded with an encoder and scratch buffer confined to the current
+ * thread.
  *
  * @author <a href="http://mina.apache.org">Apache MINA Project</a>
  */
 public class FtpResponseEncoder extends ProtocolEncoderAdapter {
-    private static final CharsetEncoder ENCODER = Charset.forName("UTF-8")
-            .newEncoder();
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * The maximum number of encoded replies kept in the cache
+     */
+    public static final int MAX_CACHED_REPLIES = 1024;
+
+    private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    // encoded replies by message, replies with the same message but a
+    // different code are chained
+    private final ConcurrentMap<String, EncodedReply> cache = new ConcurrentHashMap<String, EncodedReply>();
+
+    private final AtomicInteger cacheSize = new AtomicInteger();
 
     public void encode(IoSession session, Object message,
             ProtocolEncoderOutput out) throws Exception {
-        String value = message.toString();
+        if (message instanceof LocalizedFtpReply
+                && ((LocalizedFtpReply) message).isConstant()) {
+            out.write(getCached((FtpReply) message));
+        } else {
+            out.write(encode(message.toString()));
+        }
+    }
 
-        IoBuffer buf = IoBuffer.allocate(value.length()).setAutoExpand(true);
+    /**
+     * Get the number of cached replies
+     * 
+     * @return The number of cached replies
+     */
+    public int getCacheSize() {
+        return cacheSize.get();
+    }
+
+    private IoBuffer getCached(FtpReply reply)
+            throws CharacterCodingException {
+        String message = reply.getMessage();
+        if (message == null) {
+            message = "";
+        }
+        int code = reply.getCode();
 
-        buf.putString(value, ENCODER);
+        EncodedReply head = cache.get(message);
+        for (EncodedReply cached = head; cached != null; cached = cached.next) {
+            if (cached.code == code) {
+                // the cached buffer is shared, every write needs its own
+                // position
+                return cached.buf.duplicate();
+            }
+        }
+
+        IoBuffer buf = encode(reply.toString());
+        if (cacheSize.incrementAndGet() <= MAX_CACHED_REPLIES) {
+            // keep a view of its own, buf is consumed by the write
+            EncodedReply encoded = new EncodedReply(code, buf.duplicate(),
+                    head);
+            boolean added;
+            if (head == null) {
+                added = cache.putIfAbsent(message, encoded) == null;
+            } else {
+                added = cache.replace(message, head, encoded);
+            }
+            if (!added) {
+                // lost a race with another thread, it does not matter
+                // which one ends up in the cache
+                cacheSize.decrementAndGet();
+            }
+        } else {
+            cacheSize.decrementAndGet();
+        }
+        return buf;
+    }
 
+    private IoBuffer encode(String value) throws CharacterCodingException {
+        Scratch scratch = SCRATCH.get();
+        CharsetEncoder encoder = scratch.encoder;
+        CharBuffer in = CharBuffer.wrap(value);
+
+        encoder.reset();
+        while (true) {
+            ByteBuffer bytes = scratch.bytes;
+            bytes.clear();
+            CoderResult result = encoder.encode(in, bytes, true);
+            if (result.isUnderflow()) {
+                result = encoder.flush(bytes);
+            }
+            if (result.isUnderflow()) {
+                break;
+            } else if (result.isOverflow()) {
+                scratch.grow();
+                in.rewind();
+                encoder.reset();
+            } else {
+                result.throwException();
+            }
+        }
+
+        ByteBuffer bytes = scratch.bytes;
+        bytes.flip();
+        IoBuffer buf = IoBuffer.allocate(bytes.remaining());
+        buf.put(bytes);
         buf.flip();
-        out.write(buf);
+
+        // do not keep the buffer of a huge reply around
+        scratch.shrink();
+        return buf;
+    }
+
+    /**
+     * Encoder and buffer used by a single thread
+     */
+    private static class Scratch {
+
+        private static final int INITIAL_CAPACITY = 1024;
+
+        private static final int MAX_CAPACITY = 8192;
+
+        private final CharsetEncoder encoder = UTF8.newEncoder();
+
+        private ByteBuffer bytes = ByteBuffer.allocate(INITIAL_CAPACITY);
+
+        public void grow() {
+            bytes = ByteBuffer.allocate(bytes.capacity() * 2);
+        }
+
+        public void shrink() {
+            if (bytes.capacity() > MAX_CAPACITY) {
+                bytes = ByteBuffer.allocate(INITIAL_CAPACITY);
+            }
+        }
+    }
+
+    private static class EncodedReply {
+
+        private final int code;
+
+        private final IoBuffer buf;
+
+        private final EncodedReply next;
+
+        public EncodedReply(int code, IoBuffer buf, EncodedReply next) {
+            this.code = code;
+            this.buf = buf;
+            this.next = next;
+        }
     }
 }
@@ -19,13 +19,13 @@
  */
 package org.apache.ftpserver.listener.nio;
 
-import java.nio.charset.Charset;
+import java.util.Collection;
 
+import org.apache.ftpserver.command.CommandFactoryFactory;
 import org.apache.mina.core.session.IoSession;
 import org.apache.mina.filter.codec.ProtocolCodecFactory;
 import org.apache.mina.filter.codec.ProtocolDecoder;
 import org.apache.mina.filter.codec.ProtocolEncoder;
-import org.apache.mina.filter.codec.textline.TextLineDecoder;
 
 /**
  * <strong>Internal class, do not use directly.</strong>
@@ -35,11 +35,27 @@ import org.apache.mina.filter.codec.textline.TextLineDecoder;
  * @author <a href="http://mina.apache.org">Apache MINA Project</a>
  */
 public class FtpServerProtocolCodecFactory implements ProtocolCodecFactory {
-    private ProtocolDecoder decoder = new TextLineDecoder(Charset
-            .forName("UTF-8"));
+    private ProtocolDecoder decoder;
 
     private ProtocolEncoder encoder = new FtpResponseEncoder();
 
+    /**
+     * Create a factory for the default commands
+     */
+    public FtpServerProtocolCodecFactory() {
+        this(CommandFactoryFactory.getDefaultCommandNames());
+    }
+
+    /**
+     * Create a factory for the given commands
+     * 
+     * @param commandNames
+     *            The command names known to the decoder
+     */
+    public FtpServerProtocolCodecFactory(Collection<String> commandNames) {
+        decoder = new FtpRequestDecoder(commandNames);
+    }
+
     public ProtocolDecoder getDecoder(IoSession session) throws Exception {
         return decoder;
     }
@@ -31,11 +31,15 @@ import java.util.Set;
 
 import org.apache.ftpserver.DataConnectionConfiguration;
 import org.apache.ftpserver.FtpServerConfigurationException;
+import org.apache.ftpserver.command.CommandFactory;
+import org.apache.ftpserver.command.impl.DefaultCommandFactory;
+import org.apache.ftpserver.impl.DefaultDataConnectionConfiguration;
 import org.apache.ftpserver.impl.DefaultFtpHandler;
 import org.apache.ftpserver.impl.FtpHandler;
 import org.apache.ftpserver.impl.FtpIoSession;
 import org.apache.ftpserver.impl.FtpServerContext;
 import org.apache.ftpserver.ipfilter.IpFilter;
+import org.apache.ftpserver.ipfilter.LoginFailureTracker;
 import org.apache.ftpserver.ipfilter.MinaIpFilter;
 import org.apache.ftpserver.listener.Listener;
 import org.apache.ftpserver.listener.ListenerFactory;
@@ -151,6 +155,22 @@ public class NioListener extends AbstractListener {
                 idleTimeout, ipFilter, selectorProvider, backlog, skipNlstFolders, listFormatType);
     }
 
+    /**
+     * Constructor for internal use, do not use directly. Instead use {@link ListenerFactory}
+     */
+    public NioListener(String serverAddress, int port,
+            boolean implicitSsl,
+            SslConfiguration sslConfiguration,
+            DataConnectionConfiguration dataConnectionConfig,
+            int idleTimeout, IpFilter ipFilter, SelectorProvider selectorProvider,
+            int backlog, boolean skipNlstFolders, String listFormatType,
+            int maxDownloadRate, int maxUploadRate) {
+
+        super(serverAddress, port, implicitSsl, sslConfiguration, dataConnectionConfig,
+                idleTimeout, ipFilter, selectorProvider, backlog, skipNlstFolders, listFormatType,
+                maxDownloadRate, maxUploadRate);
+    }
+
 
     /**
      * @see Listener#start(FtpServerContext)
@@ -193,10 +213,18 @@ public class NioListener extends AbstractListener {
             	acceptor.getFilterChain().addLast("ipFilter", new MinaIpFilter(ipFilter));
             }
 
+            LoginFailureTracker loginFailureTracker = context.getLoginFailureTracker();
+            if (loginFailureTracker != null) {
+                // close connections from banned addresses before they use a thread
+                acceptor.getFilterChain().addLast("banFilter", new MinaIpFilter(loginFailureTracker));
+            }
+
+            acceptor.getFilterChain().addLast("queueTime", new QueueTimeFilter(true));
             acceptor.getFilterChain().addLast("threadPool",
                     new ExecutorFilter(context.getThreadPoolExecutor()));
+            acceptor.getFilterChain().addLast("queueTime2", new QueueTimeFilter(false));
             acceptor.getFilterChain().addLast("codec",
-                    new ProtocolCodecFilter(new FtpServerProtocolCodecFactory()));
+                    new ProtocolCodecFilter(createCodecFactory(context)));
             acceptor.getFilterChain().addLast("mdcFilter2", mdcFilter);
             acceptor.getFilterChain().addLast("logger", new FtpLoggingFilter());
 
@@ -249,6 +277,18 @@ public class NioListener extends AbstractListener {
         }
     }
 
+    private FtpServerProtocolCodecFactory createCodecFactory(
+            FtpServerContext context) {
+        CommandFactory commandFactory = context.getCommandFactory();
+        if (commandFactory instanceof DefaultCommandFactory) {
+            // let the decoder know about custom commands as well
+            return new FtpServerProtocolCodecFactory(
+                    ((DefaultCommandFactory) commandFactory).getCommandNames());
+        } else {
+            return new FtpServerProtocolCodecFactory();
+        }
+    }
+
     private void updatePort() {
         // update the port to the real port bound by the listener
         setPort(acceptor.getLocalAddress().getPort());
@@ -264,6 +304,12 @@ public class NioListener extends AbstractListener {
             acceptor.dispose();
             acceptor = null;
         }
+
+        // do not keep passive ports bound while stopped
+        if (getDataConnectionConfiguration() instanceof DefaultDataConnectionConfiguration) {
+            ((DefaultDataConnectionConfiguration) getDataConnectionConfiguration())
+                    .closeIdlePassiveServerSockets();
+        }
         context = null;
     }
 
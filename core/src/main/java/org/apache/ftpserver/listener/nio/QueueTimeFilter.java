@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ftpserver.listener.nio;
+
+import org.apache.ftpserver.impl.FtpIoSession;
+import org.apache.mina.core.filterchain.IoFilterAdapter;
+import org.apache.mina.core.session.IoSession;
+
+/**
+ * <strong>Internal class, do not use directly.</strong>
+ * 
+ * Measures how long received data waits for a thread. One instance is placed
+ * in front of the thread pool and marks when data was received, another one
+ * right after the thread pool stores the wait for the handler. Only the
+ * oldest data not yet picked up by a thread is marked, so data received in
+ * a burst reports the wait of the first part.
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class QueueTimeFilter extends IoFilterAdapter {
+
+    private final boolean beforeThreadPool;
+
+    /**
+     * Create a filter
+     * 
+     * @param beforeThreadPool
+     *            true for the filter in front of the thread pool, false for
+     *            the one after it
+     */
+    public QueueTimeFilter(boolean beforeThreadPool) {
+        this.beforeThreadPool = beforeThreadPool;
+    }
+
+    @Override
+    public void messageReceived(NextFilter nextFilter, IoSession session,
+            Object message) throws Exception {
+        if (beforeThreadPool) {
+            session.setAttributeIfAbsent(FtpIoSession.ATTRIBUTE_RECEIVED_TIME,
+                    Long.valueOf(System.nanoTime()));
+        } else {
+            Long received = (Long) session
+                    .removeAttribute(FtpIoSession.ATTRIBUTE_RECEIVED_TIME);
+            if (received != null) {
+                session.setAttribute(FtpIoSession.ATTRIBUTE_QUEUE_TIME, Long
+                        .valueOf(System.nanoTime() - received.longValue()));
+            }
+        }
+        nextFilter.messageReceived(session, message);
+    }
+}
@@ -51,6 +51,12 @@ public class DbUserManagerFactory implements UserManagerFactory {
     private DataSource dataSource;
 
     private PasswordEncryptor passwordEncryptor = new Md5PasswordEncryptor();
+
+    private boolean usePreparedStatements = false;
+
+    private int cacheSize = 1000;
+
+    private int cacheTtl = 0;
     
     public UserManager createUserManager() {
         if (dataSource == null) {
@@ -88,7 +94,8 @@ public class DbUserManagerFactory implements UserManagerFactory {
         
         return new DbUserManager(dataSource, selectAllStmt, selectUserStmt, 
                 insertUserStmt, updateUserStmt, deleteUserStmt, authenticateStmt, 
-                isAdminStmt, passwordEncryptor, adminName);
+                isAdminStmt, passwordEncryptor, adminName,
+                usePreparedStatements, cacheSize, cacheTtl);
     }
     
     /**
@@ -287,4 +294,64 @@ public class DbUserManagerFactory implements UserManagerFactory {
     public void setPasswordEncryptor(PasswordEncryptor passwordEncryptor) {
         this.passwordEncryptor = passwordEncryptor;
     }
-}
\ No newline at end of file
+
+    /**
+     * Are the SQL statements executed as prepared statements
+     * @return true if prepared statements are used
+     */
+    public boolean isUsePreparedStatements() {
+        return usePreparedStatements;
+    }
+
+    /**
+     * Execute the SQL statements as prepared statements, with the variables
+     * set as parameters instead of being escaped and put in the statement.
+     * Quoted variables like <code>'{userid}'</code> are set as strings. A
+     * variable can not be part of a longer quoted string. Default is false.
+     * 
+     * @param usePreparedStatements
+     *            true to use prepared statements
+     */
+    public void setUsePreparedStatements(boolean usePreparedStatements) {
+        this.usePreparedStatements = usePreparedStatements;
+    }
+
+    /**
+     * Get the maximum number of users kept in the cache
+     * @return The cache size
+     */
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Set the maximum number of users kept in the cache. Default is 1000.
+     * 
+     * @param cacheSize
+     *            The cache size
+     */
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * Get the time users are cached
+     * @return The time in seconds, 0 if caching is disabled
+     */
+    public int getCacheTtl() {
+        return cacheTtl;
+    }
+
+    /**
+     * Set the time users, passwords and admin checks are cached, including
+     * the absence of a user. Changes made through the user manager update
+     * the cache right away, changes made directly in the database are seen
+     * once the cached entry has expired. Default is 0, caching disabled.
+     * 
+     * @param cacheTtl
+     *            The time in seconds
+     */
+    public void setCacheTtl(int cacheTtl) {
+        this.cacheTtl = cacheTtl;
+    }
+}
@@ -40,6 +40,8 @@ public class PropertiesUserManagerFactory implements UserManagerFactory {
 
     private PasswordEncryptor passwordEncryptor = new Md5PasswordEncryptor();
 
+    private int saveDelay = 0;
+
     /**
      * Creates a {@link PropertiesUserManager} instance based on the provided configuration
      */
@@ -50,7 +52,7 @@ public class PropertiesUserManagerFactory implements UserManagerFactory {
         } else {
 
             return new PropertiesUserManager(passwordEncryptor, userDataFile,
-                    adminName);
+                    adminName, saveDelay);
         }
     }
 
@@ -125,4 +127,25 @@ public class PropertiesUserManagerFactory implements UserManagerFactory {
     public void setPasswordEncryptor(PasswordEncryptor passwordEncryptor) {
         this.passwordEncryptor = passwordEncryptor;
     }
+
+    /**
+     * Get the time changes are collected before being written to the file
+     * @return The delay in milliseconds
+     */
+    public int getSaveDelay() {
+        return saveDelay;
+    }
+
+    /**
+     * Set the time changes are collected before being written to the file.
+     * The changes are then written by a background thread, all in one go.
+     * Default is 0, every change is written to the file before the save or
+     * delete returns.
+     * 
+     * @param saveDelay
+     *            The delay in milliseconds
+     */
+    public void setSaveDelay(int saveDelay) {
+        this.saveDelay = saveDelay;
+    }
 }
@@ -20,12 +20,16 @@
 package org.apache.ftpserver.usermanager.impl;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.sql.DataSource;
 
@@ -74,6 +78,22 @@ public class DbUserManager extends AbstractUserManager {
 
     private DataSource dataSource;
 
+    private final boolean usePreparedStatements;
+
+    private final int cacheSize;
+
+    private final int cacheTtl;
+
+    // statements with parameters, by configured SQL
+    private final ConcurrentMap<String, SqlTemplate> templates = new ConcurrentHashMap<String, SqlTemplate>();
+
+    // null if caching is disabled, absent users are cached as null
+    private final ExpiringCache<BaseUser> userCache;
+
+    private final ExpiringCache<String> passwordCache;
+
+    private final ExpiringCache<Boolean> adminCache;
+
     /**
      * Internal constructor, do not use directly. Use {@link DbUserManagerFactory} instead.
      */
@@ -82,7 +102,36 @@ public class DbUserManager extends AbstractUserManager {
             String updateUserStmt, String deleteUserStmt,
             String authenticateStmt, String isAdminStmt,
             PasswordEncryptor passwordEncryptor, String adminName) {
+        this(dataSource, selectAllStmt, selectUserStmt, insertUserStmt,
+                updateUserStmt, deleteUserStmt, authenticateStmt, isAdminStmt,
+                passwordEncryptor, adminName, false, 0, 0);
+    }
+
+    /**
+     * Internal constructor, do not use directly. Use {@link DbUserManagerFactory} instead.
+     */
+    public DbUserManager(DataSource dataSource, String selectAllStmt,
+            String selectUserStmt, String insertUserStmt,
+            String updateUserStmt, String deleteUserStmt,
+            String authenticateStmt, String isAdminStmt,
+            PasswordEncryptor passwordEncryptor, String adminName,
+            boolean usePreparedStatements, int cacheSize, int cacheTtl) {
         super(adminName, passwordEncryptor);
+        this.usePreparedStatements = usePreparedStatements;
+        if (cacheSize > 0 && cacheTtl > 0) {
+            this.cacheSize = cacheSize;
+            this.cacheTtl = cacheTtl;
+            long ttlMillis = cacheTtl * 1000L;
+            userCache = new ExpiringCache<BaseUser>(cacheSize, ttlMillis);
+            passwordCache = new ExpiringCache<String>(cacheSize, ttlMillis);
+            adminCache = new ExpiringCache<Boolean>(cacheSize, ttlMillis);
+        } else {
+            this.cacheSize = 0;
+            this.cacheTtl = 0;
+            userCache = null;
+            passwordCache = null;
+            adminCache = null;
+        }
         this.dataSource = dataSource;
         this.selectAllStmt = selectAllStmt;
         this.selectUserStmt = selectUserStmt;
@@ -267,6 +316,56 @@ public class DbUserManager extends AbstractUserManager {
         isAdminStmt = sql;
     }
 
+    /**
+     * Does this user manager use prepared statements
+     *
+     * @return true if prepared statements are used
+     */
+    public boolean isUsePreparedStatements() {
+        return usePreparedStatements;
+    }
+
+    /**
+     * Get the maximum number of cached users
+     *
+     * @return The cache size, 0 if caching is disabled
+     */
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Get the time users are cached
+     *
+     * @return The time in seconds, 0 if caching is disabled
+     */
+    public int getCacheTtl() {
+        return cacheTtl;
+    }
+
+    /**
+     * Remove all cached users, for example after the user table has been
+     * changed by another application.
+     */
+    public void clearCache() {
+        if (userCache != null) {
+            userCache.clear();
+            passwordCache.clear();
+            adminCache.clear();
+        }
+    }
+
+    /**
+     * Remove a user from the cache
+     */
+    private void invalidate(String name) {
+        if (userCache != null) {
+            userCache.remove(name);
+            passwordCache.remove(name);
+            adminCache.remove(name);
+        }
+    }
+
     /**
      * @return true if user with this login is administrator
      */
@@ -277,20 +376,33 @@ public class DbUserManager extends AbstractUserManager {
             return false;
         }
 
+        if (adminCache != null) {
+            ExpiringCache.Entry<Boolean> entry = adminCache.get(login);
+            if (entry != null) {
+                return entry.getValue();
+            }
+        }
+
+        // not cached if the user changes while being looked up
+        long generation = adminCache != null ? adminCache.getGeneration() : 0;
+
         Statement stmt = null;
         ResultSet rs = null;
         try {
 
             // create the sql query
             HashMap<String, Object> map = new HashMap<String, Object>();
-            map.put(ATTR_LOGIN, escapeString(login));
-            String sql = StringUtils.replaceString(isAdminStmt, map);
-            LOG.info(sql);
+            map.put(ATTR_LOGIN, login);
 
             // execute query
-            stmt = createConnection().createStatement();
-            rs = stmt.executeQuery(sql);
-            return rs.next();
+            stmt = execute(isAdminStmt, map);
+            rs = stmt.getResultSet();
+            boolean admin = rs.next();
+
+            if (adminCache != null) {
+                adminCache.put(login, admin, generation);
+            }
+            return admin;
         } catch (SQLException ex) {
             LOG.error("DbUserManager.isAdmin()", ex);
             throw new FtpException("DbUserManager.isAdmin()", ex);
@@ -310,6 +422,77 @@ public class DbUserManager extends AbstractUserManager {
         return connection;
     }
 
+    /**
+     * Execute a SQL statement on a new connection. The variables are either
+     * replaced by the escaped values, or set as parameters of a prepared
+     * statement. The returned statement must be closed, which also closes
+     * the connection.
+     */
+    private Statement execute(String sql, Map<String, Object> values)
+            throws SQLException {
+        // prepare the SQL first, this might fail on a bad configuration
+        SqlTemplate template = null;
+        String substituted = null;
+        if (usePreparedStatements) {
+            template = getTemplate(sql);
+            LOG.info(template.getSql());
+        } else {
+            HashMap<String, Object> escaped = new HashMap<String, Object>();
+            for (Map.Entry<String, Object> value : values.entrySet()) {
+                if (value.getValue() instanceof String) {
+                    escaped.put(value.getKey(), escapeString((String) value
+                            .getValue()));
+                } else {
+                    escaped.put(value.getKey(), value.getValue());
+                }
+            }
+            substituted = StringUtils.replaceString(sql, escaped);
+            LOG.info(substituted);
+        }
+
+        Connection con = createConnection();
+        Statement stmt = null;
+        boolean success = false;
+        try {
+            if (template != null) {
+                PreparedStatement pstmt = con.prepareStatement(template
+                        .getSql());
+                stmt = pstmt;
+                template.bind(pstmt, values);
+                pstmt.execute();
+            } else {
+                stmt = con.createStatement();
+                stmt.execute(substituted);
+            }
+            success = true;
+            return stmt;
+        } finally {
+            // do not leak the connection, whatever went wrong
+            if (!success) {
+                if (stmt != null) {
+                    closeQuitely(stmt);
+                } else {
+                    closeQuitely(con);
+                }
+            }
+        }
+    }
+
+    private SqlTemplate getTemplate(String sql) {
+        SqlTemplate template = templates.get(sql);
+        if (template == null) {
+            try {
+                template = new SqlTemplate(sql);
+            } catch (IllegalArgumentException e) {
+                throw new FtpServerConfigurationException(
+                        "SQL statement can not be used as prepared statement",
+                        e);
+            }
+            templates.put(sql, template);
+        }
+        return template;
+    }
+
 
     /**
      * Delete user. Delete the row from the table.
@@ -317,20 +500,18 @@ public class DbUserManager extends AbstractUserManager {
     public void delete(String name) throws FtpException {
         // create sql query
         HashMap<String, Object> map = new HashMap<String, Object>();
-        map.put(ATTR_LOGIN, escapeString(name));
-        String sql = StringUtils.replaceString(deleteUserStmt, map);
-        LOG.info(sql);
+        map.put(ATTR_LOGIN, name);
 
         // execute query
         Statement stmt = null;
         try {
-            stmt = createConnection().createStatement();
-            stmt.executeUpdate(sql);
+            stmt = execute(deleteUserStmt, map);
         } catch (SQLException ex) {
             LOG.error("DbUserManager.delete()", ex);
             throw new FtpException("DbUserManager.delete()", ex);
         } finally {
             closeQuitely(stmt);
+            invalidate(name);
         }
     }
 
@@ -343,12 +524,15 @@ public class DbUserManager extends AbstractUserManager {
             throw new NullPointerException("User name is null.");
         }
 
+        // make sure the existence check below sees the current state
+        invalidate(user.getName());
+
         Statement stmt = null;
         try {
 
             // create sql query
             HashMap<String, Object> map = new HashMap<String, Object>();
-            map.put(ATTR_LOGIN, escapeString(user.getName()));
+            map.put(ATTR_LOGIN, user.getName());
 
             String password = null;
             if(user.getPassword() != null) {
@@ -357,30 +541,24 @@ public class DbUserManager extends AbstractUserManager {
             } else {
                 // password was not provided, either load from the existing user and store that again
                 // or store as null
-                ResultSet rs = null;
-
-                try {
-                    User userWithPassword = selectUserByName(user.getName());
+                User userWithPassword = selectUserByName(user.getName());
 
-                    if(userWithPassword != null) {
-                        // user exists, reuse password
-                        password = userWithPassword.getPassword();
-                    }
-                } finally {
-                    closeQuitely(rs);
+                if(userWithPassword != null) {
+                    // user exists, reuse password
+                    password = userWithPassword.getPassword();
                 }
             }
-            map.put(ATTR_PASSWORD, escapeString(password));
+            map.put(ATTR_PASSWORD, password);
 
 
             String home = user.getHomeDirectory();
             if (home == null) {
                 home = "/";
             }
-            map.put(ATTR_HOME, escapeString(home));
-            map.put(ATTR_ENABLE, String.valueOf(user.getEnabled()));
+            map.put(ATTR_HOME, home);
+            map.put(ATTR_ENABLE, Boolean.valueOf(user.getEnabled()));
 
-            map.put(ATTR_WRITE_PERM, String.valueOf(user
+            map.put(ATTR_WRITE_PERM, Boolean.valueOf(user
                     .authorize(new WriteRequest()) != null));
             map.put(ATTR_MAX_IDLE_TIME, user.getMaxIdleTime());
 
@@ -416,20 +594,19 @@ public class DbUserManager extends AbstractUserManager {
 
             String sql = null;
             if (!doesExist(user.getName())) {
-                sql = StringUtils.replaceString(insertUserStmt, map);
+                sql = insertUserStmt;
             } else {
-                sql = StringUtils.replaceString(updateUserStmt, map);
+                sql = updateUserStmt;
             }
-            LOG.info(sql);
 
             // execute query
-            stmt = createConnection().createStatement();
-            stmt.executeUpdate(sql);
+            stmt = execute(sql, map);
         } catch (SQLException ex) {
             LOG.error("DbUserManager.save()", ex);
             throw new FtpException("DbUserManager.save()", ex);
         } finally {
             closeQuitely(stmt);
+            invalidate(user.getName());
         }
     }
 
@@ -469,19 +646,32 @@ public class DbUserManager extends AbstractUserManager {
 	}
     }
 
+    /**
+     * Select a user, from the cache if enabled. The returned user is a copy
+     * which may be changed by the caller.
+     */
     private BaseUser selectUserByName(String name) throws SQLException {
+        if (userCache != null) {
+            ExpiringCache.Entry<BaseUser> entry = userCache.get(name);
+            if (entry != null) {
+                BaseUser cachedUser = entry.getValue();
+                return cachedUser != null ? new BaseUser(cachedUser) : null;
+            }
+        }
+
+        // not cached if the user changes while being looked up
+        long generation = userCache != null ? userCache.getGeneration() : 0;
+
         // create sql query
         HashMap<String, Object> map = new HashMap<String, Object>();
-        map.put(ATTR_LOGIN, escapeString(name));
-        String sql = StringUtils.replaceString(selectUserStmt, map);
-        LOG.info(sql);
+        map.put(ATTR_LOGIN, name);
 
         Statement stmt = null;
         ResultSet rs = null;
         try {
             // execute query
-            stmt = createConnection().createStatement();
-            rs = stmt.executeQuery(sql);
+            stmt = execute(selectUserStmt, map);
+            rs = stmt.getResultSet();
 
             // populate user object
             BaseUser thisUser = null;
@@ -507,6 +697,11 @@ public class DbUserManager extends AbstractUserManager {
 
                 thisUser.setAuthorities(authorities);
             }
+
+            if (userCache != null) {
+                userCache.put(name, thisUser != null ? new BaseUser(thisUser)
+                        : null, generation);
+            }
             return thisUser;
 
         } finally {
@@ -519,8 +714,6 @@ public class DbUserManager extends AbstractUserManager {
      * Get the user object. Fetch the row from the table.
      */
     public User getUserByName(String name) throws FtpException {
-        Statement stmt = null;
-        ResultSet rs = null;
         try {
 
             BaseUser user = selectUserByName(name);
@@ -535,9 +728,6 @@ public class DbUserManager extends AbstractUserManager {
         } catch (SQLException ex) {
             LOG.error("DbUserManager.getUserByName()", ex);
             throw new FtpException("DbUserManager.getUserByName()", ex);
-        } finally {
-            closeQuitely(rs);
-            closeQuitely(stmt);
         }
     }
 
@@ -545,19 +735,27 @@ public class DbUserManager extends AbstractUserManager {
      * User existance check.
      */
     public boolean doesExist(String name) throws FtpException {
+        if (userCache != null) {
+            // same query, but the result is cached
+            try {
+                return selectUserByName(name) != null;
+            } catch (SQLException ex) {
+                LOG.error("DbUserManager.doesExist()", ex);
+                throw new FtpException("DbUserManager.doesExist()", ex);
+            }
+        }
+
         Statement stmt = null;
         ResultSet rs = null;
         try {
 
             // create the sql
             HashMap<String, Object> map = new HashMap<String, Object>();
-            map.put(ATTR_LOGIN, escapeString(name));
-            String sql = StringUtils.replaceString(selectUserStmt, map);
-            LOG.info(sql);
+            map.put(ATTR_LOGIN, name);
 
             // execute query
-            stmt = createConnection().createStatement();
-            rs = stmt.executeQuery(sql);
+            stmt = execute(selectUserStmt, map);
+            rs = stmt.getResultSet();
             return rs.next();
         } catch (SQLException ex) {
             LOG.error("DbUserManager.doesExist()", ex);
@@ -577,13 +775,9 @@ public class DbUserManager extends AbstractUserManager {
         ResultSet rs = null;
         try {
 
-            // create sql query
-            String sql = selectAllStmt;
-            LOG.info(sql);
-
             // execute query
-            stmt = createConnection().createStatement();
-            rs = stmt.executeQuery(sql);
+            stmt = execute(selectAllStmt, new HashMap<String, Object>());
+            rs = stmt.getResultSet();
 
             // populate list
             ArrayList<String> names = new ArrayList<String>();
@@ -600,6 +794,50 @@ public class DbUserManager extends AbstractUserManager {
         }
     }
 
+    /**
+     * Get the stored password of a user, from the cache if enabled.
+     * 
+     * @return The password, null if the user is unknown or has no password
+     */
+    private String selectPassword(String name) throws SQLException {
+        if (passwordCache != null) {
+            ExpiringCache.Entry<String> entry = passwordCache.get(name);
+            if (entry != null) {
+                return entry.getValue();
+            }
+        }
+
+        // not cached if the user changes while being looked up
+        long generation = passwordCache != null ? passwordCache
+                .getGeneration() : 0;
+
+        Statement stmt = null;
+        ResultSet rs = null;
+        try {
+
+            // create the sql query
+            HashMap<String, Object> map = new HashMap<String, Object>();
+            map.put(ATTR_LOGIN, name);
+
+            // execute query
+            stmt = execute(authenticateStmt, map);
+            rs = stmt.getResultSet();
+
+            String storedPassword = null;
+            if (rs.next()) {
+                storedPassword = rs.getString(ATTR_PASSWORD);
+            }
+
+            if (passwordCache != null) {
+                passwordCache.put(name, storedPassword, generation);
+            }
+            return storedPassword;
+        } finally {
+            closeQuitely(rs);
+            closeQuitely(stmt);
+        }
+    }
+
     /**
      * User authentication.
      */
@@ -619,22 +857,10 @@ public class DbUserManager extends AbstractUserManager {
                 password = "";
             }
 
-            Statement stmt = null;
-            ResultSet rs = null;
             try {
-
-                // create the sql query
-                HashMap<String, Object> map = new HashMap<String, Object>();
-                map.put(ATTR_LOGIN, escapeString(user));
-                String sql = StringUtils.replaceString(authenticateStmt, map);
-                LOG.info(sql);
-
-                // execute query
-                stmt = createConnection().createStatement();
-                rs = stmt.executeQuery(sql);
-                if (rs.next()) {
+                String storedPassword = selectPassword(user);
+                if (storedPassword != null) {
                     try {
-                        String storedPassword = rs.getString(ATTR_PASSWORD);
                         if (getPasswordEncryptor().matches(password, storedPassword)) {
                             return getUserByName(user);
                         } else {
@@ -653,9 +879,6 @@ public class DbUserManager extends AbstractUserManager {
                 LOG.error("DbUserManager.authenticate()", ex);
                 throw new AuthenticationFailedException(
                         "Authentication failed", ex);
-            } finally {
-                closeQuitely(rs);
-                closeQuitely(stmt);
             }
         } else if (authentication instanceof AnonymousAuthentication) {
             try {
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ftpserver.usermanager.impl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * <strong>Internal class, do not use directly.</strong>
+ * 
+ * LRU bounded cache whose entries expire a fixed time after they have been
+ * added. Null values are cached as well, so that lookups of unknown keys can
+ * be cached. Every removal starts a new generation, values looked up in an
+ * older generation are not cached, as they might have been read before the
+ * change that caused the removal.
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+class ExpiringCache<V> {
+
+    private final int maxEntries;
+
+    private final long ttl;
+
+    private final LinkedHashMap<String, Entry<V>> entries = new LinkedHashMap<String, Entry<V>>(
+            16, 0.75f, true);
+
+    private long generation;
+
+    /**
+     * @param maxEntries
+     *            The maximum number of entries
+     * @param ttl
+     *            The time in milliseconds an entry is kept
+     */
+    public ExpiringCache(int maxEntries, long ttl) {
+        this.maxEntries = maxEntries;
+        this.ttl = ttl;
+    }
+
+    /**
+     * Get a cached entry
+     * 
+     * @return The entry, null if not cached or expired
+     */
+    public synchronized Entry<V> get(String key) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null && entry.expires - System.currentTimeMillis() < 0) {
+            entries.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Get the current generation, to be taken before looking up a value
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Cache a value looked up in the given generation, unless an entry has
+     * been removed since
+     * 
+     * @return true if the value has been cached
+     */
+    public synchronized boolean put(String key, V value, long generation) {
+        if (generation != this.generation) {
+            return false;
+        }
+        put(key, value);
+        return true;
+    }
+
+    /**
+     * Cache a value, which might be null
+     */
+    public synchronized void put(String key, V value) {
+        entries.put(key, new Entry<V>(value, System.currentTimeMillis() + ttl));
+
+        Iterator<Entry<V>> iter = entries.values().iterator();
+        while (entries.size() > maxEntries && iter.hasNext()) {
+            iter.next();
+            iter.remove();
+        }
+    }
+
+    /**
+     * Remove an entry
+     */
+    public synchronized void remove(String key) {
+        entries.remove(key);
+        generation++;
+    }
+
+    /**
+     * Remove all entries
+     */
+    public synchronized void clear() {
+        entries.clear();
+        generation++;
+    }
+
+    /**
+     * Get the number of entries, including expired ones not removed yet
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * A cached value
+     */
+    public static class Entry<V> {
+
+        private final V value;
+
+        private final long expires;
+
+        public Entry(V value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+
+        public V getValue() {
+            return value;
+        }
+    }
+}
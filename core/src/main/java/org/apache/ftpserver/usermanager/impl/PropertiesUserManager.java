@@ -25,11 +25,20 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.ftpserver.FtpServerConfigurationException;
 import org.apache.ftpserver.ftplet.Authentication;
@@ -123,16 +132,44 @@ public class PropertiesUserManager extends AbstractUserManager {
 
     private BaseProperties userDataProp;
 
+    // users by name, rebuilt on load and updated on save and delete
+    private volatile ConcurrentNavigableMap<String, IndexedUser> users = new ConcurrentSkipListMap<String, IndexedUser>();
+
     private File userDataFile;
 
     private URL userUrl;
 
+    private final int saveDelay;
+
+    // serializes writes to the file, and changes with refreshes so that a
+    // refresh never drops a change not written yet, always taken before the
+    // manager lock
+    private final Object writeLock = new Object();
+
+    // guarded by this
+    private boolean dirty;
+
+    // guarded by this
+    private ScheduledFuture<?> pendingWrite;
+
+    // guarded by this, created on the first delayed save
+    private ScheduledExecutorService writer;
+
     /**
      * Internal constructor, do not use directly. Use {@link PropertiesUserManagerFactory} instead.
      */
     public PropertiesUserManager(PasswordEncryptor passwordEncryptor,
             File userDataFile, String adminName) {
+        this(passwordEncryptor, userDataFile, adminName, 0);
+    }
+
+    /**
+     * Internal constructor, do not use directly. Use {@link PropertiesUserManagerFactory} instead.
+     */
+    public PropertiesUserManager(PasswordEncryptor passwordEncryptor,
+            File userDataFile, String adminName, int saveDelay) {
         super(adminName, passwordEncryptor);
+        this.saveDelay = saveDelay;
 
         loadFromFile(userDataFile);
     }
@@ -143,13 +180,14 @@ public class PropertiesUserManager extends AbstractUserManager {
     public PropertiesUserManager(PasswordEncryptor passwordEncryptor,
             URL userDataPath, String adminName) {
         super(adminName, passwordEncryptor);
+        this.saveDelay = 0;
 
         loadFromUrl(userDataPath);
     }
 
     private void loadFromFile(File userDataFile) {
         try {
-            userDataProp = new BaseProperties();
+            BaseProperties props = new BaseProperties();
 
             if (userDataFile != null) {
                 LOG.debug("File configured, will try loading");
@@ -161,7 +199,7 @@ public class PropertiesUserManager extends AbstractUserManager {
                     FileInputStream fis = null;
                     try {
                         fis = new FileInputStream(userDataFile);
-                        userDataProp.load(fis);
+                        props.load(fis);
                     } finally {
                         IoUtils.close(fis);
                     }
@@ -175,7 +213,7 @@ public class PropertiesUserManager extends AbstractUserManager {
 
                     if (is != null) {
                         try {
-                            userDataProp.load(is);
+                            props.load(is);
                         } finally {
                             IoUtils.close(is);
                         }
@@ -187,6 +225,8 @@ public class PropertiesUserManager extends AbstractUserManager {
                     }
                 }
             }
+
+            setUserData(props);
         } catch (IOException e) {
             throw new FtpServerConfigurationException(
                     "Error loading user data file : " + userDataFile, e);
@@ -195,7 +235,7 @@ public class PropertiesUserManager extends AbstractUserManager {
 
     private void loadFromUrl(URL userDataPath) {
         try {
-            userDataProp = new BaseProperties();
+            BaseProperties props = new BaseProperties();
 
             if (userDataPath != null) {
                 LOG.debug("URL configured, will try loading");
@@ -206,22 +246,93 @@ public class PropertiesUserManager extends AbstractUserManager {
                 is = userDataPath.openStream();
 
                 try {
-                    userDataProp.load(is);
+                    props.load(is);
                 } finally {
                     IoUtils.close(is);
                 }
             }
+
+            setUserData(props);
         } catch (IOException e) {
             throw new FtpServerConfigurationException(
                     "Error loading user data resource : " + userDataPath, e);
         }
     }
 
+    /**
+     * Replace the user data and rebuild the index of users
+     */
+    private void setUserData(BaseProperties props) {
+        ConcurrentNavigableMap<String, IndexedUser> newUsers = new ConcurrentSkipListMap<String, IndexedUser>();
+
+        String suffix = '.' + ATTR_HOME;
+        int prefixlen = PREFIX.length();
+        int suffixlen = suffix.length();
+        Enumeration<?> allKeys = props.propertyNames();
+        while (allKeys.hasMoreElements()) {
+            String key = (String) allKeys.nextElement();
+            if (key.startsWith(PREFIX) && key.endsWith(suffix)
+                    && key.length() > prefixlen + suffixlen) {
+                String name = key.substring(prefixlen, key.length()
+                        - suffixlen);
+                newUsers.put(name, createIndexedUser(props, name));
+            }
+        }
+
+        synchronized (this) {
+            userDataProp = props;
+            users = newUsers;
+        }
+    }
+
+    /**
+     * Create the indexed user from the properties
+     */
+    private IndexedUser createIndexedUser(BaseProperties props, String userName) {
+        String baseKey = PREFIX + userName + '.';
+        BaseUser user = new BaseUser();
+        user.setName(userName);
+        user.setEnabled(props.getBoolean(baseKey + ATTR_ENABLE, true));
+        user.setHomeDirectory(props.getProperty(baseKey + ATTR_HOME, "/"));
+
+        List<Authority> authorities = new ArrayList<Authority>();
+
+        if (props.getBoolean(baseKey + ATTR_WRITE_PERM, false)) {
+            authorities.add(new WritePermission());
+        }
+
+        int maxLogin = props.getInteger(baseKey + ATTR_MAX_LOGIN_NUMBER, 0);
+        int maxLoginPerIP = props.getInteger(baseKey + ATTR_MAX_LOGIN_PER_IP,
+                0);
+
+        authorities.add(new ConcurrentLoginPermission(maxLogin, maxLoginPerIP));
+
+        int uploadRate = props.getInteger(baseKey + ATTR_MAX_UPLOAD_RATE, 0);
+        int downloadRate = props.getInteger(baseKey + ATTR_MAX_DOWNLOAD_RATE,
+                0);
+
+        authorities.add(new TransferRatePermission(downloadRate, uploadRate));
+
+        user.setAuthorities(authorities);
+
+        user.setMaxIdleTime(props.getInteger(baseKey + ATTR_MAX_IDLE_TIME, 0));
+
+        return new IndexedUser(user, props.getProperty(baseKey
+                + ATTR_PASSWORD));
+    }
+
     /**
      * Reloads the contents of the user.properties file. This allows any manual modifications to the file to be recognised by the running server.
+     * Changes not yet written to the file are written first.
      */
     public void refresh() {
-        synchronized (userDataProp) {
+        synchronized (writeLock) {
+            try {
+                flush();
+            } catch (FtpException e) {
+                LOG.warn("Failed writing pending user data before refresh", e);
+            }
+
             if (userDataFile != null) {
                 LOG.debug("Refreshing user manager using file: "
                         + userDataFile.getAbsolutePath());
@@ -244,14 +355,33 @@ public class PropertiesUserManager extends AbstractUserManager {
         return userDataFile;
     }
 
+    /**
+     * Get the time changes are collected before being written to the file
+     * @return The delay in milliseconds, 0 if changes are written right away
+     */
+    public int getSaveDelay() {
+        return saveDelay;
+    }
+
     /**
      * Save user data. Store the properties.
      */
-    public synchronized void save(User usr) throws FtpException {
+    public void save(User usr) throws FtpException {
         // null value check
         if (usr.getName() == null) {
             throw new NullPointerException("User name is null.");
         }
+        synchronized (writeLock) {
+            setUserProperties(usr);
+        }
+
+        saveUserData();
+    }
+
+    /**
+     * Set the properties of a user and index it
+     */
+    private synchronized void setUserProperties(User usr) {
         String thisPrefix = PREFIX + usr.getName() + '.';
 
         // set other properties
@@ -298,10 +428,13 @@ public class PropertiesUserManager extends AbstractUserManager {
             userDataProp.remove(thisPrefix + ATTR_MAX_LOGIN_PER_IP);
         }
 
-        saveUserData();
+        users.put(usr.getName(), createIndexedUser(userDataProp, usr
+                .getName()));
     }
 
     /**
+     * Write the user data to the file, right away or after the save delay.
+     * 
      * @throws FtpException
      */
     private void saveUserData() throws FtpException {
@@ -309,6 +442,83 @@ public class PropertiesUserManager extends AbstractUserManager {
             return;
         }
 
+        synchronized (this) {
+            dirty = true;
+
+            if (saveDelay > 0) {
+                if (pendingWrite == null) {
+                    if (writer == null) {
+                        writer = Executors
+                                .newSingleThreadScheduledExecutor(new ThreadFactory() {
+                                    public Thread newThread(Runnable r) {
+                                        Thread thread = new Thread(r,
+                                                "ftpserver-user-writer");
+                                        thread.setDaemon(true);
+                                        return thread;
+                                    }
+                                });
+                    }
+                    pendingWrite = writer.schedule(new Runnable() {
+                        public void run() {
+                            try {
+                                flush();
+                            } catch (FtpException e) {
+                                // already logged, retried on the next save
+                            }
+                        }
+                    }, saveDelay, TimeUnit.MILLISECONDS);
+                }
+                return;
+            }
+        }
+
+        flush();
+    }
+
+    /**
+     * Write changes not yet written to the file. Only needed if a save delay
+     * has been configured.
+     * 
+     * @throws FtpException
+     *             If the file could not be written
+     */
+    public void flush() throws FtpException {
+        if (userDataFile == null) {
+            return;
+        }
+
+        synchronized (writeLock) {
+            BaseProperties snapshot;
+            synchronized (this) {
+                if (pendingWrite != null) {
+                    pendingWrite.cancel(false);
+                    pendingWrite = null;
+                }
+                if (!dirty || userDataProp == null) {
+                    return;
+                }
+                dirty = false;
+
+                snapshot = new BaseProperties();
+                snapshot.putAll(userDataProp);
+            }
+
+            try {
+                writeUserData(snapshot);
+            } catch (FtpException e) {
+                synchronized (this) {
+                    dirty = true;
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Write the properties to a temporary file which then replaces the user
+     * data file, so that the file is never seen half written.
+     */
+    private void writeUserData(BaseProperties props) throws FtpException {
         File dir = userDataFile.getAbsoluteFile().getParentFile();
         if (dir != null && !dir.exists() && !dir.mkdirs()) {
             String dirName = dir.getAbsolutePath();
@@ -317,15 +527,33 @@ public class PropertiesUserManager extends AbstractUserManager {
         }
 
         // save user data
+        File tmpFile = null;
         FileOutputStream fos = null;
         try {
-            fos = new FileOutputStream(userDataFile);
-            userDataProp.store(fos, "Generated file - don't edit (please)");
+            tmpFile = File.createTempFile(userDataFile.getName(), ".tmp", dir);
+            fos = new FileOutputStream(tmpFile);
+            props.store(fos, "Generated file - don't edit (please)");
+            fos.close();
+            fos = null;
+
+            try {
+                Files.move(tmpFile.toPath(), userDataFile.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmpFile.toPath(), userDataFile.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+            tmpFile = null;
         } catch (IOException ex) {
             LOG.error("Failed saving user data", ex);
             throw new FtpException("Failed saving user data", ex);
         } finally {
             IoUtils.close(fos);
+            if (tmpFile != null && !tmpFile.delete()) {
+                LOG.warn("Failed deleting temporary user data file: "
+                        + tmpFile);
+            }
         }
     }
 
@@ -334,6 +562,17 @@ public class PropertiesUserManager extends AbstractUserManager {
      * removing the corresponding from the properties, save the data.
      */
     public void delete(String usrName) throws FtpException {
+        synchronized (writeLock) {
+            removeUserProperties(usrName);
+        }
+
+        saveUserData();
+    }
+
+    /**
+     * Remove all properties of a user and its index entry
+     */
+    private synchronized void removeUserProperties(String usrName) {
         // remove entries from properties
         String thisPrefix = PREFIX + usrName + '.';
         Enumeration<?> propNames = userDataProp.propertyNames();
@@ -349,7 +588,7 @@ public class PropertiesUserManager extends AbstractUserManager {
             userDataProp.remove(remKeysIt.next());
         }
 
-        saveUserData();
+        users.remove(usrName);
     }
 
     /**
@@ -388,75 +627,32 @@ public class PropertiesUserManager extends AbstractUserManager {
      * Get all user names.
      */
     public String[] getAllUserNames() {
-        // get all user names
-        String suffix = '.' + ATTR_HOME;
-        ArrayList<String> ulst = new ArrayList<String>();
-        Enumeration<?> allKeys = userDataProp.propertyNames();
-        int prefixlen = PREFIX.length();
-        int suffixlen = suffix.length();
-        while (allKeys.hasMoreElements()) {
-            String key = (String) allKeys.nextElement();
-            if (key.endsWith(suffix)) {
-                String name = key.substring(prefixlen);
-                int endIndex = name.length() - suffixlen;
-                name = name.substring(0, endIndex);
-                ulst.add(name);
-            }
-        }
-
-        Collections.sort(ulst);
-        return ulst.toArray(new String[0]);
+        // the index is sorted by name
+        return users.keySet().toArray(new String[0]);
     }
 
     /**
      * Load user data.
      */
     public User getUserByName(String userName) {
-        if (!doesExist(userName)) {
+        if (userName == null) {
             return null;
         }
 
-        String baseKey = PREFIX + userName + '.';
-        BaseUser user = new BaseUser();
-        user.setName(userName);
-        user.setEnabled(userDataProp.getBoolean(baseKey + ATTR_ENABLE, true));
-        user.setHomeDirectory(userDataProp
-                .getProperty(baseKey + ATTR_HOME, "/"));
-
-        List<Authority> authorities = new ArrayList<Authority>();
-
-        if (userDataProp.getBoolean(baseKey + ATTR_WRITE_PERM, false)) {
-            authorities.add(new WritePermission());
+        IndexedUser indexedUser = users.get(userName);
+        if (indexedUser == null) {
+            return null;
         }
 
-        int maxLogin = userDataProp.getInteger(baseKey + ATTR_MAX_LOGIN_NUMBER,
-                0);
-        int maxLoginPerIP = userDataProp.getInteger(baseKey
-                + ATTR_MAX_LOGIN_PER_IP, 0);
-
-        authorities.add(new ConcurrentLoginPermission(maxLogin, maxLoginPerIP));
-
-        int uploadRate = userDataProp.getInteger(
-                baseKey + ATTR_MAX_UPLOAD_RATE, 0);
-        int downloadRate = userDataProp.getInteger(baseKey
-                + ATTR_MAX_DOWNLOAD_RATE, 0);
-
-        authorities.add(new TransferRatePermission(downloadRate, uploadRate));
-
-        user.setAuthorities(authorities);
-
-        user.setMaxIdleTime(userDataProp.getInteger(baseKey
-                + ATTR_MAX_IDLE_TIME, 0));
-
-        return user;
+        // a copy, the caller is free to change it
+        return new BaseUser(indexedUser.user);
     }
 
     /**
      * User existance check
      */
     public boolean doesExist(String name) {
-        String key = PREFIX + name + '.' + ATTR_HOME;
-        return userDataProp.containsKey(key);
+        return name != null && users.containsKey(name);
     }
 
     /**
@@ -478,16 +674,15 @@ public class PropertiesUserManager extends AbstractUserManager {
                 password = "";
             }
 
-            String storedPassword = userDataProp.getProperty(PREFIX + user
-                    + '.' + ATTR_PASSWORD);
+            IndexedUser indexedUser = users.get(user);
 
-            if (storedPassword == null) {
+            if (indexedUser == null || indexedUser.password == null) {
                 // user does not exist
                 throw new AuthenticationFailedException("Authentication failed");
             }
 
-            if (getPasswordEncryptor().matches(password, storedPassword)) {
-                return getUserByName(user);
+            if (getPasswordEncryptor().matches(password, indexedUser.password)) {
+                return new BaseUser(indexedUser.user);
             } else {
                 throw new AuthenticationFailedException("Authentication failed");
             }
@@ -505,13 +700,42 @@ public class PropertiesUserManager extends AbstractUserManager {
     }
 
     /**
-     * Close the user manager - remove existing entries.
+     * Close the user manager - remove existing entries. Changes not yet
+     * written to the file are written first.
      */
-    public synchronized void dispose() {
-        if (userDataProp != null) {
-            userDataProp.clear();
-            userDataProp = null;
+    public void dispose() {
+        try {
+            flush();
+        } catch (FtpException e) {
+            LOG.warn("Failed writing pending user data on dispose", e);
+        }
+
+        synchronized (this) {
+            if (writer != null) {
+                writer.shutdownNow();
+                writer = null;
+            }
+            if (userDataProp != null) {
+                userDataProp.clear();
+                userDataProp = null;
+            }
+            users = new ConcurrentSkipListMap<String, IndexedUser>();
         }
     }
 
+    /**
+     * A user with its stored password
+     */
+    private static class IndexedUser {
+
+        // without password
+        private final BaseUser user;
+
+        private final String password;
+
+        public IndexedUser(BaseUser user, String password) {
+            this.user = user;
+            this.password = password;
+        }
+    }
 }
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ftpserver.usermanager.impl;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <strong>Internal class, do not use directly.</strong>
+ * 
+ * A SQL statement of {@link DbUserManager} converted for use as a prepared
+ * statement. Every <code>{name}</code> variable is replaced by a parameter,
+ * the quotes around a quoted variable like <code>'{userid}'</code> are
+ * removed. Variables inside a longer quoted literal can not be converted.
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+class SqlTemplate {
+
+    private final String sql;
+
+    private final String[] names;
+
+    private final boolean[] quoted;
+
+    /**
+     * Convert a statement
+     * 
+     * @param source
+     *            The statement with variables
+     * @throws IllegalArgumentException
+     *             If a variable can not be converted to a parameter
+     */
+    public SqlTemplate(String source) {
+        StringBuilder sb = new StringBuilder(source.length());
+        List<String> nameList = new ArrayList<String>();
+        List<Boolean> quotedList = new ArrayList<Boolean>();
+
+        boolean inLiteral = false;
+        int i = 0;
+        while (i < source.length()) {
+            char c = source.charAt(i);
+            int closeIndex = c == '{' ? source.indexOf('}', i) : -1;
+
+            if (closeIndex == -1) {
+                if (c == '\'') {
+                    inLiteral = !inLiteral;
+                }
+                sb.append(c);
+                i++;
+                continue;
+            }
+
+            String name = source.substring(i + 1, closeIndex);
+            boolean isQuoted = inLiteral && sb.charAt(sb.length() - 1) == '\''
+                    && closeIndex + 1 < source.length()
+                    && source.charAt(closeIndex + 1) == '\'';
+            if (isQuoted) {
+                // remove the quotes around the parameter
+                sb.setLength(sb.length() - 1);
+                closeIndex++;
+                inLiteral = false;
+            } else if (inLiteral) {
+                throw new IllegalArgumentException("Variable " + name
+                        + " is part of a literal in: " + source);
+            }
+            sb.append('?');
+            nameList.add(name);
+            quotedList.add(isQuoted);
+            i = closeIndex + 1;
+        }
+
+        sql = sb.toString();
+        names = nameList.toArray(new String[nameList.size()]);
+        quoted = new boolean[names.length];
+        for (int j = 0; j < quoted.length; j++) {
+            quoted[j] = quotedList.get(j);
+        }
+    }
+
+    /**
+     * Get the statement with parameters
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * Set the parameters of a statement created from {@link #getSql()}.
+     * Quoted variables are set as strings, a missing value as an empty
+     * string, same as if the value would have been put in the statement.
+     */
+    public void bind(PreparedStatement stmt, Map<String, Object> values)
+            throws SQLException {
+        for (int i = 0; i < names.length; i++) {
+            Object value = values.get(names[i]);
+            if (quoted[i]) {
+                stmt.setString(i + 1, value != null ? value.toString() : "");
+            } else {
+                stmt.setObject(i + 1, value);
+            }
+        }
+    }
+}
@@ -35,9 +35,28 @@ public class TransferRatePermission implements Authority {
 
     private int maxUploadRate;
 
+    private int maxDownloadBurst;
+
+    private int maxUploadBurst;
+
     public TransferRatePermission(int maxDownloadRate, int maxUploadRate) {
+        this(maxDownloadRate, maxUploadRate, 0, 0);
+    }
+
+    /**
+     * @param maxDownloadBurst
+     *            The number of bytes that may be downloaded without delay, 0
+     *            for the default
+     * @param maxUploadBurst
+     *            The number of bytes that may be uploaded without delay, 0
+     *            for the default
+     */
+    public TransferRatePermission(int maxDownloadRate, int maxUploadRate,
+            int maxDownloadBurst, int maxUploadBurst) {
         this.maxDownloadRate = maxDownloadRate;
         this.maxUploadRate = maxUploadRate;
+        this.maxDownloadBurst = maxDownloadBurst;
+        this.maxUploadBurst = maxUploadBurst;
     }
 
     /**
@@ -49,6 +68,8 @@ public class TransferRatePermission implements Authority {
 
             transferRateRequest.setMaxDownloadRate(maxDownloadRate);
             transferRateRequest.setMaxUploadRate(maxUploadRate);
+            transferRateRequest.setMaxDownloadBurst(maxDownloadBurst);
+            transferRateRequest.setMaxUploadBurst(maxUploadBurst);
 
             return transferRateRequest;
         } else {
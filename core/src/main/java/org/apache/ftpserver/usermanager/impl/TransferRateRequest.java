@@ -20,6 +20,8 @@
 package org.apache.ftpserver.usermanager.impl;
 
 import org.apache.ftpserver.ftplet.AuthorizationRequest;
+import org.apache.ftpserver.util.BandwidthShaper;
+import org.apache.ftpserver.util.TokenBucketShaper;
 
 /**
  * <strong>Internal class, do not use directly.</strong>
@@ -34,6 +36,10 @@ public class TransferRateRequest implements AuthorizationRequest {
 
     private int maxUploadRate = 0;
 
+    private int maxDownloadBurst = 0;
+
+    private int maxUploadBurst = 0;
+
     /**
      * @return the maxDownloadRate
      */
@@ -64,4 +70,60 @@ public class TransferRateRequest implements AuthorizationRequest {
         this.maxUploadRate = maxUploadRate;
     }
 
+    /**
+     * @return the maximum number of bytes that may be downloaded without
+     *         delay, 0 for the default burst size
+     */
+    public int getMaxDownloadBurst() {
+        return maxDownloadBurst;
+    }
+
+    /**
+     * @param maxDownloadBurst
+     *            the maxDownloadBurst to set
+     */
+    public void setMaxDownloadBurst(int maxDownloadBurst) {
+        this.maxDownloadBurst = maxDownloadBurst;
+    }
+
+    /**
+     * @return the maximum number of bytes that may be uploaded without delay,
+     *         0 for the default burst size
+     */
+    public int getMaxUploadBurst() {
+        return maxUploadBurst;
+    }
+
+    /**
+     * @param maxUploadBurst
+     *            the maxUploadBurst to set
+     */
+    public void setMaxUploadBurst(int maxUploadBurst) {
+        this.maxUploadBurst = maxUploadBurst;
+    }
+
+    /**
+     * Create the shaper enforcing the download rate.
+     *
+     * @return The shaper, or null if the download rate is not limited
+     */
+    public BandwidthShaper createDownloadShaper() {
+        if (maxDownloadRate <= 0) {
+            return null;
+        }
+        return new TokenBucketShaper(maxDownloadRate, maxDownloadBurst);
+    }
+
+    /**
+     * Create the shaper enforcing the upload rate.
+     *
+     * @return The shaper, or null if the upload rate is not limited
+     */
+    public BandwidthShaper createUploadShaper() {
+        if (maxUploadRate <= 0) {
+            return null;
+        }
+        return new TokenBucketShaper(maxUploadRate, maxUploadBurst);
+    }
+
 }
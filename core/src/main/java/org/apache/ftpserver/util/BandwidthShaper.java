@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ftpserver.util;
+
+/**
+ * <strong>Internal class, do not use directly.</strong>
+ *
+ * Limits the rate at which data is transferred. Before each read, the
+ * transfer asks the shaper how many bytes it may move, and the shaper blocks
+ * for exactly as long as needed to stay within its budget.
+ *
+ * Implementations must be thread safe so that a single shaper can be shared by
+ * several concurrent transfers.
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public interface BandwidthShaper {
+
+    /**
+     * Acquire permission to transfer data. Blocks until the returned number
+     * of bytes may be transferred.
+     *
+     * @param maxBytes
+     *            The maximum number of bytes the caller wants to transfer
+     * @return The number of bytes the caller may transfer, between 1 and
+     *         maxBytes (0 only if maxBytes is 0)
+     * @throws InterruptedException
+     *             If the thread was interrupted while waiting
+     */
+    int acquire(int maxBytes) throws InterruptedException;
+
+    /**
+     * Give back bytes that were acquired but not transferred, for example
+     * because a read returned less data than requested.
+     *
+     * @param bytes
+     *            The number of unused bytes
+     */
+    void release(int bytes);
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ftpserver.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <strong>Internal class, do not use directly.</strong>
+ *
+ * Combines several {@link BandwidthShaper}s, for example a per user limit
+ * together with listener and server wide budgets. A transfer may only move as
+ * many bytes as every shaper in the chain allows. Shapers are consulted from
+ * the most specific to the most general one, and bytes granted by one shaper
+ * but denied by a later one are handed back.
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class BandwidthShaperChain implements BandwidthShaper {
+
+    private final BandwidthShaper[] shapers;
+
+    private BandwidthShaperChain(BandwidthShaper[] shapers) {
+        this.shapers = shapers;
+    }
+
+    /**
+     * Combine the provided shapers, ignoring null values.
+     *
+     * @param shapers
+     *            The shapers, from the most specific to the most general one
+     * @return A shaper enforcing all provided shapers, or null if no shaper
+     *         was provided
+     */
+    public static BandwidthShaper chain(BandwidthShaper... shapers) {
+        List<BandwidthShaper> active = new ArrayList<BandwidthShaper>();
+        for (BandwidthShaper shaper : shapers) {
+            if (shaper != null) {
+                active.add(shaper);
+            }
+        }
+
+        if (active.isEmpty()) {
+            return null;
+        } else if (active.size() == 1) {
+            return active.get(0);
+        } else {
+            return new BandwidthShaperChain(active
+                    .toArray(new BandwidthShaper[active.size()]));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int acquire(int maxBytes) throws InterruptedException {
+        int granted = maxBytes;
+        for (int i = 0; i < shapers.length; i++) {
+            int allowed;
+            try {
+                allowed = shapers[i].acquire(granted);
+            } catch (InterruptedException ex) {
+                release(i, granted);
+                throw ex;
+            }
+
+            if (allowed < granted) {
+                release(i, granted - allowed);
+            }
+            granted = allowed;
+        }
+        return granted;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void release(int bytes) {
+        release(shapers.length, bytes);
+    }
+
+    /**
+     * Release bytes to the first count shapers.
+     */
+    private void release(int count, int bytes) {
+        for (int i = 0; i < count; i++) {
+            shapers[i].release(bytes);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ftpserver.util;
+
+import java.util.zip.Checksum;
+
+/**
+ * <strong>Internal class, do not use directly.</strong>
+ * 
+ * CRC-32C (Castagnoli) checksum as defined in RFC 3720. Implemented here
+ * since java.util.zip.CRC32C is not available on all supported Java versions.
+ * Processes eight bytes at a time using slicing tables.
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class CRC32C implements Checksum {
+
+    private static final int POLYNOMIAL = 0x82F63B78;
+
+    private static final int[][] TABLES = new int[8][256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i;
+            for (int j = 0; j < 8; j++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLYNOMIAL : crc >>> 1;
+            }
+            TABLES[0][i] = crc;
+        }
+        for (int i = 0; i < 256; i++) {
+            int crc = TABLES[0][i];
+            for (int t = 1; t < 8; t++) {
+                crc = TABLES[0][crc & 0xFF] ^ (crc >>> 8);
+                TABLES[t][i] = crc;
+            }
+        }
+    }
+
+    private int crc = 0xFFFFFFFF;
+
+    /**
+     * {@inheritDoc}
+     */
+    public void update(int b) {
+        crc = TABLES[0][(crc ^ b) & 0xFF] ^ (crc >>> 8);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void update(byte[] b, int off, int len) {
+        int[] t0 = TABLES[0], t1 = TABLES[1], t2 = TABLES[2], t3 = TABLES[3];
+        int[] t4 = TABLES[4], t5 = TABLES[5], t6 = TABLES[6], t7 = TABLES[7];
+
+        int c = crc;
+        int end = off + len;
+        while (end - off >= 8) {
+            int lo = c ^ ((b[off] & 0xFF) | (b[off + 1] & 0xFF) << 8
+                    | (b[off + 2] & 0xFF) << 16 | (b[off + 3] & 0xFF) << 24);
+            int hi = (b[off + 4] & 0xFF) | (b[off + 5] & 0xFF) << 8
+                    | (b[off + 6] & 0xFF) << 16 | (b[off + 7] & 0xFF) << 24;
+            c = t7[lo & 0xFF] ^ t6[(lo >>> 8) & 0xFF] ^ t5[(lo >>> 16) & 0xFF]
+                    ^ t4[lo >>> 24] ^ t3[hi & 0xFF] ^ t2[(hi >>> 8) & 0xFF]
+                    ^ t1[(hi >>> 16) & 0xFF] ^ t0[hi >>> 24];
+            off += 8;
+        }
+        while (off < end) {
+            c = t0[(c ^ b[off++]) & 0xFF] ^ (c >>> 8);
+        }
+        crc = c;
+    }
+
+    /**
+     * Update the checksum with all bytes of the array.
+     */
+    public void update(byte[] b) {
+        update(b, 0, b.length);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getValue() {
+        return (~crc) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void reset() {
+        crc = 0xFFFFFFFF;
+    }
+}
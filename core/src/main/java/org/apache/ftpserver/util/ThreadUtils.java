@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ftpserver.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * <strong>Internal class, do not use directly.</strong>
+ * 
+ * Thread utility methods.
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class ThreadUtils {
+
+    /**
+     * Create a factory for virtual threads, named by the prefix followed by a
+     * counter. Virtual threads are looked up by reflection, so that the server
+     * can still be built for and run on older Java versions.
+     * 
+     * @param prefix
+     *            The thread name prefix
+     * @return The thread factory, or null if the Java runtime does not support
+     *         virtual threads
+     */
+    public static ThreadFactory createVirtualThreadFactory(String prefix) {
+        try {
+            // Thread.ofVirtual().name(prefix, 0).factory()
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Object builder = ofVirtual.invoke(null);
+
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class)
+                    .invoke(builder, prefix, Long.valueOf(0));
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(
+                    builder);
+        } catch (Exception e) {
+            // not available, or a preview feature that is not enabled
+            return null;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ftpserver.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <strong>Internal class, do not use directly.</strong>
+ *
+ * Token bucket implementation of {@link BandwidthShaper}. The bucket is
+ * refilled continuously at the configured rate with nanosecond precision and
+ * holds at most burst size tokens, so an idle transfer can never build up more
+ * than one burst worth of credit.
+ *
+ * A request for more bytes than are available is granted immediately and the
+ * caller then sleeps for exactly the time it takes to refill the missing
+ * tokens. Concurrent callers sharing a bucket are therefore served in the
+ * order they asked, and nobody needs to poll.
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class TokenBucketShaper implements BandwidthShaper {
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    // used when no burst size has been configured, in fractions of a second
+    private static final int DEFAULT_BURST_DIVISOR = 10;
+
+    private final long rate;
+
+    private final long burstSize;
+
+    // available tokens, negative if callers are waiting for a refill
+    private long tokens;
+
+    private long lastRefill;
+
+    /**
+     * Create a shaper with a default burst size of a tenth of a second worth
+     * of data.
+     *
+     * @param rate
+     *            The maximum rate in bytes per second
+     */
+    public TokenBucketShaper(long rate) {
+        this(rate, 0);
+    }
+
+    /**
+     * Create a shaper.
+     *
+     * @param rate
+     *            The maximum rate in bytes per second
+     * @param burstSize
+     *            The maximum number of bytes that may be transferred without
+     *            delay, or 0 to use the default
+     */
+    public TokenBucketShaper(long rate, long burstSize) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("Rate must be positive");
+        }
+        if (burstSize < 0) {
+            throw new IllegalArgumentException("Burst size can not be negative");
+        }
+
+        this.rate = rate;
+        if (burstSize == 0) {
+            burstSize = Math.max(1, rate / DEFAULT_BURST_DIVISOR);
+        }
+        this.burstSize = burstSize;
+        this.tokens = burstSize;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * @return The maximum rate in bytes per second
+     */
+    public long getRate() {
+        return rate;
+    }
+
+    /**
+     * @return The maximum number of bytes that may be transferred without
+     *         delay
+     */
+    public long getBurstSize() {
+        return burstSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int acquire(int maxBytes) throws InterruptedException {
+        if (maxBytes <= 0) {
+            return 0;
+        }
+
+        int granted;
+        long waitNanos;
+        synchronized (this) {
+            refill(System.nanoTime());
+
+            granted = (int) Math.min(maxBytes, burstSize);
+            tokens -= granted;
+            waitNanos = tokens < 0 ? nanosFor(-tokens) : 0;
+        }
+
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException ex) {
+                release(granted);
+                throw ex;
+            }
+        }
+        return granted;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void release(int bytes) {
+        if (bytes > 0) {
+            tokens = Math.min(burstSize, tokens + bytes);
+        }
+    }
+
+    /**
+     * Add the tokens accumulated since the last refill. Only the time that
+     * corresponds to whole tokens is consumed, so no fractions get lost.
+     */
+    private void refill(long now) {
+        long elapsed = now - lastRefill;
+        if (elapsed <= 0) {
+            return;
+        }
+
+        long missing = burstSize - tokens;
+        if (missing <= 0 || elapsed >= nanosFor(missing)) {
+            tokens = burstSize;
+            lastRefill = now;
+            return;
+        }
+
+        long added = elapsed * rate / NANOS_PER_SECOND;
+        tokens += added;
+        lastRefill += added * NANOS_PER_SECOND / rate;
+    }
+
+    /**
+     * Get the number of nanoseconds needed to refill the number of bytes,
+     * rounded up.
+     */
+    private long nanosFor(long bytes) {
+        return (bytes * NANOS_PER_SECOND + rate - 1) / rate;
+    }
+}
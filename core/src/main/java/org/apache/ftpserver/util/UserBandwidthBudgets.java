@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ftpserver.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <strong>Internal class, do not use directly.</strong>
+ *
+ * Bandwidth budgets shared by all transfers of a user, over all of its
+ * sessions. Every user gets its own {@link TokenBucketShaper} with the same
+ * rate. A budget only exists while the user has active transfers, so the
+ * number of budgets is bounded by the number of concurrent transfers.
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class UserBandwidthBudgets {
+
+    private final int rate;
+
+    private final Map<String, Budget> budgets = new HashMap<String, Budget>();
+
+    /**
+     * Create the budgets.
+     *
+     * @param rate
+     *            The maximum rate of each user in bytes per second
+     */
+    public UserBandwidthBudgets(int rate) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("Rate must be positive");
+        }
+        this.rate = rate;
+    }
+
+    /**
+     * Get the maximum rate of each user
+     *
+     * @return The rate in bytes per second
+     */
+    public int getRate() {
+        return rate;
+    }
+
+    /**
+     * Get the shaper of a user for a new transfer. Every call must be
+     * followed by a call to {@link #release(String)} once the transfer is
+     * done.
+     *
+     * @param userName
+     *            The name of the user
+     * @return The shaper shared by all transfers of the user
+     */
+    public synchronized BandwidthShaper acquire(String userName) {
+        Budget budget = budgets.get(userName);
+        if (budget == null) {
+            budget = new Budget(new TokenBucketShaper(rate));
+            budgets.put(userName, budget);
+        }
+        budget.transfers++;
+        return budget.shaper;
+    }
+
+    /**
+     * Signal that a transfer of a user is done. The budget of the user is
+     * dropped when it has no more active transfers.
+     *
+     * @param userName
+     *            The name of the user
+     */
+    public synchronized void release(String userName) {
+        Budget budget = budgets.get(userName);
+        if (budget != null && --budget.transfers <= 0) {
+            budgets.remove(userName);
+        }
+    }
+
+    /**
+     * Get the number of users with active transfers
+     *
+     * @return The number of users
+     */
+    public synchronized int getSize() {
+        return budgets.size();
+    }
+
+    private static class Budget {
+
+        private final BandwidthShaper shaper;
+
+        private int transfers;
+
+        public Budget(BandwidthShaper shaper) {
+            this.shaper = shaper;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ftpserver.clienttests;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import org.apache.commons.net.ftp.FTP;
+import org.apache.ftpserver.FtpServerFactory;
+import org.apache.ftpserver.listener.ListenerFactory;
+import org.apache.ftpserver.test.TestUtil;
+
+/**
+*
+* @author <a href="http://mina.apache.org">Apache MINA Project</a>*
+*/
+public class BandwidthLimitTest extends ClientTestTemplate {
+
+    private static final String TEST_FILENAME = "test.txt";
+
+    private static final File TEST_FILE = new File(ROOT_DIR, TEST_FILENAME);
+
+    private static final int RATE = 20000;
+
+    private static final byte[] TEST_DATA = new byte[3 * RATE / 2];
+
+    protected FtpServerFactory createServer() throws Exception {
+        FtpServerFactory serverFactory = super.createServer();
+
+        // server wide download limit
+        serverFactory.setMaxDownloadRate(RATE);
+
+        // listener wide upload limit
+        ListenerFactory listenerFactory = new ListenerFactory(serverFactory
+                .getListener("default"));
+        listenerFactory.setMaxUploadRate(RATE);
+        serverFactory.addListener("default", listenerFactory.createListener());
+
+        return serverFactory;
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        client.login(ADMIN_USERNAME, ADMIN_PASSWORD);
+        client.setFileType(FTP.BINARY_FILE_TYPE);
+    }
+
+    public void testServerDownloadLimit() throws Exception {
+        TestUtil.writeDataToFile(TEST_FILE, TEST_DATA);
+
+        long start = System.currentTimeMillis();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        assertTrue(client.retrieveFile(TEST_FILENAME, baos));
+        long elapsed = System.currentTimeMillis() - start;
+
+        TestUtil.assertArraysEqual(TEST_DATA, baos.toByteArray());
+        assertTrue("Took " + elapsed + " ms", elapsed >= 1000);
+    }
+
+    public void testListenerUploadLimit() throws Exception {
+        long start = System.currentTimeMillis();
+        assertTrue(client.storeFile(TEST_FILENAME, new ByteArrayInputStream(
+                TEST_DATA)));
+        long elapsed = System.currentTimeMillis() - start;
+
+        TestUtil.assertFileEqual(TEST_DATA, TEST_FILE);
+        assertTrue("Took " + elapsed + " ms", elapsed >= 1000);
+    }
+}
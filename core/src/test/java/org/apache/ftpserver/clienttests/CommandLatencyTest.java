@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ftpserver.clienttests;
+
+import java.io.ByteArrayInputStream;
+import java.util.Map;
+
+import org.apache.ftpserver.impl.ServerFtpStatistics;
+import org.apache.ftpserver.util.LatencyHistogram;
+
+/**
+*
+* @author <a href="http://mina.apache.org">Apache MINA Project</a>*
+*/
+public class CommandLatencyTest extends ClientTestTemplate {
+
+    private Map<String, Map<String, LatencyHistogram>> getLatencies() {
+        return ((ServerFtpStatistics) server.getServerContext()
+                .getFtpStatistics()).getCommandLatencies();
+    }
+
+    public void testPhasesRecorded() throws Exception {
+        assertTrue(client.login(ADMIN_USERNAME, ADMIN_PASSWORD));
+        assertTrue(client.storeFile("test.txt", new ByteArrayInputStream(
+                "TESTDATA".getBytes("UTF-8"))));
+
+        // commands of a session are handled in order, the times of the
+        // previous commands are recorded once the NOOP has been answered
+        assertTrue(client.sendNoOp());
+
+        Map<String, LatencyHistogram> pass = getLatencies().get("PASS");
+        assertEquals(1, pass.get(ServerFtpStatistics.COMMAND_TIME_TOTAL)
+                .getCount());
+        assertEquals(1, pass.get(ServerFtpStatistics.COMMAND_TIME_AUTH)
+                .getCount());
+        assertEquals(1, pass.get(ServerFtpStatistics.COMMAND_TIME_FTPLET)
+                .getCount());
+        assertEquals(1, pass.get(ServerFtpStatistics.COMMAND_TIME_QUEUE)
+                .getCount());
+        assertNull(pass.get(ServerFtpStatistics.COMMAND_TIME_IO));
+
+        Map<String, LatencyHistogram> stor = getLatencies().get("STOR");
+        assertEquals(1, stor.get(ServerFtpStatistics.COMMAND_TIME_IO)
+                .getCount());
+        assertNull(stor.get(ServerFtpStatistics.COMMAND_TIME_AUTH));
+        assertTrue(stor.get(ServerFtpStatistics.COMMAND_TIME_TOTAL).getMax() >= stor
+                .get(ServerFtpStatistics.COMMAND_TIME_IO).getMax());
+    }
+
+    public void testListingIoRecorded() throws Exception {
+        assertTrue(client.login(ADMIN_USERNAME, ADMIN_PASSWORD));
+        assertNotNull(client.listFiles());
+        assertNotNull(client.listNames());
+        assertTrue(client.sendNoOp());
+
+        assertEquals(1, getLatencies().get("LIST").get(
+                ServerFtpStatistics.COMMAND_TIME_IO).getCount());
+        assertEquals(1, getLatencies().get("NLST").get(
+                ServerFtpStatistics.COMMAND_TIME_IO).getCount());
+    }
+
+    public void testUnknownCommandNotRecorded() throws Exception {
+        assertTrue(client.login(ADMIN_USERNAME, ADMIN_PASSWORD));
+        client.sendCommand("FOOBAR");
+        assertTrue(client.sendNoOp());
+
+        assertNull(getLatencies().get("FOOBAR"));
+    }
+}
@@ -166,6 +166,29 @@ public class FtpMd5Test extends ClientTestTemplate {
         assertHash(testDataHash, client.getReplyString(), TEST_FILE1.getName());
     }
 
+    public void testMMd5ManyFiles() throws Exception {
+        StringBuilder fileNames = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            byte[] data = ("TESTDATA" + i).getBytes("UTF-8");
+            TestUtil.writeDataToFile(new File(ROOT_DIR, "test" + i + ".txt"),
+                    data);
+
+            if (i > 0) {
+                fileNames.append(',');
+                expected.append(", ");
+            }
+            fileNames.append("test" + i + ".txt");
+            expected.append("test" + i + ".txt ").append(
+                    DigestUtils.md5Hex(data).toUpperCase());
+        }
+
+        assertEquals(252, client.sendCommand("MMD5 " + fileNames));
+
+        // hashes are returned in the requested order
+        assertEquals("252 " + expected, client.getReplyString().trim());
+    }
+
     public void testMMd5MixedFilesAndDirs() throws Exception {
         TestUtil.writeDataToFile(TEST_FILE1, testData);
         TEST_DIR1.mkdirs();
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ftpserver.clienttests;
+
+import java.io.File;
+import java.security.MessageDigest;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.ftpserver.test.TestUtil;
+
+/**
+*
+* @author <a href="http://mina.apache.org">Apache MINA Project</a>*
+*/
+public class HashTest extends ClientTestTemplate {
+    private static final File TEST_FILE1 = new File(ROOT_DIR, "test1.txt");
+
+    private static final File TEST_DIR1 = new File(ROOT_DIR, "dir1");
+
+    private static byte[] testData = null;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        testData = "TESTDATA".getBytes("UTF-8");
+
+        client.login(ADMIN_USERNAME, ADMIN_PASSWORD);
+    }
+
+    private String hash(String algorithm) throws Exception {
+        return new String(Hex.encodeHex(MessageDigest.getInstance(algorithm)
+                .digest(testData)));
+    }
+
+    public void testHashDefaultAlgorithm() throws Exception {
+        TestUtil.writeDataToFile(TEST_FILE1, testData);
+
+        assertEquals(213, client.sendCommand("HASH test1.txt"));
+        assertEquals("213 SHA-256 0-8 " + hash("SHA-256") + " test1.txt",
+                client.getReplyString().trim());
+    }
+
+    public void testHashSelectedAlgorithm() throws Exception {
+        TestUtil.writeDataToFile(TEST_FILE1, testData);
+
+        assertEquals(200, client.sendCommand("OPTS HASH sha-1"));
+        assertEquals("200 SHA-1", client.getReplyString().trim());
+        assertEquals(200, client.sendCommand("OPTS HASH"));
+        assertEquals("200 SHA-1", client.getReplyString().trim());
+
+        assertEquals(213, client.sendCommand("HASH test1.txt"));
+        assertEquals("213 SHA-1 0-8 " + hash("SHA-1") + " test1.txt", client
+                .getReplyString().trim());
+
+        // repeated requests are served from the cache
+        assertEquals(213, client.sendCommand("HASH test1.txt"));
+        assertEquals("213 SHA-1 0-8 " + hash("SHA-1") + " test1.txt", client
+                .getReplyString().trim());
+    }
+
+    public void testHashCrc32c() throws Exception {
+        TestUtil.writeDataToFile(TEST_FILE1, "123456789".getBytes("ASCII"));
+
+        assertEquals(200, client.sendCommand("OPTS HASH CRC32C"));
+        assertEquals(213, client.sendCommand("HASH test1.txt"));
+        assertEquals("213 CRC32C 0-9 e3069283 test1.txt", client
+                .getReplyString().trim());
+    }
+
+    public void testUnknownAlgorithm() throws Exception {
+        assertEquals(504, client.sendCommand("OPTS HASH SHA-999"));
+        assertEquals(200, client.sendCommand("OPTS HASH"));
+        assertEquals("200 SHA-256", client.getReplyString().trim());
+    }
+
+    public void testHashNoFileName() throws Exception {
+        assertEquals(501, client.sendCommand("HASH"));
+    }
+
+    public void testHashNonExistingFile() throws Exception {
+        assertEquals(550, client.sendCommand("HASH test1.txt"));
+    }
+
+    public void testHashDirectory() throws Exception {
+        assertTrue(TEST_DIR1.mkdirs());
+        assertEquals(550, client.sendCommand("HASH dir1"));
+    }
+}
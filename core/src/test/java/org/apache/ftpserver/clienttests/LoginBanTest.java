@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ftpserver.clienttests;
+
+import java.net.InetAddress;
+import java.net.SocketException;
+
+import org.apache.commons.net.ftp.FTPConnectionClosedException;
+import org.apache.ftpserver.ConnectionConfigFactory;
+import org.apache.ftpserver.FtpServerFactory;
+import org.apache.ftpserver.ipfilter.LoginFailureTracker;
+
+/**
+*
+* @author <a href="http://mina.apache.org">Apache MINA Project</a>*
+*/
+public class LoginBanTest extends ClientTestTemplate {
+    private static final String UNKNOWN_USERNAME = "foo";
+
+    private static final String UNKNOWN_PASSWORD = "bar";
+
+    private LoginFailureTracker tracker = new LoginFailureTracker(3);
+
+    protected FtpServerFactory createServer() throws Exception {
+        FtpServerFactory server = super.createServer();
+        server.setLoginFailureTracker(tracker);
+        return server;
+    }
+
+    protected ConnectionConfigFactory createConnectionConfigFactory() {
+        ConnectionConfigFactory ccFactory = new ConnectionConfigFactory();
+        ccFactory.setMaxLoginFailures(0);
+        ccFactory.setLoginFailureDelay(0);
+        return ccFactory;
+    }
+
+    private void assertConnectionClosed() throws Exception {
+        try {
+            client.connect("localhost", getListenerPort());
+            client.login(ADMIN_USERNAME, ADMIN_PASSWORD);
+
+            fail("Must be disconnected");
+        } catch (FTPConnectionClosedException e) {
+            // OK
+        } catch (SocketException e) {
+            // OK
+        }
+    }
+
+    public void testBanAcrossSessions() throws Exception {
+        assertFalse(client.login(UNKNOWN_USERNAME, UNKNOWN_PASSWORD));
+        assertFalse(client.login(UNKNOWN_USERNAME, UNKNOWN_PASSWORD));
+        client.disconnect();
+
+        // the third failure bans the address and closes the session
+        client.connect("localhost", getListenerPort());
+        try {
+            client.login(UNKNOWN_USERNAME, UNKNOWN_PASSWORD);
+            client.noop();
+
+            fail("Must be disconnected");
+        } catch (FTPConnectionClosedException e) {
+            // OK
+        } catch (SocketException e) {
+            // OK
+        }
+        client.disconnect();
+
+        assertTrue(tracker.isBanned(InetAddress.getByName("localhost")));
+        assertEquals(1, tracker.getBans().size());
+
+        // new connections are closed right away
+        assertConnectionClosed();
+        client.disconnect();
+
+        tracker.clear();
+        client.connect("localhost", getListenerPort());
+        assertTrue(client.login(ADMIN_USERNAME, ADMIN_PASSWORD));
+    }
+
+    public void testSuccessResetsFailures() throws Exception {
+        assertFalse(client.login(UNKNOWN_USERNAME, UNKNOWN_PASSWORD));
+        assertFalse(client.login(UNKNOWN_USERNAME, UNKNOWN_PASSWORD));
+        assertTrue(client.login(ADMIN_USERNAME, ADMIN_PASSWORD));
+        client.logout();
+
+        assertEquals(0, tracker.getFailureCount(InetAddress
+                .getByName("localhost")));
+    }
+
+    public void testAnonymousDoesNotResetFailures() throws Exception {
+        assertFalse(client.login(UNKNOWN_USERNAME, UNKNOWN_PASSWORD));
+        assertFalse(client.login(UNKNOWN_USERNAME, UNKNOWN_PASSWORD));
+        assertTrue(client.login(ANONYMOUS_USERNAME, "foo@bar.com"));
+        client.logout();
+
+        assertEquals(2, tracker.getFailureCount(InetAddress
+                .getByName("localhost")));
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ftpserver.clienttests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import org.apache.ftpserver.DataConnectionConfigurationFactory;
+import org.apache.ftpserver.FtpServerFactory;
+import org.apache.ftpserver.listener.ListenerFactory;
+import org.apache.ftpserver.test.TestUtil;
+
+/**
+*
+* @author <a href="http://mina.apache.org">Apache MINA Project</a>*
+*/
+public class PasvSocketPoolTest extends ClientTestTemplate {
+
+    private static final String TEST_FILENAME = "test.txt";
+
+    private static final File TEST_FILE = new File(ROOT_DIR, TEST_FILENAME);
+
+    private int passivePort;
+
+    @Override
+    protected FtpServerFactory createServer() throws Exception {
+        FtpServerFactory server = super.createServer();
+
+        ListenerFactory listenerFactory = new ListenerFactory(server.getListener("default"));
+
+        DataConnectionConfigurationFactory dccFactory = new DataConnectionConfigurationFactory();
+
+        passivePort = TestUtil.findFreePort(12444);
+
+        // a single port, so each PASV must reuse the pooled socket
+        dccFactory.setPassivePorts(passivePort + "-" + passivePort);
+        dccFactory.setPassiveSocketPoolSize(1);
+
+        listenerFactory.setDataConnectionConfiguration(dccFactory.createDataConnectionConfiguration());
+
+        server.addListener("default", listenerFactory.createListener());
+
+        return server;
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        client.login(ADMIN_USERNAME, ADMIN_PASSWORD);
+        client.enterLocalPassiveMode();
+    }
+
+    public void testRepeatedPassiveTransfers() throws Exception {
+        byte[] testData = "TESTDATA".getBytes("UTF-8");
+        TestUtil.writeDataToFile(TEST_FILE, testData);
+
+        for (int i = 0; i < 20; i++) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            assertTrue(client.retrieveFile(TEST_FILENAME, baos));
+            TestUtil.assertArraysEqual(testData, baos.toByteArray());
+            assertEquals(passivePort, client.getPassivePort());
+
+            assertNotNull(client.listNames());
+        }
+    }
+
+    public void testPasvWithoutTransfer() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(227, client.pasv());
+        }
+
+        assertNotNull(client.listNames());
+    }
+}
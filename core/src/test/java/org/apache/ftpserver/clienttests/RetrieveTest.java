@@ -22,6 +22,8 @@ package org.apache.ftpserver.clienttests;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 
+import org.apache.commons.net.ftp.FTP;
+
 import org.apache.ftpserver.test.TestUtil;
 
 /**
@@ -114,6 +116,46 @@ public class RetrieveTest extends ClientTestTemplate {
         TestUtil.assertArraysEqual(expected, baos.toByteArray());
     }
 
+    public void testRetrieveBinaryLargeFile() throws Exception {
+        byte[] largeData = createLargeData();
+        TestUtil.writeDataToFile(TEST_FILE, largeData);
+
+        assertTrue(client.setFileType(FTP.BINARY_FILE_TYPE));
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        assertTrue(client.retrieveFile(TEST_FILENAME, baos));
+
+        TestUtil.assertArraysEqual(largeData, baos.toByteArray());
+    }
+
+    public void testRetrieveBinaryWithRestart() throws Exception {
+        int skipLen = 1000;
+
+        byte[] largeData = createLargeData();
+        TestUtil.writeDataToFile(TEST_FILE, largeData);
+
+        assertTrue(client.setFileType(FTP.BINARY_FILE_TYPE));
+        client.setRestartOffset(skipLen);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        assertTrue(client.retrieveFile(TEST_FILENAME, baos));
+
+        int len = largeData.length - skipLen;
+        byte[] expected = new byte[len];
+        System.arraycopy(largeData, skipLen, expected, 0, len);
+
+        TestUtil.assertArraysEqual(expected, baos.toByteArray());
+    }
+
+    private byte[] createLargeData() {
+        // larger than a single zero-copy chunk
+        byte[] data = new byte[3 * 1024 * 1024 + 17];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i % 251);
+        }
+        return data;
+    }
+
     public void testRetrieveWithPath() throws Exception {
         File dir = new File(ROOT_DIR, "foo/bar");
         dir.mkdirs();
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ftpserver.clienttests;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.ftpserver.FtpServerFactory;
+import org.apache.ftpserver.command.AbstractCommand;
+import org.apache.ftpserver.ftplet.DefaultFtplet;
+import org.apache.ftpserver.ftplet.FtpException;
+import org.apache.ftpserver.ftplet.FtpRequest;
+import org.apache.ftpserver.ftplet.FtpSession;
+import org.apache.ftpserver.ftplet.Ftplet;
+import org.apache.ftpserver.ftplet.FtpletResult;
+import org.apache.ftpserver.impl.ChecksumCache;
+
+/**
+*
+* @author <a href="http://mina.apache.org">Apache MINA Project</a>*
+*/
+public class UploadChecksumTest extends ClientTestTemplate {
+    private static final File TEST_FILE1 = new File(ROOT_DIR, "test1.txt");
+
+    private static final byte[] TEST_DATA = "TESTDATA".getBytes();
+
+    private Map<String, String> uploadChecksums;
+
+    protected FtpServerFactory createServer() throws Exception {
+        FtpServerFactory serverFactory = super.createServer();
+        serverFactory.setUploadChecksumAlgorithms(new String[] { "md5",
+                "SHA-256" });
+
+        Map<String, Ftplet> ftplets = new LinkedHashMap<String, Ftplet>();
+        ftplets.put("checksums", new DefaultFtplet() {
+            @SuppressWarnings("unchecked")
+            public FtpletResult onUploadEnd(FtpSession session,
+                    FtpRequest request) throws FtpException, IOException {
+                uploadChecksums = (Map<String, String>) session
+                        .getAttribute(AbstractCommand.UPLOAD_CHECKSUMS);
+                return null;
+            }
+        });
+        serverFactory.setFtplets(ftplets);
+
+        return serverFactory;
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        client.login(ADMIN_USERNAME, ADMIN_PASSWORD);
+    }
+
+    private String hash(String algorithm) throws Exception {
+        return new String(Hex.encodeHex(MessageDigest.getInstance(algorithm)
+                .digest(TEST_DATA)));
+    }
+
+    public void testChecksumsComputedOnUpload() throws Exception {
+        assertTrue(client.storeFile(TEST_FILE1.getName(),
+                new ByteArrayInputStream(TEST_DATA)));
+        assertTrue(TEST_FILE1.exists());
+
+        assertEquals(2, uploadChecksums.size());
+        assertEquals(hash("MD5"), uploadChecksums.get(ChecksumCache.MD5));
+        assertEquals(hash("SHA-256"), uploadChecksums
+                .get(ChecksumCache.SHA_256));
+
+        ChecksumCache cache = server.getServerContext().getChecksumCache();
+        long misses = cache.getMisses();
+
+        assertEquals(251, client.sendCommand("MD5 " + TEST_FILE1.getName()));
+        assertTrue(client.getReplyString().indexOf(
+                hash("MD5").toUpperCase()) > 0);
+        assertEquals(213, client.sendCommand("HASH " + TEST_FILE1.getName()));
+        assertTrue(client.getReplyString().indexOf(hash("SHA-256")) > 0);
+
+        // both answered without reading the file
+        assertEquals(misses, cache.getMisses());
+        assertEquals(2, cache.getHits());
+    }
+
+    public void testNoChecksumsOnRestartedUpload() throws Exception {
+        assertTrue(client.storeFile(TEST_FILE1.getName(),
+                new ByteArrayInputStream(TEST_DATA)));
+
+        client.setRestartOffset(4);
+        assertTrue(client.storeFile(TEST_FILE1.getName(),
+                new ByteArrayInputStream("DATA".getBytes())));
+        assertNull(uploadChecksums);
+    }
+}
@@ -20,6 +20,10 @@
 package org.apache.ftpserver.commands.impl.listing;
 
 import java.io.File;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
 
 import junit.framework.TestCase;
 
@@ -89,6 +93,55 @@ public class DirectoryListerTest extends TestCase {
         assertEquals("dir3\r\ntest3.txt\r\ntest4.txt\r\n", actual);
     }
 
+    public void testListFilesToWriter() throws Exception {
+        ListArgument arg = new ListArgument(TEST_DIR1.getName(), null, null);
+        FileFormater formater = new NLSTFileFormater();
+
+        final List<String> writes = new ArrayList<String>();
+        Writer writer = new StringWriter() {
+            @Override
+            public void write(String str) {
+                writes.add(str);
+            }
+        };
+        directoryLister.listFiles(arg, fileSystemView, formater, false, writer);
+
+        // one write per file, sorted as the string listing
+        assertEquals(3, writes.size());
+        assertEquals("dir3\r\n", writes.get(0));
+        assertEquals("test3.txt\r\n", writes.get(1));
+        assertEquals("test4.txt\r\n", writes.get(2));
+    }
+
+    public void testListFilesToWriterStreamed() throws Exception {
+        BaseUser baseUser = new BaseUser();
+        baseUser.setHomeDirectory(ROOT_DIR.getAbsolutePath());
+        FileSystemView streamingView = new NativeFileSystemView(baseUser,
+                false, false, null, null, true);
+
+        ListArgument arg = new ListArgument(TEST_DIR1.getName(), null, null);
+        FileFormater formater = new NLSTFileFormater();
+
+        StringWriter writer = new StringWriter();
+        directoryLister.listFiles(arg, streamingView, formater, true, writer);
+
+        // in directory order
+        String actual = writer.toString();
+        assertEquals("test3.txt\r\ntest4.txt\r\n".length(), actual.length());
+        assertTrue(actual.contains("test3.txt\r\n"));
+        assertTrue(actual.contains("test4.txt\r\n"));
+    }
+
+    public void testListFilesSkipFolders() throws Exception {
+        ListArgument arg = new ListArgument(TEST_DIR1.getName(), null, null);
+        FileFormater formater = new NLSTFileFormater();
+
+        String actual = directoryLister.listFiles(arg, fileSystemView,
+                formater, true);
+
+        assertEquals("test3.txt\r\ntest4.txt\r\n", actual);
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -60,4 +60,27 @@ public class DbUserManagerConfigTest extends SpringConfigTestTemplate {
         assertEquals("AUTHENTICATE", um.getSqlUserAuthenticate());
 
     }
+
+    public void testPreparedStatementsAndCache() throws Throwable {
+        DefaultFtpServer server = (DefaultFtpServer) createServer("<db-user-manager prepared-statements=\"true\" cache-size=\"50\" cache-ttl=\"60\">"
+                + "<data-source>"
+                + "    <beans:bean class=\"org.hsqldb.jdbc.jdbcDataSource\">"
+                + "        <beans:property name=\"database\" value=\"jdbc:hsqldb:mem:foo\" />"
+                + "        <beans:property name=\"user\" value=\"sa\" />"
+                + "        <beans:property name=\"password\" value=\"\" />"
+                + "    </beans:bean>" + "</data-source>"
+                + "<insert-user>INSERT USER</insert-user>"
+                + "<update-user>UPDATE USER</update-user>"
+                + "<delete-user>DELETE USER</delete-user>"
+                + "<select-user>SELECT USER</select-user>"
+                + "<select-all-users>SELECT ALL USERS</select-all-users>"
+                + "<is-admin>IS ADMIN</is-admin>"
+                + "<authenticate>AUTHENTICATE</authenticate>"
+                + "</db-user-manager>");
+
+        DbUserManager um = (DbUserManager) server.getUserManager();
+        assertTrue(um.isUsePreparedStatements());
+        assertEquals(50, um.getCacheSize());
+        assertEquals(60, um.getCacheTtl());
+    }
 }
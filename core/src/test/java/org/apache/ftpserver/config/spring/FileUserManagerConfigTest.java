@@ -76,4 +76,9 @@ public class FileUserManagerConfigTest extends SpringConfigTestTemplate {
         assertTrue(um.getPasswordEncryptor() instanceof ClearTextPasswordEncryptor);
     }
 
+    public void testSaveDelay() throws Throwable {
+        PropertiesUserManager um = createPropertiesUserManager("<file-user-manager file=\"" + USER_FILE_PATH + "\" save-delay=\"500\" />");
+
+        assertEquals(500, um.getSaveDelay());
+    }
 }
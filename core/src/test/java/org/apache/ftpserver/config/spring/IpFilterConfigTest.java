@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ftpserver.config.spring;
+
+import java.net.InetAddress;
+
+import org.apache.ftpserver.impl.DefaultFtpServer;
+import org.apache.ftpserver.ipfilter.DefaultIpFilter;
+import org.apache.ftpserver.ipfilter.IpFilter;
+import org.apache.ftpserver.ipfilter.IpFilterType;
+import org.apache.ftpserver.ipfilter.RadixTreeIpFilter;
+import org.springframework.beans.factory.BeanDefinitionStoreException;
+
+/**
+*
+* @author <a href="http://mina.apache.org">Apache MINA Project</a>*
+*/
+public class IpFilterConfigTest extends SpringConfigTestTemplate {
+
+    private static final String IP_FILTER_FILE = "src/test/resources/spring-config/ip-filter.txt";
+
+    private IpFilter createIpFilter(String config) {
+        DefaultFtpServer server = (DefaultFtpServer) createServer("<listeners>"
+                + "<nio-listener name=\"default\" port=\"2222\">" + config
+                + "</nio-listener></listeners>");
+
+        return server.getListener("default").getIpFilter();
+    }
+
+    public void testInlineIpFilter() throws Throwable {
+        IpFilter filter = createIpFilter("<ip-filter type=\"deny\">1.2.3.4</ip-filter>");
+
+        assertTrue(filter instanceof DefaultIpFilter);
+        assertFalse(filter.accept(InetAddress.getByName("1.2.3.4")));
+        assertTrue(filter.accept(InetAddress.getByName("1.2.3.5")));
+    }
+
+    public void testIpFilterFile() throws Throwable {
+        IpFilter filter = createIpFilter("<ip-filter type=\"deny\" file=\""
+                + IP_FILTER_FILE + "\">1.2.3.4</ip-filter>");
+
+        assertTrue(filter instanceof RadixTreeIpFilter);
+        RadixTreeIpFilter radixTreeFilter = (RadixTreeIpFilter) filter;
+        assertEquals(IpFilterType.DENY, radixTreeFilter.getType());
+        assertEquals(4, radixTreeFilter.size());
+
+        // addresses from the element and from the file
+        assertFalse(filter.accept(InetAddress.getByName("1.2.3.4")));
+        assertFalse(filter.accept(InetAddress.getByName("10.1.2.3")));
+        assertFalse(filter.accept(InetAddress.getByName("192.168.1.1")));
+        assertFalse(filter.accept(InetAddress.getByName("192.168.2.200")));
+        assertTrue(filter.accept(InetAddress.getByName("192.168.3.1")));
+    }
+
+    public void testMissingIpFilterFile() throws Throwable {
+        try {
+            createIpFilter("<ip-filter type=\"deny\" file=\"does-not-exist.txt\" />");
+            fail("Must throw BeanDefinitionStoreException");
+        } catch (BeanDefinitionStoreException e) {
+            // ok
+        }
+    }
+}
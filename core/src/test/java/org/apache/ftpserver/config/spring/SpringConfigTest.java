@@ -29,8 +29,10 @@ import org.apache.ftpserver.command.CommandFactory;
 import org.apache.ftpserver.command.impl.HELP;
 import org.apache.ftpserver.command.impl.STAT;
 import org.apache.ftpserver.filesystem.nativefs.NativeFileSystemFactory;
+import org.apache.ftpserver.impl.DefaultConnectionConfig;
 import org.apache.ftpserver.impl.DefaultFtpServer;
 import org.apache.ftpserver.ipfilter.DefaultIpFilter;
+import org.apache.ftpserver.ipfilter.LoginFailureTracker;
 import org.apache.ftpserver.listener.Listener;
 import org.apache.ftpserver.listener.nio.NioListener;
 import org.apache.mina.filter.firewall.Subnet;
@@ -55,6 +57,15 @@ public class SpringConfigTest extends TestCase {
         assertEquals(123, server.getConnectionConfig().getMaxAnonymousLogins());
         assertEquals(124, server.getConnectionConfig().getMaxLoginFailures());
         assertEquals(125, server.getConnectionConfig().getLoginFailureDelay());
+        assertTrue(((DefaultConnectionConfig) server.getConnectionConfig())
+                .isVirtualThreadsEnabled());
+        assertEquals(10, server.getServerContext().getLoginFailureTracker()
+                .getMaxFailures());
+        assertEquals(LoginFailureTracker.DEFAULT_FAILURE_WINDOW, server
+                .getServerContext().getLoginFailureTracker().getFailureWindow());
+        assertEquals(300, server.getServerContext().getLoginFailureTracker()
+                .getBanTime());
+        assertEquals(200, server.getServerContext().getSlowFtpletThreshold());
 
         Map<String, Listener> listeners = server.getServerContext()
                 .getListeners();
@@ -107,6 +118,11 @@ public class SpringConfigTest extends TestCase {
         NativeFileSystemFactory fs = (NativeFileSystemFactory) server.getFileSystem();
         assertTrue(fs.isCreateHome());
         assertTrue(fs.isCaseInsensitive());
+        assertTrue(fs.isCacheAttributes());
+        assertEquals(128, fs.getCaseInsensitiveCacheSize());
+        assertEquals(64, fs.getListingCacheSize());
+        assertEquals(5000, fs.getListingCacheMaxFiles());
+        assertTrue(fs.isStreamListings());
         
         assertEquals(2, server.getFtplets().size());
         assertEquals(123, ((TestFtplet)server.getFtplets().get("ftplet1")).getFoo());
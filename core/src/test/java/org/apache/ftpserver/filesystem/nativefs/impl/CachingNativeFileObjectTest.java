@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ftpserver.filesystem.nativefs.impl;
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.ftpserver.ftplet.FtpFile;
+import org.apache.ftpserver.ftplet.User;
+import org.apache.ftpserver.test.TestUtil;
+
+/**
+*
+* @author <a href="http://mina.apache.org">Apache MINA Project</a>*
+*/
+public class CachingNativeFileObjectTest extends NativeFileObjectTest {
+
+    protected FtpFile createFileObject(String fileName, User user) {
+        File file = ((NativeFtpFile) super.createFileObject(fileName, user))
+                .getPhysicalFile();
+        return new NativeFtpFile(fileName, file, user, true);
+    }
+
+    public void testAttributesAreCached() throws Exception {
+        FtpFile file = createFileObject(FILE1_PATH, USER);
+        File physicalFile = ((NativeFtpFile) file).getPhysicalFile();
+
+        assertTrue(file.doesExist());
+        assertTrue(file.isFile());
+        assertFalse(file.isDirectory());
+        assertEquals(0, file.getSize());
+
+        TestUtil.writeDataToFile(physicalFile, "TESTDATA".getBytes());
+
+        // still the attributes read the first time
+        assertEquals(0, file.getSize());
+        assertEquals(8, createFileObject(FILE1_PATH, USER).getSize());
+    }
+
+    public void testAttributesResetOnDelete() throws Exception {
+        FtpFile file = createFileObject(FILE1_PATH, USER);
+
+        assertTrue(file.doesExist());
+        assertTrue(file.delete());
+        assertFalse(file.doesExist());
+        assertFalse(file.isFile());
+        assertEquals(0, file.getLastModified());
+    }
+
+    public void testListedFilesHaveAttributes() throws Exception {
+        List<FtpFile> files = createFileObject("/", USER).listFiles();
+
+        assertEquals(3, files.size());
+        assertEquals("dir1", files.get(0).getName());
+        assertTrue(files.get(0).isDirectory());
+        assertEquals(DIR1_PATH, files.get(0).getAbsolutePath());
+        assertEquals("file1", files.get(1).getName());
+        assertTrue(files.get(1).isFile());
+        assertEquals("file3", files.get(2).getName());
+    }
+
+    public void testOwnerAndGroup() {
+        FtpFile file = createFileObject(FILE1_PATH, USER);
+
+        assertNotNull(file.getOwnerName());
+        assertNotNull(file.getGroupName());
+        if (!File.separator.equals("/")) {
+            // no POSIX attributes
+            assertEquals("user", file.getOwnerName());
+        } else {
+            assertEquals(System.getProperty("user.name"), file.getOwnerName());
+        }
+    }
+}
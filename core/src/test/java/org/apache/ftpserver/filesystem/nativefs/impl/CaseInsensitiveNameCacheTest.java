@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ftpserver.filesystem.nativefs.impl;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+
+import org.apache.ftpserver.util.IoUtils;
+
+/**
+*
+* @author <a href="http://mina.apache.org">Apache MINA Project</a>*
+*/
+public class CaseInsensitiveNameCacheTest extends TestCase {
+
+    private static final File TEST_TMP_DIR = new File("test-tmp");
+
+    private static final File DIR1 = new File(TEST_TMP_DIR, "dir1");
+
+    private static final File DIR2 = new File(TEST_TMP_DIR, "dir2");
+
+    private CaseInsensitiveNameCache cache = new CaseInsensitiveNameCache(1);
+
+    protected void setUp() throws Exception {
+        assertTrue(DIR1.mkdirs());
+        assertTrue(DIR2.mkdirs());
+        assertTrue(new File(DIR1, "Foo.txt").createNewFile());
+        assertTrue(new File(DIR2, "bar").createNewFile());
+    }
+
+    protected void tearDown() throws Exception {
+        if (TEST_TMP_DIR.exists()) {
+            IoUtils.delete(TEST_TMP_DIR);
+        }
+    }
+
+    public void testGetName() {
+        String dir = DIR1.getAbsolutePath();
+
+        assertEquals("Foo.txt", cache.getName(dir, "foo.txt"));
+        assertEquals("Foo.txt", cache.getName(dir, "FOO.TXT"));
+        assertEquals("Foo.txt", cache.getName(dir, "Foo.txt"));
+        assertNull(cache.getName(dir, "foo"));
+    }
+
+    public void testMissingDirectory() {
+        assertNull(cache.getName(new File(TEST_TMP_DIR, "dir3")
+                .getAbsolutePath(), "foo"));
+    }
+
+    public void testDirectoryChanged() throws Exception {
+        String dir = DIR1.getAbsolutePath();
+        assertNull(cache.getName(dir, "new.txt"));
+
+        assertTrue(new File(DIR1, "NEW.txt").createNewFile());
+        // make sure the change is visible even with coarse timestamps
+        assertTrue(DIR1.setLastModified(DIR1.lastModified() + 2000));
+
+        assertEquals("NEW.txt", cache.getName(dir, "new.txt"));
+    }
+
+    public void testEviction() {
+        assertEquals("Foo.txt", cache.getName(DIR1.getAbsolutePath(),
+                "foo.txt"));
+        assertEquals("bar", cache.getName(DIR2.getAbsolutePath(), "BAR"));
+        assertEquals("Foo.txt", cache.getName(DIR1.getAbsolutePath(),
+                "FOO.txt"));
+    }
+
+    public void testFold() {
+        assertEquals("foo", CaseInsensitiveNameCache.fold("foo"));
+        assertEquals("foo", CaseInsensitiveNameCache.fold("FoO"));
+        assertEquals(CaseInsensitiveNameCache.fold("Ångström"),
+                CaseInsensitiveNameCache.fold("åNGSTRÖM"));
+    }
+}
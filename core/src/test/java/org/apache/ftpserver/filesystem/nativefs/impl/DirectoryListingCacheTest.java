@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+
+package org.apache.ftpserver.filesystem.nativefs.impl;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.ftpserver.ftplet.AuthorizationRequest;
+import org.apache.ftpserver.ftplet.FtpFile;
+import org.apache.ftpserver.ftplet.User;
+import org.apache.ftpserver.usermanager.impl.BaseUser;
+import org.apache.ftpserver.util.IoUtils;
+
+/**
+*
+* @author <a href="http://mina.apache.org">Apache MINA Project</a>*
+*/
+public class DirectoryListingCacheTest extends TestCase {
+
+    private static final File TEST_TMP_DIR = new File("test-tmp");
+
+    private static final File DIR1 = new File(TEST_TMP_DIR, "dir1");
+
+    private static final File DIR2 = new File(TEST_TMP_DIR, "dir2");
+
+    private static final User USER = new BaseUser() {
+        private static final long serialVersionUID = 1L;
+
+        public AuthorizationRequest authorize(AuthorizationRequest request) {
+            return request;
+        }
+    };
+
+    private DirectoryListingCache cache;
+
+    protected void setUp() throws Exception {
+        assertTrue(DIR1.mkdirs());
+        assertTrue(DIR2.mkdirs());
+        assertTrue(new File(DIR1, "b").createNewFile());
+        assertTrue(new File(DIR1, "a").createNewFile());
+        assertTrue(new File(DIR2, "c").createNewFile());
+
+        cache = new DirectoryListingCache(1, 100);
+    }
+
+    protected void tearDown() throws Exception {
+        cache.close();
+        if (TEST_TMP_DIR.exists()) {
+            IoUtils.delete(TEST_TMP_DIR);
+        }
+    }
+
+    public void testHitAndMiss() {
+        List<DirectoryListingCache.Entry> entries = cache.getListing(DIR1);
+        assertEquals(2, entries.size());
+        // in directory order
+        DirectoryListingCache.Entry a = entries.get(0);
+        DirectoryListingCache.Entry b = entries.get(1);
+        if (!a.getName().equals("a")) {
+            a = entries.get(1);
+            b = entries.get(0);
+        }
+        assertEquals("a", a.getName());
+        assertTrue(a.getAttributes().isRegularFile());
+        assertEquals("b", b.getName());
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        assertSame(entries, cache.getListing(DIR1));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getSize());
+        assertEquals(2, cache.getFileCount());
+    }
+
+    public void testMissingDirectory() {
+        assertNull(cache.getListing(new File(TEST_TMP_DIR, "dir3")));
+        assertNull(cache.getListing(new File(DIR1, "a")));
+        assertEquals(0, cache.getSize());
+    }
+
+    public void testEviction() {
+        cache.getListing(DIR1);
+        cache.getListing(DIR2);
+
+        assertEquals(1, cache.getSize());
+        assertEquals(1, cache.getFileCount());
+        assertEquals(1, cache.getEvictions());
+    }
+
+    public void testTooManyFiles() throws Exception {
+        DirectoryListingCache small = new DirectoryListingCache(10, 1);
+        try {
+            assertEquals(2, small.getListing(DIR1).size());
+            assertEquals(0, small.getSize());
+        } finally {
+            small.close();
+        }
+    }
+
+    public void testInvalidatedByWatchService() throws Exception {
+        cache.getListing(DIR1);
+        assertTrue(new File(DIR1, "c").createNewFile());
+
+        // the watch service reports changes asynchronously
+        long timeout = System.currentTimeMillis() + 30000;
+        while (cache.getSize() > 0 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(50);
+        }
+
+        assertEquals(3, cache.getListing(DIR1).size());
+    }
+
+    public void testWatchedAgainAfterEviction() throws Exception {
+        cache.getListing(DIR1);
+        cache.getListing(DIR2);
+        cache.getListing(DIR1);
+        assertEquals(1, cache.getSize());
+
+        assertTrue(new File(DIR1, "c").createNewFile());
+
+        long timeout = System.currentTimeMillis() + 30000;
+        while (cache.getSize() > 0 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(50);
+        }
+
+        assertEquals(3, cache.getListing(DIR1).size());
+    }
+
+    public void testInvalidatedByOwnChanges() throws Exception {
+        NativeFtpFile dir = new NativeFtpFile("/dir1", DIR1, USER, false,
+                cache);
+        assertEquals(2, dir.listFiles().size());
+
+        NativeFtpFile file = new NativeFtpFile("/dir1/c", new File(DIR1, "c"),
+                USER, false, cache);
+        OutputStream out = file.createOutputStream(0);
+        out.write(1);
+        out.close();
+
+        List<FtpFile> files = dir.listFiles();
+        assertEquals(3, files.size());
+        assertEquals("/dir1/c", files.get(2).getAbsolutePath());
+        assertEquals(1, files.get(2).getSize());
+
+        assertTrue(files.get(0).delete());
+        assertEquals(2, dir.listFiles().size());
+
+        NativeFtpFile subDir = new NativeFtpFile("/dir1/d",
+                new File(DIR1, "d"), USER, false, cache);
+        assertTrue(subDir.mkdir());
+        assertEquals(3, dir.listFiles().size());
+    }
+
+    public void testListFilesSorted() {
+        NativeFtpFile dir = new NativeFtpFile("/dir1", DIR1, USER, false,
+                cache);
+        List<FtpFile> files = dir.listFiles();
+        assertEquals(2, files.size());
+        assertEquals("/dir1/a", files.get(0).getAbsolutePath());
+        assertEquals("/dir1/b", files.get(1).getAbsolutePath());
+    }
+}
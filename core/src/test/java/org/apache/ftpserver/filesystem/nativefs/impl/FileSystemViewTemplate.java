@@ -70,4 +70,18 @@ public abstract class FileSystemViewTemplate extends TestCase {
         assertTrue(view.getWorkingDirectory().doesExist());
     }
 
-}
\ No newline at end of file
+    public void testChangeDirectoryCaseInsensitiveCached() throws Exception {
+        NativeFileSystemView view = new NativeFileSystemView(user, true,
+                false, new CaseInsensitiveNameCache(16));
+
+        assertTrue(view.changeWorkingDirectory("/DIR1"));
+        assertEquals("/dir1", view.getWorkingDirectory().getAbsolutePath());
+        assertTrue(view.getWorkingDirectory().doesExist());
+
+        assertTrue(view.changeWorkingDirectory("/DiR1"));
+        assertEquals("/dir1", view.getWorkingDirectory().getAbsolutePath());
+
+        assertFalse(view.changeWorkingDirectory("/DIR2"));
+        assertEquals("/dir1", view.getWorkingDirectory().getAbsolutePath());
+    }
+}
@@ -21,8 +21,11 @@ package org.apache.ftpserver.filesystem.nativefs.impl;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.ftpserver.ftplet.FtpFile;
 import org.apache.ftpserver.ftplet.User;
@@ -157,6 +160,35 @@ public class NativeFileObjectTest extends FtpFileTestTemplate {
             // OK
         }
     }
+
+    public void testOpenFileStream() throws IOException {
+        NativeFtpFile root = new NativeFtpFile("/", FILE_MAPPINGS.get("/"),
+                USER, false, null, true);
+
+        Set<String> paths = new HashSet<String>();
+        DirectoryStream<FtpFile> stream = root.openFileStream();
+        try {
+            for (FtpFile file : stream) {
+                paths.add(file.getAbsolutePath());
+            }
+        } finally {
+            stream.close();
+        }
+
+        assertEquals(3, paths.size());
+        assertTrue(paths.contains(DIR1_PATH));
+        assertTrue(paths.contains(FILE1_PATH));
+        assertTrue(paths.contains("/file3"));
+
+        assertNull(new NativeFtpFile(FILE1_PATH, FILE_MAPPINGS.get(FILE1_PATH),
+                USER, false, null, true).openFileStream());
+    }
+
+    public void testOpenFileStreamNotEnabled() {
+        assertNull(((NativeFtpFile) createFileObject("/", USER))
+                .openFileStream());
+    }
+
     public void testDeleteReadOnlyFiles(){
     	
     	NativeFtpFile fileObj=(NativeFtpFile)createFileObject(FILE2_PATH, USER);
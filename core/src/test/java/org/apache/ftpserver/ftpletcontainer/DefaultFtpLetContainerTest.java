@@ -19,10 +19,27 @@
 
 package org.apache.ftpserver.ftpletcontainer;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
+import org.apache.ftpserver.ftplet.DefaultFtplet;
+import org.apache.ftpserver.ftplet.FileSystemFactory;
+import org.apache.ftpserver.ftplet.FtpException;
+import org.apache.ftpserver.ftplet.FtpRequest;
+import org.apache.ftpserver.ftplet.FtpSession;
+import org.apache.ftpserver.ftplet.FtpStatistics;
 import org.apache.ftpserver.ftplet.Ftplet;
+import org.apache.ftpserver.ftplet.FtpletContext;
+import org.apache.ftpserver.ftplet.FtpletResult;
+import org.apache.ftpserver.ftplet.UserManager;
 import org.apache.ftpserver.ftpletcontainer.impl.DefaultFtpletContainer;
+import org.apache.ftpserver.impl.DefaultFtpRequest;
+import org.apache.ftpserver.impl.DefaultFtpSession;
+import org.apache.ftpserver.impl.DefaultFtpStatistics;
+import org.apache.ftpserver.util.LatencyHistogram;
 
 /**
 *
@@ -34,4 +51,112 @@ public class DefaultFtpLetContainerTest extends FtpLetContainerTestTemplate {
         return new DefaultFtpletContainer(ftplets);
     }
 
+    private final List<String> calls = new ArrayList<String>();
+
+    private Ftplet createUploadFtplet() {
+        return new DefaultFtplet() {
+            public FtpletResult onUploadStart(FtpSession session,
+                    FtpRequest request) throws FtpException, IOException {
+                calls.add("upload");
+                return FtpletResult.SKIP;
+            }
+        };
+    }
+
+    private Ftplet createCommandFtplet() {
+        return new DefaultFtplet() {
+            public FtpletResult beforeCommand(FtpSession session,
+                    FtpRequest request) throws FtpException, IOException {
+                calls.add(request.getCommand());
+                return super.beforeCommand(session, request);
+            }
+        };
+    }
+
+    public void testDispatchByCommand() throws FtpException, IOException {
+        Map<String, Ftplet> ftplets = new LinkedHashMap<String, Ftplet>();
+        ftplets.put("upload", createUploadFtplet());
+        ftplets.put("command", createCommandFtplet());
+
+        FtpletContainer container = createFtpletContainer(ftplets);
+
+        assertEquals(FtpletResult.DEFAULT, container.beforeCommand(
+                new DefaultFtpSession(null), new DefaultFtpRequest("NOOP")));
+        assertEquals(FtpletResult.SKIP, container.beforeCommand(
+                new DefaultFtpSession(null), new DefaultFtpRequest("STOR foo")));
+        assertEquals(FtpletResult.DEFAULT, container.afterCommand(
+                new DefaultFtpSession(null), new DefaultFtpRequest("STOR foo"),
+                null));
+
+        // the upload ftplet skips the second ftplet for STOR
+        assertEquals(2, calls.size());
+        assertEquals("NOOP", calls.get(0));
+        assertEquals("upload", calls.get(1));
+    }
+
+    public void testFtpletAddedBeforeInit() throws FtpException, IOException {
+        FtpletContainer container = createFtpletContainer(new LinkedHashMap<String, Ftplet>());
+        container.getFtplets().put("command", createCommandFtplet());
+        container.init(null);
+
+        container.beforeCommand(new DefaultFtpSession(null),
+                new DefaultFtpRequest("NOOP"));
+
+        assertEquals(1, calls.size());
+        assertEquals("NOOP", calls.get(0));
+    }
+
+    public void testFtpletChangedAfterInit() throws FtpException, IOException {
+        FtpletContainer container = createFtpletContainer(new LinkedHashMap<String, Ftplet>());
+        container.init(null);
+        container.getFtplets().put("command", createCommandFtplet());
+
+        container.beforeCommand(new DefaultFtpSession(null),
+                new DefaultFtpRequest("NOOP"));
+        container.getFtplets().remove("command");
+        container.beforeCommand(new DefaultFtpSession(null),
+                new DefaultFtpRequest("PWD"));
+
+        assertEquals(1, calls.size());
+        assertEquals("NOOP", calls.get(0));
+    }
+
+    public void testFtpletTimeRecorded() throws FtpException, IOException {
+        Map<String, Ftplet> ftplets = new LinkedHashMap<String, Ftplet>();
+        ftplets.put("upload", createUploadFtplet());
+        ftplets.put("command", createCommandFtplet());
+
+        final DefaultFtpStatistics statistics = new DefaultFtpStatistics();
+        FtpletContainer container = createFtpletContainer(ftplets);
+        container.init(new FtpletContext() {
+            public FileSystemFactory getFileSystemManager() {
+                return null;
+            }
+
+            public FtpStatistics getFtpStatistics() {
+                return statistics;
+            }
+
+            public Ftplet getFtplet(String name) {
+                return null;
+            }
+
+            public UserManager getUserManager() {
+                return null;
+            }
+        });
+
+        container.beforeCommand(new DefaultFtpSession(null),
+                new DefaultFtpRequest("NOOP"));
+        container.beforeCommand(new DefaultFtpSession(null),
+                new DefaultFtpRequest("STOR foo"));
+
+        Map<String, Map<String, LatencyHistogram>> latencies = statistics
+                .getFtpletLatencies();
+        assertEquals(1, latencies.get("command").get("beforeCommand")
+                .getCount());
+        assertEquals(1, latencies.get("upload").get("beforeCommand")
+                .getCount());
+        assertNull(latencies.get("upload").get("afterCommand"));
+    }
 }
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ftpserver.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+
+import junit.framework.TestCase;
+
+import org.apache.ftpserver.filesystem.nativefs.impl.NativeFileSystemView;
+import org.apache.ftpserver.filesystem.nativefs.impl.NativeFtpFile;
+import org.apache.ftpserver.ftplet.FtpFile;
+import org.apache.ftpserver.test.TestUtil;
+import org.apache.ftpserver.usermanager.impl.BaseUser;
+import org.apache.ftpserver.util.IoUtils;
+
+/**
+*
+* @author <a href="http://mina.apache.org">Apache MINA Project</a>*
+*/
+public class ChecksumCacheTest extends TestCase {
+
+    private static final File TEST_TMP_DIR = new File("test-tmp");
+
+    private static final File TEST_FILE = new File(TEST_TMP_DIR, "test.txt");
+
+    private NativeFileSystemView fsView;
+
+    protected void setUp() throws Exception {
+        assertTrue(TEST_TMP_DIR.mkdirs());
+        TestUtil.writeDataToFile(TEST_FILE, "TESTDATA".getBytes("UTF-8"));
+
+        BaseUser user = new BaseUser();
+        user.setHomeDirectory(TEST_TMP_DIR.getAbsolutePath());
+        fsView = new NativeFileSystemView(user, false);
+    }
+
+    protected void tearDown() throws Exception {
+        if (TEST_TMP_DIR.exists()) {
+            IoUtils.delete(TEST_TMP_DIR);
+        }
+    }
+
+    private byte[] expected(String algorithm, String data) throws Exception {
+        return MessageDigest.getInstance(algorithm).digest(
+                data.getBytes("UTF-8"));
+    }
+
+    public void testAlgorithms() throws Exception {
+        ChecksumCache cache = new ChecksumCache(10);
+        FtpFile file = fsView.getFile("test.txt");
+
+        assertTrue(MessageDigest.isEqual(expected("SHA-256", "TESTDATA"),
+                cache.getChecksum(file, ChecksumCache.SHA_256)));
+        assertTrue(MessageDigest.isEqual(expected("SHA-1", "TESTDATA"), cache
+                .getChecksum(file, ChecksumCache.SHA_1)));
+        assertTrue(MessageDigest.isEqual(expected("MD5", "TESTDATA"), cache
+                .getChecksum(file, ChecksumCache.MD5)));
+        assertEquals(4, cache.getChecksum(file, ChecksumCache.CRC32C).length);
+    }
+
+    public void testGetAlgorithm() {
+        assertEquals(ChecksumCache.SHA_256, ChecksumCache.getAlgorithm("sha-256"));
+        assertEquals(ChecksumCache.CRC32C, ChecksumCache.getAlgorithm("CRC32C"));
+        assertNull(ChecksumCache.getAlgorithm("SHA-512"));
+        assertEquals(ChecksumCache.SHA_256, ChecksumCache.getAlgorithms()[0]);
+    }
+
+    public void testCached() throws Exception {
+        ChecksumCache cache = new ChecksumCache(10);
+
+        byte[] first = cache.getChecksum(fsView.getFile("test.txt"),
+                ChecksumCache.SHA_256);
+        byte[] second = cache.getChecksum(fsView.getFile("test.txt"),
+                ChecksumCache.SHA_256);
+
+        assertTrue(MessageDigest.isEqual(first, second));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getSize());
+    }
+
+    public void testChangedFile() throws Exception {
+        ChecksumCache cache = new ChecksumCache(10);
+        cache.getChecksum(fsView.getFile("test.txt"), ChecksumCache.MD5);
+
+        TestUtil.writeDataToFile(TEST_FILE, "OTHER DATA".getBytes("UTF-8"));
+
+        assertTrue(MessageDigest.isEqual(expected("MD5", "OTHER DATA"), cache
+                .getChecksum(fsView.getFile("test.txt"), ChecksumCache.MD5)));
+        assertEquals(0, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    public void testChangedWhileReading() throws Exception {
+        ChecksumCache cache = new ChecksumCache(10);
+
+        // the attributes are cached by the file object before reading
+        FtpFile file = new NativeFtpFile("/test.txt", TEST_FILE,
+                new BaseUser(), true) {
+            public InputStream createInputStream(long offset)
+                    throws IOException {
+                InputStream in = super.createInputStream(offset);
+                TestUtil.writeDataToFile(TEST_FILE, "CHANGED WHILE READING"
+                        .getBytes("UTF-8"));
+                return in;
+            }
+        };
+        assertEquals(8, file.getSize());
+
+        cache.getChecksum(file, ChecksumCache.MD5);
+        assertEquals(0, cache.getSize());
+    }
+
+    public void testBounded() throws Exception {
+        ChecksumCache cache = new ChecksumCache(1);
+        FtpFile file = fsView.getFile("test.txt");
+
+        cache.getChecksum(file, ChecksumCache.MD5);
+        cache.getChecksum(file, ChecksumCache.SHA_1);
+        assertEquals(1, cache.getSize());
+
+        cache.getChecksum(file, ChecksumCache.SHA_1);
+        assertEquals(1, cache.getHits());
+    }
+
+    public void testDisabled() throws Exception {
+        ChecksumCache cache = new ChecksumCache(0);
+        FtpFile file = fsView.getFile("test.txt");
+
+        cache.getChecksum(file, ChecksumCache.MD5);
+        cache.getChecksum(file, ChecksumCache.MD5);
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getHits());
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ftpserver.impl;
+
+import junit.framework.TestCase;
+
+/**
+*
+* @author <a href="http://mina.apache.org">Apache MINA Project</a>*
+*/
+public class MessageTemplateTest extends TestCase {
+
+    private String render(MessageTemplate template) {
+        return template.render(null, new DefaultFtpRequest("foo bar"), null,
+                200, "msg");
+    }
+
+    public void testConstant() {
+        String message = "Command okay.";
+        MessageTemplate template = MessageTemplate.compile(message);
+
+        assertTrue(template.isConstant());
+        assertSame(message, render(template));
+    }
+
+    public void testNull() {
+        MessageTemplate template = MessageTemplate.compile(null);
+
+        assertTrue(template.isConstant());
+        assertEquals("", render(template));
+    }
+
+    public void testVariables() {
+        MessageTemplate template = MessageTemplate
+                .compile("{output.code} {output.msg}: {request.cmd}-{request.arg}.");
+
+        assertFalse(template.isConstant());
+        assertEquals("200 msg: FOO-bar.", render(template));
+        assertEquals("200 msg: FOO-bar.", render(template));
+    }
+
+    public void testMissingRequest() {
+        MessageTemplate template = MessageTemplate.compile("[{request.line}]");
+
+        assertEquals("[]", template.render(null, null, null, 200, null));
+    }
+
+    public void testUnknownVariable() {
+        MessageTemplate template = MessageTemplate.compile("a{foo}b{output.bar}c");
+
+        assertTrue(template.isConstant());
+        assertEquals("abc", render(template));
+    }
+
+    public void testUnbalancedBraces() {
+        assertEquals("a}b{output.code}", render(MessageTemplate
+                .compile("a}b{output.code}")));
+        assertEquals("200 {c", render(MessageTemplate
+                .compile("{output.code} {c")));
+        assertEquals("200 }{output.code}", render(MessageTemplate
+                .compile("{output.code} }{output.code}")));
+    }
+}
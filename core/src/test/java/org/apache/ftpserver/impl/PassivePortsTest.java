@@ -22,7 +22,10 @@ package org.apache.ftpserver.impl;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import junit.framework.AssertionFailedError;
 import junit.framework.TestCase;
@@ -161,6 +164,57 @@ public class PassivePortsTest extends TestCase {
     }
 
 
+    public void testReserveLargeRange() {
+        PassivePorts ports = new PassivePorts("10000-60000", false);
+
+        Set<Integer> reserved = new HashSet<Integer>();
+        for (int i = 0; i < 50001; i++) {
+            int port = ports.reserveNextPort();
+            assertTrue(port >= 10000 && port <= 60000);
+            assertTrue("Port reserved twice: " + port, reserved.add(port));
+        }
+        assertEquals(-1, ports.reserveNextPort());
+
+        ports.releasePort(12345);
+        assertEquals(12345, ports.reserveNextPort());
+    }
+
+    public void testConcurrentReserve() throws Exception {
+        final PassivePorts ports = new PassivePorts("20000-29999", false);
+        final Set<Integer> reserved = Collections
+                .synchronizedSet(new HashSet<Integer>());
+        final List<Integer> duplicates = Collections
+                .synchronizedList(new ArrayList<Integer>());
+
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    int port;
+                    while ((port = ports.reserveNextPort()) != -1) {
+                        if (!reserved.add(port)) {
+                            duplicates.add(port);
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue("Ports reserved twice: " + duplicates, duplicates.isEmpty());
+        assertEquals(10000, reserved.size());
+    }
+
+    public void testToStringFromSet() {
+        Set<Integer> set = new HashSet<Integer>(valid(789, 123, 456));
+
+        assertEquals("123,456,789", new PassivePorts(set, false).toString());
+        assertEquals("0", new PassivePorts(new HashSet<Integer>(), false).toString());
+    }
+
     public void testParseRelease() {
         PassivePorts ports = new PassivePorts("123, 456,789", false);
 
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ftpserver.impl;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import junit.framework.TestCase;
+
+import org.apache.ftpserver.test.TestUtil;
+
+/**
+*
+* @author <a href="http://mina.apache.org">Apache MINA Project</a>
+*
+*/
+public class PassiveServerSocketPoolTest extends TestCase {
+
+    private static final InetAddress LOCALHOST;
+
+    static {
+        try {
+            LOCALHOST = InetAddress.getByName("localhost");
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private int port;
+
+    private PassivePorts passivePorts;
+
+    protected void setUp() throws Exception {
+        port = TestUtil.findFreePort(12444);
+        passivePorts = new PassivePorts(Integer.toString(port), true);
+    }
+
+    public void testReuseReleasedSocket() throws Exception {
+        PassiveServerSocketPool pool = new PassiveServerSocketPool(passivePorts, 1);
+
+        ServerSocket first = pool.acquire(LOCALHOST);
+        assertEquals(port, first.getLocalPort());
+        assertNull(pool.acquire(LOCALHOST));
+
+        pool.release(first);
+        assertEquals(1, pool.getIdleCount());
+        assertFalse(first.isClosed());
+
+        ServerSocket second = pool.acquire(LOCALHOST);
+        assertSame(first, second);
+        assertEquals(0, pool.getIdleCount());
+
+        pool.release(second);
+        pool.closeIdle();
+        assertTrue(second.isClosed());
+        assertEquals(port, passivePorts.reserveNextPort());
+    }
+
+    public void testCloseWhenFull() throws Exception {
+        int port2 = TestUtil.findFreePort(port + 1);
+        passivePorts = new PassivePorts(port + "," + port2, false);
+        PassiveServerSocketPool pool = new PassiveServerSocketPool(passivePorts, 1);
+
+        ServerSocket first = pool.acquire(LOCALHOST);
+        ServerSocket second = pool.acquire(LOCALHOST);
+        assertNotNull(second);
+        int secondPort = second.getLocalPort();
+
+        pool.release(first);
+        pool.release(second);
+        assertEquals(1, pool.getIdleCount());
+        assertFalse(first.isClosed());
+        assertTrue(second.isClosed());
+
+        // the port of the closed socket was released
+        assertEquals(secondPort, passivePorts.reserveNextPort());
+
+        pool.closeIdle();
+    }
+
+    public void testDiscardStaleConnections() throws Exception {
+        PassiveServerSocketPool pool = new PassiveServerSocketPool(passivePorts, 1);
+
+        ServerSocket serverSocket = pool.acquire(LOCALHOST);
+        pool.release(serverSocket);
+
+        // connect to the idle socket, this connection must not be handed out
+        Socket stale = new Socket();
+        stale.connect(new InetSocketAddress(LOCALHOST, port));
+
+        serverSocket = pool.acquire(LOCALHOST);
+        serverSocket.setSoTimeout(200);
+
+        // the stale connection is closed by the pool
+        stale.setSoTimeout(2000);
+        assertEquals(-1, stale.getInputStream().read());
+        stale.close();
+
+        try {
+            serverSocket.accept();
+            fail("Must not accept the stale connection");
+        } catch (IOException e) {
+            // expected, timed out
+        }
+
+        Socket fresh = new Socket(LOCALHOST, port);
+        Socket accepted = serverSocket.accept();
+        assertEquals(fresh.getLocalPort(), accepted.getPort());
+        accepted.close();
+        fresh.close();
+
+        pool.release(serverSocket);
+        pool.closeIdle();
+    }
+
+    public void testSkipPortInUse() throws Exception {
+        int port2 = TestUtil.findFreePort(port + 1);
+        passivePorts = new PassivePorts(port + "," + port2, false);
+        PassiveServerSocketPool pool = new PassiveServerSocketPool(passivePorts, 2);
+
+        ServerSocket other = new ServerSocket(port, 0, LOCALHOST);
+        try {
+            ServerSocket serverSocket = pool.acquire(LOCALHOST);
+            assertEquals(port2, serverSocket.getLocalPort());
+            assertNull(pool.acquire(LOCALHOST));
+
+            pool.release(serverSocket);
+            pool.closeIdle();
+
+            // the busy port must not stay reserved
+            other.close();
+            serverSocket = pool.acquire(LOCALHOST);
+            assertNotNull(serverSocket);
+            pool.release(serverSocket);
+            pool.closeIdle();
+        } finally {
+            other.close();
+        }
+    }
+}
@@ -19,6 +19,7 @@
 
 package org.apache.ftpserver.impl;
 
+import java.net.InetAddress;
 import java.util.Date;
 
 import junit.framework.TestCase;
@@ -57,6 +58,96 @@ public abstract class ServerFtpStatisticsTestTemplate extends TestCase {
         assertEquals(0, stats.getCurrentConnectionNumber());
     }
 
+    public void testFtpletTime() {
+        ServerFtpStatistics stats = createStatistics();
+
+        stats.setFtpletTime("ftplet1", "beforeCommand", 1000);
+        stats.setFtpletTime("ftplet1", "beforeCommand", 3000);
+        stats.setFtpletTime("ftplet1", "afterCommand", 2000);
+
+        assertEquals(1, stats.getFtpletLatencies().size());
+        assertEquals(2, stats.getFtpletLatencies().get("ftplet1").get(
+                "beforeCommand").getCount());
+        assertEquals(3000, stats.getFtpletLatencies().get("ftplet1").get(
+                "beforeCommand").getMax());
+
+        stats.resetStatisticsCounters();
+        assertEquals(0, stats.getFtpletLatencies().get("ftplet1").get(
+                "afterCommand").getCount());
+    }
+
+    public void testCommandTime() {
+        ServerFtpStatistics stats = createStatistics();
+
+        stats.setCommandTime("STOR", ServerFtpStatistics.COMMAND_TIME_IO, 1000);
+        stats.setCommandTime("STOR", ServerFtpStatistics.COMMAND_TIME_TOTAL,
+                2000);
+
+        assertEquals(2, stats.getCommandLatencies().get("STOR").size());
+        assertEquals(1000, stats.getCommandLatencies().get("STOR").get(
+                ServerFtpStatistics.COMMAND_TIME_IO).getTotal());
+
+        stats.resetStatisticsCounters();
+        assertEquals(0, stats.getCommandLatencies().get("STOR").get(
+                ServerFtpStatistics.COMMAND_TIME_TOTAL).getCount());
+    }
+
+    public void testConcurrentConnectionCount() throws Exception {
+        final ServerFtpStatistics stats = createStatistics();
+        final FtpIoSession session = new FtpIoSession(null, null);
+
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        stats.setOpenConnection(session);
+                    }
+                    for (int j = 0; j < 500; j++) {
+                        stats.setCloseConnection(session);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+
+        assertEquals(8000, stats.getTotalConnectionNumber());
+        assertEquals(4000, stats.getCurrentConnectionNumber());
+
+        stats.resetStatisticsCounters();
+        assertEquals(0, stats.getTotalConnectionNumber());
+        assertEquals(4000, stats.getCurrentConnectionNumber());
+    }
+
+    public void testObserverNotifiedSerially() throws Exception {
+        final ServerFtpStatistics stats = createStatistics();
+        final FtpIoSession session = new FtpIoSession(null, null);
+        final CountingObserver observer = new CountingObserver();
+        stats.setObserver(observer);
+
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        stats.setOpenConnection(session);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+
+        // the observer does not synchronize, no update may be lost
+        assertEquals(8000, observer.openConnections);
+        assertFalse(observer.concurrent);
+    }
+
     @SuppressWarnings("deprecation")
     public void testStartDateImmutable() {
         ServerFtpStatistics stats = createStatistics();
@@ -71,4 +162,49 @@ public abstract class ServerFtpStatisticsTestTemplate extends TestCase {
 
     protected abstract DefaultFtpStatistics createStatistics();
 
+    private static class CountingObserver implements StatisticsObserver {
+
+        private int active;
+
+        private boolean concurrent;
+
+        private int openConnections;
+
+        public void notifyOpenConnection() {
+            if (active++ != 0) {
+                concurrent = true;
+            }
+            openConnections++;
+            Thread.yield();
+            active--;
+        }
+
+        public void notifyCloseConnection() {
+        }
+
+        public void notifyUpload() {
+        }
+
+        public void notifyDownload() {
+        }
+
+        public void notifyDelete() {
+        }
+
+        public void notifyMkdir() {
+        }
+
+        public void notifyRmdir() {
+        }
+
+        public void notifyLogin(boolean anonymous) {
+        }
+
+        public void notifyLoginFail(InetAddress address) {
+        }
+
+        public void notifyLogout(boolean anonymous) {
+        }
+    }
+
 }
\ No newline at end of file
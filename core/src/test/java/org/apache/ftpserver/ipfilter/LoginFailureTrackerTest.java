@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ftpserver.ipfilter;
+
+import java.net.InetAddress;
+
+import junit.framework.TestCase;
+
+/**
+*
+* @author <a href="http://mina.apache.org">Apache MINA Project</a>
+*
+*/
+public class LoginFailureTrackerTest extends TestCase {
+
+    private long now = 1000000;
+
+    private InetAddress address;
+
+    private LoginFailureTracker tracker;
+
+    protected void setUp() throws Exception {
+        address = InetAddress.getByName("1.2.3.4");
+        // 3 failures per 60 seconds, banned for 600 seconds
+        tracker = new LoginFailureTracker(3, 60, 600) {
+            protected long currentTimeMillis() {
+                return now;
+            }
+        };
+    }
+
+    public void testBanAfterMaxFailures() {
+        assertFalse(tracker.loginFailed(address));
+        assertFalse(tracker.loginFailed(address));
+        assertFalse(tracker.isBanned(address));
+        assertTrue(tracker.accept(address));
+
+        assertTrue(tracker.loginFailed(address));
+        assertTrue(tracker.isBanned(address));
+        assertFalse(tracker.accept(address));
+        assertEquals(1, tracker.getBans().size());
+        assertEquals(now + 600000, tracker.getBans().get(address).getTime());
+    }
+
+    public void testBanAfterQuickFailures() {
+        assertFalse(tracker.loginFailed(address));
+        now += 10;
+        assertFalse(tracker.loginFailed(address));
+        now += 10;
+        assertTrue(tracker.loginFailed(address));
+    }
+
+    public void testFailuresDecay() {
+        // one failure every 20 seconds is within the limit
+        for (int i = 0; i < 10; i++) {
+            assertFalse(tracker.loginFailed(address));
+            now += 20000;
+        }
+        assertFalse(tracker.isBanned(address));
+
+        now += 60000;
+        assertEquals(0, tracker.getFailureCount(address));
+    }
+
+    public void testSteadyFailuresBelowRateNotBanned() {
+        // the count decays by one every 20 seconds, an attacker failing
+        // every 21 seconds is never banned
+        for (int i = 0; i < 1000; i++) {
+            assertFalse(tracker.loginFailed(address));
+            now += 21000;
+        }
+        assertFalse(tracker.isBanned(address));
+    }
+
+    public void testSteadyFailuresAboveRateBanned() {
+        // failing every 19 seconds adds 0.05 to the count every time
+        for (int i = 0; i < 10; i++) {
+            assertFalse(tracker.loginFailed(address));
+            now += 19000;
+        }
+
+        boolean banned = false;
+        for (int i = 0; i < 20 && !banned; i++) {
+            banned = tracker.loginFailed(address);
+            now += 19000;
+        }
+        assertTrue(banned);
+    }
+
+    public void testBanExpires() {
+        tracker.loginFailed(address);
+        tracker.loginFailed(address);
+        tracker.loginFailed(address);
+
+        now += 599999;
+        assertTrue(tracker.isBanned(address));
+        now += 1;
+        assertFalse(tracker.isBanned(address));
+        assertTrue(tracker.getBans().isEmpty());
+
+        // the failures were reset by the ban
+        assertFalse(tracker.loginFailed(address));
+    }
+
+    public void testSuccessResetsFailures() {
+        tracker.loginFailed(address);
+        tracker.loginFailed(address);
+        tracker.loginSucceeded(address);
+
+        assertEquals(0, tracker.getFailureCount(address));
+        assertFalse(tracker.loginFailed(address));
+    }
+
+    public void testOtherAddressesNotAffected() throws Exception {
+        tracker.loginFailed(address);
+        tracker.loginFailed(address);
+        tracker.loginFailed(address);
+
+        assertTrue(tracker.accept(InetAddress.getByName("1.2.3.5")));
+    }
+
+    public void testUnbanAndClear() throws Exception {
+        InetAddress other = InetAddress.getByName("::1");
+        tracker.ban(address, 10);
+        tracker.ban(other, 10);
+
+        assertTrue(tracker.unban(address));
+        assertFalse(tracker.unban(address));
+        assertFalse(tracker.isBanned(address));
+        assertTrue(tracker.isBanned(other));
+
+        tracker.clear();
+        assertTrue(tracker.getBans().isEmpty());
+    }
+
+    public void testInvalidSettings() {
+        try {
+            new LoginFailureTracker(0);
+            fail("Must throw");
+        } catch (IllegalArgumentException e) {
+            // OK
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ftpserver.ipfilter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.apache.mina.filter.firewall.Subnet;
+
+/**
+*
+* @author <a href="http://mina.apache.org">Apache MINA Project</a>
+*
+*/
+public class RadixTreeIpFilterTest extends TestCase {
+
+    private static InetAddress ip(String address) throws Exception {
+        return InetAddress.getByName(address);
+    }
+
+    public void testDenySingleAddress() throws Exception {
+        RadixTreeIpFilter filter = new RadixTreeIpFilter(IpFilterType.DENY,
+                "1.2.3.4");
+
+        assertFalse(filter.accept(ip("1.2.3.4")));
+        assertTrue(filter.accept(ip("1.2.3.5")));
+        assertTrue(filter.accept(ip("::1")));
+    }
+
+    public void testAllowSubnets() throws Exception {
+        RadixTreeIpFilter filter = new RadixTreeIpFilter(IpFilterType.ALLOW,
+                "10.0.0.0/8, 192.168.1.0/24 2001:db8::/32");
+
+        assertTrue(filter.accept(ip("10.255.1.2")));
+        assertTrue(filter.accept(ip("192.168.1.77")));
+        assertFalse(filter.accept(ip("192.168.2.1")));
+        assertFalse(filter.accept(ip("11.0.0.1")));
+        assertTrue(filter.accept(ip("2001:db8:1::5")));
+        assertFalse(filter.accept(ip("2001:db9::5")));
+        assertEquals(3, filter.size());
+    }
+
+    public void testEmptyFilter() throws Exception {
+        assertTrue(new RadixTreeIpFilter(IpFilterType.DENY).accept(ip("1.2.3.4")));
+        assertFalse(new RadixTreeIpFilter(IpFilterType.ALLOW).accept(ip("1.2.3.4")));
+    }
+
+    public void testHostBitsIgnored() throws Exception {
+        RadixTreeIpFilter filter = new RadixTreeIpFilter(IpFilterType.DENY);
+        assertTrue(filter.add("1.2.3.4/16"));
+        assertFalse(filter.add("1.2.0.0/16"));
+
+        assertFalse(filter.accept(ip("1.2.200.1")));
+        assertEquals("[1.2.0.0/16]", filter.getSubnets().toString());
+    }
+
+    public void testAllAddresses() throws Exception {
+        RadixTreeIpFilter filter = new RadixTreeIpFilter(IpFilterType.DENY,
+                "0.0.0.0/0");
+
+        assertFalse(filter.accept(ip("8.8.8.8")));
+        assertTrue(filter.accept(ip("::2")));
+    }
+
+    public void testNestedSubnets() throws Exception {
+        RadixTreeIpFilter filter = new RadixTreeIpFilter(IpFilterType.DENY,
+                "10.1.2.3 10.1.0.0/16 10.1.2.0/24");
+
+        assertTrue(filter.remove("10.1.0.0/16"));
+        assertFalse(filter.accept(ip("10.1.2.200")));
+        assertTrue(filter.accept(ip("10.1.3.1")));
+
+        assertTrue(filter.remove("10.1.2.0/24"));
+        assertFalse(filter.accept(ip("10.1.2.3")));
+        assertTrue(filter.accept(ip("10.1.2.200")));
+
+        assertFalse(filter.remove("10.1.2.0/24"));
+        assertTrue(filter.remove("10.1.2.3"));
+        assertTrue(filter.isEmpty());
+        assertTrue(filter.accept(ip("10.1.2.3")));
+    }
+
+    public void testLoad() throws Exception {
+        RadixTreeIpFilter filter = new RadixTreeIpFilter(IpFilterType.DENY);
+
+        int added = filter.load(new StringReader("# threat feed\n"
+                + "1.2.3.0/24 # first\n\n" + "5.6.7.8, 9.9.0.0/16\n"
+                + "1.2.3.0/24\n"));
+
+        assertEquals(3, added);
+        assertFalse(filter.accept(ip("1.2.3.9")));
+        assertFalse(filter.accept(ip("9.9.9.9")));
+        assertTrue(filter.accept(ip("5.6.7.9")));
+    }
+
+    public void testLoadInvalid() throws Exception {
+        RadixTreeIpFilter filter = new RadixTreeIpFilter(IpFilterType.DENY);
+
+        try {
+            filter.load(new StringReader("1.2.3.4\n1.2.3.0/33\n"));
+            fail("Must throw");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().indexOf("line 2") != -1);
+        }
+    }
+
+    public void testSameAsDefaultIpFilter() throws Exception {
+        Random random = new Random(42);
+        RadixTreeIpFilter radix = new RadixTreeIpFilter(IpFilterType.DENY);
+        DefaultIpFilter linear = new DefaultIpFilter(IpFilterType.DENY);
+
+        for (int i = 0; i < 500; i++) {
+            int prefixLength = 8 + random.nextInt(25);
+            // Subnet expects the host bits to be cleared
+            int network = toInt(randomAddress(random))
+                    & (-1 << (32 - prefixLength));
+            InetAddress address = InetAddress.getByAddress(new byte[] {
+                    (byte) (network >>> 24), (byte) (network >>> 16),
+                    (byte) (network >>> 8), (byte) network });
+            radix.add(address, prefixLength);
+            linear.add(new Subnet(address, prefixLength));
+        }
+
+        for (int i = 0; i < 20000; i++) {
+            InetAddress address = randomAddress(random);
+            assertEquals(address.toString(), linear.accept(address), radix
+                    .accept(address));
+        }
+
+        // remove every other subnet
+        int i = 0;
+        for (Subnet subnet : linear) {
+            if (i++ % 2 == 0) {
+                assertTrue(radix.remove(subnet.toString()));
+                linear.remove(subnet);
+            }
+        }
+        assertEquals(linear.size(), radix.size());
+
+        for (i = 0; i < 20000; i++) {
+            InetAddress address = randomAddress(random);
+            assertEquals(address.toString(), linear.accept(address), radix
+                    .accept(address));
+        }
+    }
+
+    private int toInt(InetAddress address) {
+        byte[] bytes = address.getAddress();
+        return ((bytes[0] & 0xff) << 24) | ((bytes[1] & 0xff) << 16)
+                | ((bytes[2] & 0xff) << 8) | (bytes[3] & 0xff);
+    }
+
+    private InetAddress randomAddress(Random random) throws Exception {
+        // a small address space so that addresses hit the subnets
+        byte[] bytes = new byte[4];
+        bytes[0] = (byte) random.nextInt(4);
+        bytes[1] = (byte) random.nextInt(8);
+        bytes[2] = (byte) random.nextInt(256);
+        bytes[3] = (byte) random.nextInt(256);
+        return InetAddress.getByAddress(bytes);
+    }
+}
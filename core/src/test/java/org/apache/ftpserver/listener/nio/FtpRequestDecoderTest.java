@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ftpserver.listener.nio;
+
+import java.nio.charset.CharacterCodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.ftpserver.ftplet.FtpRequest;
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.filterchain.IoFilter.NextFilter;
+import org.apache.mina.core.session.DummySession;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.filter.codec.AbstractProtocolDecoderOutput;
+import org.apache.mina.filter.codec.RecoverableProtocolDecoderException;
+
+/**
+*
+* @author <a href="http://mina.apache.org">Apache MINA Project</a>*
+*/
+public class FtpRequestDecoderTest extends TestCase {
+
+    private FtpRequestDecoder decoder = new FtpRequestDecoder(Arrays.asList(
+            new String[] { "NOOP", "SIZE", "MKD", "PASS" }), 16);
+
+    private IoSession session = new DummySession();
+
+    private AbstractProtocolDecoderOutput out = new AbstractProtocolDecoderOutput() {
+        public void flush(NextFilter nextFilter, IoSession session) {
+        }
+    };
+
+    private List<FtpRequest> decode(String data) throws Exception {
+        IoBuffer in = IoBuffer.wrap(data.getBytes("UTF-8"));
+        decoder.decode(session, in, out);
+        assertFalse(in.hasRemaining());
+
+        List<FtpRequest> requests = new ArrayList<FtpRequest>();
+        while (!out.getMessageQueue().isEmpty()) {
+            requests.add((FtpRequest) out.getMessageQueue().poll());
+        }
+        return requests;
+    }
+
+    private FtpRequest decodeOne(String data) throws Exception {
+        List<FtpRequest> requests = decode(data);
+        assertEquals(1, requests.size());
+        return requests.get(0);
+    }
+
+    public void testKnownCommand() throws Exception {
+        FtpRequest request = decodeOne("NOOP\r\n");
+
+        assertEquals("NOOP", request.getCommand());
+        assertEquals("NOOP", request.getRequestLine());
+        assertNull(request.getArgument());
+
+        // known verbs are not copied
+        assertSame(request.getCommand(), decodeOne("NOOP\r\n").getCommand());
+    }
+
+    public void testCommandWithArgument() throws Exception {
+        FtpRequest request = decodeOne("SIZE  foo bar\r\n");
+
+        assertEquals("SIZE", request.getCommand());
+        assertEquals(" foo bar", request.getArgument());
+        assertEquals("SIZE  foo bar", request.getRequestLine());
+    }
+
+    public void testLowerCaseAndXCommand() throws Exception {
+        FtpRequest request = decodeOne("xmkd dir\n");
+
+        assertEquals("MKD", request.getCommand());
+        assertEquals("dir", request.getArgument());
+        assertEquals("xmkd dir", request.getRequestLine());
+    }
+
+    public void testUnknownCommand() throws Exception {
+        FtpRequest request = decodeOne(" foo\r\n");
+
+        assertEquals("FOO", request.getCommand());
+        assertEquals("foo", request.getRequestLine());
+    }
+
+    public void testEmptyLine() throws Exception {
+        FtpRequest request = decodeOne("\r\n");
+
+        assertEquals("", request.getCommand());
+        assertNull(request.getArgument());
+    }
+
+    public void testUtf8Argument() throws Exception {
+        FtpRequest request = decodeOne("SIZE åäö\r\n");
+
+        assertEquals("åäö", request.getArgument());
+    }
+
+    public void testMalformedInput() throws Exception {
+        IoBuffer in = IoBuffer.wrap(new byte[] { 'S', 'I', 'Z', 'E', ' ',
+                (byte) 0xff, '\n' });
+        try {
+            decoder.decode(session, in, out);
+            fail("Must throw CharacterCodingException");
+        } catch (CharacterCodingException e) {
+            // ok
+        }
+        assertFalse(in.hasRemaining());
+    }
+
+    public void testMalformedSplitLine() throws Exception {
+        decoder.decode(session, IoBuffer.wrap(new byte[] { 'S', 'I', 'Z',
+                'E', ' ' }), out);
+        IoBuffer in = IoBuffer.wrap(new byte[] { (byte) 0xff, '\r', '\n' });
+        try {
+            decoder.decode(session, in, out);
+            fail("Must throw CharacterCodingException");
+        } catch (CharacterCodingException e) {
+            // ok
+        }
+        assertFalse(in.hasRemaining());
+
+        // the malformed line must not be prepended to the next one
+        FtpRequest request = decodeOne("NOOP\r\n");
+        assertEquals("NOOP", request.getCommand());
+        assertEquals("NOOP", request.getRequestLine());
+    }
+
+    public void testMultipleLines() throws Exception {
+        List<FtpRequest> requests = decode("NOOP\r\nSIZE foo\r\nPASS");
+
+        assertEquals(2, requests.size());
+        assertEquals("NOOP", requests.get(0).getCommand());
+        assertEquals("SIZE", requests.get(1).getCommand());
+
+        FtpRequest request = decodeOne(" secret\r\n");
+        assertEquals("PASS", request.getCommand());
+        assertEquals("secret", request.getArgument());
+    }
+
+    public void testLineSplitOverReads() throws Exception {
+        assertTrue(decode("SI").isEmpty());
+        assertTrue(decode("ZE fo").isEmpty());
+        assertTrue(decode("o\r").isEmpty());
+
+        FtpRequest request = decodeOne("\n");
+        assertEquals("SIZE", request.getCommand());
+        assertEquals("foo", request.getArgument());
+    }
+
+    public void testTooLongLine() throws Exception {
+        try {
+            decode("SIZE 01234567890123456789\r\n");
+            fail("Must throw RecoverableProtocolDecoderException");
+        } catch (RecoverableProtocolDecoderException e) {
+            // ok
+        }
+
+        assertEquals("NOOP", decodeOne("NOOP\r\n").getCommand());
+    }
+
+    public void testTooLongSplitLine() throws Exception {
+        assertTrue(decode("SIZE 0123456789").isEmpty());
+        assertTrue(decode("0123456789").isEmpty());
+        try {
+            decode("\r\n");
+            fail("Must throw RecoverableProtocolDecoderException");
+        } catch (RecoverableProtocolDecoderException e) {
+            // ok
+        }
+
+        assertEquals("NOOP", decodeOne("NOOP\r\n").getCommand());
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ftpserver.listener.nio;
+
+import java.nio.charset.Charset;
+
+import junit.framework.TestCase;
+
+import org.apache.ftpserver.ftplet.DefaultFtpReply;
+import org.apache.ftpserver.ftplet.FtpReply;
+import org.apache.ftpserver.impl.DefaultFtpServerContext;
+import org.apache.ftpserver.impl.FtpIoSession;
+import org.apache.ftpserver.impl.LocalizedFtpReply;
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.future.WriteFuture;
+import org.apache.mina.core.session.DummySession;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.filter.codec.AbstractProtocolEncoderOutput;
+
+/**
+*
+* @author <a href="http://mina.apache.org">Apache MINA Project</a>*
+*/
+public class FtpResponseEncoderTest extends TestCase {
+
+    private FtpResponseEncoder encoder = new FtpResponseEncoder();
+
+    private IoSession session = new DummySession();
+
+    private DefaultFtpServerContext context = new DefaultFtpServerContext();
+
+    private FtpIoSession ftpSession = new FtpIoSession(session, context);
+
+    private AbstractProtocolEncoderOutput out = new AbstractProtocolEncoderOutput() {
+        public WriteFuture flush() {
+            return null;
+        }
+    };
+
+    private String encode(FtpReply reply) throws Exception {
+        encoder.encode(session, reply, out);
+
+        IoBuffer buf = (IoBuffer) out.getMessageQueue().poll();
+        assertTrue(out.getMessageQueue().isEmpty());
+        String value = buf.getString(buf.remaining(), Charset.forName(
+                "UTF-8").newDecoder());
+        assertFalse(buf.hasRemaining());
+        return value;
+    }
+
+    public void testConstantReplyIsCached() throws Exception {
+        LocalizedFtpReply reply = LocalizedFtpReply.translate(ftpSession,
+                null, context, FtpReply.REPLY_200_COMMAND_OKAY, "NOOP", null);
+        assertTrue(reply.isConstant());
+
+        assertEquals(reply.toString(), encode(reply));
+        assertEquals(1, encoder.getCacheSize());
+
+        // the cached buffer must not be consumed by earlier writes
+        assertEquals(reply.toString(), encode(reply));
+        assertEquals(reply.toString(), encode(reply));
+        assertEquals(1, encoder.getCacheSize());
+    }
+
+    public void testSameMessageDifferentCode() throws Exception {
+        // no message for the sub id, both end up with an empty message
+        LocalizedFtpReply reply200 = LocalizedFtpReply.translate(ftpSession,
+                null, context, 200, "UNKNOWN", null);
+        LocalizedFtpReply reply500 = LocalizedFtpReply.translate(ftpSession,
+                null, context, 500, "UNKNOWN", null);
+
+        assertEquals("200 \r\n", encode(reply200));
+        assertEquals("500 \r\n", encode(reply500));
+        assertEquals("200 \r\n", encode(reply200));
+        assertEquals(2, encoder.getCacheSize());
+    }
+
+    public void testDynamicReplyIsNotCached() throws Exception {
+        LocalizedFtpReply reply = LocalizedFtpReply.translate(ftpSession,
+                null, context, FtpReply.REPLY_226_CLOSING_DATA_CONNECTION,
+                "STOU", "foo");
+        assertFalse(reply.isConstant());
+
+        assertEquals(reply.toString(), encode(reply));
+        assertEquals("200 bar\r\n", encode(new DefaultFtpReply(200, "bar")));
+        assertEquals(0, encoder.getCacheSize());
+    }
+
+    public void testLongNonAsciiReply() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            sb.append("åäö");
+        }
+        FtpReply reply = new DefaultFtpReply(200, sb.toString());
+
+        assertEquals(reply.toString(), encode(reply));
+    }
+
+    public void testSmallReplyAfterHugeReply() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            sb.append('x');
+        }
+        FtpReply huge = new DefaultFtpReply(200, sb.toString());
+
+        // the scratch buffer is shrunk again after the huge reply
+        assertEquals(huge.toString(), encode(huge));
+        assertEquals("200 bar\r\n", encode(new DefaultFtpReply(200, "bar")));
+    }
+}
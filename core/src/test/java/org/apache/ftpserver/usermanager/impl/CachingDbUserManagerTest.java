@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ftpserver.usermanager.impl;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+
+import org.apache.ftpserver.ftplet.FtpException;
+import org.apache.ftpserver.usermanager.DbUserManagerFactory;
+import org.apache.ftpserver.usermanager.UserManagerFactory;
+
+/**
+*
+* @author <a href="http://mina.apache.org">Apache MINA Project</a>*
+*/
+public class CachingDbUserManagerTest extends DbUserManagerTest {
+
+    protected UserManagerFactory createUserManagerFactory() throws FtpException {
+        DbUserManagerFactory manager = (DbUserManagerFactory) super.createUserManagerFactory();
+        manager.setUsePreparedStatements(true);
+        manager.setCacheTtl(60);
+        return manager;
+    }
+
+    private void executeDirectly(String sql) throws Exception {
+        Connection conn = DriverManager.getConnection("jdbc:hsqldb:mem:ftpd",
+                "sa", "");
+        try {
+            Statement stmt = conn.createStatement();
+            stmt.execute(sql);
+            stmt.close();
+        } finally {
+            conn.close();
+        }
+    }
+
+    public void testUserNameWithQuote() throws Exception {
+        BaseUser user = new BaseUser();
+        user.setName("o'brien");
+        user.setPassword("pw");
+        userManager.save(user);
+
+        assertTrue(userManager.doesExist("o'brien"));
+        assertEquals("o'brien", userManager.getUserByName("o'brien").getName());
+    }
+
+    public void testCachedUntilCleared() throws Exception {
+        assertTrue(userManager.doesExist("user1"));
+
+        executeDirectly("DELETE FROM FTP_USER WHERE userid = 'user1'");
+        assertTrue(userManager.doesExist("user1"));
+
+        ((DbUserManager) userManager).clearCache();
+        assertFalse(userManager.doesExist("user1"));
+    }
+
+    public void testUnknownUserCached() throws Exception {
+        assertNull(userManager.getUserByName("newuser"));
+
+        executeDirectly("INSERT INTO FTP_USER (userid, userpassword, homedirectory) VALUES ('newuser', 'pw', 'home')");
+        assertNull(userManager.getUserByName("newuser"));
+
+        ((DbUserManager) userManager).clearCache();
+        assertNotNull(userManager.getUserByName("newuser"));
+    }
+
+    public void testSaveUpdatesCache() throws Exception {
+        assertNull(userManager.getUserByName("newuser"));
+
+        BaseUser user = new BaseUser();
+        user.setName("newuser");
+        user.setHomeDirectory("newhome");
+        userManager.save(user);
+
+        assertEquals("newhome", userManager.getUserByName("newuser")
+                .getHomeDirectory());
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ftpserver.usermanager.impl;
+
+import junit.framework.TestCase;
+
+/**
+*
+* @author <a href="http://mina.apache.org">Apache MINA Project</a>
+*
+*/
+public class ExpiringCacheTest extends TestCase {
+
+    private ExpiringCache<String> cache = new ExpiringCache<String>(2, 60000);
+
+    public void testPutAndGet() {
+        cache.put("user1", "pw1");
+        cache.put("user2", null);
+
+        assertEquals("pw1", cache.get("user1").getValue());
+        assertNull(cache.get("user2").getValue());
+        assertNull(cache.get("user3"));
+    }
+
+    public void testEvictLeastRecentlyUsed() {
+        cache.put("user1", "pw1");
+        cache.put("user2", "pw2");
+        cache.get("user1");
+        cache.put("user3", "pw3");
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("user1"));
+        assertNull(cache.get("user2"));
+    }
+
+    public void testStaleLookupNotCached() {
+        // a lookup starts, then the user is saved and invalidated
+        long generation = cache.getGeneration();
+        cache.remove("user1");
+
+        assertFalse(cache.put("user1", "stale", generation));
+        assertNull(cache.get("user1"));
+
+        assertTrue(cache.put("user1", "current", cache.getGeneration()));
+        assertEquals("current", cache.get("user1").getValue());
+    }
+
+    public void testLookupAfterClearNotCached() {
+        long generation = cache.getGeneration();
+        cache.clear();
+
+        assertFalse(cache.put("user1", "stale", generation));
+        assertEquals(0, cache.size());
+    }
+}
@@ -111,4 +111,93 @@ public class PropertiesUserManagerTest extends UserManagerTestTemplate {
     	modifiedUser = pum.getUserByName("user1");
     	assertEquals("Home directory should have reset back to \""+originalSetting+"\" after second call to refresh().",originalSetting,modifiedUser.getHomeDirectory());
     }
+
+    private Properties loadUserFile() throws IOException {
+        Properties users = new Properties();
+        FileInputStream fis = new FileInputStream(USERS_FILE);
+        try {
+            users.load(fis);
+        } finally {
+            fis.close();
+        }
+        return users;
+    }
+
+    public void testSaveWritesFile() throws Exception {
+        BaseUser user = new BaseUser();
+        user.setName("newuser");
+        user.setHomeDirectory("newhome");
+        userManager.save(user);
+
+        assertEquals("newhome", loadUserFile().getProperty(
+                "ftpserver.user.newuser.homedirectory"));
+
+        userManager.delete("user1");
+        assertNull(loadUserFile().getProperty(
+                "ftpserver.user.user1.homedirectory"));
+
+        // no temporary files left behind
+        assertEquals(1, TEST_DIR.list().length);
+    }
+
+    public void testSaveDelay() throws Exception {
+        PropertiesUserManagerFactory factory = (PropertiesUserManagerFactory) createUserManagerFactory();
+        factory.setSaveDelay(60000);
+        PropertiesUserManager pum = (PropertiesUserManager) factory
+                .createUserManager();
+
+        BaseUser user = new BaseUser();
+        user.setName("newuser");
+        user.setHomeDirectory("newhome");
+        pum.save(user);
+        pum.delete("user1");
+
+        // changes are seen right away, but not yet written
+        assertEquals("newhome", pum.getUserByName("newuser")
+                .getHomeDirectory());
+        assertFalse(pum.doesExist("user1"));
+        Properties users = loadUserFile();
+        assertNull(users.getProperty("ftpserver.user.newuser.homedirectory"));
+        assertNotNull(users.getProperty("ftpserver.user.user1.homedirectory"));
+
+        pum.flush();
+
+        users = loadUserFile();
+        assertEquals("newhome", users
+                .getProperty("ftpserver.user.newuser.homedirectory"));
+        assertNull(users.getProperty("ftpserver.user.user1.homedirectory"));
+
+        pum.dispose();
+    }
+
+    public void testRefreshKeepsPendingSave() throws Exception {
+        PropertiesUserManagerFactory factory = (PropertiesUserManagerFactory) createUserManagerFactory();
+        factory.setSaveDelay(60000);
+        PropertiesUserManager pum = (PropertiesUserManager) factory
+                .createUserManager();
+
+        BaseUser user = new BaseUser();
+        user.setName("newuser");
+        user.setHomeDirectory("newhome");
+        pum.save(user);
+
+        pum.refresh();
+
+        assertEquals("newhome", pum.getUserByName("newuser")
+                .getHomeDirectory());
+        assertEquals("newhome", loadUserFile().getProperty(
+                "ftpserver.user.newuser.homedirectory"));
+
+        pum.dispose();
+    }
+
+    public void testGetAllUserNamesAfterSave() throws Exception {
+        BaseUser user = new BaseUser();
+        user.setName("a_user");
+        userManager.save(user);
+
+        String[] names = userManager.getAllUserNames();
+        assertEquals("a_user", names[0]);
+        assertEquals(4, names.length);
+    }
 }
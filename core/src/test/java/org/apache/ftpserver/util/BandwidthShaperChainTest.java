@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ftpserver.util;
+
+import junit.framework.TestCase;
+
+/**
+*
+* @author <a href="http://mina.apache.org">Apache MINA Project</a>*
+*/
+public class BandwidthShaperChainTest extends TestCase {
+
+    public void testChainWithoutShapers() {
+        assertNull(BandwidthShaperChain.chain(null, null));
+    }
+
+    public void testChainWithSingleShaper() {
+        BandwidthShaper shaper = new TokenBucketShaper(1000);
+
+        assertSame(shaper, BandwidthShaperChain.chain(null, shaper, null));
+    }
+
+    public void testSmallestGrantWins() throws Exception {
+        TokenBucketShaper user = new TokenBucketShaper(1000000, 1000);
+        TokenBucketShaper server = new TokenBucketShaper(1000000, 100);
+
+        BandwidthShaper chain = BandwidthShaperChain.chain(user, server);
+        assertEquals(100, chain.acquire(4096));
+    }
+
+    public void testUnusedBytesAreReturned() throws Exception {
+        TokenBucketShaper user = new TokenBucketShaper(1000, 1000);
+        TokenBucketShaper server = new TokenBucketShaper(1000, 100);
+
+        BandwidthShaper chain = BandwidthShaperChain.chain(user, server);
+        assertEquals(100, chain.acquire(1000));
+
+        // the user bucket only lost the 100 bytes actually granted
+        long start = System.nanoTime();
+        assertEquals(900, user.acquire(900));
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        assertTrue("Took " + elapsedMillis + " ms", elapsedMillis < 100);
+    }
+
+    public void testSharedBudget() throws Exception {
+        TokenBucketShaper server = new TokenBucketShaper(100000, 10000);
+
+        BandwidthShaper first = BandwidthShaperChain.chain(
+                new TokenBucketShaper(1000000), server);
+        BandwidthShaper second = BandwidthShaperChain.chain(
+                new TokenBucketShaper(1000000), server);
+
+        long start = System.nanoTime();
+        int transferred = 0;
+        while (transferred < 60000) {
+            transferred += first.acquire(4096);
+            transferred += second.acquire(4096);
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        // both transfers together are limited by the server budget
+        assertTrue("Took " + elapsedMillis + " ms", elapsedMillis >= 450);
+    }
+}
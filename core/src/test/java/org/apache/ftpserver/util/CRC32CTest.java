@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ftpserver.util;
+
+import junit.framework.TestCase;
+
+/**
+*
+* @author <a href="http://mina.apache.org">Apache MINA Project</a>*
+*/
+public class CRC32CTest extends TestCase {
+
+    public void testCheckValue() throws Exception {
+        CRC32C crc = new CRC32C();
+        crc.update("123456789".getBytes("ASCII"));
+        assertEquals(0xE3069283L, crc.getValue());
+    }
+
+    public void testEmpty() {
+        assertEquals(0, new CRC32C().getValue());
+    }
+
+    // test vectors from RFC 3720, B.4
+    public void testZeros() {
+        CRC32C crc = new CRC32C();
+        crc.update(new byte[32]);
+        assertEquals(0x8A9136AAL, crc.getValue());
+    }
+
+    public void testIncreasing() {
+        byte[] data = new byte[32];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(data);
+        assertEquals(0x46DD794EL, crc.getValue());
+    }
+
+    public void testSingleBytesMatchArray() {
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+
+        CRC32C crc1 = new CRC32C();
+        crc1.update(data, 3, 990);
+        CRC32C crc2 = new CRC32C();
+        for (int i = 3; i < 993; i++) {
+            crc2.update(data[i]);
+        }
+        assertEquals(crc1.getValue(), crc2.getValue());
+
+        crc1.reset();
+        assertEquals(0, crc1.getValue());
+    }
+}
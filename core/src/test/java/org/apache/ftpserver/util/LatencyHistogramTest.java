@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ftpserver.util;
+
+import junit.framework.TestCase;
+
+/**
+*
+* @author <a href="http://mina.apache.org">Apache MINA Project</a>*
+*/
+public class LatencyHistogramTest extends TestCase {
+
+    public void testEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMean());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+
+    public void testBucketBounds() {
+        long[] counts = new LatencyHistogram().getBucketCounts();
+        assertEquals(0, LatencyHistogram.getBucketLowestValue(0));
+
+        // the buckets cover all values without gaps
+        for (int i = 1; i < counts.length; i++) {
+            assertTrue(LatencyHistogram.getBucketLowestValue(i) > LatencyHistogram
+                    .getBucketLowestValue(i - 1));
+        }
+        assertEquals(7, LatencyHistogram.getBucketLowestValue(7));
+        assertEquals(8, LatencyHistogram.getBucketLowestValue(8));
+        assertEquals(16, LatencyHistogram.getBucketLowestValue(16));
+        assertEquals(18, LatencyHistogram.getBucketLowestValue(17));
+    }
+
+    public void testRecord() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000000L);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(5050000000L, histogram.getTotal());
+        assertEquals(50500000, histogram.getMean());
+        assertEquals(100000000, histogram.getMax());
+        assertEquals(100000000, histogram.getValueAtPercentile(100));
+
+        // within the precision of the buckets
+        assertPrecision(50000000, histogram.getValueAtPercentile(50));
+        assertPrecision(99000000, histogram.getValueAtPercentile(99));
+        assertPrecision(1000000, histogram.getValueAtPercentile(0));
+    }
+
+    public void testLargeAndNegativeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(-5);
+
+        assertEquals(2, histogram.getCount());
+        assertEquals(Long.MAX_VALUE, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(100));
+    }
+
+    public void testReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getTotal());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+    }
+
+    public void testInvalidPercentile() {
+        try {
+            new LatencyHistogram().getValueAtPercentile(101);
+            fail("IllegalArgumentException must be thrown");
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+    }
+
+    private void assertPrecision(long expected, long actual) {
+        assertTrue("Expected " + expected + " but was " + actual,
+                actual >= expected && actual <= expected + expected / 8);
+    }
+}
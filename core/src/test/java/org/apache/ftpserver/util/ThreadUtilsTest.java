@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ftpserver.util;
+
+import java.util.concurrent.ThreadFactory;
+
+import junit.framework.TestCase;
+
+/**
+*
+* @author <a href="http://mina.apache.org">Apache MINA Project</a>
+*
+*/
+public class ThreadUtilsTest extends TestCase {
+
+    private static boolean isVirtualThreadsSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual").invoke(null);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static boolean isVirtual(Thread thread) {
+        try {
+            return ((Boolean) Thread.class.getMethod("isVirtual").invoke(
+                    thread)).booleanValue();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    public void testCreateVirtualThreadFactory() throws Exception {
+        ThreadFactory factory = ThreadUtils.createVirtualThreadFactory("test-");
+
+        if (!isVirtualThreadsSupported()) {
+            assertNull(factory);
+            return;
+        }
+
+        final Thread[] current = new Thread[1];
+        Thread thread = factory.newThread(new Runnable() {
+            public void run() {
+                current[0] = Thread.currentThread();
+            }
+        });
+        assertEquals("test-0", thread.getName());
+        assertTrue(isVirtual(thread));
+
+        thread.start();
+        thread.join();
+        assertSame(thread, current[0]);
+        assertEquals("test-1", factory.newThread(new Runnable() {
+            public void run() {
+            }
+        }).getName());
+    }
+
+    public void testPlatformThreadIsNotVirtual() {
+        assertFalse(isVirtual(Thread.currentThread()));
+    }
+}
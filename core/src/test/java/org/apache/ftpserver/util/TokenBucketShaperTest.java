@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ftpserver.util;
+
+import junit.framework.TestCase;
+
+/**
+*
+* @author <a href="http://mina.apache.org">Apache MINA Project</a>*
+*/
+public class TokenBucketShaperTest extends TestCase {
+
+    public void testInvalidRate() {
+        try {
+            new TokenBucketShaper(0);
+            fail("IllegalArgumentException must be thrown");
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+    }
+
+    public void testDefaultBurstSize() {
+        assertEquals(1000, new TokenBucketShaper(10000).getBurstSize());
+        assertEquals(1, new TokenBucketShaper(5).getBurstSize());
+    }
+
+    public void testAcquireLimitedByBurstSize() throws Exception {
+        TokenBucketShaper shaper = new TokenBucketShaper(1000000, 100);
+
+        assertEquals(100, shaper.acquire(4096));
+        assertEquals(50, shaper.acquire(50));
+        assertEquals(0, shaper.acquire(0));
+    }
+
+    public void testBurstIsImmediate() throws Exception {
+        TokenBucketShaper shaper = new TokenBucketShaper(1000, 1000);
+
+        long start = System.nanoTime();
+        assertEquals(1000, shaper.acquire(1000));
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        assertTrue("Took " + elapsedMillis + " ms", elapsedMillis < 100);
+    }
+
+    public void testRateIsEnforced() throws Exception {
+        TokenBucketShaper shaper = new TokenBucketShaper(100000, 10000);
+
+        long start = System.nanoTime();
+        int transferred = 0;
+        while (transferred < 60000) {
+            transferred += shaper.acquire(4096);
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        // the first 10000 bytes are free, the rest takes 0.5 seconds
+        assertTrue("Took " + elapsedMillis + " ms", elapsedMillis >= 450);
+        assertTrue("Took " + elapsedMillis + " ms", elapsedMillis < 2000);
+    }
+
+    public void testReleaseReturnsTokens() throws Exception {
+        TokenBucketShaper shaper = new TokenBucketShaper(1000, 1000);
+
+        assertEquals(1000, shaper.acquire(1000));
+        shaper.release(1000);
+
+        long start = System.nanoTime();
+        assertEquals(1000, shaper.acquire(1000));
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        assertTrue("Took " + elapsedMillis + " ms", elapsedMillis < 100);
+    }
+}
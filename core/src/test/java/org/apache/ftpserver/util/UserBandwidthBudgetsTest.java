@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ftpserver.util;
+
+import junit.framework.TestCase;
+
+/**
+*
+* @author <a href="http://mina.apache.org">Apache MINA Project</a>*
+*/
+public class UserBandwidthBudgetsTest extends TestCase {
+
+    private UserBandwidthBudgets budgets = new UserBandwidthBudgets(1000);
+
+    public void testSharedByTransfersOfUser() {
+        BandwidthShaper first = budgets.acquire("user1");
+        BandwidthShaper second = budgets.acquire("user1");
+
+        assertSame(first, second);
+        assertNotSame(first, budgets.acquire("user2"));
+        assertEquals(2, budgets.getSize());
+    }
+
+    public void testDroppedAfterLastTransfer() {
+        budgets.acquire("user1");
+        budgets.acquire("user1");
+
+        budgets.release("user1");
+        assertEquals(1, budgets.getSize());
+
+        budgets.release("user1");
+        assertEquals(0, budgets.getSize());
+
+        // releasing an unknown user is ignored
+        budgets.release("user1");
+        assertEquals(0, budgets.getSize());
+    }
+
+    public void testInvalidRate() {
+        try {
+            new UserBandwidthBudgets(0);
+            fail("Must throw IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ftpserver.ftplet;
+
+import java.nio.file.DirectoryStream;
+
+/**
+ * Optional interface of {@link FtpFile} implementations that can list a
+ * directory without holding all of its files in memory. Directory listings
+ * use it when available and fall back to {@link FtpFile#listFiles()}
+ * otherwise.
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public interface StreamingFtpFile extends FtpFile {
+
+    /**
+     * Open a stream over the files of this directory. Unlike
+     * {@link FtpFile#listFiles()}, the files are returned in the order of the
+     * underlying file system, not in alphabetical order, and are only created
+     * while iterating. The stream can be iterated once and must be closed
+     * after use.
+     * @return The stream, null if not a directory, if it can not be read or if
+     *     the file system is not configured to stream listings
+     */
+    DirectoryStream<FtpFile> openFileStream();
+}